@@ -693,8 +693,12 @@ public class TfPluginBundle {
     @NonNls
     public static final String KEY_TFVC_CHECKIN_STATUS = "Tfvc.Checkin.Status";
     @NonNls
+    public static final String KEY_TFVC_CHECKIN_PROGRESS_MSG = "Tfvc.Checkin.Progress.Msg";
+    @NonNls
     public static final String KEY_TFVC_UPDATE_STATUS_MSG = "Tfvc.Update.Status.Msg";
     @NonNls
+    public static final String KEY_TFVC_UPDATE_PROGRESS_MSG = "Tfvc.Update.Progress.Msg";
+    @NonNls
     public static final String KEY_TFVC_TF_VERSION_WARNING_PROGRESS = "Tfvc.tf.VersionWarning.Progress";
     @NonNls
     public static final String KEY_TFVC_TF_VERSION_WARNING_TITLE = "Tfvc.tf.VersionWarning.Title";
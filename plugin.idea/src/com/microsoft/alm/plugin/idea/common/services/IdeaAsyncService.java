@@ -3,6 +3,7 @@
 
 package com.microsoft.alm.plugin.idea.common.services;
 
+import com.intellij.openapi.progress.ProgressManager;
 import com.microsoft.alm.plugin.idea.common.utils.IdeaHelper;
 import com.microsoft.alm.plugin.services.AsyncService;
 
@@ -15,4 +16,9 @@ public class IdeaAsyncService implements AsyncService {
     public void executeOnPooledThread(final Runnable runnable) {
         IdeaHelper.executeOnPooledThread(runnable);
     }
+
+    @Override
+    public void checkCanceled() {
+        ProgressManager.checkCanceled();
+    }
 }
\ No newline at end of file
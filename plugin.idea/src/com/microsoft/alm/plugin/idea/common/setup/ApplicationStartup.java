@@ -4,7 +4,9 @@
 package com.microsoft.alm.plugin.idea.common.setup;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.ide.IdeEventQueue;
 import com.intellij.idea.Main;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ApplicationNamesInfo;
 import com.intellij.openapi.components.ApplicationComponent;
 import com.intellij.util.containers.HashMap;
@@ -35,6 +37,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,6 +53,8 @@ public class ApplicationStartup implements ApplicationComponent {
     private static final String LINUX_EXE_DIR = "bin";
     private static final String MAC_EXE_DIR = "MacOS";
     private static final String CSV_COMMA = ",";
+    // The server isn't polled while none of the IDE windows has the focus or the user hasn't done anything for this long
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(15);
 
     public ApplicationStartup() {
     }
@@ -78,6 +83,12 @@ public class ApplicationStartup implements ApplicationComponent {
         ProjectRepoEventManager.getInstance().startListening();
 
         // Start polling for server events
+        ServerPollingManager.getInstance().setActivityMonitor(new ServerPollingManager.ActivityMonitor() {
+            @Override
+            public boolean isActive() {
+                return ApplicationManager.getApplication().isActive() && IdeEventQueue.getInstance().getIdleTime() < IDLE_MILLIS;
+            }
+        });
         ServerPollingManager.getInstance().startPolling();
 
         // Check for auth type settings
@@ -39,8 +39,6 @@ public class SelectWorkItemsController extends AbstractController {
     public void update(final Observable o, final Object arg) {
         if (arg == null || arg.equals(SelectWorkItemsModel.PROP_LOADING)) {
             form.setLoading(model.isLoading());
-            // if we finished loading and we got back the max number of items, show the help panel
-            form.setShowHelpPanel(!model.isLoading() && model.isMaxItemsReached());
         }
         if (arg == null || arg.equals(SelectWorkItemsModel.PROP_FILTER)) {
             form.setFilter(model.getFilter());
@@ -31,7 +31,6 @@ import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.Dimension;
 import java.awt.Insets;
 import java.awt.event.ActionListener;
@@ -162,7 +161,7 @@ public class SelectWorkItemsForm {
         workItemTable.setSelectionModel(selectionModel);
 
         // Setup table sorter
-        RowSorter<TableModel> sorter = new TableRowSorter<TableModel>(tableModel);
+        RowSorter<TableModel> sorter = new WorkItemsRowSorter(tableModel);
         workItemTable.setRowSorter(sorter);
 
         // Attach an index converter to fix the indexes if the user sorts the list
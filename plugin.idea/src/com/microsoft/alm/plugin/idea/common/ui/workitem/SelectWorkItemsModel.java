@@ -36,8 +36,6 @@ public class SelectWorkItemsModel extends AbstractModel {
     private String filter;
     private ServerContext latestServerContext;
 
-    private boolean maxItemsReached = false;
-
     public SelectWorkItemsModel(final Project project, final RepositoryContext repositoryContext) {
         ArgumentHelper.checkNotNull(project, "project");
         ArgumentHelper.checkNotNull(repositoryContext, "repositoryContext");
@@ -57,10 +55,6 @@ public class SelectWorkItemsModel extends AbstractModel {
         }
     }
 
-    public boolean isMaxItemsReached() {
-        return maxItemsReached;
-    }
-
     //TODO replace server label on form with UserAccountControl
     public String getServerName() {
         if (latestServerContext != null) {
@@ -97,7 +91,6 @@ public class SelectWorkItemsModel extends AbstractModel {
             @Override
             public void notifyLookupResults(final Operation.Results results) {
                 final WorkItemLookupOperation.WitResults wiResults = (WorkItemLookupOperation.WitResults) results;
-                maxItemsReached = wiResults.maxItemsReached();
 
                 if (wiResults.isCancelled()) {
                     // Do nothing
@@ -134,7 +127,7 @@ public class SelectWorkItemsModel extends AbstractModel {
                                 setChangedAndNotify(PROP_SERVER_NAME);
                             }
 
-                            tableModel.addWorkItems(wiResults.getWorkItems());
+                            tableModel.addWorkItems(wiResults);
                         }
                     });
                 }
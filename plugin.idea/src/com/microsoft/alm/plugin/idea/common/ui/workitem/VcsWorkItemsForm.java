@@ -25,7 +25,6 @@ import javax.swing.RowSorter;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.Dimension;
 import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
@@ -107,7 +106,7 @@ public class VcsWorkItemsForm extends TabFormImpl<WorkItemsTableModel> {
         });
 
         // Setup table sorter
-        RowSorter<TableModel> sorter = new TableRowSorter<TableModel>(tableModel);
+        RowSorter<TableModel> sorter = new WorkItemsRowSorter(tableModel);
         workItemsTable.setRowSorter(sorter);
 
         // Attach an index converter to fix the indexes if the user sorts the list
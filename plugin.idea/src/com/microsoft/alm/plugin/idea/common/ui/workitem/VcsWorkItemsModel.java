@@ -15,6 +15,7 @@ import com.microsoft.alm.plugin.authentication.AuthHelper;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.events.ServerChangeDetector;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.common.ui.common.tabs.TabModelImpl;
 import com.microsoft.alm.plugin.idea.common.utils.EventContextHelper;
@@ -22,6 +23,7 @@ import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
 import com.microsoft.alm.plugin.idea.git.ui.branch.CreateBranchController;
 import com.microsoft.alm.plugin.operations.Operation;
 import com.microsoft.alm.plugin.operations.OperationExecutor;
+import com.microsoft.alm.plugin.operations.WorkItemChangeSource;
 import com.microsoft.alm.plugin.operations.WorkItemLookupOperation;
 import com.microsoft.alm.plugin.telemetry.TfsTelemetryHelper;
 import com.microsoft.alm.workitemtracking.webapi.models.Link;
@@ -201,7 +203,13 @@ public class VcsWorkItemsModel extends TabModelImpl<WorkItemsTableModel> {
 
     public void appendData(final Operation.Results results) {
         final WorkItemLookupOperation.WitResults witResults = (WorkItemLookupOperation.WitResults) results;
-        viewForModel.addWorkItems(witResults.getWorkItems());
+        viewForModel.addWorkItems(witResults);
+        if (witResults.getAsOf() != null && witResults.getContext() != null && witResults.getPage() == 0
+                && repositoryContext != null) {
+            // Polls only fire the work item event from now on if something changed since the query of this tab
+            ServerChangeDetector.getInstance().watch(WorkItemChangeSource.getKey(repositoryContext.getUrl()),
+                    new WorkItemChangeSource(witResults.getContext(), witResults.getAsOf()));
+        }
     }
 
     public void clearData() {
@@ -222,4 +230,13 @@ public class VcsWorkItemsModel extends TabModelImpl<WorkItemsTableModel> {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        if (repositoryContext != null) {
+            // Stop asking the server for changes to what this tab shows
+            ServerChangeDetector.getInstance().unwatch(WorkItemChangeSource.getKey(repositoryContext.getUrl()));
+        }
+    }
+}
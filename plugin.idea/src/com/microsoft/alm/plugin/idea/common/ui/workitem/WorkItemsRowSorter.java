@@ -0,0 +1,36 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.common.ui.workitem;
+
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+
+/**
+ * Sorts the rows of a work items table once all of the pages of its query were read. Sorting asks the model for the
+ * value of every row, which would read every page, so until then the rows stay in the order of the query and the
+ * columns can't be sorted.
+ */
+public class WorkItemsRowSorter extends TableRowSorter<TableModel> {
+    private final WorkItemsTableModel tableModel;
+
+    public WorkItemsRowSorter(final WorkItemsTableModel tableModel) {
+        super(tableModel);
+        this.tableModel = tableModel;
+    }
+
+    @Override
+    public boolean isSortable(final int column) {
+        return tableModel.isFullyLoaded() && super.isSortable(column);
+    }
+
+    @Override
+    public void sort() {
+        if (!getSortKeys().isEmpty() && !tableModel.isFullyLoaded()) {
+            // A new query replaced the rows that were sorted, this sorts again without any keys
+            setSortKeys(null);
+            return;
+        }
+        super.sort();
+    }
+}
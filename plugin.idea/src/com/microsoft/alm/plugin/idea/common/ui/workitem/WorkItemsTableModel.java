@@ -7,6 +7,9 @@ package com.microsoft.alm.plugin.idea.common.ui.workitem;
 import com.microsoft.alm.common.utils.SystemHelper;
 import com.microsoft.alm.plugin.idea.common.ui.common.TableModelSelectionConverter;
 import com.microsoft.alm.plugin.idea.common.ui.common.FilteredModel;
+import com.microsoft.alm.plugin.idea.common.utils.IdeaHelper;
+import com.microsoft.alm.plugin.operations.WorkItemLookupOperation;
+import com.microsoft.alm.plugin.operations.WorkItemPageLoader;
 import com.microsoft.alm.workitemtracking.webapi.models.WorkItem;
 import jersey.repackaged.com.google.common.base.Predicate;
 import jersey.repackaged.com.google.common.collect.Collections2;
@@ -17,10 +20,17 @@ import javax.swing.DefaultListSelectionModel;
 import javax.swing.ListSelectionModel;
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This table model manages a list of workitems. It has a built-in selectionModel as well.
+ * When the work items come from a paged query the model has a row for every work item of the query. The rows of the
+ * pages that weren't read yet are empty until the table shows them, which reads their page. A work item the server
+ * didn't return stays an empty row so that the rows after it keep their place. The rows can't be sorted until every
+ * page was read (see WorkItemsRowSorter), since sorting would ask for every row.
  * TODO refactor this and the other TableModel classes into a generic class (most of the code is the same)
  */
 public class WorkItemsTableModel extends AbstractTableModel implements FilteredModel {
@@ -43,6 +53,9 @@ public class WorkItemsTableModel extends AbstractTableModel implements FilteredM
     private ListSelectionModel selectionModel = new DefaultListSelectionModel();
     private List<WorkItem> rows = new ArrayList<WorkItem>(100);
     private List<WorkItem> filteredRows = null;
+    private WorkItemPageLoader pageLoader;
+    // The pages of the query that were read
+    private final Set<Integer> loadedPages = new HashSet<Integer>();
     private String filter;
     private final Column[] columns;
     private TableModelSelectionConverter converter;
@@ -92,6 +105,75 @@ public class WorkItemsTableModel extends AbstractTableModel implements FilteredM
         //select(selectedWorkItems);
     }
 
+    /**
+     * Adds the work items of the results. A page of a query is put in its place among the rows of the query.
+     */
+    public void addWorkItems(final WorkItemLookupOperation.WitResults results) {
+        if (results.getPageLoader() != null) {
+            setPage(results.getPageLoader(), results.getPage(), results.getWorkItems());
+        } else {
+            addWorkItems(results.getWorkItems());
+        }
+    }
+
+    private void setPage(final WorkItemPageLoader loader, final int page, final List<WorkItem> workItems) {
+        final boolean newQuery = pageLoader != loader;
+        if (newQuery) {
+            // The first page of a query makes the rows for all of its work items
+            if (pageLoader != null) {
+                pageLoader.cancel();
+            }
+            pageLoader = loader;
+            rows.clear();
+            rows.addAll(Collections.<WorkItem>nCopies(loader.getCount(), null));
+            loadedPages.clear();
+        }
+        loadedPages.add(page);
+
+        final int start = WorkItemPageLoader.getPageStart(page);
+        for (int i = 0; i < workItems.size() && start + i < rows.size(); i++) {
+            rows.set(start + i, workItems.get(i));
+        }
+
+        if (hasFilter()) {
+            // re-apply the filter, this will fire its own event
+            applyFilter();
+        } else if (newQuery) {
+            super.fireTableDataChanged();
+        } else if (!workItems.isEmpty()) {
+            // Only repaint the rows of the page so the selection is kept
+            super.fireTableRowsUpdated(start, Math.min(start + workItems.size(), rows.size()) - 1);
+        }
+    }
+
+    /**
+     * Reads the page of the row unless it was already requested
+     */
+    private void loadPage(final int rowIndex) {
+        final WorkItemPageLoader loader = pageLoader;
+        loader.loadPageAsync(WorkItemPageLoader.getPage(rowIndex), new WorkItemPageLoader.Listener() {
+            @Override
+            public void pageLoaded(final int page, final List<WorkItem> workItems) {
+                IdeaHelper.runOnUIThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Ignore pages of a query that isn't shown anymore
+                        if (workItems != null && pageLoader == loader) {
+                            setPage(loader, page, workItems);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns true if all of the pages of the query were read
+     */
+    public boolean isFullyLoaded() {
+        return pageLoader == null || loadedPages.size() >= pageLoader.getPageCount();
+    }
+
     public void setSelectionConverter(final TableModelSelectionConverter converter) {
         this.converter = converter;
     }
@@ -109,15 +191,24 @@ public class WorkItemsTableModel extends AbstractTableModel implements FilteredM
         for (int i = 0; i < this.getRowCount(); i++) {
             if (getSelectionModel().isSelectedIndex(i)) {
                 final int modelIndex = getSelectionConverter().convertRowIndexToModel(i);
-                items.add(getWorkItem(modelIndex));
+                final WorkItem item = getWorkItem(modelIndex);
+                // Skip the rows whose page wasn't read yet
+                if (item != null) {
+                    items.add(item);
+                }
             }
         }
         return items;
     }
 
     public void clearRows() {
+        if (pageLoader != null) {
+            pageLoader.cancel();
+            pageLoader = null;
+        }
         filteredRows = null;
         rows.clear();
+        loadedPages.clear();
         super.fireTableDataChanged();
     }
 
@@ -132,6 +223,10 @@ public class WorkItemsTableModel extends AbstractTableModel implements FilteredM
     @Override
     public Object getValueAt(final int rowIndex, final int columnIndex) {
         final WorkItem item = getWorkItem(rowIndex);
+        if (item == null && filteredRows == null && pageLoader != null) {
+            // The table shows a row whose page wasn't read yet
+            loadPage(rowIndex);
+        }
         final String val = getValueFor(item, columnIndex);
         if (getColumnClass(columnIndex) == Integer.class) {
             // Return the value as an integer to allow proper sorting
@@ -236,6 +331,14 @@ public class WorkItemsTableModel extends AbstractTableModel implements FilteredM
         if (!hasFilter()) {
             filteredRows = null;
         } else {
+            if (pageLoader != null) {
+                // The filter has to see every work item of the query, read the pages that weren't read yet
+                for (int page = 0; page < pageLoader.getPageCount(); page++) {
+                    if (!pageLoader.isRequested(page)) {
+                        loadPage(WorkItemPageLoader.getPageStart(page));
+                    }
+                }
+            }
             filteredRows = Lists.newArrayList(Collections2.filter(rows, new Predicate<WorkItem>() {
                 @Override
                 public boolean apply(WorkItem item) {
@@ -35,6 +35,8 @@ import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
 import com.microsoft.alm.plugin.context.rest.GitHttpClientEx;
 import com.microsoft.alm.plugin.context.rest.GitPullRequestEx;
+import com.microsoft.alm.plugin.events.ServerEvent;
+import com.microsoft.alm.plugin.events.ServerPollingManager;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.common.ui.common.AbstractModel;
 import com.microsoft.alm.plugin.idea.common.ui.common.ModelValidationInfo;
@@ -726,6 +728,9 @@ public class CreatePullRequestModel extends AbstractModel {
 
         // Update the PR tab and any other UI that is listening for PR Changed events
         EventContextHelper.triggerPullRequestChanged(EventContextHelper.SENDER_CREATE_PULL_REQUEST, project);
+        // Reviewers and policy builds will act on the new PR soon
+        ServerPollingManager.getInstance().expectChange(ServerEvent.PULL_REQUESTS_CHANGED);
+        ServerPollingManager.getInstance().expectChange(ServerEvent.BUILDS_CHANGED);
     }
 
     static class ApplicationProvider {
@@ -11,8 +11,8 @@ import javax.swing.tree.DefaultMutableTreeNode;
  * Tree Node to represent a GitPullRequest, or one of the parent nodes
  */
 public class PRTreeNode extends DefaultMutableTreeNode {
-    private final String name;
-    private final GitPullRequest gitPullRequest;
+    private String name;
+    private GitPullRequest gitPullRequest;
 
     public PRTreeNode(final GitPullRequest gitPullRequest) {
         super(gitPullRequest, false);
@@ -33,4 +33,13 @@ public class PRTreeNode extends DefaultMutableTreeNode {
     public GitPullRequest getGitPullRequest() {
         return gitPullRequest;
     }
+
+    /**
+     * Replaces the pull request with a newer copy of it from the server, so the node (and its selection) is kept
+     */
+    public void setGitPullRequest(final GitPullRequest gitPullRequest) {
+        setUserObject(gitPullRequest);
+        this.gitPullRequest = gitPullRequest;
+        this.name = gitPullRequest.getTitle();
+    }
 }
@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin.idea.git.ui.pullrequest;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.common.ui.common.FilteredModel;
 import com.microsoft.alm.plugin.idea.common.utils.DateHelper;
+import com.microsoft.alm.plugin.operations.PullRequestChangeSource;
 import com.microsoft.alm.plugin.operations.PullRequestLookupOperation;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequest;
 import org.apache.commons.lang.StringUtils;
@@ -15,7 +16,9 @@ import javax.swing.tree.DefaultTreeSelectionModel;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PullRequestsTreeModel extends DefaultTreeModel implements FilteredModel {
     private final PRTreeNode root;
@@ -51,26 +54,44 @@ public class PullRequestsTreeModel extends DefaultTreeModel implements FilteredM
         return assignedToMeRoot;
     }
 
-    public void appendPullRequests(final List<GitPullRequest> pullRequests, final PullRequestLookupOperation.PullRequestScope scope) {
-        final PRTreeNode rootNode;
+    /**
+     * Replaces the pull requests of the scope with the ones just loaded. Only the nodes of the pull requests that were
+     * added, changed or removed are touched, so the selection and the expanded nodes are kept.
+     */
+    public void setPullRequests(final List<GitPullRequest> pullRequests, final PullRequestLookupOperation.PullRequestScope scope) {
+        final List<GitPullRequest> allPullRequests = getPullRequests(scope);
+        allPullRequests.clear();
+        allPullRequests.addAll(pullRequests);
+        updateNodes(getRoot(scope), allPullRequests);
+    }
 
-        if (scope == PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME) {
-            rootNode = requestedByMeRoot;
-            allRequestedByMePullRequests.addAll(pullRequests);
-        } else {
-            rootNode = assignedToMeRoot;
-            allAssignedToMePullRequests.addAll(pullRequests);
+    /**
+     * Applies the pull requests of the scope that were added, changed or removed on the server since they were loaded
+     */
+    public void updatePullRequests(final List<GitPullRequest> addedOrUpdated, final List<GitPullRequest> removed,
+                                   final PullRequestLookupOperation.PullRequestScope scope) {
+        final List<GitPullRequest> allPullRequests = getPullRequests(scope);
+        for (final GitPullRequest pullRequest : removed) {
+            final int index = indexOf(allPullRequests, pullRequest.getPullRequestId());
+            if (index >= 0) {
+                allPullRequests.remove(index);
+            }
         }
-
-        // filter if there is a filter else add all PRs to root
-        if (hasFilter()) {
-            applyFilter();
-        } else {
-            for (final GitPullRequest pullRequest : pullRequests) {
-                rootNode.add(new PRTreeNode(pullRequest));
+        for (final GitPullRequest pullRequest : addedOrUpdated) {
+            final int index = indexOf(allPullRequests, pullRequest.getPullRequestId());
+            if (index >= 0) {
+                allPullRequests.set(index, pullRequest);
+            } else {
+                // The server returns the newest pull requests first
+                int insertAt = 0;
+                while (insertAt < allPullRequests.size() &&
+                        allPullRequests.get(insertAt).getPullRequestId() > pullRequest.getPullRequestId()) {
+                    insertAt++;
+                }
+                allPullRequests.add(insertAt, pullRequest);
             }
-            reload(rootNode);
         }
+        updateNodes(getRoot(scope), allPullRequests);
     }
 
     public void clearPullRequests() {
@@ -99,29 +120,80 @@ public class PullRequestsTreeModel extends DefaultTreeModel implements FilteredM
     }
 
     private void applyFilter() {
+        updateNodes(requestedByMeRoot, allRequestedByMePullRequests);
+        updateNodes(assignedToMeRoot, allAssignedToMePullRequests);
+    }
+
+    /**
+     * Makes the children of the root node show the pull requests that pass the filter, in order. Nodes are only
+     * inserted, removed or changed one at a time, instead of rebuilding the tree, so the tree keeps its state.
+     */
+    private void updateNodes(final PRTreeNode rootNode, final List<GitPullRequest> pullRequests) {
         final boolean hasFilter = hasFilter();
+        final List<GitPullRequest> visiblePullRequests = new ArrayList<GitPullRequest>(pullRequests.size());
+        final Set<Integer> visibleIds = new HashSet<Integer>();
+        for (final GitPullRequest pr : pullRequests) {
+            if (!hasFilter || nodeContainsFilter(pr)) {
+                visiblePullRequests.add(pr);
+                visibleIds.add(pr.getPullRequestId());
+            }
+        }
 
-        // remove all nodes so no duplicates show up
-        assignedToMeRoot.removeAllChildren();
-        requestedByMeRoot.removeAllChildren();
+        for (int i = rootNode.getChildCount() - 1; i >= 0; i--) {
+            final PRTreeNode node = (PRTreeNode) rootNode.getChildAt(i);
+            if (!visibleIds.contains(node.getGitPullRequest().getPullRequestId())) {
+                removeNodeFromParent(node);
+            }
+        }
 
-        // filter on requests by me
-        for (GitPullRequest pr : allRequestedByMePullRequests) {
-            if (!hasFilter || nodeContainsFilter(pr)) {
-                requestedByMeRoot.add(new PRTreeNode(pr));
+        for (int i = 0; i < visiblePullRequests.size(); i++) {
+            final GitPullRequest pr = visiblePullRequests.get(i);
+            final PRTreeNode node = findNode(rootNode, pr.getPullRequestId(), i);
+            if (node == null) {
+                insertNodeInto(new PRTreeNode(pr), rootNode, i);
+                continue;
+            }
+
+            if (rootNode.getIndex(node) != i) {
+                removeNodeFromParent(node);
+                insertNodeInto(node, rootNode, i);
+            }
+            if (node.getGitPullRequest() != pr) {
+                final boolean changed = PullRequestChangeSource.isChanged(node.getGitPullRequest(), pr);
+                node.setGitPullRequest(pr);
+                if (changed) {
+                    nodeChanged(node);
+                }
             }
         }
+    }
 
-        // filter on requests assigned to me
-        for (GitPullRequest pr : allAssignedToMePullRequests) {
-            if (!hasFilter || nodeContainsFilter(pr)) {
-                assignedToMeRoot.add(new PRTreeNode(pr));
+    private PRTreeNode findNode(final PRTreeNode rootNode, final int pullRequestId, final int fromIndex) {
+        for (int i = fromIndex; i < rootNode.getChildCount(); i++) {
+            final PRTreeNode node = (PRTreeNode) rootNode.getChildAt(i);
+            if (node.getGitPullRequest().getPullRequestId() == pullRequestId) {
+                return node;
             }
         }
+        return null;
+    }
 
-        // refresh tree
-        reload(requestedByMeRoot);
-        reload(assignedToMeRoot);
+    private static int indexOf(final List<GitPullRequest> pullRequests, final int pullRequestId) {
+        for (int i = 0; i < pullRequests.size(); i++) {
+            if (pullRequests.get(i).getPullRequestId() == pullRequestId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private PRTreeNode getRoot(final PullRequestLookupOperation.PullRequestScope scope) {
+        return scope == PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME ? requestedByMeRoot : assignedToMeRoot;
+    }
+
+    private List<GitPullRequest> getPullRequests(final PullRequestLookupOperation.PullRequestScope scope) {
+        return scope == PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME ?
+                allRequestedByMePullRequests : allAssignedToMePullRequests;
     }
 
     public boolean hasFilter() {
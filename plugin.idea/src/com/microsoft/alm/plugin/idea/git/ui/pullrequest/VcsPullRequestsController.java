@@ -4,12 +4,16 @@
 package com.microsoft.alm.plugin.idea.git.ui.pullrequest;
 
 import com.intellij.openapi.project.Project;
+import com.microsoft.alm.plugin.events.ServerChangeDetector;
+import com.microsoft.alm.plugin.events.ServerChanges;
 import com.microsoft.alm.plugin.events.ServerEvent;
 import com.microsoft.alm.plugin.idea.common.ui.common.tabs.TabControllerImpl;
 import com.microsoft.alm.plugin.idea.common.ui.common.tabs.TabImpl;
+import com.microsoft.alm.plugin.idea.common.utils.IdeaHelper;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.event.ActionEvent;
+import java.util.Map;
 
 /**
  * Controller for the Version Control Pull Requests Tab
@@ -34,4 +38,25 @@ public class VcsPullRequestsController extends TabControllerImpl<VcsPullRequests
             super.performAction(e);
         }
     }
+
+    /**
+     * Polls pass the pull requests that changed, so only their nodes are updated instead of loading everything again
+     */
+    @Override
+    protected void handleServerChangedEvent(final ServerEvent event, final Map<String, Object> contextMap) {
+        final ServerChanges changes = (ServerChanges) contextMap.get(ServerChangeDetector.CONTEXT_CHANGES);
+        if (changes == null) {
+            super.handleServerChangedEvent(event, contextMap);
+            return;
+        }
+
+        if (model.getAutoRefresh()) {
+            IdeaHelper.runOnUIThread(new Runnable() {
+                @Override
+                public void run() {
+                    model.applyChanges(changes);
+                }
+            });
+        }
+    }
 }
@@ -66,7 +66,11 @@ public class VcsPullRequestsForm extends TabFormImpl<PullRequestsTreeModel> {
 
             @Override
             public void treeNodesInserted(TreeModelEvent treeModelEvent) {
-                // do nothing
+                // expand a group when its first pull requests show up, but leave it alone after that
+                final Object parent = treeModelEvent.getTreePath().getLastPathComponent();
+                if (parent instanceof PRTreeNode && ((PRTreeNode) parent).getChildCount() == treeModelEvent.getChildIndices().length) {
+                    pullRequestsTree.expandPath(treeModelEvent.getTreePath());
+                }
             }
 
             @Override
@@ -12,6 +12,8 @@ import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vcs.VcsNotifier;
 import com.microsoft.alm.common.utils.UrlHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.events.ServerChangeDetector;
+import com.microsoft.alm.plugin.events.ServerChanges;
 import com.microsoft.alm.plugin.idea.common.resources.Icons;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.common.ui.common.tabs.TabModelImpl;
@@ -20,6 +22,7 @@ import com.microsoft.alm.plugin.idea.common.utils.IdeaHelper;
 import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
 import com.microsoft.alm.plugin.idea.git.utils.TfGitHelper;
 import com.microsoft.alm.plugin.operations.Operation;
+import com.microsoft.alm.plugin.operations.PullRequestChangeSource;
 import com.microsoft.alm.plugin.operations.PullRequestLookupOperation;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequest;
 import com.microsoft.alm.sourcecontrol.webapi.model.PullRequestStatus;
@@ -29,9 +32,14 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class VcsPullRequestsModel extends TabModelImpl<PullRequestsTreeModel> {
     private static final Logger logger = LoggerFactory.getLogger(VcsPullRequestsModel.class);
     private final GitRepository gitRepository;
+    // The repository of the pull requests that are shown
+    private String loadedUrl;
 
     public VcsPullRequestsModel(@NotNull Project project) {
         super(project, new PullRequestsTreeModel(), "PullRequestsTab.");
@@ -169,11 +177,45 @@ public class VcsPullRequestsModel extends TabModelImpl<PullRequestsTreeModel> {
 
     public void appendData(final Operation.Results results) {
         final PullRequestLookupOperation.PullRequestLookupResults lookupResults = (PullRequestLookupOperation.PullRequestLookupResults) results;
-        viewForModel.appendPullRequests(lookupResults.getPullRequests(), lookupResults.getScope());
+        // Each scope comes back whole, so it replaces what was shown while it was loading
+        viewForModel.setPullRequests(lookupResults.getPullRequests(), lookupResults.getScope());
     }
 
     public void clearData() {
-        viewForModel.clearPullRequests();
+        // Keep showing the last pull requests while they are loaded again, unless they are of another repository
+        final String url = repositoryContext != null ? repositoryContext.getUrl() : null;
+        if (!StringUtils.equalsIgnoreCase(url, loadedUrl)) {
+            viewForModel.clearPullRequests();
+            loadedUrl = url;
+        }
+    }
+
+    /**
+     * Applies the pull requests that the polling manager found to be added, changed or removed on the server, without
+     * loading them again
+     */
+    public void applyChanges(final ServerChanges changes) {
+        for (final PullRequestLookupOperation.PullRequestScope scope : PullRequestLookupOperation.PullRequestScope.values()) {
+            final List<GitPullRequest> addedOrUpdated = new ArrayList<GitPullRequest>();
+            final List<GitPullRequest> removed = new ArrayList<GitPullRequest>();
+            addChanges(addedOrUpdated, changes.getAdded(PullRequestChangeSource.ScopedPullRequest.class), scope);
+            addChanges(addedOrUpdated, changes.getUpdated(PullRequestChangeSource.ScopedPullRequest.class), scope);
+            addChanges(removed, changes.getRemoved(PullRequestChangeSource.ScopedPullRequest.class), scope);
+            if (!addedOrUpdated.isEmpty() || !removed.isEmpty()) {
+                viewForModel.updatePullRequests(addedOrUpdated, removed, scope);
+            }
+        }
+    }
+
+    private void addChanges(final List<GitPullRequest> pullRequests,
+                            final List<PullRequestChangeSource.ScopedPullRequest> changes,
+                            final PullRequestLookupOperation.PullRequestScope scope) {
+        for (final PullRequestChangeSource.ScopedPullRequest change : changes) {
+            // Other projects may show the pull requests of other repositories
+            if (change.getScope() == scope && loadedUrl != null && StringUtils.equalsIgnoreCase(change.getGitRemoteUrl(), loadedUrl)) {
+                pullRequests.add(change.getPullRequest());
+            }
+        }
     }
 
     public void createNewItem() {
@@ -186,4 +228,13 @@ public class VcsPullRequestsModel extends TabModelImpl<PullRequestsTreeModel> {
 
         //TODO: how do we know this is done to refresh the tree?
     }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        if (repositoryContext != null) {
+            // Stop asking the server for changes to what this tab shows
+            ServerChangeDetector.getInstance().unwatch(PullRequestChangeSource.getKey(repositoryContext.getUrl()));
+        }
+    }
 }
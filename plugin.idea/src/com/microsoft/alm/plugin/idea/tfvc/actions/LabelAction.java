@@ -25,6 +25,7 @@ import com.microsoft.alm.plugin.external.models.TfvcLabel;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.tfvc.ui.ApplyLabelDialog;
+import com.microsoft.alm.plugin.idea.tfvc.ui.ItemInfoBatchLoader;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,10 +41,16 @@ public class LabelAction extends MultipleItemAction {
                 TfPluginBundle.message(TfPluginBundle.KEY_ACTIONS_TFVC_LABEL_MSG));
     }
 
+    @Override
+    protected boolean isItemInfoReadByDialog() {
+        return true;
+    }
+
     @Override
     protected void execute(@NotNull final MultipleItemActionContext actionContext) {
         // Open the Apply Label dialog and allow the user to enter label name and description
-        final ApplyLabelDialog d = new ApplyLabelDialog(actionContext.project, actionContext.itemInfos);
+        final ApplyLabelDialog d = new ApplyLabelDialog(actionContext.project,
+                new ItemInfoBatchLoader(actionContext.serverContext, actionContext.localPaths));
         if (!d.showAndGet()) {
             logger.info("User canceled Apply Label action");
             actionContext.cancelled = true;
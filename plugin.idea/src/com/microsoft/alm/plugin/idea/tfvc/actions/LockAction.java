@@ -21,15 +21,15 @@ package com.microsoft.alm.plugin.idea.tfvc.actions;
 
 import com.intellij.openapi.progress.ProgressManager;
 import com.microsoft.alm.plugin.external.commands.LockCommand;
-import com.microsoft.alm.plugin.external.models.ItemInfo;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
+import com.microsoft.alm.plugin.idea.tfvc.ui.ItemInfoBatchLoader;
 import com.microsoft.alm.plugin.idea.tfvc.ui.LockItemsDialog;
+import com.microsoft.alm.plugin.versioncontrol.path.ServerPath;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class LockAction extends MultipleItemAction {
@@ -40,10 +40,16 @@ public class LockAction extends MultipleItemAction {
                 TfPluginBundle.message(TfPluginBundle.KEY_ACTIONS_TFVC_LOCK_MSG));
     }
 
+    @Override
+    protected boolean isItemInfoReadByDialog() {
+        return true;
+    }
+
     @Override
     protected void execute(@NotNull final MultipleItemActionContext actionContext) {
         logger.info("Starting Lock/unlock action");
-        final LockItemsDialog d = new LockItemsDialog(actionContext.project, actionContext.itemInfos);
+        final LockItemsDialog d = new LockItemsDialog(actionContext.project,
+                new ItemInfoBatchLoader(actionContext.serverContext, actionContext.localPaths));
         d.show();
         int exitCode = d.getExitCode();
         if (exitCode != LockItemsDialog.LOCK_EXIT_CODE && exitCode != LockItemsDialog.UNLOCK_EXIT_CODE) {
@@ -58,11 +64,10 @@ public class LockAction extends MultipleItemAction {
         runWithProgress(actionContext, new Runnable() {
             public void run() {
                 ProgressManager.getInstance().getProgressIndicator().setIndeterminate(true);
-                final List<ItemInfo> selectedItems = d.getSelectedItems();
-                final List<String> itemSpecs = new ArrayList<String>(selectedItems.size());
-                for (final ItemInfo item : selectedItems) {
-                    itemSpecs.add(item.getServerItem());
-                }
+                // A recursive lock on a folder already covers the selected items under it
+                final List<String> itemSpecs = d.getRecursive() ?
+                        ServerPath.removeChildren(d.getSelectedServerItems()) :
+                        d.getSelectedServerItems();
 
                 logger.info("Calling the lock command");
                 CommandUtils.lock(actionContext.serverContext, actionContext.workingFolder,
@@ -67,9 +67,8 @@ public class MergeBranchAction extends SingleItemAction implements DumbAware {
                 actionContext.getItem().getLocalItem() :
                 Path.getDirectoryName(actionContext.getItem().getLocalItem());
 
-        // Create the branch provider and prepopulate it
-        InternalBranchListProvider branchListProvider = new InternalBranchListProvider(serverContext, workingFolder);
-        branchListProvider.getBranches(sourceDialogInput);
+        // The dialog asks the provider for the branches in the background
+        final InternalBranchListProvider branchListProvider = new InternalBranchListProvider(serverContext, workingFolder);
 
         final MergeBranchDialog d = new MergeBranchDialog(project, serverContext, sourceDialogInput, isFolder,
                 branchListProvider);
@@ -168,7 +167,7 @@ public class MergeBranchAction extends SingleItemAction implements DumbAware {
         }
 
         @Override
-        public List<String> getBranches(final String source) {
+        public synchronized List<String> getBranches(final String source) {
             ArgumentHelper.checkNotEmptyString(source, "source");
             // If the source is the same as the last time we were called, we return the same result
             if (!StringUtils.equalsIgnoreCase(lastSourceUsed, source)) {
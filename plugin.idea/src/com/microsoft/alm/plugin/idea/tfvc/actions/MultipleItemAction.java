@@ -36,7 +36,7 @@ import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.alm.helpers.Path;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.models.ItemInfo;
-import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import com.microsoft.alm.plugin.idea.common.actions.InstrumentedAction;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
@@ -68,6 +68,15 @@ public abstract class MultipleItemAction extends InstrumentedAction {
      */
     protected abstract void execute(final @NotNull MultipleItemActionContext actionContext);
 
+    /**
+     * Subclasses that show the items in a dialog which reads their infos itself (see ItemInfoBatchLoader) return true
+     * here. Only the info of the first item is read before execute is called then, the rest are in the context as
+     * local paths.
+     */
+    protected boolean isItemInfoReadByDialog() {
+        return false;
+    }
+
     @Override
     public void doUpdate(final AnActionEvent anActionEvent) {
         final Project project = anActionEvent.getData(CommonDataKeys.PROJECT);
@@ -90,14 +99,15 @@ public abstract class MultipleItemAction extends InstrumentedAction {
                 context.serverContext = TFSVcs.getInstance(context.project).getServerContext(true);
 
                 // Get the local paths
-                final List<String> localPaths = new ArrayList<String>(files.length);
                 for (final VirtualFile file : files) {
                     final FilePath localPath = VcsContextFactory.SERVICE.getInstance().createFilePathOn(file);
-                    localPaths.add(localPath.getPath());
+                    context.localPaths.add(localPath.getPath());
                 }
 
-                // Get the item infos (no need for a working folder since these are local paths)
-                final List<ItemInfo> infos = CommandUtils.getItemInfos(context.serverContext, null, localPaths);
+                // Get the item infos, the paths that were looked at a moment ago are not read again
+                final List<String> pathsToRead = isItemInfoReadByDialog() && !context.localPaths.isEmpty() ?
+                        context.localPaths.subList(0, 1) : context.localPaths;
+                final List<ItemInfo> infos = ItemInfoCache.getInstance().getItemInfos(context.serverContext, pathsToRead);
                 context.itemInfos.addAll(infos);
 
                 // Set the default path and additional parameters
@@ -210,6 +220,7 @@ public abstract class MultipleItemAction extends InstrumentedAction {
         protected String workingFolder;
         protected boolean cancelled = false;
         protected final List<VcsException> errors = new ArrayList<VcsException>();
+        protected final List<String> localPaths = new ArrayList<String>();
         protected final List<ItemInfo> itemInfos = new ArrayList<ItemInfo>();
 
         public boolean hasErrors() {
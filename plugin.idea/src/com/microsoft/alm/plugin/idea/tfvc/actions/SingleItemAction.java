@@ -35,7 +35,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.models.ItemInfo;
-import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import com.microsoft.alm.plugin.idea.common.actions.InstrumentedAction;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
@@ -88,7 +88,7 @@ public abstract class SingleItemAction extends InstrumentedAction {
                     try {
                         ProgressManager.getInstance().getProgressIndicator().setIndeterminate(true);
                         final ServerContext context = TFSVcs.getInstance(project).getServerContext(true);
-                        final ItemInfo item = CommandUtils.getItemInfo(context, localPath.getPath());
+                        final ItemInfo item = ItemInfoCache.getInstance().getItemInfo(context, localPath.getPath());
                         actionContext.setItem(item);
                         actionContext.setServerContext(context);
                     } catch (final Throwable t) {
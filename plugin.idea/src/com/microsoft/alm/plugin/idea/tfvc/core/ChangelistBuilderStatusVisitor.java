@@ -30,6 +30,7 @@ import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.models.ChangeSet;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSContentRevision;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSRevisionPrefetcher;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.ServerStatus;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.StatusVisitor;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.VersionControlPath;
@@ -48,18 +49,23 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
     private final Project project;
     @NotNull
     private final ChangelistBuilder changelistBuilder;
+    // The base revisions of the changes, downloaded in the background once the first one is diffed
+    @NotNull
+    private final TFSRevisionPrefetcher prefetcher;
 
     public ChangelistBuilderStatusVisitor(final @NotNull Project project,
-                                          final @NotNull ChangelistBuilder changelistBuilder) {
+                                          final @NotNull ChangelistBuilder changelistBuilder,
+                                          final @NotNull TFSRevisionPrefetcher prefetcher) {
         this.project = project;
         this.changelistBuilder = changelistBuilder;
+        this.prefetcher = prefetcher;
     }
 
     public void checkedOutForEdit(final @NotNull FilePath localPath, final boolean localItemExists, final @NotNull ServerStatus serverStatus)
             throws TfsException {
         if (localItemExists) {
-            TFSContentRevision baseRevision =
-                    TFSContentRevision.create(project, localPath, serverStatus.localVer, serverStatus.modicationDate);
+            TFSContentRevision baseRevision = prefetcher.add(
+                    TFSContentRevision.create(project, localPath, serverStatus.localVer, serverStatus.modicationDate));
             changelistBuilder.processChange(new Change(baseRevision, CurrentContentRevision.create(localPath)), TFSVcs.getKey());
         } else {
             changelistBuilder.processLocallyDeletedFile(localPath);
@@ -84,8 +90,8 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
     public void scheduledForDeletion(final @NotNull FilePath localPath,
                                      final boolean localItemExists,
                                      final @NotNull ServerStatus serverStatus) {
-        TFSContentRevision baseRevision =
-                TFSContentRevision.create(project, localPath, serverStatus.localVer, serverStatus.modicationDate);
+        TFSContentRevision baseRevision = prefetcher.add(
+                TFSContentRevision.create(project, localPath, serverStatus.localVer, serverStatus.modicationDate));
         changelistBuilder.processChange(new Change(baseRevision, null), TFSVcs.getKey());
     }
 
@@ -146,11 +152,11 @@ class ChangelistBuilderStatusVisitor implements StatusVisitor {
             final String originalPath = CommandUtils.getLocalPathSynchronously(serverContext, serverPath,
                     CommandUtils.getWorkspaceName(project));
 
-            return TFSContentRevision.createRenameRevision(project,
+            return prefetcher.add(TFSContentRevision.createRenameRevision(project,
                     VersionControlPath.getFilePath(originalPath, localPath.isDirectory()),
                     revision,
                     lastChangeSet.getDate(),
-                    serverPath);
+                    serverPath));
         }
         return null;
     }
@@ -27,6 +27,7 @@ import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.versionBrowser.CommittedChangeList;
 import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSContentRevision;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSRevisionPrefetcher;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -135,19 +136,21 @@ public class TFSChangeList implements CommittedChangeList {
             changes = new ArrayList<Change>();
             logger.debug("Initializing the changes for the changeset: " + changeSetId);
 
+            // Once one of the changes is opened the rest of them are downloaded in the background
+            final TFSRevisionPrefetcher prefetcher = new TFSRevisionPrefetcher(myVcs.getProject());
             for (final FilePath path : addedFiles) {
-                changes.add(new Change(null, TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate)));
+                changes.add(new Change(null, prefetcher.add(TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate))));
             }
             for (final FilePath path : deletedFiles) {
-                changes.add(new Change(TFSContentRevision.create(myVcs.getProject(), path, previousChangeSetId, previousChangeSetDate), null));
+                changes.add(new Change(prefetcher.add(TFSContentRevision.create(myVcs.getProject(), path, previousChangeSetId, previousChangeSetDate)), null));
             }
             for (final FilePath path : renamedFiles) {
                 // treated like an add (more on why above)
-                changes.add(new Change(null, TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate)));
+                changes.add(new Change(null, prefetcher.add(TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate))));
             }
             for (final FilePath path : editedFiles) {
-                final TFSContentRevision before = TFSContentRevision.create(myVcs.getProject(), path, previousChangeSetId, previousChangeSetDate);
-                final TFSContentRevision after = TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate);
+                final TFSContentRevision before = prefetcher.add(TFSContentRevision.create(myVcs.getProject(), path, previousChangeSetId, previousChangeSetDate));
+                final TFSContentRevision after = prefetcher.add(TFSContentRevision.create(myVcs.getProject(), path, changeSetId, changeSetDate));
                 changes.add(new Change(before, after));
             }
         }
@@ -47,7 +47,7 @@ public class TFSChangeListBuilder {
             if (filePathCache.containsKey(pendingChange.getServerItem())) {
                 path = filePathCache.get(pendingChange.getServerItem());
             } else {
-                final String localPath = TfsFileUtil.translateServerItemToLocalItem(workspace.getMappings(), pendingChange.getServerItem());
+                final String localPath = TfsFileUtil.translateServerItemToLocalItem(workspace, pendingChange.getServerItem());
                 if (StringUtils.isEmpty(localPath)) {
                     logger.warn("Could not find a local path for file: " + pendingChange.getServerItem());
                     continue;
@@ -29,9 +29,9 @@ import com.intellij.openapi.vcs.changes.ChangeProvider;
 import com.intellij.openapi.vcs.changes.ChangelistBuilder;
 import com.intellij.openapi.vcs.changes.VcsDirtyScope;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.microsoft.alm.plugin.external.commands.Command;
-import com.microsoft.alm.plugin.external.commands.StatusCommand;
 import com.microsoft.alm.plugin.external.models.PendingChange;
+import com.microsoft.alm.plugin.external.utils.PendingChangeIndex;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSRevisionPrefetcher;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.RootsCollection;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.StatusProvider;
 import com.microsoft.alm.plugin.idea.tfvc.exceptions.TfsException;
@@ -40,7 +40,7 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -54,6 +54,8 @@ public class TFSChangeProvider implements ChangeProvider {
     private static final Logger logger = LoggerFactory.getLogger(TFSChangeProvider.class);
 
     private final Project myProject;
+    // The base revisions of the last list of changes, replaced (and its downloads cancelled) by the next one
+    private TFSRevisionPrefetcher prefetcher;
 
     public TFSChangeProvider(final Project project) {
         myProject = project;
@@ -80,6 +82,12 @@ public class TFSChangeProvider implements ChangeProvider {
 
         progress.setText("Processing changes");
 
+        final PendingChangeIndex pendingChangeIndex = TFSVcs.getInstance(myProject).getPendingChangeIndex();
+        if (dirtyScope.wasEveryThingDirty()) {
+            // an explicit refresh, so don't trust anything the index knows
+            pendingChangeIndex.refresh();
+        }
+
         // process only roots, filter out child items since requests are recursive anyway
         RootsCollection.FilePathRootsCollection roots = new RootsCollection.FilePathRootsCollection();
         roots.addAll(dirtyScope.getRecursivelyDirtyDirectories());
@@ -90,40 +98,54 @@ public class TFSChangeProvider implements ChangeProvider {
             if (dirtyFile.getVirtualFile() == null || !changeListManager.isIgnoredFile(dirtyFile.getVirtualFile())) {
                 roots.add(dirtyFile);
             }
+            // dirty files were edited, so their status has to be read again. A file that is gone can't be read on
+            // its own, but its pending change (e.g. a delete) is found by reading its folder.
+            if (dirtyFile.getIOFile().exists() || dirtyFile.getParentPath() == null) {
+                pendingChangeIndex.invalidate(dirtyFile.getPath());
+            } else {
+                pendingChangeIndex.invalidate(dirtyFile.getParentPath().getPath());
+            }
         }
 
         if (roots.isEmpty()) {
             return;
         }
 
-        final ChangelistBuilderStatusVisitor changelistBuilderStatusVisitor = new ChangelistBuilderStatusVisitor(myProject, builder);
-
+        final List<String> rootPaths = new ArrayList<String>(roots.size());
         for (final FilePath root : roots) {
             // if we get a change notification in the $tf folder, we need to just ignore it
             if (StringUtils.containsIgnoreCase(root.getPath(), "$tf") ||
                     StringUtils.containsIgnoreCase(root.getPath(), ".tf")) {
                 continue;
             }
+            rootPaths.add(root.getPath());
+        }
 
-            List<PendingChange> changes;
+        // only the parts of the roots that changed since they were last read run the status command
+        final List<PendingChange> changes = pendingChangeIndex.getChanges(null, rootPaths);
+
+        // for each change, find out the status of the changes and then add to the list
+        final ChangelistBuilderStatusVisitor changelistBuilderStatusVisitor = new ChangelistBuilderStatusVisitor(myProject, builder,
+                replacePrefetcher());
+        for (final PendingChange change : changes) {
             try {
-                // TODO: add the ability to pass multiple roots to the command line
-                final Command<List<PendingChange>> command = new StatusCommand(null, root.getPath());
-                changes = command.runSynchronously();
-            } catch (final Throwable t) {
-                logger.warn("Failed to get changes from command line. root=" + root.getPath(), t);
-                changes = Collections.emptyList();
+                StatusProvider.visitByStatus(changelistBuilderStatusVisitor, change);
+            } catch (TfsException e) {
+                throw new VcsException(e.getMessage(), e);
             }
+        }
+    }
 
-            // for each change, find out the status of the changes and then add to the list
-            for (final PendingChange change : changes) {
-                try {
-                    StatusProvider.visitByStatus(changelistBuilderStatusVisitor, change);
-                } catch (TfsException e) {
-                    throw new VcsException(e.getMessage(), e);
-                }
-            }
+    /**
+     * Starts a new group for the base revisions of the changes. The downloads of the last group that haven't started
+     * are dropped, since the user is looking at the new list now.
+     */
+    private synchronized TFSRevisionPrefetcher replacePrefetcher() {
+        if (prefetcher != null) {
+            prefetcher.cancel();
         }
+        prefetcher = new TFSRevisionPrefetcher(myProject);
+        return prefetcher;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.project.Project;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.utils.ChangeSetIndex;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a {@link ChangeSetIndex} for each collection in the system folder of the IDE so that history can be answered
+ * without going to the server. Nothing is indexed unless the index is turned on with
+ * {@link ChangeSetIndex#PROP_ENABLED}.
+ */
+public class TFSChangeSetIndexes {
+    @NonNls
+    private static final String INDEX_FOLDER = "tfvc-history";
+
+    // Collection url (lower case) to its index
+    private static final Map<String, ChangeSetIndex> indexes = new HashMap<String, ChangeSetIndex>();
+    // Collection url (lower case) to the open projects that used its index
+    private static final Map<String, Set<Project>> users = new HashMap<String, Set<Project>>();
+
+    /**
+     * Returns the history of the server path from the index after bringing the index up to date. The range and the
+     * user are optional.
+     *
+     * @return the changesets newest first, or null if the index can't answer yet and the server has to be asked
+     */
+    @Nullable
+    public static List<ChangeSet> getHistory(final Project project, final ServerContext context, final String serverPath,
+                                             final boolean recursive, final int fromId, final int toId, final String user,
+                                             final int maxCount) {
+        if (context == null || StringUtils.isEmpty(serverPath) || !ChangeSetIndex.isEnabled()) {
+            return null;
+        }
+
+        final ChangeSetIndex index = getIndex(project, context);
+        if (index == null || !index.update(context)) {
+            return null;
+        }
+        return index.getHistory(serverPath, recursive, fromId, toId, user, maxCount);
+    }
+
+    /**
+     * Forgets the indexes that only the project used so that their memory is freed, e.g. when the project is closed.
+     * Indexes that other open projects use are kept. The files are kept and are loaded again the next time history is
+     * asked for. An index that is still being built is kept, since a second one would write to the same file.
+     */
+    public static synchronized void release(final Project project) {
+        final Iterator<Map.Entry<String, ChangeSetIndex>> iterator = indexes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, ChangeSetIndex> entry = iterator.next();
+            final Set<Project> indexUsers = users.get(entry.getKey());
+            if (indexUsers != null) {
+                indexUsers.remove(project);
+                if (!indexUsers.isEmpty()) {
+                    continue;
+                }
+            }
+            if (!entry.getValue().isBuilding()) {
+                entry.getValue().unload();
+                iterator.remove();
+                users.remove(entry.getKey());
+            }
+        }
+    }
+
+    private static synchronized ChangeSetIndex getIndex(final Project project, final ServerContext context) {
+        final URI uri = context.getCollectionURI() != null ? context.getCollectionURI() : context.getUri();
+        if (uri == null) {
+            return null;
+        }
+
+        final String key = uri.toString().toLowerCase();
+        ChangeSetIndex index = indexes.get(key);
+        if (index == null) {
+            final String folderName = Hashing.sha1().hashString(key, Charsets.UTF_8).toString();
+            index = new ChangeSetIndex(new File(new File(PathManager.getSystemPath(), INDEX_FOLDER), folderName));
+            indexes.put(key, index);
+        }
+        Set<Project> indexUsers = users.get(key);
+        if (indexUsers == null) {
+            indexUsers = new HashSet<Project>();
+            users.put(key, indexUsers);
+        }
+        indexUsers.add(project);
+        return index;
+    }
+}
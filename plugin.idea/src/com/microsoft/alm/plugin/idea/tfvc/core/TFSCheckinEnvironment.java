@@ -39,7 +39,10 @@ import com.intellij.util.NullableFunction;
 import com.intellij.util.PairConsumer;
 import com.microsoft.alm.common.utils.UrlHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.events.ServerEvent;
+import com.microsoft.alm.plugin.events.ServerPollingManager;
 import com.microsoft.alm.plugin.exceptions.TeamServicesException;
+import com.microsoft.alm.plugin.external.commands.CheckinCommand;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.common.services.LocalizationServiceImpl;
@@ -193,7 +196,26 @@ public class TFSCheckinEnvironment implements CheckinEnvironment {
         try {
             final ServerContext context = myVcs.getServerContext(true);
             final List<Integer> workItemIds = VcsHelper.getWorkItemIdsFromMessage(preparedComment);
-            final String changesetNumber = CommandUtils.checkinFiles(context, files, preparedComment, workItemIds);
+            final String changesetNumber = CommandUtils.checkinFiles(context, files, preparedComment, workItemIds,
+                    new CheckinCommand.FileConsumer() {
+                        private int count;
+
+                        @Override
+                        public void consume(final String path) {
+                            // Called on the thread that reads the output of tf, one file at a time
+                            count++;
+                            if (progressIndicator != null) {
+                                progressIndicator.setIndeterminate(false);
+                                progressIndicator.setFraction(Math.min(1.0, (double) count / files.size()));
+                            }
+                            TFSProgressUtil.setProgressText(progressIndicator,
+                                    TfPluginBundle.message(TfPluginBundle.KEY_TFVC_CHECKIN_PROGRESS_MSG, count, files.size()));
+                            TFSProgressUtil.setProgressText2(progressIndicator, path);
+                        }
+                    });
+            myVcs.getRevisionResolver().invalidate();
+            // The checkin is likely to queue a CI build
+            ServerPollingManager.getInstance().expectChange(ServerEvent.BUILDS_CHANGED);
 
             // notify user of success
             final String changesetLink = String.format(UrlHelper.SHORT_HTTP_LINK_FORMATTER, UrlHelper.getTfvcChangesetURI(context.getUri().toString(), changesetNumber),
@@ -19,8 +19,11 @@
 
 package com.microsoft.alm.plugin.idea.tfvc.core;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.CachingCommittedChangesProvider;
 import com.intellij.openapi.vcs.ChangeListColumn;
 import com.intellij.openapi.vcs.FilePath;
@@ -36,12 +39,17 @@ import com.intellij.openapi.vcs.versionBrowser.ChangesBrowserSettingsEditor;
 import com.intellij.openapi.vcs.versionBrowser.CommittedChangeList;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.AsynchConsumer;
+import com.intellij.vcsUtil.VcsUtil;
+import com.microsoft.alm.common.utils.SystemHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.ItemInfo;
 import com.microsoft.alm.plugin.external.models.VersionSpec;
 import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.external.utils.IncomingChangesTracker;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsRevisionNumber;
 import com.microsoft.alm.plugin.idea.tfvc.ui.TFSVersionFilterComponent;
 import org.apache.commons.lang.StringUtils;
@@ -55,11 +63,23 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class TFSCommittedChangesProvider implements CachingCommittedChangesProvider<TFSChangeList, ChangeBrowserSettings> {
     public static final Logger logger = LoggerFactory.getLogger(TFSCommittedChangesProvider.class);
 
+    public static final String PROP_HISTORY_PAGE_SIZE = "com.microsoft.alm.plugin.idea.tfvc.history.pageSize";
+
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 256;
+
+    private static ExecutorService historyExecutor;
+
     private final Project project;
     private final TFSVcs vcs;
 
@@ -141,25 +161,65 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
         logger.info(String.format("Loading committed changes for range %s", range.toString()));
         final TFSRepositoryLocation tfsRepositoryLocation = (TFSRepositoryLocation) location;
         final ServerContext context = TFSVcs.getInstance(project).getServerContext(false);
-        final List<ChangeSet> changeSets = CommandUtils.getHistoryCommand(context, tfsRepositoryLocation.getRoot().getPath(),
-                range.toString(), maxCount, true, settings.getUserFilter() == null ? StringUtils.EMPTY : settings.getUserFilter());
+        final String user = settings.getUserFilter() == null ? StringUtils.EMPTY : settings.getUserFilter();
+        final List<ChangeSet> indexed = getIndexedHistory(project, context, tfsRepositoryLocation, range, user, maxCount);
+        final HistoryPages pages = new HistoryPages(context, tfsRepositoryLocation.getRoot().getPath(), range, maxCount, user, indexed);
+        try {
+            List<ChangeSet> changeSets = pages.next();
+
+            // no changesets were found with the parameters
+            if (changeSets.isEmpty()) {
+                logger.info(String.format("No changesets were found in history for the range %s and user %s"
+                        , range.toString(), user));
+                consumer.finished();
+                return;
+            }
 
-        // no changesets were found with the parameters
-        if (changeSets.isEmpty()) {
-            logger.info(String.format("No changesets were found in history for the range %s and user %s"
-                    , range.toString(), settings.getUserFilter() == null ? StringUtils.EMPTY : settings.getUserFilter()));
+            final TFSChangeListBuilder tfsChangeListBuilder = new TFSChangeListBuilder(vcs, tfsRepositoryLocation.getWorkspace());
+            while (!changeSets.isEmpty()) {
+                // the next page is already loading while this one is turned into change lists
+                pages.prefetch();
+                // list is in order of newest to oldest so we can assume the next checkin in the list is the actual previous checkin in time
+                for (int i = 0; i < changeSets.size() - 1; i++) {
+                    consumer.consume(tfsChangeListBuilder.createChangeList(changeSets.get(i), changeSets.get(i + 1).getIdAsInt(), changeSets.get(i + 1).getDate()));
+                }
+                ProgressManager.checkCanceled();
+
+                // the previous checkin of the last changeset of the page is the first one of the next page
+                final ChangeSet last = changeSets.get(changeSets.size() - 1);
+                changeSets = pages.next();
+                if (changeSets.isEmpty()) {
+                    // this is the first checkin to the repo so there is no previous checkin to refer to
+                    consumer.consume(tfsChangeListBuilder.createChangeList(last, 0, StringUtils.EMPTY));
+                } else {
+                    consumer.consume(tfsChangeListBuilder.createChangeList(last, changeSets.get(0).getIdAsInt(), changeSets.get(0).getDate()));
+                }
+            }
             consumer.finished();
-            return;
+        } finally {
+            pages.cancel();
         }
+    }
 
-        final TFSChangeListBuilder tfsChangeListBuilder = new TFSChangeListBuilder(vcs, tfsRepositoryLocation.getWorkspace());
-        // list is in order of newest to oldest so we can assume the next checkin in the list is the actual previous checkin in time
-        for (int i = 0; i < changeSets.size() - 1; i++) {
-            consumer.consume(tfsChangeListBuilder.createChangeList(changeSets.get(i), changeSets.get(i + 1).getIdAsInt(), changeSets.get(i + 1).getDate()));
+    /**
+     * Gets the history of the range from the local changeset index. The index only knows changeset numbers so ranges
+     * with dates go to the server.
+     *
+     * @return the changesets or null if the server has to be asked
+     */
+    private static List<ChangeSet> getIndexedHistory(final Project project, final ServerContext context,
+                                                     final TFSRepositoryLocation location, final VersionSpec.Range range,
+                                                     final String user, final int maxCount) {
+        if (range.getStart().getType() != VersionSpec.Type.Changeset
+                || (range.getEnd().getType() != VersionSpec.Type.Changeset && range.getEnd() != VersionSpec.LATEST)
+                || location.getWorkspace() == null) {
+            return null;
         }
-        // this is the first checkin to the repo so there is no previous checkin to refer to
-        consumer.consume(tfsChangeListBuilder.createChangeList(changeSets.get(changeSets.size() - 1), 0, StringUtils.EMPTY));
-        consumer.finished();
+
+        final String serverPath = TfsFileUtil.translateLocalItemToServerItem(location.getRoot().getPath(), location.getWorkspace());
+        final int fromId = SystemHelper.toInt(range.getStart().getValue(), 1);
+        final int toId = range.getEnd() == VersionSpec.LATEST ? Integer.MAX_VALUE : SystemHelper.toInt(range.getEnd().getValue(), Integer.MAX_VALUE);
+        return TFSChangeSetIndexes.getHistory(project, context, serverPath, true, fromId, toId, user, maxCount);
     }
 
     public List<TFSChangeList> getCommittedChanges(final ChangeBrowserSettings settings,
@@ -199,8 +259,38 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
         return true;
     }
 
+    /**
+     * Returns the files under the location that are behind the server so the IDE doesn't have to look up the local
+     * revision of every file in the committed changes to find the incoming ones.
+     */
     public Collection<FilePath> getIncomingFiles(final RepositoryLocation location) throws VcsException {
-        return null;
+        final TFSRepositoryLocation tfsRepositoryLocation = (TFSRepositoryLocation) location;
+        final Workspace workspace = tfsRepositoryLocation.getWorkspace();
+        if (workspace == null) {
+            // the IDE falls back to comparing the revisions of the files itself
+            return null;
+        }
+
+        final ServerContext context = TFSVcs.getInstance(project).getServerContext(false);
+        final List<ItemInfo> incomingItems;
+        try {
+            incomingItems = IncomingChangesTracker.getInstance().getIncomingItems(context, workspace);
+        } catch (final RuntimeException e) {
+            throw new VcsException(e.getMessage(), e);
+        }
+
+        final String rootPath = tfsRepositoryLocation.getRoot().getPath();
+        final List<FilePath> files = new ArrayList<FilePath>(incomingItems.size());
+        for (final ItemInfo info : incomingItems) {
+            // items that aren't in the workspace yet have no local item
+            final String localPath = StringUtils.isNotEmpty(info.getLocalItem()) ? info.getLocalItem()
+                    : workspace.getMappingIndex().getLocalPath(info.getServerItem());
+            if (localPath != null && FileUtil.isAncestor(rootPath, localPath, false)) {
+                files.add(VcsUtil.getFilePath(localPath, info.isFolder()));
+            }
+        }
+        logger.info(String.format("Found %d incoming files under %s", files.size(), rootPath));
+        return files;
     }
 
     public boolean refreshCacheByNumber() {
@@ -231,4 +321,135 @@ public class TFSCommittedChangesProvider implements CachingCommittedChangesProvi
     public VcsCommittedViewAuxiliary createActions(final DecoratorManager manager, final RepositoryLocation location) {
         return null;
     }
-}
\ No newline at end of file
+
+    private static synchronized ExecutorService getExecutor() {
+        if (historyExecutor == null) {
+            historyExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("TFSCommittedChangesProvider-%d")
+                    .build());
+        }
+        return historyExecutor;
+    }
+
+    private static int getPageSize() {
+        final String value = System.getProperty(PROP_HISTORY_PAGE_SIZE);
+        return Math.max(1, value != null ? SystemHelper.toInt(value, DEFAULT_HISTORY_PAGE_SIZE) : DEFAULT_HISTORY_PAGE_SIZE);
+    }
+
+    /**
+     * Reads the history of a range one page at a time, newest first. Each page ends the range of the next one just
+     * before its oldest changeset. Only one page is ever loaded ahead of the one being consumed. History that came
+     * from the local changeset index is all returned as the first page.
+     */
+    private static class HistoryPages {
+        private final ServerContext context;
+        private final String itemPath;
+        private final VersionSpec start;
+        private final String user;
+        private final int pageSize = getPageSize();
+        private final boolean limited;
+        private int remaining;
+        private VersionSpec end;
+        private int requested;
+        private boolean done;
+        private Future<List<ChangeSet>> prefetched;
+        private final List<ChangeSet> indexed;
+
+        private HistoryPages(final ServerContext context, final String itemPath, final VersionSpec.Range range,
+                             final int maxCount, final String user, final List<ChangeSet> indexed) {
+            this.context = context;
+            this.indexed = indexed;
+            this.itemPath = itemPath;
+            this.start = range.getStart();
+            this.end = range.getEnd();
+            this.user = user;
+            this.limited = maxCount > 0;
+            this.remaining = maxCount;
+        }
+
+        /**
+         * Starts loading the next page in the background if there is one
+         */
+        private void prefetch() {
+            if (!done && prefetched == null) {
+                final String version = getVersion();
+                final int stopAfter = getStopAfter();
+                prefetched = getExecutor().submit(new Callable<List<ChangeSet>>() {
+                    @Override
+                    public List<ChangeSet> call() {
+                        return load(version, stopAfter);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Returns the next page, which is empty once the whole range has been read
+         */
+        private List<ChangeSet> next() throws VcsException {
+            if (done) {
+                return Collections.emptyList();
+            }
+            if (indexed != null) {
+                done = true;
+                return indexed;
+            }
+
+            final List<ChangeSet> changeSets;
+            if (prefetched != null) {
+                try {
+                    changeSets = prefetched.get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new VcsException(e);
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new VcsException(e.getCause());
+                } finally {
+                    prefetched = null;
+                }
+            } else {
+                changeSets = load(getVersion(), getStopAfter());
+            }
+
+            if (limited) {
+                remaining -= changeSets.size();
+            }
+            final int oldest = changeSets.isEmpty() ? 0 : changeSets.get(changeSets.size() - 1).getIdAsInt();
+            // a short page means that the start of the range was reached
+            if (changeSets.size() < requested || (limited && remaining <= 0) || oldest <= 1) {
+                done = true;
+            } else {
+                end = VersionSpec.create(oldest - 1);
+            }
+            return changeSets;
+        }
+
+        /**
+         * Stops loading the page that was prefetched, if the caller gave up before reading it
+         */
+        private void cancel() {
+            if (prefetched != null) {
+                prefetched.cancel(true);
+                prefetched = null;
+            }
+        }
+
+        private String getVersion() {
+            return new VersionSpec.Range(start, end).toString();
+        }
+
+        private int getStopAfter() {
+            requested = limited ? Math.min(pageSize, remaining) : pageSize;
+            return requested;
+        }
+
+        private List<ChangeSet> load(final String version, final int stopAfter) {
+            logger.info(String.format("Loading up to %d changesets for range %s", stopAfter, version));
+            return CommandUtils.getHistoryCommand(context, itemPath, version, stopAfter, true, user);
+        }
+    }
+}
@@ -30,7 +30,6 @@ import com.intellij.openapi.vcs.history.VcsRevisionNumber;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.microsoft.alm.plugin.context.ServerContext;
-import com.microsoft.alm.plugin.context.rest.VersionControlRecursionTypeCaseSensitive;
 import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.common.services.LocalizationServiceImpl;
@@ -38,8 +37,6 @@ import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSContentRevision;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsRevisionNumber;
 import com.microsoft.alm.sourcecontrol.webapi.model.TfvcItem;
-import com.microsoft.alm.sourcecontrol.webapi.model.TfvcVersionDescriptor;
-import com.microsoft.alm.sourcecontrol.webapi.model.TfvcVersionType;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -47,16 +44,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.Calendar;
-import java.util.List;
 
 public class TFSDiffProvider implements DiffProvider {
     private static final Logger logger = LoggerFactory.getLogger(TFSDiffProvider.class);
-    private static final int MINIMAL_WAIT_FOR_RETRY = 60 * 1000;
 
     private final Project project;
-    private List<Workspace.Mapping> mappings;
-    private Calendar lastUpdated;
 
     public TFSDiffProvider(@NotNull final Project project) {
         this.project = project;
@@ -143,43 +135,16 @@ public class TFSDiffProvider implements DiffProvider {
      * @return
      */
     private VcsRevisionNumber getRevisionNumber(final String filePath, final String fileName) {
-        final TfvcVersionDescriptor versionDescriptor = new TfvcVersionDescriptor();
-        versionDescriptor.setVersionType(TfvcVersionType.LATEST);
-        final ServerContext context = TFSVcs.getInstance(project).getServerContext(true);
-        final List<TfvcItem> item = context.getTfvcHttpClient().getItems(context.getTeamProjectReference().getId(),
-                TfsFileUtil.translateLocalItemToServerItem(filePath, getUpdatedMappings()),
-                VersionControlRecursionTypeCaseSensitive.NONE, versionDescriptor);
-
-        if (!item.isEmpty() && item.get(0) != null) {
-            return new TfsRevisionNumber(item.get(0).getChangesetVersion(), fileName, item.get(0).getChangeDate().toString());
-        }
-        return VcsRevisionNumber.NULL;
-    }
+        final TFSVcs vcs = TFSVcs.getInstance(project);
+        final ServerContext context = vcs.getServerContext(true);
+        final Workspace workspace = CommandUtils.getPartialWorkspace(project);
+        // the resolver gets the whole folder at once since the IDE usually asks for the rest of the folder next
+        final TfvcItem item = vcs.getRevisionResolver().getLatestItem(context,
+                workspace != null ? TfsFileUtil.translateLocalItemToServerItem(filePath, workspace) : null);
 
-    /**
-     * Gets the mappings from the current workspaces based on the last minute. We want to cache this information
-     * because sometimes revision numbers are retrieved for all files in a repo at once and if we resolve the workspace
-     * mappings every time the performance is horrible
-     * <p>
-     * The mappings will update if more than a minute is passed to make sure the mapping is up-to-date
-     *
-     * @return
-     */
-    private List<Workspace.Mapping> getUpdatedMappings() {
-        if (mappings == null || lastUpdated == null || (Calendar.getInstance().getTimeInMillis() - lastUpdated.getTimeInMillis() > MINIMAL_WAIT_FOR_RETRY)) {
-            updateMappings();
+        if (item != null) {
+            return new TfsRevisionNumber(item.getChangesetVersion(), fileName, item.getChangeDate().toString());
         }
-        return mappings;
-    }
-
-    /**
-     * Updates the cached mappings
-     * <p>
-     * TODO: call this from places where we know a mapping change has occurred
-     */
-    public void updateMappings() {
-        final Workspace workspace = CommandUtils.getPartialWorkspace(project);
-        mappings = workspace.getMappings();
-        lastUpdated = Calendar.getInstance();
+        return VcsRevisionNumber.NULL;
     }
-}
\ No newline at end of file
+}
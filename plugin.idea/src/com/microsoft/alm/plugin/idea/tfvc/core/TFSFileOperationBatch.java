@@ -0,0 +1,157 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.microsoft.alm.helpers.Path;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.VersionControlPath;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shares the status reads of a batch of file operations (e.g. all of the files moved or deleted by one refactoring)
+ * so that they take a few commands instead of one per file.
+ * <p/>
+ * The status of the first file in a folder is read on its own, since a recursive status of a large folder is much
+ * slower than the status of one file. Once a second file in the same folder is asked for, the status of the whole
+ * folder is read and kept for the rest of the batch. Paths that were undone, deleted or renamed in the batch are no
+ * longer described by the cached status, so they are read on their own.
+ * <p/>
+ * Undos and deletes run right away, since the IDE changes the disk as soon as the operation returns. Only telling
+ * the IDE which folders changed waits for the end of the batch.
+ */
+public class TFSFileOperationBatch {
+    private static final Logger logger = LoggerFactory.getLogger(TFSFileOperationBatch.class);
+
+    private final TFSVcs vcs;
+    private final Map<String, List<PendingChange>> statusByFolder = new HashMap<String, List<PendingChange>>();
+    // The first path whose status was read in each folder
+    private final Map<String, String> firstPathByFolder = new HashMap<String, String>();
+    private final Set<String> touchedPaths = new LinkedHashSet<String>();
+    // The folders of the files that were undone or deleted
+    private final Set<String> changedFolders = new LinkedHashSet<String>();
+
+    public TFSFileOperationBatch(final TFSVcs vcs) {
+        this.vcs = vcs;
+    }
+
+    public TFSVcs getVcs() {
+        return vcs;
+    }
+
+    /**
+     * Returns the pending changes of the path and anything under it.
+     */
+    public List<PendingChange> getStatus(final String path) {
+        final ServerContext context = vcs.getServerContext(true);
+        final String folder = Path.getDirectoryName(path);
+        if (StringUtils.isEmpty(folder) || isTouched(path)) {
+            return CommandUtils.getStatusForFiles(context, ImmutableList.of(path));
+        }
+
+        List<PendingChange> folderChanges = statusByFolder.get(folder);
+        if (folderChanges == null) {
+            final String firstPath = firstPathByFolder.get(folder);
+            if (firstPath == null || StringUtils.equals(firstPath, path)) {
+                // Only one path in the folder so far, so only read that one
+                firstPathByFolder.put(folder, path);
+                return CommandUtils.getStatusForFiles(context, ImmutableList.of(path));
+            }
+
+            try {
+                folderChanges = CommandUtils.getStatusForFiles(context, ImmutableList.of(folder));
+            } catch (final Throwable t) {
+                logger.warn("getStatus: failed to get the status of the folder, getting the status of the file instead", t);
+                return CommandUtils.getStatusForFiles(context, ImmutableList.of(path));
+            }
+            statusByFolder.put(folder, folderChanges);
+        }
+
+        final List<PendingChange> changes = new ArrayList<PendingChange>();
+        for (final PendingChange change : folderChanges) {
+            if (StringUtils.isNotEmpty(change.getLocalItem()) && FileUtil.isAncestor(path, change.getLocalItem(), false)) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Records that the status of the paths changed during the batch
+     */
+    public void markTouched(final String... paths) {
+        Collections.addAll(touchedPaths, paths);
+    }
+
+    /**
+     * Undoes the pending changes of the path
+     */
+    public void undo(final String path) {
+        markTouched(path);
+        addFolder(path);
+        CommandUtils.undoLocalFiles(vcs.getServerContext(true), ImmutableList.of(path));
+    }
+
+    /**
+     * Deletes the path from TFVC, which also deletes it from the disk
+     *
+     * @param path      the local path or the server path of a renamed file
+     * @param workspace the workspace of the path or null to use the one of the working folder
+     */
+    public void delete(final String path, final String workspace) {
+        markTouched(path);
+        addFolder(path);
+        CommandUtils.deleteFiles(vcs.getServerContext(true), ImmutableList.of(path), workspace, true);
+    }
+
+    /**
+     * Tells the IDE that the folders of the files that were undone or deleted in the batch changed
+     */
+    public void finish() {
+        if (changedFolders.isEmpty()) {
+            return;
+        }
+        final List<FilePath> roots = new ArrayList<FilePath>(changedFolders.size());
+        for (final String folder : changedFolders) {
+            final FilePath root = VersionControlPath.getFilePath(folder, true);
+            if (root != null) {
+                roots.add(root);
+            }
+        }
+        changedFolders.clear();
+        TfsFileUtil.markDirtyRecursively(vcs.getProject(), roots);
+    }
+
+    private void addFolder(final String path) {
+        // Deletes of renamed files use the server path which has no local folder
+        if (!StringUtils.startsWith(path, "$/")) {
+            changedFolders.add(Path.getDirectoryName(path));
+        }
+    }
+
+    private boolean isTouched(final String path) {
+        for (final String touchedPath : touchedPaths) {
+            // A touched folder changes everything under it and a touched file changes the folders above it
+            if (FileUtil.isAncestor(touchedPath, path, false) || FileUtil.isAncestor(path, touchedPath, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
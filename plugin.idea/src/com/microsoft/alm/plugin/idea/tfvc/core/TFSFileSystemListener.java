@@ -3,8 +3,10 @@
 
 package com.microsoft.alm.plugin.idea.tfvc.core;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vcs.AbstractVcsHelper;
 import com.intellij.openapi.vcs.FilePath;
@@ -32,7 +34,6 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -42,6 +43,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class TFSFileSystemListener implements LocalFileOperationsHandler, Disposable {
     public static final Logger logger = LoggerFactory.getLogger(TFSFileSystemListener.class);
 
+    // the operations since the last flush, only used on the dispatch thread
+    private TFSFileOperationBatch batch;
+
     public TFSFileSystemListener() {
         LocalFileSystem.getInstance().registerAuxiliaryFileOperationsHandler(this);
     }
@@ -49,6 +53,7 @@ public class TFSFileSystemListener implements LocalFileOperationsHandler, Dispos
     @Override
     public void dispose() {
         LocalFileSystem.getInstance().unregisterAuxiliaryFileOperationsHandler(this);
+        flush();
     }
 
     @Override
@@ -70,14 +75,15 @@ public class TFSFileSystemListener implements LocalFileOperationsHandler, Dispos
         logger.info("Deleting file with TFVC: " + virtualFile.getPath());
         final List<PendingChange> pendingChanges = new ArrayList<PendingChange>();
         final Project currentProject = vcs.getProject();
+        final TFSFileOperationBatch batch = getBatch(vcs);
 
-        pendingChanges.addAll(CommandUtils.getStatusForFiles(vcs.getServerContext(true),
-                Arrays.asList(virtualFile.getPath())));
+        pendingChanges.addAll(batch.getStatus(virtualFile.getPath()));
 
         // if 0 pending changes then just delete the file and return
         if (pendingChanges.isEmpty()) {
             logger.info("No changes to file so deleting though TFVC");
-            CommandUtils.deleteFiles(vcs.getServerContext(true), Arrays.asList(virtualFile.getPath()), null, true);
+            batch.delete(virtualFile.getPath(), null);
+            invalidatePendingChanges(vcs, virtualFile.getPath());
             return true;
         }
 
@@ -157,18 +163,19 @@ public class TFSFileSystemListener implements LocalFileOperationsHandler, Dispos
             AbstractVcsHelper.getInstance(currentProject).showError(new VcsException(e), TFSVcs.TFVC_NAME);
         }
 
+        // the IDE deletes the file as soon as this returns, so the undo and delete have to be done by then
         if (revert.get()) {
             logger.info("Reverting pending changes for delete candidate");
-            CommandUtils.undoLocalFiles(vcs.getServerContext(true), Arrays.asList(virtualFile.getPath()));
+            batch.undo(virtualFile.getPath());
         }
 
         if (success.get() && !isUndelete.get()) {
             logger.info("Deleting file with TFVC after undoing pending changes");
             // PendingChnages will always have at least 1 element or else we wouldn't have gotten this far
             final String filePath = StringUtils.isNotEmpty(pendingChanges.get(0).getSourceItem()) ? pendingChanges.get(0).getSourceItem() : pendingChanges.get(0).getLocalItem();
-            CommandUtils.deleteFiles(vcs.getServerContext(true),
-                    Arrays.asList(filePath), pendingChanges.get(0).getWorkspace(), true);
+            batch.delete(filePath, pendingChanges.get(0).getWorkspace());
         }
+        invalidatePendingChanges(vcs, virtualFile.getPath());
         logger.info("File was deleted using TFVC: " + success.get());
         return success.get();
     }
@@ -203,7 +210,48 @@ public class TFSFileSystemListener implements LocalFileOperationsHandler, Dispos
 
     @Override
     public void afterDone(final ThrowableConsumer<LocalFileOperationsHandler, IOException> throwableConsumer) {
-        // nothing to do
+        // this is called after every single operation, the batch ends once all of them are done (see scheduleFlush)
+    }
+
+    /**
+     * Returns the batch that the operation belongs to, starting a new one if needed
+     */
+    private TFSFileOperationBatch getBatch(final TFSVcs vcs) {
+        if (batch != null && batch.getVcs() != vcs) {
+            flush();
+        }
+        if (batch == null) {
+            batch = new TFSFileOperationBatch(vcs);
+            scheduleFlush();
+        }
+        return batch;
+    }
+
+    /**
+     * All of the file operations of a refactoring happen in the same event on the dispatch thread, so flushing after
+     * the current event ends the batch after the last of them
+     */
+    @VisibleForTesting
+    protected void scheduleFlush() {
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, ModalityState.any());
+    }
+
+    /**
+     * Ends the current batch. The TFVC commands of its operations have already run, so all that is left is telling
+     * the IDE which folders changed.
+     */
+    @VisibleForTesting
+    void flush() {
+        final TFSFileOperationBatch finished = batch;
+        batch = null;
+        if (finished != null) {
+            finished.finish();
+        }
     }
 
     /**
@@ -229,9 +277,10 @@ public class TFSFileSystemListener implements LocalFileOperationsHandler, Dispos
             // 0 - file has not been touched in the local workspace
             // 1 - file has versioned OR unversioned changes
             // 2 - file has versioned AND unversioned changes (rare but can happen)
+            final TFSFileOperationBatch batch = getBatch(vcs);
             final List<PendingChange> pendingChanges = new ArrayList<PendingChange>(2);
-            pendingChanges.addAll(CommandUtils.getStatusForFiles(vcs.getServerContext(true),
-                    ImmutableList.of(oldPath)));
+            pendingChanges.addAll(batch.getStatus(oldPath));
+            batch.markTouched(oldPath, newPath);
 
             // ** Rename logic **
             // If 1 change and it's a candidate add that means it's a new unversioned file so rename thru the file system
@@ -242,7 +291,9 @@ public class TFSFileSystemListener implements LocalFileOperationsHandler, Dispos
                 return false;
             } else {
                 logger.info("Renaming file thru tf commandline");
+                // the command line can only rename one file at a time, so only the status is shared with the batch
                 CommandUtils.renameFile(vcs.getServerContext(true), oldPath, newPath);
+                invalidatePendingChanges(vcs, oldPath, newPath);
                 return true;
             }
         } catch (Throwable t) {
@@ -250,4 +301,14 @@ public class TFSFileSystemListener implements LocalFileOperationsHandler, Dispos
             throw new IOException(t);
         }
     }
+
+    /**
+     * The pending changes of the parent folders change along with the files (e.g. a rename shows up in both), so the
+     * parent folders are invalidated in the pending change index.
+     */
+    private void invalidatePendingChanges(final TFSVcs vcs, final String... paths) {
+        for (final String path : paths) {
+            vcs.getPendingChangeIndex().invalidate(Path.getDirectoryName(path));
+        }
+    }
 }
@@ -37,8 +37,10 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ui.ColumnInfo;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.tfvc.core.revision.TfsFileRevision;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -126,7 +128,7 @@ public class TFSHistoryProvider implements VcsHistoryProvider {
                                                      final boolean isDirectory) {
         final VcsConfiguration vcsConfiguration = VcsConfiguration.getInstance(project);
         final int maxCount = vcsConfiguration.LIMIT_HISTORY ? vcsConfiguration.MAXIMUM_HISTORY_ROWS : Integer.MAX_VALUE;
-        final List<ChangeSet> changesets = CommandUtils.getHistoryCommand(serverContext, localPath.getPath(), null, maxCount, isDirectory, null, false);
+        final List<ChangeSet> changesets = getHistory(project, serverContext, localPath, isDirectory, maxCount);
 
         final List<TfsFileRevision> revisions = new ArrayList<TfsFileRevision>(changesets.size());
         for (final ChangeSet changeSet : changesets) {
@@ -137,6 +139,24 @@ public class TFSHistoryProvider implements VcsHistoryProvider {
         return revisions;
     }
 
+    /**
+     * Gets the history from the local changeset index when it can answer, otherwise from the server
+     */
+    private static List<ChangeSet> getHistory(final Project project,
+                                              final ServerContext serverContext,
+                                              final FilePath localPath,
+                                              final boolean isDirectory,
+                                              final int maxCount) {
+        final Workspace workspace = CommandUtils.getPartialWorkspace(project);
+        final String serverPath = workspace != null ? TfsFileUtil.translateLocalItemToServerItem(localPath.getPath(), workspace) : null;
+        final List<ChangeSet> indexed = TFSChangeSetIndexes.getHistory(project, serverContext, serverPath, isDirectory,
+                1, Integer.MAX_VALUE, null, maxCount);
+        if (indexed != null) {
+            return indexed;
+        }
+        return CommandUtils.getHistoryCommand(serverContext, localPath.getPath(), null, maxCount, isDirectory, null, false);
+    }
+
     public boolean supportsHistoryForDirectories() {
         return true;
     }
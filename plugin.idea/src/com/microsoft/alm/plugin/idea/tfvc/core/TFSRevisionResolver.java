@@ -0,0 +1,153 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.SettableFuture;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.rest.VersionControlRecursionTypeCaseSensitive;
+import com.microsoft.alm.plugin.versioncontrol.path.ServerPath;
+import com.microsoft.alm.sourcecontrol.webapi.model.TfvcItem;
+import com.microsoft.alm.sourcecontrol.webapi.model.TfvcVersionDescriptor;
+import com.microsoft.alm.sourcecontrol.webapi.model.TfvcVersionType;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Finds the latest version of server items on the server. The IDE asks for one file at a time but usually asks for
+ * many files in the same folders, so the first request in a folder gets the latest version of all of the items in
+ * that folder in one call and the rest of the folder is answered from that. Requests for a folder that is being read
+ * wait for that call instead of making their own.
+ * <p/>
+ * The cached folders are thrown away when something in the workspace is checked in or synced, and after a few minutes
+ * so that check ins by other people show up.
+ */
+public class TFSRevisionResolver {
+    private static final Logger logger = LoggerFactory.getLogger(TFSRevisionResolver.class);
+    private static final int CACHE_TIMEOUT = 5 * 60 * 1000;
+
+    private final long cacheTimeoutMillis;
+    // Folder server path (lower case) to the items in it
+    private final Map<String, FolderItems> folders = new HashMap<String, FolderItems>();
+    // Folder server path (lower case) to the result of the call that is reading it right now
+    private final Map<String, SettableFuture<FolderItems>> reading = new HashMap<String, SettableFuture<FolderItems>>();
+    // Bumped on every invalidation so that a folder read before it isn't cached after it
+    private int generation;
+
+    public TFSRevisionResolver() {
+        this(CACHE_TIMEOUT);
+    }
+
+    @VisibleForTesting
+    TFSRevisionResolver(final long cacheTimeoutMillis) {
+        this.cacheTimeoutMillis = cacheTimeoutMillis;
+    }
+
+    /**
+     * Returns the latest version of the item or null if the item doesn't exist on the server at the latest version
+     * or isn't mapped
+     */
+    public TfvcItem getLatestItem(final ServerContext context, final String serverPath) {
+        if (StringUtils.isEmpty(serverPath)) {
+            // not mapped so there is nothing on the server for it
+            return null;
+        }
+
+        final String folder = getParent(serverPath);
+        final String key = folder.toLowerCase();
+        final SettableFuture<FolderItems> future;
+        final SettableFuture<FolderItems> running;
+        final int readGeneration;
+        synchronized (this) {
+            final FolderItems folderItems = folders.get(key);
+            if (folderItems != null && System.currentTimeMillis() - folderItems.time <= cacheTimeoutMillis) {
+                return folderItems.items.get(serverPath.toLowerCase());
+            }
+
+            running = reading.get(key);
+            if (running == null) {
+                future = SettableFuture.create();
+                reading.put(key, future);
+            } else {
+                future = null;
+            }
+            readGeneration = generation;
+        }
+        if (running != null) {
+            // another thread is already reading the folder so wait for its result instead of reading it again
+            return waitFor(running).items.get(serverPath.toLowerCase());
+        }
+
+        final FolderItems folderItems;
+        try {
+            folderItems = readFolder(context, folder);
+        } catch (final RuntimeException e) {
+            synchronized (this) {
+                reading.remove(key);
+            }
+            future.setException(e);
+            throw e;
+        }
+        synchronized (this) {
+            reading.remove(key);
+            // a folder read before an invalidation may already be out of date so it isn't kept
+            if (readGeneration == generation) {
+                folders.put(key, folderItems);
+            }
+        }
+        future.set(folderItems);
+        return folderItems.items.get(serverPath.toLowerCase());
+    }
+
+    /**
+     * Forgets all of the versions so that they are read from the server again
+     */
+    public synchronized void invalidate() {
+        folders.clear();
+        generation++;
+    }
+
+    private FolderItems waitFor(final SettableFuture<FolderItems> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private FolderItems readFolder(final ServerContext context, final String folder) {
+        logger.info("readFolder: getting the latest items in " + folder);
+        final TfvcVersionDescriptor versionDescriptor = new TfvcVersionDescriptor();
+        versionDescriptor.setVersionType(TfvcVersionType.LATEST);
+        final List<TfvcItem> items = context.getTfvcHttpClient().getItems(context.getTeamProjectReference().getId(),
+                folder, VersionControlRecursionTypeCaseSensitive.ONE_LEVEL, versionDescriptor);
+
+        final FolderItems folderItems = new FolderItems();
+        for (final TfvcItem item : items) {
+            if (item != null && StringUtils.isNotEmpty(item.getPath())) {
+                folderItems.items.put(item.getPath().toLowerCase(), item);
+            }
+        }
+        return folderItems;
+    }
+
+    private static String getParent(final String serverPath) {
+        final String parent = StringUtils.substringBeforeLast(StringUtils.removeEnd(serverPath, "/"), "/");
+        return StringUtils.isEmpty(parent) || ServerPath.ROOT_NAME_ONLY.equals(parent) ? ServerPath.ROOT : parent;
+    }
+
+    private static class FolderItems {
+        private final Map<String, TfvcItem> items = new HashMap<String, TfvcItem>();
+        private final long time = System.currentTimeMillis();
+    }
+}
@@ -19,10 +19,12 @@
 
 package com.microsoft.alm.plugin.idea.tfvc.core;
 
+import com.google.common.util.concurrent.SettableFuture;
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.update.FileGroup;
@@ -30,12 +32,18 @@ import com.intellij.openapi.vcs.update.SequentialUpdatesContext;
 import com.intellij.openapi.vcs.update.UpdateEnvironment;
 import com.intellij.openapi.vcs.update.UpdateSession;
 import com.intellij.openapi.vcs.update.UpdatedFiles;
+import com.microsoft.alm.common.utils.SystemHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.commands.Command;
+import com.microsoft.alm.plugin.external.commands.SyncCommand;
 import com.microsoft.alm.plugin.external.models.SyncResults;
+import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.conflicts.ConflictsEnvironment;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.conflicts.ResolveConflictHelper;
+import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -43,11 +51,24 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class TFSUpdateEnvironment implements UpdateEnvironment {
     private static final Logger logger = LoggerFactory.getLogger(TFSUpdateEnvironment.class);
 
+    public static final String PROP_PARALLEL_GETS = "com.microsoft.alm.plugin.idea.tfvc.update.parallelGets";
+
+    // Local workspaces don't like concurrent gets, so the mappings are only updated in parallel when asked for
+    private static final int DEFAULT_PARALLEL_GETS = 1;
+    // How often the progress is refreshed and checked for cancellation while tf get runs
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
     @NotNull
     private final TFSVcs tfsVcs;
 
@@ -68,6 +89,7 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
         logger.info("Update on files initiated...");
         final List<VcsException> exceptions = new ArrayList<VcsException>();
         TFSProgressUtil.setProgressText(progressIndicator, TfPluginBundle.message(TfPluginBundle.KEY_TFVC_UPDATE_STATUS_MSG));
+        boolean canceled = false;
 
         try {
             final List<String> filesUpdatePaths = new ArrayList<String>(contentRoots.length);
@@ -78,40 +100,43 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
                 filesUpdatePaths.add(file.getPath());
             }
 
-            final SyncResults results = CommandUtils.syncWorkspace(tfsVcs.getServerContext(false), filesUpdatePaths, needRecursion, false);
-
-            // add the changed files to updatedFiles so user knows what has occurred in the workspace
+            // add the changed files to updatedFiles as tf gets them so user knows what has occurred in the workspace
             // TODO: determine the resolution numbers (probably need to call history on each file to get this)
-            for (final String file : results.getDeletedFiles()) {
-                updatedFiles.getGroupById(FileGroup.REMOVED_FROM_REPOSITORY_ID).add(file, TFSVcs.getKey(), null);
-            }
-            for (final String file : results.getNewFiles()) {
-                updatedFiles.getGroupById(FileGroup.CREATED_ID).add(file, TFSVcs.getKey(), null);
-            }
-            for (final String file : results.getUpdatedFiles()) {
-                updatedFiles.getGroupById(FileGroup.UPDATED_ID).add(file, TFSVcs.getKey(), null);
+            final SyncProgress progress = new SyncProgress(updatedFiles);
+            final int parallelGets = getParallelGets();
+            final List<SyncResults> results = sync(groupByMapping(filesUpdatePaths, parallelGets), needRecursion,
+                    parallelGets, progress, progressIndicator, exceptions);
+
+            boolean conflictsExist = false;
+            for (final SyncResults result : results) {
+                conflictsExist |= result.doConflictsExists();
+                for (final Exception e : result.getExceptions()) {
+                    exceptions.add(TFSVcs.convertToVcsException(e));
+                }
             }
 
             // check and resolve conflicts
             // updatedFiles updated in the helper class
-            if (results.doConflictsExists()) {
+            if (conflictsExist) {
                 logger.info("Conflicts found during update");
                 final ResolveConflictHelper conflictHelper = new ResolveConflictHelper(tfsVcs.getProject(), updatedFiles, filesUpdatePaths);
                 ConflictsEnvironment.getConflictsHandler().resolveConflicts(tfsVcs.getProject(), conflictHelper);
             }
-
-            if (!results.getExceptions().isEmpty()) {
-                for (Exception e : results.getExceptions()) {
-                    exceptions.add(TFSVcs.convertToVcsException(e));
-                }
-            }
+        } catch (ProcessCanceledException e) {
+            // the files that were already updated still need to be refreshed
+            logger.info("Update was cancelled");
+            canceled = true;
         } catch (Exception e) {
             exceptions.add(TFSVcs.convertToVcsException(e));
         }
 
+        // the latest versions may have changed since they were cached
+        tfsVcs.getRevisionResolver().invalidate();
+
         // TODO (Jetbrains) content roots can be renamed while executing
         TfsFileUtil.refreshAndInvalidate(tfsVcs.getProject(), contentRoots, false);
 
+        final boolean wasCanceled = canceled;
         return new UpdateSession() {
             @Override
             @NotNull
@@ -127,11 +152,189 @@ public class TFSUpdateEnvironment implements UpdateEnvironment {
 
             @Override
             public boolean isCanceled() {
-                return false;
+                return wasCanceled;
             }
         };
     }
 
+    /**
+     * Runs a tf get for each group of paths, at most parallelGets at a time, and waits for them while keeping the
+     * progress up to date. Cancelling the progress kills the tf processes that are still running. A get that fails
+     * adds its error to the exceptions and doesn't stop the others.
+     */
+    private List<SyncResults> sync(final List<List<String>> groups, final boolean needRecursion, final int parallelGets,
+                                   final SyncProgress progress, final ProgressIndicator progressIndicator,
+                                   final List<VcsException> exceptions) {
+        final ServerContext serverContext = tfsVcs.getServerContext(false);
+        final LinkedList<List<String>> pending = new LinkedList<List<String>>(groups);
+        final List<RunningGet> running = new ArrayList<RunningGet>(parallelGets);
+        final List<SyncResults> results = new ArrayList<SyncResults>(groups.size());
+        try {
+            while (!pending.isEmpty() || !running.isEmpty()) {
+                while (!pending.isEmpty() && running.size() < parallelGets) {
+                    running.add(new RunningGet(serverContext, pending.removeFirst(), needRecursion, progress));
+                }
+
+                final Iterator<RunningGet> iterator = running.iterator();
+                while (iterator.hasNext()) {
+                    final RunningGet get = iterator.next();
+                    if (get.result.isDone()) {
+                        iterator.remove();
+                        try {
+                            final SyncResults result = get.result.get();
+                            // only files that weren't streamed are left in the results
+                            progress.addAll(result);
+                            results.add(result);
+                        } catch (ExecutionException e) {
+                            exceptions.add(TFSVcs.convertToVcsException(e.getCause()));
+                        }
+                    }
+                }
+
+                progress.show(progressIndicator);
+                TFSProgressUtil.checkCanceled(progressIndicator);
+                if (!running.isEmpty()) {
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+        } finally {
+            // only left over if the update was cancelled or failed
+            for (final RunningGet get : running) {
+                get.command.cancel();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Splits the paths by the workspace mapping they are in so that each mapping can be updated by its own tf get.
+     * Paths that contain other paths are updated together so no file is part of two gets.
+     */
+    private List<List<String>> groupByMapping(final List<String> paths, final int parallelGets) {
+        if (parallelGets <= 1 || paths.size() <= 1) {
+            return Collections.singletonList(paths);
+        }
+        for (final String path : paths) {
+            for (final String other : paths) {
+                if (path != other && FileUtil.isAncestor(path, other, false)) {
+                    return Collections.singletonList(paths);
+                }
+            }
+        }
+
+        final Workspace workspace = CommandUtils.getPartialWorkspace(tfsVcs.getProject());
+        if (workspace == null) {
+            return Collections.singletonList(paths);
+        }
+
+        // local path of the closest mapping to its paths
+        final Map<String, List<String>> groups = new LinkedHashMap<String, List<String>>();
+        for (final String path : paths) {
+            String closest = StringUtils.EMPTY;
+            for (final Workspace.Mapping mapping : workspace.getMappings()) {
+                if (!mapping.isCloaked() && StringUtils.length(mapping.getLocalPath()) > closest.length()
+                        && FileUtil.isAncestor(mapping.getLocalPath(), path, false)) {
+                    closest = mapping.getLocalPath();
+                }
+            }
+            List<String> group = groups.get(closest);
+            if (group == null) {
+                group = new ArrayList<String>();
+                groups.put(closest, group);
+            }
+            group.add(path);
+        }
+        logger.info(String.format("Updating %d paths with %d gets", paths.size(), groups.size()));
+        return new ArrayList<List<String>>(groups.values());
+    }
+
+    private static int getParallelGets() {
+        final String value = System.getProperty(PROP_PARALLEL_GETS);
+        return Math.max(1, value != null ? SystemHelper.toInt(value, DEFAULT_PARALLEL_GETS) : DEFAULT_PARALLEL_GETS);
+    }
+
+    /**
+     * A tf get that has been started and the future that its results are set on
+     */
+    private static class RunningGet {
+        private final SyncCommand command;
+        private final SettableFuture<SyncResults> result = SettableFuture.create();
+
+        private RunningGet(final ServerContext serverContext, final List<String> paths, final boolean needRecursion,
+                           final SyncProgress progress) {
+            command = CommandUtils.startSync(serverContext, paths, needRecursion, progress, new Command.Listener<SyncResults>() {
+                @Override
+                public void progress(final String output, final int outputType, final int percentComplete) {
+                    // the files are streamed to the SyncProgress instead
+                }
+
+                @Override
+                public void completed(final SyncResults results, final Throwable error) {
+                    if (error != null) {
+                        result.setException(error);
+                    } else {
+                        result.set(results);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds the files to their group as tf gets them and shows how many files have been updated so far. The files
+     * come in on the threads that read the output of the gets.
+     */
+    private static class SyncProgress implements SyncCommand.FileConsumer {
+        private final UpdatedFiles updatedFiles;
+        private final long started = System.currentTimeMillis();
+        private int count;
+        private String lastPath;
+
+        private SyncProgress(final UpdatedFiles updatedFiles) {
+            this.updatedFiles = updatedFiles;
+        }
+
+        @Override
+        public synchronized void consume(final SyncCommand.FileAction action, final String path) {
+            final String groupId;
+            if (action == SyncCommand.FileAction.NEW) {
+                groupId = FileGroup.CREATED_ID;
+            } else if (action == SyncCommand.FileAction.UPDATED) {
+                groupId = FileGroup.UPDATED_ID;
+            } else {
+                groupId = FileGroup.REMOVED_FROM_REPOSITORY_ID;
+            }
+            updatedFiles.getGroupById(groupId).add(path, TFSVcs.getKey(), null);
+            count++;
+            lastPath = path;
+        }
+
+        private void addAll(final SyncResults results) {
+            for (final String file : results.getDeletedFiles()) {
+                consume(SyncCommand.FileAction.DELETED, file);
+            }
+            for (final String file : results.getNewFiles()) {
+                consume(SyncCommand.FileAction.NEW, file);
+            }
+            for (final String file : results.getUpdatedFiles()) {
+                consume(SyncCommand.FileAction.UPDATED, file);
+            }
+        }
+
+        private synchronized void show(final ProgressIndicator progressIndicator) {
+            if (count == 0) {
+                return;
+            }
+            final long seconds = Math.max(1, (System.currentTimeMillis() - started) / 1000);
+            TFSProgressUtil.setProgressText(progressIndicator,
+                    TfPluginBundle.message(TfPluginBundle.KEY_TFVC_UPDATE_PROGRESS_MSG, count, count / seconds));
+            TFSProgressUtil.setProgressText2(progressIndicator, lastPath);
+        }
+    }
+
 
     @Override
     @Nullable
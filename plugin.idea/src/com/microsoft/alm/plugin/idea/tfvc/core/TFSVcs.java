@@ -29,6 +29,7 @@ import com.intellij.openapi.progress.PerformInBackgroundOption;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vcs.AbstractVcs;
 import com.intellij.openapi.vcs.CheckoutProvider;
@@ -53,13 +54,17 @@ import com.intellij.vcsUtil.VcsUtil;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.external.ToolRunnerCache;
+import com.microsoft.alm.plugin.external.ToolSession;
 import com.microsoft.alm.plugin.external.exceptions.SyncException;
 import com.microsoft.alm.plugin.external.exceptions.ToolException;
 import com.microsoft.alm.plugin.external.tools.TfTool;
+import com.microsoft.alm.plugin.external.utils.PendingChangeIndex;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import com.microsoft.alm.plugin.idea.common.services.LocalizationServiceImpl;
 import com.microsoft.alm.plugin.idea.common.utils.IdeaHelper;
 import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
+import com.microsoft.alm.plugin.idea.tfvc.core.revision.TFSRevisionPrefetcher;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsRevisionNumber;
 import com.microsoft.alm.plugin.telemetry.TfsTelemetryHelper;
 import org.apache.commons.lang.StringUtils;
@@ -71,6 +76,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.event.HyperlinkEvent;
 import javax.ws.rs.NotAuthorizedException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Class that sets up the TFS version control extension.
@@ -98,6 +105,8 @@ public class TFSVcs extends AbstractVcs {
     private VcsVFSListener fileListener;
     private TFSFileSystemListener tfsFileSystemListener;
     private CommittedChangesProvider<TFSChangeList, ChangeBrowserSettings> committedChangesProvider;
+    private final PendingChangeIndex pendingChangeIndex = new PendingChangeIndex();
+    private final TFSRevisionResolver revisionResolver = new TFSRevisionResolver();
 
     public TFSVcs(@NotNull Project project) {
         super(project, TFVC_NAME);
@@ -134,9 +143,27 @@ public class TFSVcs extends AbstractVcs {
 
     @Override
     public void deactivate() {
+        pendingChangeIndex.refresh();
         Disposer.dispose(fileListener);
         tfsFileSystemListener.dispose();
         tfsFileSystemListener = null;
+        TFSRevisionPrefetcher.cancelAll(myProject);
+        TFSChangeSetIndexes.release(myProject);
+        closeToolSessions();
+    }
+
+    /**
+     * Stops the TF sessions of the project so that the commands that are still running or waiting in them are
+     * cancelled. Sessions that another open project also uses are kept.
+     */
+    private void closeToolSessions() {
+        final List<String> openPaths = new ArrayList<String>();
+        for (final Project project : ProjectManager.getInstance().getOpenProjects()) {
+            if (project != myProject && !project.isDisposed() && project.getBasePath() != null) {
+                openPaths.add(project.getBasePath());
+            }
+        }
+        ToolSession.closeSessions(myProject.getBasePath(), openPaths);
     }
 
     public VcsShowConfirmationOption getAddConfirmation() {
@@ -155,6 +182,22 @@ public class TFSVcs extends AbstractVcs {
         return new TFSChangeProvider(myProject);
     }
 
+    /**
+     * The index of the pending changes in the workspace of this project. Anything that changes pending changes
+     * should invalidate the paths it touched here.
+     */
+    public PendingChangeIndex getPendingChangeIndex() {
+        return pendingChangeIndex;
+    }
+
+    /**
+     * The cache of the latest versions of items on the server. Anything that changes what is on the server or what
+     * the workspace has should invalidate it.
+     */
+    public TFSRevisionResolver getRevisionResolver() {
+        return revisionResolver;
+    }
+
     @NotNull
     public TFSCheckinEnvironment createCheckinEnvironment() {
         if (myCheckinEnvironment == null) {
@@ -283,6 +326,7 @@ public class TFSVcs extends AbstractVcs {
         if (hasVersionBeenVerified) {
             // No need to check the version again if we have already checked it once this session
             logger.info("Skipping the attempt to check the version of the TF command line.");
+            warmUpCommandLine();
             return;
         }
 
@@ -301,6 +345,7 @@ public class TFSVcs extends AbstractVcs {
                             logger.info("Attempting to check the version of the TF command line.");
                             TfTool.checkVersion();
                             versionMessage.set(StringUtils.EMPTY);
+                            warmUpCommandLine();
                         } catch (final ToolException ex) {
                             final String error = LocalizationServiceImpl.getInstance().getExceptionMessage(ex);
                             logger.warn(error);
@@ -339,4 +384,17 @@ public class TFSVcs extends AbstractVcs {
             }
         });
     }
+
+    /**
+     * Starts warm TF command line processes in the background so the first commands run against this project
+     * don't have to wait for the command line to start up.
+     */
+    private void warmUpCommandLine() {
+        try {
+            ToolRunnerCache.warmUp(TfTool.getValidLocation(), null);
+        } catch (final Throwable t) {
+            // Warming up is only an optimization so don't let errors bubble out here
+            logger.warn("Unable to warm up the TF command line.", t);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core.revision;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.microsoft.alm.plugin.external.utils.RevisionCache;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
+import com.microsoft.alm.plugin.idea.tfvc.exceptions.TfsException;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A revision in the persistent {@link RevisionCache}. The file may be shared with other revisions that have the same
+ * content so it is only ever read, new content goes through the cache.
+ */
+public class TFSCachedContentStore implements TFSContentStore {
+    private final RevisionCache cache;
+    private final String key;
+    private File file;
+
+    TFSCachedContentStore(final RevisionCache cache, final String key, final File file) {
+        this.cache = cache;
+        this.key = key;
+        this.file = file;
+    }
+
+    public void saveContent(final TfsFileUtil.ContentWriter contentWriter) throws TfsException, IOException {
+        final File tempFile = cache.createTempFile();
+        TfsFileUtil.setFileContent(tempFile, contentWriter);
+        file = cache.put(key, tempFile);
+    }
+
+    public byte[] loadContent() throws IOException {
+        // Reads the file into an array of its exact size instead of growing a buffer
+        return FileUtil.loadFileBytes(file);
+    }
+
+    public File getTmpFile() {
+        return file;
+    }
+}
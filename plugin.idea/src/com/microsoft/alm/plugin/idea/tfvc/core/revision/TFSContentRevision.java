@@ -46,6 +46,9 @@ public abstract class TFSContentRevision implements ContentRevision {
     @Nullable
     private byte[] myContent;
 
+    @Nullable
+    private TFSRevisionPrefetcher prefetcher;
+
     protected TFSContentRevision(final Project project) {
         this.project = project;
     }
@@ -54,6 +57,13 @@ public abstract class TFSContentRevision implements ContentRevision {
 
     protected abstract String getFilePath();
 
+    /**
+     * Sets the group of revisions to download in the background when the content of this one is first loaded
+     */
+    void setPrefetcher(final TFSRevisionPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
     public static TFSContentRevision create(final Project project,
                                             final @NotNull FilePath localPath,
                                             final int changeset,
@@ -134,6 +144,9 @@ public abstract class TFSContentRevision implements ContentRevision {
     @Nullable
     public byte[] doGetContent() throws VcsException {
         if (myContent == null) {
+            if (prefetcher != null) {
+                prefetcher.prefetchAround(this);
+            }
             try {
                 myContent = loadContent();
             } catch (TfsException e) {
@@ -148,7 +161,7 @@ public abstract class TFSContentRevision implements ContentRevision {
     @Nullable
     private byte[] loadContent() throws TfsException, IOException {
         ArgumentHelper.checkNotNull(getFile(), "localPath");
-        final TFSContentStore store = TFSContentStoreFactory.findOrCreate(getFile().getPath(), getChangeset(), getFilePath(), project);
+        final TFSContentStore store = TFSContentStoreFactory.findOrCreate(getChangeset(), getFilePath(), project);
         return store.loadContent();
     }
 
@@ -17,56 +17,197 @@
  *  limitations under the License.
  */
 
+
 package com.microsoft.alm.plugin.idea.tfvc.core.revision;
 
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.project.Project;
+import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.commands.Command;
 import com.microsoft.alm.plugin.external.commands.DownloadCommand;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.external.utils.RevisionCache;
+import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
 import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
+import com.microsoft.alm.plugin.versioncontrol.path.ServerPath;
+import org.apache.commons.lang.StringUtils;
+import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
+/**
+ * Creates the stores for file revisions. The content is kept in a {@link RevisionCache} in the system folder of the
+ * IDE so revisions that were downloaded once are not downloaded again, even after a restart.
+ */
 public class TFSContentStoreFactory {
     private static final Logger logger = LoggerFactory.getLogger(TFSContentStoreFactory.class);
 
-    public static TFSContentStore create(final String localPath, final int revision) throws IOException {
-        return new TFSTmpFileStore(localPath, revision);
+    @NonNls
+    private static final String CACHE_FOLDER = "tfvc-revisions";
+
+    private static RevisionCache cache;
+    // The downloads that are running, keyed by cache key
+    private static final Map<String, FutureTask<TFSContentStore>> downloads = new HashMap<String, FutureTask<TFSContentStore>>();
+
+    public static TFSContentStore create(final String key) throws IOException {
+        return new TFSCachedContentStore(getCache(), key, getCache().createTempFile());
     }
 
     @Nullable
-    public static TFSContentStore find(final String localPath, final int revision) throws IOException {
-        return TFSTmpFileStore.find(localPath, revision);
+    public static TFSContentStore find(final String key) throws IOException {
+        final File file = getCache().get(key);
+        if (file != null) {
+            return new TFSCachedContentStore(getCache(), key, file);
+        }
+        return null;
     }
 
     /**
      * Find the store for the given file path and if it doesn't already exist create it and download the file
      *
-     * @param localPath:  local path of the file which is used as the key in the store along with the revision number
      * @param revision:   revision number of the file
-     * @param actualPath: file path acknowledged by the server (could differ local path in case of renames)
+     * @param actualPath: file path acknowledged by the server (could differ local path in case of renames), its server
+     *                    path is used as the key in the store along with the server url and the revision number
      * @return
      * @throws IOException
      */
-    public static TFSContentStore findOrCreate(final String localPath, final int revision, final String actualPath, final Project project) throws IOException {
-        TFSContentStore store = TFSContentStoreFactory.find(localPath, revision);
-        if (store == null) {
+    public static TFSContentStore findOrCreate(final int revision, final String actualPath, final Project project) throws IOException {
+        final String key = createKey(revision, actualPath, project);
+        if (key == null) {
+            // Without the server path the content could be found again for a different item, so it isn't cached
+            logger.info("findOrCreate: no server path for " + actualPath + ", downloading it without caching");
+            final File tmpFile = getCache().createTempFile();
+            tmpFile.deleteOnExit();
+            downloadTo(tmpFile, revision, actualPath, project);
+            return new TFSCachedContentStore(getCache(), null, tmpFile);
+        }
+
+        final TFSContentStore store = TFSContentStoreFactory.find(key);
+        if (store != null) {
+            return store;
+        }
+
+        // The same revision may already be downloading (e.g. by the prefetcher), in that case wait for it
+        final FutureTask<TFSContentStore> download;
+        final boolean isOwner;
+        synchronized (downloads) {
+            final FutureTask<TFSContentStore> existing = downloads.get(key);
+            if (existing != null) {
+                download = existing;
+                isOwner = false;
+            } else {
+                download = new FutureTask<TFSContentStore>(new Callable<TFSContentStore>() {
+                    @Override
+                    public TFSContentStore call() throws IOException {
+                        return download(key, revision, actualPath, project);
+                    }
+                });
+                downloads.put(key, download);
+                isOwner = true;
+            }
+        }
+
+        if (isOwner) {
             try {
-                store = TFSContentStoreFactory.create(localPath, revision);
-                final ServerContext serverContext = TFSVcs.getInstance(project).getServerContext(false);
-                // By setting the IgnoreFileNotFound flag to true in DownloadCommand, we will get back an empty file if the file was deleted on the server or
-                // for some other reason doesn't exist.
-                final Command<String> command = new DownloadCommand(serverContext, actualPath, revision, store.getTmpFile().getPath(), true);
-                command.runSynchronously();
-            } catch (final Throwable t) {
-                // Can't let exceptions bubble out here to the caller. This method is called by the VCS provider code in various places.
-                logger.warn("Unable to download content for a TFVC file.", t);
+                download.run();
+            } finally {
+                synchronized (downloads) {
+                    downloads.remove(key);
+                }
             }
         }
+
+        try {
+            return download.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the download of " + actualPath, e);
+        } catch (final ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static TFSContentStore download(final String key, final int revision, final String actualPath, final Project project) throws IOException {
+        // Check again in case a download that was running when the caller looked just finished
+        TFSContentStore store = TFSContentStoreFactory.find(key);
+        if (store != null) {
+            return store;
+        }
+
+        store = TFSContentStoreFactory.create(key);
+        final File tmpFile = store.getTmpFile();
+        if (downloadTo(tmpFile, revision, actualPath, project)) {
+            store = new TFSCachedContentStore(getCache(), key, getCache().put(key, tmpFile));
+        }
         return store;
     }
-}
 
+    /**
+     * Returns the cache key of the revision or null if the server url or the server path of the item are not known.
+     * The key only uses the server url so that cached revisions can be found without signing in.
+     */
+    @Nullable
+    private static String createKey(final int revision, final String actualPath, final Project project) {
+        final RepositoryContext repositoryContext = VcsHelper.getRepositoryContext(project);
+        String serverUrl = repositoryContext != null ? repositoryContext.getUrl() : null;
+        String serverPath = actualPath;
+        if (StringUtils.isEmpty(serverUrl) || !StringUtils.startsWith(serverPath, ServerPath.ROOT_NAME_ONLY)) {
+            try {
+                // The workspace is cached so this doesn't run a command for every revision
+                final Workspace workspace = CommandUtils.getPartialWorkspace(project);
+                if (workspace != null) {
+                    serverUrl = StringUtils.defaultIfEmpty(serverUrl, workspace.getServer());
+                    if (!StringUtils.startsWith(serverPath, ServerPath.ROOT_NAME_ONLY)) {
+                        serverPath = TfsFileUtil.translateLocalItemToServerItem(actualPath, workspace);
+                    }
+                }
+            } catch (final Throwable t) {
+                logger.warn("createKey: unable to get the workspace", t);
+            }
+        }
+
+        if (StringUtils.isEmpty(serverUrl) || !StringUtils.startsWith(serverPath, ServerPath.ROOT_NAME_ONLY)) {
+            return null;
+        }
+        return RevisionCache.createKey(serverUrl, serverPath, revision);
+    }
+
+    /**
+     * Downloads the revision into the file and returns true if it worked
+     */
+    private static boolean downloadTo(final File tmpFile, final int revision, final String actualPath, final Project project) {
+        try {
+            final ServerContext serverContext = TFSVcs.getInstance(project).getServerContext(false);
+            // By setting the IgnoreFileNotFound flag to true in DownloadCommand, we will get back an empty file if the file was deleted on the server or
+            // for some other reason doesn't exist.
+            final Command<String> command = new DownloadCommand(serverContext, actualPath, revision, tmpFile.getPath(), true);
+            command.runSynchronously();
+            return true;
+        } catch (final Throwable t) {
+            // Can't let exceptions bubble out here to the caller. This method is called by the VCS provider code in various places.
+            // The partial download is not cached, so loading the store fails and the next call tries again.
+            logger.warn("Unable to download content for a TFVC file.", t);
+            tmpFile.delete();
+            return false;
+        }
+    }
+
+    private static synchronized RevisionCache getCache() {
+        if (cache == null) {
+            cache = new RevisionCache(new File(PathManager.getSystemPath(), CACHE_FOLDER));
+        }
+        return cache;
+    }
+}
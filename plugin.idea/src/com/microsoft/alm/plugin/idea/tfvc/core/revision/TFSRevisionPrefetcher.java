@@ -0,0 +1,214 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core.revision;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intellij.openapi.project.Project;
+import com.microsoft.alm.common.utils.SystemHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Downloads a group of revisions in the background so that their content is in the revision cache before it is
+ * asked for.
+ * <p/>
+ * A group is the set of revisions that the user is likely to look at together, like all of the changes in a
+ * changeset. Nothing is downloaded until the content of one of the revisions is loaded (i.e. the user opened a diff)
+ * since lists of changes are built for a lot of changesets that are never looked at. At that point the revisions
+ * next to it in the group are downloaded on a small shared pool, and each revision loaded after that moves the
+ * window along. A revision that is asked for while it is downloading waits for that download instead of starting
+ * another one.
+ * <p/>
+ * The downloads that haven't started yet are dropped when the group is cancelled (e.g. the list of local changes
+ * was built again) or when the project is closed.
+ */
+public class TFSRevisionPrefetcher {
+    private static final Logger logger = LoggerFactory.getLogger(TFSRevisionPrefetcher.class);
+
+    public static final String PROP_MAX_CONCURRENCY = "com.microsoft.alm.plugin.idea.tfvc.prefetch.maxConcurrency";
+    public static final String PROP_WINDOW = "com.microsoft.alm.plugin.idea.tfvc.prefetch.window";
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 4;
+    // How many revisions before and after the loaded one are downloaded
+    private static final int DEFAULT_WINDOW = 10;
+
+    private static ExecutorService executor;
+    // The groups with downloads that haven't finished, by project
+    private static final Map<Project, Set<TFSRevisionPrefetcher>> activeByProject = new HashMap<Project, Set<TFSRevisionPrefetcher>>();
+
+    private final Project project;
+    private final List<TFSContentRevision> revisions = new ArrayList<TFSContentRevision>();
+    // The revisions that were already queued, these are not queued again when the window moves over them
+    private final Set<TFSContentRevision> queued = new HashSet<TFSContentRevision>();
+    private final Set<FutureTask<Void>> pending = new HashSet<FutureTask<Void>>();
+    private boolean cancelled;
+
+    public TFSRevisionPrefetcher(final Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Adds the revision to the group and returns it
+     */
+    public <T extends TFSContentRevision> T add(final T revision) {
+        if (revision != null) {
+            synchronized (this) {
+                revisions.add(revision);
+            }
+            revision.setPrefetcher(this);
+        }
+        return revision;
+    }
+
+    /**
+     * Starts downloading the revisions of the group around the one that is being loaded, skipping the ones that
+     * were already queued
+     */
+    public void prefetchAround(final TFSContentRevision loaded) {
+        final List<TFSContentRevision> toDownload = new ArrayList<TFSContentRevision>();
+        synchronized (this) {
+            final int index = revisions.indexOf(loaded);
+            if (cancelled || index < 0) {
+                return;
+            }
+            // The loaded revision is downloaded by the caller
+            queued.add(loaded);
+
+            final int window = getWindow();
+            final int end = Math.min(revisions.size(), index + window + 1);
+            for (int i = Math.max(0, index - window); i < end; i++) {
+                final TFSContentRevision revision = revisions.get(i);
+                if (queued.add(revision)) {
+                    toDownload.add(revision);
+                }
+            }
+        }
+
+        if (toDownload.isEmpty()) {
+            return;
+        }
+        logger.info("prefetchAround: prefetching " + toDownload.size() + " revisions");
+        for (final TFSContentRevision revision : toDownload) {
+            final FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+                @Override
+                public void run() {
+                    if (project.isDisposed()) {
+                        return;
+                    }
+                    try {
+                        TFSContentStoreFactory.findOrCreate(revision.getChangeset(), revision.getFilePath(), project);
+                    } catch (final Throwable t) {
+                        // The revision is downloaded again when it is asked for, which reports the error
+                        logger.warn("prefetchAround: failed to prefetch " + revision, t);
+                    }
+                }
+            }, null) {
+                @Override
+                protected void done() {
+                    finished(this);
+                }
+            };
+            if (addPending(task)) {
+                getExecutor().execute(task);
+            }
+        }
+    }
+
+    /**
+     * Drops the downloads of the group that haven't started yet. The revisions are still downloaded when they are
+     * asked for.
+     */
+    public void cancel() {
+        final List<FutureTask<Void>> toCancel;
+        synchronized (this) {
+            cancelled = true;
+            toCancel = new ArrayList<FutureTask<Void>>(pending);
+        }
+        for (final FutureTask<Void> task : toCancel) {
+            // A download that is running is left to finish so that no partial file is left behind
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Drops the downloads of all of the groups of the project that haven't started yet
+     */
+    public static void cancelAll(final Project project) {
+        final List<TFSRevisionPrefetcher> prefetchers;
+        synchronized (activeByProject) {
+            final Set<TFSRevisionPrefetcher> active = activeByProject.remove(project);
+            if (active == null) {
+                return;
+            }
+            prefetchers = new ArrayList<TFSRevisionPrefetcher>(active);
+        }
+        logger.info("cancelAll: cancelling the prefetching of " + prefetchers.size() + " groups");
+        for (final TFSRevisionPrefetcher prefetcher : prefetchers) {
+            prefetcher.cancel();
+        }
+    }
+
+    private boolean addPending(final FutureTask<Void> task) {
+        synchronized (activeByProject) {
+            synchronized (this) {
+                if (cancelled) {
+                    return false;
+                }
+                pending.add(task);
+            }
+            Set<TFSRevisionPrefetcher> active = activeByProject.get(project);
+            if (active == null) {
+                active = new HashSet<TFSRevisionPrefetcher>();
+                activeByProject.put(project, active);
+            }
+            active.add(this);
+        }
+        return true;
+    }
+
+    private void finished(final FutureTask<Void> task) {
+        synchronized (activeByProject) {
+            synchronized (this) {
+                pending.remove(task);
+                if (!pending.isEmpty()) {
+                    return;
+                }
+            }
+            final Set<TFSRevisionPrefetcher> active = activeByProject.get(project);
+            if (active != null) {
+                active.remove(this);
+                if (active.isEmpty()) {
+                    activeByProject.remove(project);
+                }
+            }
+        }
+    }
+
+    private static int getWindow() {
+        final String value = System.getProperty(PROP_WINDOW);
+        return Math.max(0, value != null ? SystemHelper.toInt(value, DEFAULT_WINDOW) : DEFAULT_WINDOW);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final String value = System.getProperty(PROP_MAX_CONCURRENCY);
+            final int maxConcurrency = Math.max(1, value != null ? SystemHelper.toInt(value, DEFAULT_MAX_CONCURRENCY) : DEFAULT_MAX_CONCURRENCY);
+            executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("TFSRevisionPrefetcher-%d")
+                    .build());
+        }
+        return executor;
+    }
+}
@@ -35,9 +35,9 @@ import com.intellij.ui.GuiUtils;
 import com.intellij.util.io.ReadOnlyAttributeUtil;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.WorkspaceMappingIndex;
+import com.microsoft.alm.plugin.idea.tfvc.core.TFSVcs;
 import com.microsoft.alm.plugin.idea.tfvc.exceptions.TfsException;
-import com.microsoft.alm.plugin.versioncontrol.path.LocalPath;
-import com.microsoft.alm.plugin.versioncontrol.path.ServerPath;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -152,6 +152,7 @@ public class TfsFileUtil {
     }
 
     public static void markFileDirty(final Project project, final @NotNull FilePath file) {
+        invalidatePendingChanges(project, file.getPath());
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
                 VcsDirtyScopeManager.getInstance(project).fileDirty(file);
@@ -163,6 +164,9 @@ public class TfsFileUtil {
         if (roots.isEmpty()) {
             return;
         }
+        for (final FilePath root : roots) {
+            invalidatePendingChanges(project, root.getPath());
+        }
 
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
@@ -177,6 +181,12 @@ public class TfsFileUtil {
         if (roots.isEmpty() && files.isEmpty()) {
             return;
         }
+        for (final FilePath root : roots) {
+            invalidatePendingChanges(project, root.getPath());
+        }
+        for (final FilePath file : files) {
+            invalidatePendingChanges(project, file.getPath());
+        }
 
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
@@ -191,6 +201,7 @@ public class TfsFileUtil {
     }
 
     public static void markDirtyRecursively(final Project project, final FilePath rootDir) {
+        invalidatePendingChanges(project, rootDir.getPath());
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
                 VcsDirtyScopeManager.getInstance(project).dirDirtyRecursively(rootDir);
@@ -199,6 +210,7 @@ public class TfsFileUtil {
     }
 
     public static void markFileDirty(final Project project, final @NotNull VirtualFile file) {
+        invalidatePendingChanges(project, file.getPath());
         ApplicationManager.getApplication().runReadAction(new Runnable() {
             public void run() {
                 VcsDirtyScopeManager.getInstance(project).fileDirty(file);
@@ -219,6 +231,11 @@ public class TfsFileUtil {
     }
 
     public static void refreshAndMarkDirty(final Project project, final VirtualFile[] roots, boolean async) {
+        for (final VirtualFile root : roots) {
+            if (root != null) {
+                invalidatePendingChanges(project, root.getPath());
+            }
+        }
         RefreshQueue.getInstance().refresh(async, true, new Runnable() {
             public void run() {
                 for (VirtualFile root : roots) {
@@ -237,6 +254,16 @@ public class TfsFileUtil {
         }, roots);
     }
 
+    /**
+     * Marking a path dirty means its pending changes may have changed, so the index has to read it again too
+     */
+    private static void invalidatePendingChanges(final Project project, final String path) {
+        final TFSVcs vcs = TFSVcs.getInstance(project);
+        if (vcs != null) {
+            vcs.getPendingChangeIndex().invalidate(path);
+        }
+    }
+
     public static void refreshAndFindFile(final FilePath path) {
         try {
             GuiUtils.runOrInvokeAndWait(new Runnable() {
@@ -361,6 +388,10 @@ public class TfsFileUtil {
      * <p>
      * <code>null</code> will be returned for items that are cloaked.
      * </p>
+     * <p>
+     * This indexes the mappings on every call, use the {@link Workspace} version
+     * when translating more than one path.
+     * </p>
      *
      * @param serverPath the server path to translate into a local path (must not be
      *                   <code>null</code> or empty)
@@ -375,28 +406,22 @@ public class TfsFileUtil {
         ArgumentHelper.checkNotEmptyString(serverPath, "serverPath");
         ArgumentHelper.checkNotNull(mappings, "mappings");
 
-        int mappingLength = 0;
-        Workspace.Mapping foundMapping = null;
-
-        for (final Workspace.Mapping mapping : mappings) {
-            if (mapping == null) {
-                continue;
-            }
-
-            if (ServerPath.isChild(mapping.getServerPath(), serverPath) && mapping.getServerPath().length() > mappingLength) {
-                // This is the closest new mapping.
-                foundMapping = mapping;
-                mappingLength = mapping.getServerPath().length();
-            }
-        }
+        return new WorkspaceMappingIndex(mappings).getLocalPath(serverPath);
+    }
 
-        if (foundMapping != null) {
-            final String localPath = foundMapping.isCloaked() ? null :
-                    ServerPath.makeLocal(serverPath, foundMapping.getServerPath(), foundMapping.getLocalPath());
-            return localPath;
-        }
+    /**
+     * Translates a server path to a local path using the mappings of the workspace. The mappings are only indexed
+     * once per workspace so this is cheap to call for every item of a history.
+     *
+     * @param workspace  the workspace with the mappings to translate with (must not be <code>null</code>)
+     * @param serverPath the server path to translate into a local path (must not be <code>null</code> or empty)
+     * @return the local path, or <code>null</code> if the item is cloaked or not mapped
+     */
+    public static String translateServerItemToLocalItem(final Workspace workspace, final String serverPath) {
+        ArgumentHelper.checkNotEmptyString(serverPath, "serverPath");
+        ArgumentHelper.checkNotNull(workspace, "workspace");
 
-        return null;
+        return workspace.getMappingIndex().getLocalPath(serverPath);
     }
 
     /**
@@ -408,6 +433,10 @@ public class TfsFileUtil {
      * <p>
      * <code>null</code> is returned for items that are cloaked.
      * </p>
+     * <p>
+     * This indexes the mappings on every call, use the {@link Workspace} version
+     * when translating more than one path.
+     * </p>
      *
      * @param localPath the local path to translate into a server path (must not be
      *                  <code>null</code> or empty)
@@ -422,51 +451,21 @@ public class TfsFileUtil {
         ArgumentHelper.checkNotEmptyString(localPath, "localPath");
         ArgumentHelper.checkNotNull(mappings, "mappings");
 
-        int mappingLength = 0;
-        Workspace.Mapping foundMapping = null;
-
-        for (final Workspace.Mapping wf : mappings) {
-            if (wf == null || wf.isCloaked()) {
-                continue;
-            }
-
-            final String wfLocalItem = wf.getLocalPath();
-
-            if (LocalPath.isChild(wfLocalItem, localPath) && wfLocalItem.length() > mappingLength) {
-                // This is the closest new mapping.
-                foundMapping = wf;
-                mappingLength = wfLocalItem.length();
-            }
-        }
-
-        if (foundMapping != null) {
-            final String mappingLocalItem = foundMapping.getLocalPath();
-            final String mappingServerItem = foundMapping.getServerPath();
-
-            final String serverPath = LocalPath.makeServer(localPath, mappingLocalItem, mappingServerItem);
-            boolean isCloaked = false;
-
-            /*
-             * We have the server path for the local path, but the server path
-             * could be cloaked.
-             */
-            final int mappingServerPathLength = mappingServerItem.length();
-            for (final Workspace.Mapping wf : mappings) {
-                if (wf == null || wf.isCloaked() == false) {
-                    continue;
-                }
-
-                final String wfServerItem = wf.getServerPath();
-
-                if (wfServerItem.length() > mappingServerPathLength && ServerPath.isChild(wfServerItem, serverPath)) {
-                    isCloaked = true;
-                    break;
-                }
-            }
+        return new WorkspaceMappingIndex(mappings).getServerPath(localPath);
+    }
 
-            return isCloaked ? null : serverPath;
-        }
+    /**
+     * Translates a local path to a server path using the mappings of the workspace. The mappings are only indexed
+     * once per workspace.
+     *
+     * @param localPath the local path to translate into a server path (must not be <code>null</code> or empty)
+     * @param workspace the workspace with the mappings to translate with (must not be <code>null</code>)
+     * @return the server path, or <code>null</code> if the item is not mapped or cloaked
+     */
+    public static String translateLocalItemToServerItem(final String localPath, final Workspace workspace) {
+        ArgumentHelper.checkNotEmptyString(localPath, "localPath");
+        ArgumentHelper.checkNotNull(workspace, "workspace");
 
-        return null;
+        return workspace.getMappingIndex().getServerPath(localPath);
     }
-}
\ No newline at end of file
+}
@@ -30,15 +30,17 @@ import java.util.Collections;
 import java.util.List;
 
 public class ApplyLabelDialog extends BaseDialogImpl {
-    public static final String PROP_ITEMS = "items";
+    public static final String PROP_LOADER = "loader";
 
     private ApplyLabelForm form;
+    // The label can't be applied until the info of every item has been read
+    private boolean loaded;
 
-    public ApplyLabelDialog(final Project project, final List<ItemInfo> itemInfos) {
+    public ApplyLabelDialog(final Project project, final ItemInfoBatchLoader loader) {
         super(project, TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LABEL_DIALOG_TITLE),
                 TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LABEL_DIALOG_APPLY_LABEL),
                 TfPluginBundle.KEY_TFVC_LABEL_DIALOG_TITLE, true,
-                Collections.<String, Object>singletonMap(PROP_ITEMS, itemInfos));
+                Collections.<String, Object>singletonMap(PROP_LOADER, loader));
     }
 
     @Override
@@ -48,7 +50,7 @@ public class ApplyLabelDialog extends BaseDialogImpl {
 
     @Nullable
     protected JComponent createCenterPanel() {
-        form = new ApplyLabelForm(this.getProject(), (List<ItemInfo>) getProperty(PROP_ITEMS));
+        form = new ApplyLabelForm(this.getProject());
         setOkEnabled(false);
 
 //    getWindow().addComponentListener(new ComponentAdapter() {
@@ -59,13 +61,38 @@ public class ApplyLabelDialog extends BaseDialogImpl {
 
         form.addListener(new ApplyLabelForm.Listener() {
             public void dataChanged(final String labelName, final int visibleItemsCount) {
-                setOkEnabled(visibleItemsCount > 0 && labelName.length() > 0);
+                setOkEnabled(loaded && visibleItemsCount > 0 && labelName.length() > 0);
+            }
+        });
+
+        getLoader().start(new ItemInfoBatchLoader.Listener() {
+            public void itemsLoaded(final List<ItemInfo> items) {
+                form.addItems(items);
+            }
+
+            public void loadingFinished(final Throwable error) {
+                if (error != null) {
+                    displayError(error.getMessage());
+                    return;
+                }
+                loaded = true;
+                setOkEnabled(form.getItemCount() > 0 && form.getLabelName().length() > 0);
             }
         });
 
         return form.getContentPane();
     }
 
+    @Override
+    protected void dispose() {
+        getLoader().cancel();
+        super.dispose();
+    }
+
+    private ItemInfoBatchLoader getLoader() {
+        return (ItemInfoBatchLoader) getProperty(PROP_LOADER);
+    }
+
     public String getLabelName() {
         return form.getLabelName();
     }
@@ -44,7 +44,6 @@ import javax.swing.event.ListSelectionListener;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.Dimension;
 import java.awt.Insets;
-import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
 import java.util.ResourceBundle;
@@ -173,7 +172,6 @@ public class ApplyLabelForm {
     }
 
     private final Project project;
-    private final List<ItemInfo> itemInfos;
 
     private JPanel contentPane;
 
@@ -190,9 +188,8 @@ public class ApplyLabelForm {
 
     private final EventDispatcher<Listener> eventDispatcher = EventDispatcher.create(Listener.class);
 
-    public ApplyLabelForm(final Project project, final List<ItemInfo> itemInfos) {
+    public ApplyLabelForm(final Project project) {
         this.project = project;
-        this.itemInfos = itemInfos;
         //myLabelModel = new LabelModel();
 
         nameText.getDocument().addDocumentListener(new DocumentAdapter() {
@@ -226,7 +223,6 @@ public class ApplyLabelForm {
 
     private void initTable() {
         itemsTableModel = new LabelItemsTableModel();
-        itemsTableModel.setItems(itemInfos);
         itemsTable.setModel(itemsTableModel);
         for (int i = 0; i < LabelItemsTableModel.Column.values().length; i++) {
             itemsTable.getColumnModel().getColumn(i).setPreferredWidth(LabelItemsTableModel.Column.values()[i].getWidth());
@@ -304,12 +300,17 @@ public class ApplyLabelForm {
         return recursiveCheckBox.isSelected();
     }
 
+    public void addItems(final List<ItemInfo> items) {
+        itemsTableModel.addItems(items);
+        eventDispatcher.getMulticaster().dataChanged(getLabelName(), itemsTableModel.getRowCount());
+    }
+
+    public int getItemCount() {
+        return itemsTableModel.getRowCount();
+    }
+
     public List<String> getLabelItemSpecs() {
-        final List<String> itemSpecs = new ArrayList<String>();
-        for (final ItemInfo info : itemInfos) {
-            itemSpecs.add(info.getServerItem() + ";" + info.getServerVersion());
-        }
-        return itemSpecs;
+        return itemsTableModel.getItemSpecs();
     }
 
     public void addListener(final Listener listener) {
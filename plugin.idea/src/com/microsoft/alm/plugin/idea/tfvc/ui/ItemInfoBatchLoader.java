@@ -0,0 +1,110 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.ui;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ItemInfo;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
+import com.microsoft.alm.plugin.idea.common.utils.IdeaHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EventListener;
+import java.util.List;
+
+/**
+ * Reads the item infos of the selected local paths in batches on a pooled thread and hands each batch to the
+ * listener on the UI thread as soon as it is read. The item dialogs use it to show up right away and fill in their
+ * rows while the rest is still being read, instead of waiting for the info of every item first.
+ */
+public class ItemInfoBatchLoader {
+    private static final Logger logger = LoggerFactory.getLogger(ItemInfoBatchLoader.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 250;
+
+    public interface Listener extends EventListener {
+        void itemsLoaded(List<ItemInfo> items);
+
+        /**
+         * Called once after the last batch, with the error that stopped the loading or null
+         */
+        void loadingFinished(Throwable error);
+    }
+
+    private final ServerContext context;
+    private final List<String> localPaths;
+    private final int batchSize;
+    private volatile boolean cancelled;
+
+    public ItemInfoBatchLoader(final ServerContext context, final List<String> localPaths) {
+        this(context, localPaths, DEFAULT_BATCH_SIZE);
+    }
+
+    @VisibleForTesting
+    ItemInfoBatchLoader(final ServerContext context, final List<String> localPaths, final int batchSize) {
+        ArgumentHelper.checkNotNull(localPaths, "localPaths");
+        this.context = context;
+        this.localPaths = localPaths;
+        this.batchSize = batchSize;
+    }
+
+    public int getPathCount() {
+        return localPaths.size();
+    }
+
+    public void start(final Listener listener) {
+        IdeaHelper.executeOnPooledThread(new Runnable() {
+            public void run() {
+                load(listener);
+            }
+        });
+    }
+
+    /**
+     * Stops after the batch that is being read, the listener isn't called again
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @VisibleForTesting
+    void load(final Listener listener) {
+        Throwable error = null;
+        try {
+            for (int start = 0; start < localPaths.size() && !cancelled; start += batchSize) {
+                final List<ItemInfo> infos = readInfos(context,
+                        new ArrayList<String>(localPaths.subList(start, Math.min(start + batchSize, localPaths.size()))));
+                IdeaHelper.runOnUIThread(new Runnable() {
+                    public void run() {
+                        if (!cancelled) {
+                            listener.itemsLoaded(infos);
+                        }
+                    }
+                });
+            }
+        } catch (final Throwable t) {
+            logger.warn("Reading the item infos failed", t);
+            error = t;
+        }
+
+        final Throwable loadError = error;
+        IdeaHelper.runOnUIThread(new Runnable() {
+            public void run() {
+                if (!cancelled) {
+                    listener.loadingFinished(loadError);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads one batch. Tests override this to avoid calling the command line.
+     */
+    protected List<ItemInfo> readInfos(final ServerContext context, final List<String> localPaths) {
+        return ItemInfoCache.getInstance().getItemInfos(context, localPaths);
+    }
+}
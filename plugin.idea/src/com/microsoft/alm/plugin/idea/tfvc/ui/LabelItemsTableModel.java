@@ -25,20 +25,20 @@ import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.table.AbstractTableModel;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 public class LabelItemsTableModel extends AbstractTableModel {
 
     enum Column {
         Item(TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LABEL_DIALOG_ITEM_COLUMN), 300) {
-            public String getValue(final ItemInfo itemInfo) {
-                return itemInfo.getServerItem();
+            public String getValue(final Row row) {
+                return row.serverItem;
             }
         },
         Version(TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LABEL_DIALOG_VERSION_COLUMN), 100) {
-            public String getValue(final ItemInfo itemInfo) {
-                return itemInfo.getServerVersion();
+            public String getValue(final Row row) {
+                return row.serverVersion;
             }
         };
 
@@ -58,22 +58,37 @@ public class LabelItemsTableModel extends AbstractTableModel {
             return width;
         }
 
-        public abstract String getValue(final ItemInfo itemInfo);
+        public abstract String getValue(final Row row);
     }
 
-    private List<ItemInfo> items;
+    // Only what the columns show is kept for each row, the dialog may be given thousands of items
+    private final List<Row> rows = new ArrayList<Row>();
 
     public LabelItemsTableModel() {
-        items = Collections.emptyList();
     }
 
     public void setItems(final @NotNull List<ItemInfo> items) {
-        this.items = items;
+        rows.clear();
+        for (final ItemInfo item : items) {
+            rows.add(new Row(item));
+        }
         fireTableDataChanged();
     }
 
+    public void addItems(final @NotNull List<ItemInfo> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        final int firstRow = rows.size();
+        for (final ItemInfo item : items) {
+            rows.add(new Row(item));
+        }
+        fireTableRowsInserted(firstRow, rows.size() - 1);
+    }
+
     public int getRowCount() {
-        return items.size();
+        return rows.size();
     }
 
     public int getColumnCount() {
@@ -85,11 +100,28 @@ public class LabelItemsTableModel extends AbstractTableModel {
     }
 
     public Object getValueAt(final int rowIndex, final int columnIndex) {
-        return Column.values()[columnIndex].getValue(getItem(rowIndex));
+        return Column.values()[columnIndex].getValue(rows.get(rowIndex));
     }
 
-    public ItemInfo getItem(final int rowIndex) {
-        return items.get(rowIndex);
+    /**
+     * Returns the item specs to label the items with their server versions
+     */
+    public List<String> getItemSpecs() {
+        final List<String> itemSpecs = new ArrayList<String>(rows.size());
+        for (final Row row : rows) {
+            itemSpecs.add(row.serverItem + ";" + row.serverVersion);
+        }
+        return itemSpecs;
+    }
+
+    private static class Row {
+        public final String serverItem;
+        public final String serverVersion;
+
+        public Row(final ItemInfo info) {
+            this.serverItem = info.getServerItem();
+            this.serverVersion = info.getServerVersion();
+        }
     }
 
 }
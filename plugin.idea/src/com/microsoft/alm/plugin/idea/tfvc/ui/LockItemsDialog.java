@@ -35,21 +35,23 @@ import java.util.Collections;
 import java.util.List;
 
 public class LockItemsDialog extends BaseDialogImpl {
-    public static final String PROP_ITEMS = "items";
+    public static final String PROP_LOADER = "loader";
 
     public static final int LOCK_EXIT_CODE = NEXT_USER_EXIT_CODE;
     public static final int UNLOCK_EXIT_CODE = NEXT_USER_EXIT_CODE + 1;
 
     private LockItemsForm form;
+    // The buttons stay disabled until the info of every item has been read
+    private boolean loaded;
 
     // Button actions
     private Action lockAction;
     private Action unlockAction;
 
-    public LockItemsDialog(final Project project, final List<ItemInfo> items) {
+    public LockItemsDialog(final Project project, final ItemInfoBatchLoader loader) {
         super(project, TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LOCK_DIALOG_TITLE), null,
                 TfPluginBundle.KEY_TFVC_LOCK_DIALOG_TITLE, true,
-                Collections.<String, Object>singletonMap(PROP_ITEMS, items));
+                Collections.<String, Object>singletonMap(PROP_LOADER, loader));
 
 
         updateControls();
@@ -57,16 +59,41 @@ public class LockItemsDialog extends BaseDialogImpl {
 
     @Nullable
     protected JComponent createCenterPanel() {
-        form = new LockItemsForm((List<ItemInfo>) getProperty(PROP_ITEMS));
+        form = new LockItemsForm();
         form.addListener(new LockItemsTableModel.Listener() {
             public void selectionChanged() {
                 updateControls();
             }
         });
 
+        getLoader().start(new ItemInfoBatchLoader.Listener() {
+            public void itemsLoaded(final List<ItemInfo> items) {
+                form.addItems(items);
+            }
+
+            public void loadingFinished(final Throwable error) {
+                if (error != null) {
+                    displayError(error.getMessage());
+                } else {
+                    loaded = true;
+                }
+                updateControls();
+            }
+        });
+
         return form.getContentPane();
     }
 
+    @Override
+    protected void dispose() {
+        getLoader().cancel();
+        super.dispose();
+    }
+
+    private ItemInfoBatchLoader getLoader() {
+        return (ItemInfoBatchLoader) getProperty(PROP_LOADER);
+    }
+
     @NotNull
     protected Action[] createActions() {
         lockAction = new LockAction();
@@ -88,33 +115,13 @@ public class LockItemsDialog extends BaseDialogImpl {
     }
 
     private void updateControls() {
-        final List<ItemInfo> items = getSelectedItems();
-        setLockActionEnabled(!items.isEmpty() && canAllBeLocked(items));
-        setUnlockActionEnabled(!items.isEmpty() && canAllBeUnlocked(items));
-    }
-
-    private static boolean canAllBeLocked(final List<ItemInfo> items) {
-        for (final ItemInfo item : items) {
-            final LockCommand.LockLevel level = LockCommand.LockLevel.fromString(item.getLock());
-            if (level != LockCommand.LockLevel.NONE) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private static boolean canAllBeUnlocked(final List<ItemInfo> items) {
-        for (ItemInfo item : items) {
-            final LockCommand.LockLevel level = LockCommand.LockLevel.fromString(item.getLock());
-            if (level == LockCommand.LockLevel.NONE) {
-                return false;
-            }
-        }
-        return true;
+        final boolean canChange = loaded && form != null && form.hasSelection();
+        setLockActionEnabled(canChange && form.canLockSelection());
+        setUnlockActionEnabled(canChange && form.canUnlockSelection());
     }
 
-    public List<ItemInfo> getSelectedItems() {
-        return form.getSelectedItems();
+    public List<String> getSelectedServerItems() {
+        return form.getSelectedServerItems();
     }
 
     public LockCommand.LockLevel getLockLevel() {
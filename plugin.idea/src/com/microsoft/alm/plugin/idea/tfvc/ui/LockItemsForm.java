@@ -50,11 +50,11 @@ public class LockItemsForm {
 
     private final LockItemsTableModel lockItemsTableModel;
 
-    public LockItemsForm(final List<ItemInfo> items) {
+    public LockItemsForm() {
         // Default to CheckIn since we only allow local workspaces right now
         lockCheckInRadioButton.setSelected(true);
 
-        lockItemsTableModel = new LockItemsTableModel(items);
+        lockItemsTableModel = new LockItemsTableModel();
         lockItemsTable.setModel(lockItemsTableModel);
         for (int i = 0; i < LockItemsTableModel.Column.values().length; i++) {
             lockItemsTable.getColumnModel().getColumn(i).setPreferredWidth(LockItemsTableModel.Column.values()[i].getWidth());
@@ -71,8 +71,24 @@ public class LockItemsForm {
         lockCheckOutRadioButton.setEnabled(isEnabled);
     }
 
-    public List<ItemInfo> getSelectedItems() {
-        return lockItemsTableModel.getSelectedItems();
+    public void addItems(final List<ItemInfo> items) {
+        lockItemsTableModel.addItems(items);
+    }
+
+    public boolean hasSelection() {
+        return lockItemsTableModel.hasSelection();
+    }
+
+    public boolean canLockSelection() {
+        return lockItemsTableModel.canLockSelection();
+    }
+
+    public boolean canUnlockSelection() {
+        return lockItemsTableModel.canUnlockSelection();
+    }
+
+    public List<String> getSelectedServerItems() {
+        return lockItemsTableModel.getSelectedServerItems();
     }
 
     public LockCommand.LockLevel getLockLevel() {
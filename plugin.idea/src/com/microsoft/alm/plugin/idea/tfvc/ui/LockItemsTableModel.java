@@ -41,19 +41,18 @@ public class LockItemsTableModel extends AbstractTableModel {
 
     enum Column {
         Selection("", 25) {
-            public Boolean getValue(final ExtendedItemInfo item) {
+            public Boolean getValue(final Row item) {
                 return item.selected;
             }
         },
         Item(TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LOCK_DIALOG_ITEM_COLUMN), 550) {
-            public String getValue(final ExtendedItemInfo item) {
-                return item.info.getServerItem();
+            public String getValue(final Row item) {
+                return item.serverItem;
             }
         },
         Lock(TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LOCK_DIALOG_LOCK_COLUMN), 110) {
-            public String getValue(final ExtendedItemInfo item) {
-                final LockCommand.LockLevel level = LockCommand.LockLevel.fromString(item.info.getLock());
-                switch (level) {
+            public String getValue(final Row item) {
+                switch (item.lockLevel) {
                     case CHECKIN:
                         return TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LOCK_DIALOG_LOCK_LEVEL_CHECKIN);
                     case CHECKOUT:
@@ -64,8 +63,8 @@ public class LockItemsTableModel extends AbstractTableModel {
             }
         },
         LockOwner(TfPluginBundle.message(TfPluginBundle.KEY_TFVC_LOCK_DIALOG_LOCKED_BY_COLUMN), 130) {
-            public String getValue(final ExtendedItemInfo item) {
-                return item.info.getLockOwner();
+            public String getValue(final Row item) {
+                return item.lockOwner;
             }
         };
 
@@ -86,42 +85,38 @@ public class LockItemsTableModel extends AbstractTableModel {
         }
 
         @Nullable
-        public abstract Object getValue(final ExtendedItemInfo item);
+        public abstract Object getValue(final Row item);
     }
 
-    private final List<ExtendedItemInfo> items;
+    // Only what the columns show is kept for each row, the dialog may be given thousands of items
+    private final List<Row> items = new ArrayList<Row>();
     private final EventDispatcher<Listener> myEventDispatcher = EventDispatcher.create(Listener.class);
-
-    public LockItemsTableModel(final @NotNull List<ItemInfo> items) {
-        this.items = new ArrayList<ExtendedItemInfo>(items.size());
-        for (final ItemInfo item : items) {
-            this.items.add(new ExtendedItemInfo(item));
-        }
-        setInitialSelection();
-    }
+    // Decided by the first item, see addItems
+    private Boolean selectLocked;
+    private int selectedLockedCount;
+    private int selectedUnlockedCount;
 
     /**
-     * This method looks at the first item in the list and selects all items that are like it.
-     * I.e. if the first item is not locked then select all items that are not locked
-     * OR if the first item IS locked, select all items that are also locked.
-     * This assures that the one of the Lock or Unlock buttons will be enabled.
+     * Adds rows for the items. The first item decides the initial selection: if it is not locked then all items that
+     * are not locked are selected, OR if it IS locked then all items that are also locked are selected. This assures
+     * that one of the Lock or Unlock buttons will be enabled, also for the items that are added later.
      */
-    private void setInitialSelection() {
-        if (items != null && items.size() > 0) {
-            final LockCommand.LockLevel firstItemLevel = LockCommand.LockLevel.fromString(items.get(0).info.getLock());
-            final boolean selectIfNone = firstItemLevel == LockCommand.LockLevel.NONE;
-
-            for (final ExtendedItemInfo item : items) {
-                final LockCommand.LockLevel currentLevel = LockCommand.LockLevel.fromString(item.info.getLock());
-                if (currentLevel == LockCommand.LockLevel.NONE && selectIfNone) {
-                    item.selected = true;
-                } else if (currentLevel != LockCommand.LockLevel.NONE && !selectIfNone) {
-                    item.selected = true;
-                } else {
-                    item.selected = false;
-                }
+    public void addItems(final @NotNull List<ItemInfo> newItems) {
+        if (newItems.isEmpty()) {
+            return;
+        }
+
+        final int firstRow = items.size();
+        for (final ItemInfo info : newItems) {
+            final Row row = new Row(info);
+            if (selectLocked == null) {
+                selectLocked = row.lockLevel != LockCommand.LockLevel.NONE;
             }
+            setSelected(row, (row.lockLevel != LockCommand.LockLevel.NONE) == selectLocked);
+            items.add(row);
         }
+        fireTableRowsInserted(firstRow, items.size() - 1);
+        myEventDispatcher.getMulticaster().selectionChanged();
     }
 
     public int getRowCount() {
@@ -148,21 +143,53 @@ public class LockItemsTableModel extends AbstractTableModel {
     @Override
     public void setValueAt(final Object aValue, final int rowIndex, final int columnIndex) {
         if (Column.values()[columnIndex] == Column.Selection) {
-            items.get(rowIndex).selected = (Boolean) aValue;
+            setSelected(items.get(rowIndex), (Boolean) aValue);
             myEventDispatcher.getMulticaster().selectionChanged();
         }
     }
 
-    public List<ItemInfo> getSelectedItems() {
-        final List<ItemInfo> result = new ArrayList<ItemInfo>();
-        for (ExtendedItemInfo item : items) {
+    public boolean hasSelection() {
+        return selectedLockedCount + selectedUnlockedCount > 0;
+    }
+
+    /**
+     * Returns true if none of the selected items are locked
+     */
+    public boolean canLockSelection() {
+        return selectedLockedCount == 0;
+    }
+
+    /**
+     * Returns true if all of the selected items are locked
+     */
+    public boolean canUnlockSelection() {
+        return selectedUnlockedCount == 0;
+    }
+
+    public List<String> getSelectedServerItems() {
+        final List<String> result = new ArrayList<String>(selectedLockedCount + selectedUnlockedCount);
+        for (final Row item : items) {
             if (item.selected) {
-                result.add(item.info);
+                result.add(item.serverItem);
             }
         }
         return result;
     }
 
+    private void setSelected(final Row item, final boolean selected) {
+        if (item.selected == selected) {
+            return;
+        }
+
+        item.selected = selected;
+        final int change = selected ? 1 : -1;
+        if (item.lockLevel == LockCommand.LockLevel.NONE) {
+            selectedUnlockedCount += change;
+        } else {
+            selectedLockedCount += change;
+        }
+    }
+
     public void addListener(final Listener listener) {
         myEventDispatcher.addListener(listener);
     }
@@ -180,12 +207,16 @@ public class LockItemsTableModel extends AbstractTableModel {
         }
     }
 
-    private class ExtendedItemInfo {
-        public final ItemInfo info;
+    private static class Row {
+        public final String serverItem;
+        public final LockCommand.LockLevel lockLevel;
+        public final String lockOwner;
         public boolean selected;
 
-        public ExtendedItemInfo(final ItemInfo info) {
-            this.info = info;
+        public Row(final ItemInfo info) {
+            this.serverItem = info.getServerItem();
+            this.lockLevel = LockCommand.LockLevel.fromString(info.getLock());
+            this.lockOwner = info.getLockOwner();
         }
     }
 }
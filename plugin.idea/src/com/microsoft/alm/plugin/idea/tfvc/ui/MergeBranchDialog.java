@@ -38,6 +38,9 @@ public class MergeBranchDialog extends BaseDialogImpl {
 
     private MergeBranchForm mergeBranchForm;
 
+    /**
+     * Called on a pooled thread, the dialog doesn't wait for the branches
+     */
     public interface BranchListProvider {
         List<String> getBranches(final String source);
     }
@@ -29,8 +29,10 @@ import com.intellij.uiDesigner.core.GridLayoutManager;
 import com.intellij.util.EventDispatcher;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
+import com.microsoft.alm.plugin.idea.common.utils.IdeaHelper;
 import com.microsoft.alm.plugin.idea.tfvc.ui.servertree.ServerBrowserDialog;
 import com.microsoft.alm.plugin.idea.tfvc.ui.servertree.TfsTreeForm;
+import org.apache.commons.lang.StringUtils;
 
 import javax.swing.BorderFactory;
 import javax.swing.DefaultComboBoxModel;
@@ -199,7 +201,7 @@ public class MergeBranchForm {
                     sourceText.setText(selectedItem != null ? selectedItem.path : null);
                     mySourceIsDirectory = selectedItem == null || selectedItem.isDirectory;
                 }
-                updateOnSourceChange();
+                updateOnSourceChange(false);
             }
         });
 
@@ -211,7 +213,7 @@ public class MergeBranchForm {
                 ApplicationManager.getApplication().invokeLater(new Runnable() {
                     @Override
                     public void run() {
-                        updateOnSourceChange();
+                        updateOnSourceChange(false);
                     }
                 }, ModalityState.current());
             }
@@ -266,8 +268,7 @@ public class MergeBranchForm {
         changesToMergePanel.setVisible(false);
 
         // Preinitialize the combo with the branches
-        updateOnSourceChange();
-        this.targetCombo.setSelectedItem(null);
+        updateOnSourceChange(true);
     }
 
     public JComponent getContentPanel() {
@@ -354,22 +355,44 @@ public class MergeBranchForm {
         return true;
     }
 
-    private void updateOnSourceChange() {
-        try {
-            //TODO we should provide progress and cancelability here
-            List<String> targetBranches = branchListProvider.getBranches(getSourcePath());
-
-            //TODO we may need to filter the branches somehow for the user instead of returning ALL related branches
-            ((DefaultComboBoxModel) targetCombo.getModel()).removeAllElements();
-            for (final String targetBranch : targetBranches) {
-                ((DefaultComboBoxModel) targetCombo.getModel()).addElement(targetBranch);
+    /**
+     * Reads the branches of the source on a pooled thread so that the dialog shows up (and stays responsive) while
+     * the server is asked for them. The combo is filled in when they arrive, unless the source changed meanwhile.
+     */
+    private void updateOnSourceChange(final boolean clearSelection) {
+        final String sourcePath = getSourcePath();
+        ((DefaultComboBoxModel) targetCombo.getModel()).removeAllElements();
+        IdeaHelper.executeOnPooledThread(new Runnable() {
+            public void run() {
+                try {
+                    final List<String> targetBranches = branchListProvider.getBranches(sourcePath);
+                    IdeaHelper.runOnUIThread(new Runnable() {
+                        public void run() {
+                            if (!StringUtils.equals(sourcePath, getSourcePath())) {
+                                return;
+                            }
+
+                            //TODO we may need to filter the branches somehow for the user instead of returning ALL related branches
+                            ((DefaultComboBoxModel) targetCombo.getModel()).removeAllElements();
+                            for (final String targetBranch : targetBranches) {
+                                ((DefaultComboBoxModel) targetCombo.getModel()).addElement(targetBranch);
+                            }
+                            if (clearSelection) {
+                                targetCombo.setSelectedItem(null);
+                            }
+                            //mySelectRevisionForm.init(project, myWorkspace, sourceText.getText(), mySourceIsDirectory);
+                            fireStateChanged();
+                        }
+                    });
+                } catch (final Throwable t) {
+                    IdeaHelper.runOnUIThread(new Runnable() {
+                        public void run() {
+                            Messages.showErrorDialog(project, t.getMessage(), dialogTitle);
+                        }
+                    });
+                }
             }
-            //mySelectRevisionForm.init(project, myWorkspace, sourceText.getText(), mySourceIsDirectory);
-            fireStateChanged();
-
-        } catch (Throwable t) {
-            Messages.showErrorDialog(project, t.getMessage(), dialogTitle);
-        }
+        });
     }
 
     public void close() {
@@ -38,6 +38,10 @@ public class IdeaAbstractTest extends AbstractTest {
                     public void executeOnPooledThread(Runnable runnable) {
                         runnable.run();
                     }
+
+                    @Override
+                    public void checkCanceled() {
+                    }
                 },
                 false);
 
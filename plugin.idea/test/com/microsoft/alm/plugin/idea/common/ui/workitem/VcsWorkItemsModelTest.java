@@ -8,11 +8,12 @@ import com.intellij.openapi.project.Project;
 import com.microsoft.alm.core.webapi.model.TeamProjectReference;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.rest.WorkItemTrackingHttpClientEx;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
 import com.microsoft.alm.plugin.idea.git.ui.branch.CreateBranchController;
 import com.microsoft.alm.plugin.operations.WorkItemLookupOperation;
-import com.microsoft.alm.workitemtracking.webapi.WorkItemTrackingHttpClient;
+import com.microsoft.alm.plugin.operations.WorkItemPageLoader;
 import com.microsoft.alm.workitemtracking.webapi.models.WorkItem;
 import git4idea.repo.GitRepository;
 import org.junit.Assert;
@@ -78,6 +79,30 @@ public class VcsWorkItemsModelTest extends IdeaAbstractTest {
         }
     }
 
+    @Test
+    public void testAppendData_Pages() {
+        final WorkItemPageLoader pageLoader = Mockito.mock(WorkItemPageLoader.class);
+        when(pageLoader.getCount()).thenReturn(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT + 5);
+        when(pageLoader.getPageCount()).thenReturn(2);
+
+        // The first page makes a row for every work item of the query
+        model.appendData(operation.new WitResults(null, createResults(5, 0).getWorkItems(), pageLoader, 0, null));
+        Assert.assertEquals(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT + 5, model.getModelForView().getRowCount());
+        Assert.assertEquals(4, model.getModelForView().getWorkItem(4).getId());
+        Assert.assertNull(model.getModelForView().getWorkItem(5));
+        Assert.assertFalse(model.getModelForView().isFullyLoaded());
+
+        // Later pages are put in their place
+        model.appendData(operation.new WitResults(null, createResults(5, 10).getWorkItems(), pageLoader, 1, null));
+        Assert.assertEquals(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT + 5, model.getModelForView().getRowCount());
+        Assert.assertEquals(10, model.getModelForView().getWorkItem(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT).getId());
+        Assert.assertTrue(model.getModelForView().isFullyLoaded());
+
+        model.clearData();
+        Assert.assertEquals(0, model.getModelForView().getRowCount());
+        verify(pageLoader).cancel();
+    }
+
     @Test
     public void testClearData() {
         model.appendData(createResults(5, 0));
@@ -140,7 +165,7 @@ public class VcsWorkItemsModelTest extends IdeaAbstractTest {
         ServerContext mockContext = mock(ServerContext.class);
         com.microsoft.alm.sourcecontrol.webapi.model.GitRepository mockVstsRepo = mock(com.microsoft.alm.sourcecontrol.webapi.model.GitRepository.class);
         TeamProjectReference mockTeamProjectReference = mock(TeamProjectReference.class);
-        WorkItemTrackingHttpClient mockClient = mock(WorkItemTrackingHttpClient.class);
+        WorkItemTrackingHttpClientEx mockClient = mock(WorkItemTrackingHttpClientEx.class);
 
         when(mockVstsRepo.getId()).thenReturn(UUID.fromString("00000000-0000-0000-0000-000000000000"));
         when(mockTeamProjectReference.getId()).thenReturn(UUID.fromString("00000000-0000-0000-0000-000000000000"));
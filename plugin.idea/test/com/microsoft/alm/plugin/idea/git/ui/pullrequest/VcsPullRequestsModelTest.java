@@ -5,8 +5,10 @@ package com.microsoft.alm.plugin.idea.git.ui.pullrequest;
 
 import com.intellij.openapi.project.Project;
 import com.microsoft.alm.plugin.context.RepositoryContext;
+import com.microsoft.alm.plugin.events.ServerChanges;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
+import com.microsoft.alm.plugin.operations.PullRequestChangeSource;
 import com.microsoft.alm.plugin.operations.PullRequestLookupOperation;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequest;
 import org.junit.Before;
@@ -18,9 +20,11 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -60,7 +64,54 @@ public class VcsPullRequestsModelTest extends IdeaAbstractTest {
         underTest.appendData(results);
         assertEquals(1, underTest.getModelForView().getAssignedToMeRoot().getChildCount());
 
+        // The pull requests are shown while they are loaded again
         underTest.clearData();
+        assertEquals(1, underTest.getModelForView().getRequestedByMeRoot().getChildCount());
+
+        // unless the project is on another repository now
+        when(VcsHelper.getRepositoryContext(any(Project.class))).thenReturn(RepositoryContext.createGitContext("/root/two", "repo2", "branch2", "repoUrl2"));
+        underTest.isTeamServicesRepository();
+        underTest.clearData();
+        assertEquals(0, underTest.getModelForView().getRequestedByMeRoot().getChildCount());
+    }
+
+    @Test
+    public void testSetPullRequests_NodesAreKept() {
+        underTest = new VcsPullRequestsModel(projectMock);
+        final PullRequestsTreeModel treeModel = underTest.getModelForView();
+        treeModel.setPullRequests(Arrays.asList(createPullRequest(3, "c"), createPullRequest(2, "b")),
+                PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME);
+        final PRTreeNode node = (PRTreeNode) treeModel.getRequestedByMeRoot().getChildAt(1);
+
+        treeModel.setPullRequests(Arrays.asList(createPullRequest(4, "d"), createPullRequest(2, "b2")),
+                PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME);
+        assertEquals(2, treeModel.getRequestedByMeRoot().getChildCount());
+        assertEquals(4, ((PRTreeNode) treeModel.getRequestedByMeRoot().getChildAt(0)).getGitPullRequest().getPullRequestId());
+        assertSame(node, treeModel.getRequestedByMeRoot().getChildAt(1));
+        assertEquals("b2", node.getGitPullRequest().getTitle());
+    }
+
+    @Test
+    public void testApplyChanges() {
+        underTest = new VcsPullRequestsModel(projectMock);
+        underTest.isTeamServicesRepository();
+        underTest.clearData();
+        underTest.getModelForView().setPullRequests(Arrays.asList(createPullRequest(3, "c"), createPullRequest(1, "a")),
+                PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME);
+
+        final ServerChanges changes = new ServerChanges()
+                .addAdded(new PullRequestChangeSource.ScopedPullRequest(createPullRequest(2, "b"),
+                        PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME, "REPOURL1"))
+                .addRemoved(new PullRequestChangeSource.ScopedPullRequest(createPullRequest(3, "c"),
+                        PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME, "repoUrl1"))
+                .addAdded(new PullRequestChangeSource.ScopedPullRequest(createPullRequest(5, "other repo"),
+                        PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME, "repoUrl2"));
+        underTest.applyChanges(changes);
+
+        final PRTreeNode root = underTest.getModelForView().getAssignedToMeRoot();
+        assertEquals(2, root.getChildCount());
+        assertEquals(2, ((PRTreeNode) root.getChildAt(0)).getGitPullRequest().getPullRequestId());
+        assertEquals(1, ((PRTreeNode) root.getChildAt(1)).getGitPullRequest().getPullRequestId());
         assertEquals(0, underTest.getModelForView().getRequestedByMeRoot().getChildCount());
     }
 
@@ -69,4 +120,11 @@ public class VcsPullRequestsModelTest extends IdeaAbstractTest {
         underTest = new VcsPullRequestsModel(projectMock);
         assertEquals(true, underTest.getOperationInputs().getPromptForCreds());
     }
+
+    private GitPullRequest createPullRequest(final int id, final String title) {
+        final GitPullRequest pullRequest = new GitPullRequest();
+        pullRequest.setPullRequestId(id);
+        pullRequest.setTitle(title);
+        return pullRequest;
+    }
 }
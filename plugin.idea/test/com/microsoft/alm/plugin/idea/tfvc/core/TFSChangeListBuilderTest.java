@@ -100,15 +100,15 @@ public class TFSChangeListBuilderTest extends IdeaAbstractTest {
         when(file8.getPath()).thenReturn(PATH_FILE_8);
         when(file9.getPath()).thenReturn(PATH_FILE_1); // having a duplicate entry on purpose
 
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange1.getServerItem()))).thenReturn(PATH_FILE_1);
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange2.getServerItem()))).thenReturn(PATH_FILE_2);
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange3.getServerItem()))).thenReturn(PATH_FILE_3);
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange4.getServerItem()))).thenReturn(PATH_FILE_4);
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange5.getServerItem()))).thenReturn(PATH_FILE_5);
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange6.getServerItem()))).thenReturn(PATH_FILE_6);
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange7.getServerItem()))).thenReturn(PATH_FILE_7);
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange8.getServerItem()))).thenReturn(PATH_FILE_8);
-        when(TfsFileUtil.translateServerItemToLocalItem(any(List.class), eq(checkedInChange9.getServerItem()))).thenReturn(PATH_FILE_1);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange1.getServerItem()))).thenReturn(PATH_FILE_1);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange2.getServerItem()))).thenReturn(PATH_FILE_2);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange3.getServerItem()))).thenReturn(PATH_FILE_3);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange4.getServerItem()))).thenReturn(PATH_FILE_4);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange5.getServerItem()))).thenReturn(PATH_FILE_5);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange6.getServerItem()))).thenReturn(PATH_FILE_6);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange7.getServerItem()))).thenReturn(PATH_FILE_7);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange8.getServerItem()))).thenReturn(PATH_FILE_8);
+        when(TfsFileUtil.translateServerItemToLocalItem(any(Workspace.class), eq(checkedInChange9.getServerItem()))).thenReturn(PATH_FILE_1);
 
         when(VcsUtil.getFilePath(eq(PATH_FILE_1), anyBoolean())).thenReturn(file1);
         when(VcsUtil.getFilePath(eq(PATH_FILE_2), anyBoolean())).thenReturn(file2);
@@ -14,6 +14,7 @@ import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.NullableFunction;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.commands.CheckinCommand;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import com.microsoft.alm.plugin.idea.common.resources.TfPluginBundle;
@@ -38,6 +39,7 @@ import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 
@@ -67,6 +69,9 @@ public class TFSCheckinEnvironmentTest extends IdeaAbstractTest {
     @Mock
     NullableFunction mockNullableFunction;
 
+    @Mock
+    TFSRevisionResolver mockRevisionResolver;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
@@ -77,6 +82,7 @@ public class TFSCheckinEnvironmentTest extends IdeaAbstractTest {
         when(mockTFSVcs.getServerContext(anyBoolean())).thenReturn(mockServerContext);
         when(ProgressManager.getInstance()).thenReturn(mockProgressManager);
         when(mockTFSVcs.getProject()).thenReturn(mockProject);
+        when(mockTFSVcs.getRevisionResolver()).thenReturn(mockRevisionResolver);
         when(VcsNotifier.getInstance(mockProject)).thenReturn(mockVcsNotifier);
         tfsCheckinEnvironment = new TFSCheckinEnvironment(mockTFSVcs);
     }
@@ -84,18 +90,20 @@ public class TFSCheckinEnvironmentTest extends IdeaAbstractTest {
     @Test
     public void testCommit_Happy() {
         setupCommit();
-        when(CommandUtils.checkinFiles(mockServerContext, ImmutableList.of("/path/to/file1", "/path/to/file2", "/path/to/file3"),
-                comment, null)).thenReturn("12345");
+        when(CommandUtils.checkinFiles(eq(mockServerContext), eq(ImmutableList.of("/path/to/file1", "/path/to/file2", "/path/to/file3")),
+                eq(comment), any(List.class), any(CheckinCommand.FileConsumer.class))).thenReturn("12345");
 
         List<VcsException> exceptions =
                 tfsCheckinEnvironment.commit(changes, comment, mockNullableFunction, null);
         assertTrue(exceptions.isEmpty());
+        verify(mockRevisionResolver).invalidate();
     }
 
     @Test
     public void testCommit_Exception() {
         setupCommit();
-        when(CommandUtils.checkinFiles(any(ServerContext.class), any(List.class), any(String.class), any(List.class))).
+        when(CommandUtils.checkinFiles(any(ServerContext.class), any(List.class), any(String.class), any(List.class),
+                any(CheckinCommand.FileConsumer.class))).
                 thenThrow(new RuntimeException("test exception"));
 
         List<VcsException> exceptions =
@@ -15,6 +15,7 @@ import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.models.ChangeSet;
 import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.external.utils.WorkspaceMappingIndex;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
@@ -31,11 +32,15 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.whenNew;
 
 @RunWith(PowerMockRunner.class)
@@ -79,6 +84,8 @@ public class TFSCommittedChangesProviderTest extends IdeaAbstractTest {
         when(mockVirtualFile.getPath()).thenReturn(LOCAL_ROOT_PATH);
         when(mockRoot.getVirtualFile()).thenReturn(mockVirtualFile);
         when(mockWorkspace.getServer()).thenReturn(SERVER_URL);
+        // nothing is mapped so the history doesn't come from the local index
+        when(mockWorkspace.getMappingIndex()).thenReturn(new WorkspaceMappingIndex(Collections.<Workspace.Mapping>emptyList()));
         when(mockChangeBrowserSettings.getUserFilter()).thenReturn(USER_ME);
         when(CommandUtils.getPartialWorkspace(mockProject)).thenReturn(mockWorkspace);
         whenNew(TFSChangeListBuilder.class).withAnyArguments().thenReturn(mockTFSChangeListBuilder);
@@ -118,6 +125,47 @@ public class TFSCommittedChangesProviderTest extends IdeaAbstractTest {
         verifyNoMoreInteractions(mockAsynchConsumer);
     }
 
+    @Test
+    public void testLoadCommittedChanges_Pages() throws Exception {
+        System.setProperty(TFSCommittedChangesProvider.PROP_HISTORY_PAGE_SIZE, "2");
+        try {
+            when(CommandUtils.getHistoryCommand(any(ServerContext.class), eq(LOCAL_ROOT_PATH), eq("C30~C50"),
+                    eq(2), eq(true), eq(USER_ME))).thenReturn(ImmutableList.of(mockChangeSet1, mockChangeSet2));
+            when(CommandUtils.getHistoryCommand(any(ServerContext.class), eq(LOCAL_ROOT_PATH), eq("C30~C39"),
+                    eq(2), eq(true), eq(USER_ME))).thenReturn(ImmutableList.of(mockChangeSet3));
+            final RepositoryLocation repositoryLocation = new TFSRepositoryLocation(mockWorkspace, mockVirtualFile);
+            committedChangesProvider.loadCommittedChanges(mockChangeBrowserSettings, repositoryLocation, 0, mockAsynchConsumer);
+            verify(mockAsynchConsumer, times(3)).consume(any(TFSChangeList.class));
+            verify(mockTFSChangeListBuilder).createChangeList(eq(mockChangeSet1), eq(40), eq("2016-07-11T12:00:00.000-0400"));
+            verify(mockTFSChangeListBuilder).createChangeList(eq(mockChangeSet2), eq(31), eq("2016-06-23T04:30:00.00-0400"));
+            verify(mockTFSChangeListBuilder).createChangeList(eq(mockChangeSet3), eq(0), eq(StringUtils.EMPTY));
+            verify(mockAsynchConsumer).finished();
+            verifyNoMoreInteractions(mockAsynchConsumer);
+        } finally {
+            System.clearProperty(TFSCommittedChangesProvider.PROP_HISTORY_PAGE_SIZE);
+        }
+    }
+
+    @Test
+    public void testLoadCommittedChanges_StopAtMaxCount() throws Exception {
+        System.setProperty(TFSCommittedChangesProvider.PROP_HISTORY_PAGE_SIZE, "2");
+        try {
+            when(CommandUtils.getHistoryCommand(any(ServerContext.class), eq(LOCAL_ROOT_PATH), eq("C30~C50"),
+                    eq(2), eq(true), eq(USER_ME))).thenReturn(ImmutableList.of(mockChangeSet1, mockChangeSet2));
+            final RepositoryLocation repositoryLocation = new TFSRepositoryLocation(mockWorkspace, mockVirtualFile);
+            committedChangesProvider.loadCommittedChanges(mockChangeBrowserSettings, repositoryLocation, 2, mockAsynchConsumer);
+            verify(mockAsynchConsumer, times(2)).consume(any(TFSChangeList.class));
+            verify(mockTFSChangeListBuilder).createChangeList(eq(mockChangeSet1), eq(40), eq("2016-07-11T12:00:00.000-0400"));
+            verify(mockTFSChangeListBuilder).createChangeList(eq(mockChangeSet2), eq(0), eq(StringUtils.EMPTY));
+            verify(mockAsynchConsumer).finished();
+            verifyNoMoreInteractions(mockAsynchConsumer);
+            verifyStatic(times(1));
+            CommandUtils.getHistoryCommand(any(ServerContext.class), anyString(), anyString(), anyInt(), anyBoolean(), anyString());
+        } finally {
+            System.clearProperty(TFSCommittedChangesProvider.PROP_HISTORY_PAGE_SIZE);
+        }
+    }
+
     @Test
     public void testLoadCommittedChanges_NoChanges() throws Exception {
         final List<ChangeSet> changeSetList = Collections.EMPTY_LIST;
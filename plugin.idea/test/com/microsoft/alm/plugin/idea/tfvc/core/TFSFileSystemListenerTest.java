@@ -14,8 +14,10 @@ import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.models.PendingChange;
 import com.microsoft.alm.plugin.external.models.ServerStatusType;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
+import com.microsoft.alm.plugin.external.utils.PendingChangeIndex;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import com.microsoft.alm.plugin.idea.common.utils.VcsHelper;
+import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.VersionControlPath;
 import org.junit.Before;
 import org.junit.Test;
@@ -43,7 +45,7 @@ import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({CommandUtils.class, TFSVcs.class, LocalFileSystem.class, VersionControlPath.class, VcsHelper.class})
+@PrepareForTest({CommandUtils.class, TFSVcs.class, LocalFileSystem.class, VersionControlPath.class, VcsHelper.class, TfsFileUtil.class})
 public class TFSFileSystemListenerTest extends IdeaAbstractTest {
     private String CURRENT_FILE_NAME = "file.txt";
     private String NEW_FILE_NAME = "newName.txt";
@@ -82,10 +84,13 @@ public class TFSFileSystemListenerTest extends IdeaAbstractTest {
     @Mock
     private VcsShowConfirmationOption mockVcsShowConfirmationOption;
 
+    @Mock
+    private PendingChangeIndex mockPendingChangeIndex;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        PowerMockito.mockStatic(CommandUtils.class, TFSVcs.class, LocalFileSystem.class, VersionControlPath.class, VcsHelper.class);
+        PowerMockito.mockStatic(CommandUtils.class, TFSVcs.class, LocalFileSystem.class, VersionControlPath.class, VcsHelper.class, TfsFileUtil.class);
 
         when(mockTFSVcs.getProject()).thenReturn(mockProject);
         when(mockVcsShowConfirmationOption.getValue()).thenReturn(VcsShowConfirmationOption.Value.DO_ACTION_SILENTLY);
@@ -99,13 +104,19 @@ public class TFSFileSystemListenerTest extends IdeaAbstractTest {
         when(mockNewDirectory.getPath()).thenReturn(NEW_DIRECTORY_PATH);
         when(mockTFSVcs.getServerContext(anyBoolean())).thenReturn(mockServerContext);
         when(TFSVcs.getInstance(mockProject)).thenReturn(mockTFSVcs);
+        when(mockTFSVcs.getPendingChangeIndex()).thenReturn(mockPendingChangeIndex);
 
         FilePath mockFilePath = mock(FilePath.class);
         when(VersionControlPath.getFilePath(CURRENT_FILE_PATH, false)).thenReturn(mockFilePath);
         when(mockPendingChange.getLocalItem()).thenReturn(CURRENT_FILE_PATH);
         when(mockPendingChange.getVersion()).thenReturn("5");
 
-        tfsFileSystemListener = new TFSFileSystemListener();
+        tfsFileSystemListener = new TFSFileSystemListener() {
+            @Override
+            protected void scheduleFlush() {
+                // the tests flush the batch themselves
+            }
+        };
     }
 
     @Test
@@ -418,6 +429,50 @@ public class TFSFileSystemListenerTest extends IdeaAbstractTest {
         CommandUtils.deleteFiles(any(ServerContext.class), any(List.class), any(String.class), any(Boolean.class));
     }
 
+    @Test
+    public void testDelete_StatusSharedInOneFolder() throws Exception {
+        final VirtualFile mockOtherFile = mock(VirtualFile.class);
+        when(mockOtherFile.getPath()).thenReturn(NEW_FILE_PATH);
+        when(VcsHelper.getTFSVcsByPath(mockOtherFile)).thenReturn(mockTFSVcs);
+        when(CommandUtils.getStatusForFiles(mockServerContext, ImmutableList.of(CURRENT_FILE_PATH)))
+                .thenReturn(Collections.EMPTY_LIST);
+        when(CommandUtils.getStatusForFiles(mockServerContext, ImmutableList.of(PARENT_PATH)))
+                .thenReturn(Collections.EMPTY_LIST);
+
+        assertTrue(tfsFileSystemListener.delete(mockVirtualFile));
+        // the file is deleted before the IDE is told that it's gone
+        verifyDeleteCmd(CURRENT_FILE_PATH);
+        assertTrue(tfsFileSystemListener.delete(mockOtherFile));
+        tfsFileSystemListener.flush();
+
+        // the first file reads its own status and the second one reads the folder
+        verifyStatic(times(1));
+        CommandUtils.getStatusForFiles(eq(mockServerContext), eq(ImmutableList.of(CURRENT_FILE_PATH)));
+        verifyStatic(times(1));
+        CommandUtils.getStatusForFiles(eq(mockServerContext), eq(ImmutableList.of(PARENT_PATH)));
+        verifyStatic(times(1));
+        CommandUtils.deleteFiles(eq(mockServerContext), eq(ImmutableList.of(NEW_FILE_PATH)), eq((String) null), eq(true));
+    }
+
+    @Test
+    public void testRename_AfterDeleteInSameFolder() throws Exception {
+        final VirtualFile mockOtherFile = mock(VirtualFile.class);
+        when(mockOtherFile.getPath()).thenReturn(NEW_FILE_PATH);
+        when(mockOtherFile.getParent()).thenReturn(mockVirtualParent);
+        when(VcsHelper.getTFSVcsByPath(mockOtherFile)).thenReturn(mockTFSVcs);
+        when(CommandUtils.getStatusForFiles(mockServerContext, ImmutableList.of(CURRENT_FILE_PATH)))
+                .thenReturn(Collections.EMPTY_LIST);
+        when(CommandUtils.getStatusForFiles(mockServerContext, ImmutableList.of(PARENT_PATH)))
+                .thenReturn(Collections.EMPTY_LIST);
+
+        tfsFileSystemListener.delete(mockVirtualFile);
+        assertTrue(tfsFileSystemListener.rename(mockOtherFile, "other.txt"));
+
+        verifyDeleteCmd(CURRENT_FILE_PATH);
+        verifyStatic(times(1));
+        CommandUtils.renameFile(eq(mockServerContext), eq(NEW_FILE_PATH), eq(Path.combine(PARENT_PATH, "other.txt")));
+    }
+
     private void verifyDeleteCmd(final String path) {
         ArgumentCaptor<List> listArgumentCaptor = ArgumentCaptor.forClass(List.class);
         verifyStatic(times(1));
@@ -0,0 +1,149 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.core;
+
+import com.microsoft.alm.core.webapi.model.TeamProjectReference;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.rest.TfvcHttpClientEx;
+import com.microsoft.alm.plugin.context.rest.VersionControlRecursionTypeCaseSensitive;
+import com.microsoft.alm.sourcecontrol.webapi.model.TfvcItem;
+import com.microsoft.alm.sourcecontrol.webapi.model.TfvcVersionDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TFSRevisionResolverTest {
+    private static final UUID PROJECT_ID = UUID.fromString("00000000-0000-0000-0000-000000000000");
+
+    private TFSRevisionResolver resolver;
+    private TfvcItem folder = createItem("$/root/folder");
+    private TfvcItem file1 = createItem("$/root/folder/file1.txt");
+    private TfvcItem file2 = createItem("$/root/folder/File2.txt");
+
+    @Mock
+    private ServerContext mockServerContext;
+    @Mock
+    private TeamProjectReference mockTeamProjectReference;
+    @Mock
+    private TfvcHttpClientEx mockTfvcHttpClientEx;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mockTeamProjectReference.getId()).thenReturn(PROJECT_ID);
+        when(mockServerContext.getTeamProjectReference()).thenReturn(mockTeamProjectReference);
+        when(mockServerContext.getTfvcHttpClient()).thenReturn(mockTfvcHttpClientEx);
+        when(mockTfvcHttpClientEx.getItems(eq(PROJECT_ID), eq("$/root/folder"), eq(VersionControlRecursionTypeCaseSensitive.ONE_LEVEL),
+                any(TfvcVersionDescriptor.class))).thenReturn(Arrays.asList(folder, file1, file2));
+        resolver = new TFSRevisionResolver(60 * 1000);
+    }
+
+    @Test
+    public void testGetLatestItem_OneCallPerFolder() {
+        assertEquals(file1, resolver.getLatestItem(mockServerContext, "$/root/folder/file1.txt"));
+        assertEquals(file2, resolver.getLatestItem(mockServerContext, "$/root/folder/file2.txt"));
+        verify(mockTfvcHttpClientEx, times(1)).getItems(any(UUID.class), anyString(),
+                any(VersionControlRecursionTypeCaseSensitive.class), any(TfvcVersionDescriptor.class));
+    }
+
+    @Test
+    public void testGetLatestItem_ConcurrentLookupsShareOneCall() throws Exception {
+        final CountDownLatch callStarted = new CountDownLatch(1);
+        final CountDownLatch releaseCall = new CountDownLatch(1);
+        when(mockTfvcHttpClientEx.getItems(eq(PROJECT_ID), eq("$/root/folder"), eq(VersionControlRecursionTypeCaseSensitive.ONE_LEVEL),
+                any(TfvcVersionDescriptor.class))).thenAnswer(new Answer<List<TfvcItem>>() {
+            @Override
+            public List<TfvcItem> answer(final InvocationOnMock invocation) throws Throwable {
+                callStarted.countDown();
+                releaseCall.await(10, TimeUnit.SECONDS);
+                return Arrays.asList(folder, file1, file2);
+            }
+        });
+
+        final AtomicReference<TfvcItem> first = new AtomicReference<TfvcItem>();
+        final Thread firstLookup = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                first.set(resolver.getLatestItem(mockServerContext, "$/root/folder/file1.txt"));
+            }
+        });
+        firstLookup.start();
+        assertTrue(callStarted.await(10, TimeUnit.SECONDS));
+
+        final AtomicReference<TfvcItem> second = new AtomicReference<TfvcItem>();
+        final Thread secondLookup = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                second.set(resolver.getLatestItem(mockServerContext, "$/root/folder/file2.txt"));
+            }
+        });
+        secondLookup.start();
+        Thread.sleep(100);
+        releaseCall.countDown();
+        firstLookup.join(10000);
+        secondLookup.join(10000);
+
+        assertEquals(file1, first.get());
+        assertEquals(file2, second.get());
+        verify(mockTfvcHttpClientEx, times(1)).getItems(any(UUID.class), anyString(),
+                any(VersionControlRecursionTypeCaseSensitive.class), any(TfvcVersionDescriptor.class));
+    }
+
+    @Test
+    public void testGetLatestItem_NotOnServer() {
+        assertNull(resolver.getLatestItem(mockServerContext, "$/root/folder/new.txt"));
+    }
+
+    @Test
+    public void testGetLatestItem_NotMapped() {
+        assertNull(resolver.getLatestItem(mockServerContext, null));
+        verify(mockTfvcHttpClientEx, never()).getItems(any(UUID.class), anyString(),
+                any(VersionControlRecursionTypeCaseSensitive.class), any(TfvcVersionDescriptor.class));
+    }
+
+    @Test
+    public void testInvalidate() {
+        resolver.getLatestItem(mockServerContext, "$/root/folder/file1.txt");
+        resolver.invalidate();
+        resolver.getLatestItem(mockServerContext, "$/root/folder/file1.txt");
+        verify(mockTfvcHttpClientEx, times(2)).getItems(any(UUID.class), anyString(),
+                any(VersionControlRecursionTypeCaseSensitive.class), any(TfvcVersionDescriptor.class));
+    }
+
+    @Test
+    public void testTimeout() {
+        resolver = new TFSRevisionResolver(-1);
+        resolver.getLatestItem(mockServerContext, "$/root/folder/file1.txt");
+        resolver.getLatestItem(mockServerContext, "$/root/folder/file1.txt");
+        verify(mockTfvcHttpClientEx, times(2)).getItems(any(UUID.class), anyString(),
+                any(VersionControlRecursionTypeCaseSensitive.class), any(TfvcVersionDescriptor.class));
+    }
+
+    private TfvcItem createItem(final String path) {
+        final TfvcItem item = new TfvcItem();
+        item.setPath(path);
+        return item;
+    }
+}
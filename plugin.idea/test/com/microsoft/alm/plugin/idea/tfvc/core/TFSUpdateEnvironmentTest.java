@@ -15,8 +15,11 @@ import com.intellij.openapi.vcs.update.SequentialUpdatesContext;
 import com.intellij.openapi.vcs.update.UpdateSession;
 import com.intellij.openapi.vcs.update.UpdatedFiles;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.commands.Command;
+import com.microsoft.alm.plugin.external.commands.SyncCommand;
 import com.microsoft.alm.plugin.external.exceptions.SyncException;
 import com.microsoft.alm.plugin.external.models.SyncResults;
+import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.utils.CommandUtils;
 import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
 import com.microsoft.alm.plugin.idea.tfvc.core.tfs.TfsFileUtil;
@@ -28,13 +31,17 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -82,12 +89,19 @@ public class TFSUpdateEnvironmentTest extends IdeaAbstractTest {
     @Mock
     FileGroup mockFileGroupUpdate;
 
+    @Mock
+    TFSRevisionResolver mockRevisionResolver;
+
+    @Mock
+    SyncCommand mockSyncCommand;
+
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         PowerMockito.mockStatic(CommandUtils.class, ConflictsEnvironment.class, TfsFileUtil.class);
         when(mockTFSVcs.getServerContext(anyBoolean())).thenReturn(mockServerContext);
         when(mockTFSVcs.getProject()).thenReturn(mockProject);
+        when(mockTFSVcs.getRevisionResolver()).thenReturn(mockRevisionResolver);
         when(ConflictsEnvironment.getConflictsHandler()).thenReturn(mockConflictsHandler);
         when(mockUpdatedFiles.getGroupById(FileGroup.REMOVED_FROM_REPOSITORY_ID)).thenReturn(mockFileGroupRemove);
         when(mockUpdatedFiles.getGroupById(FileGroup.CREATED_ID)).thenReturn(mockFileGroupCreate);
@@ -102,6 +116,7 @@ public class TFSUpdateEnvironmentTest extends IdeaAbstractTest {
         UpdateSession session = updateEnvironment.updateDirectories(filePaths, mockUpdatedFiles, mockProgressIndicator, mockUpdatesContext);
         verifyNoMoreInteractions(mockUpdatedFiles, mockConflictsHandler);
         assertTrue(session.getExceptions().isEmpty());
+        verify(mockRevisionResolver).invalidate();
         verifyStatic(times(1));
         TfsFileUtil.refreshAndInvalidate(mockProject, filePaths, false);
     }
@@ -138,6 +153,62 @@ public class TFSUpdateEnvironmentTest extends IdeaAbstractTest {
         TfsFileUtil.refreshAndInvalidate(mockProject, filePaths, false);
     }
 
+    @Test
+    public void testUpdateDirectories_Streamed() {
+        FilePath[] filePaths = setupUpdate(null);
+        when(CommandUtils.startSync(eq(mockServerContext), any(List.class), eq(true), any(SyncCommand.FileConsumer.class),
+                any(Command.Listener.class))).thenAnswer(new Answer<SyncCommand>() {
+            @Override
+            public SyncCommand answer(final InvocationOnMock invocation) {
+                final SyncCommand.FileConsumer consumer = (SyncCommand.FileConsumer) invocation.getArguments()[3];
+                consumer.consume(SyncCommand.FileAction.NEW, "/path/to/newFile");
+                consumer.consume(SyncCommand.FileAction.UPDATED, "/path/to/file1");
+                ((Command.Listener<SyncResults>) invocation.getArguments()[4]).completed(new SyncResults(), null);
+                return mockSyncCommand;
+            }
+        });
+
+        UpdateSession session = updateEnvironment.updateDirectories(filePaths, mockUpdatedFiles, mockProgressIndicator, mockUpdatesContext);
+        verify(mockFileGroupCreate).add(eq("/path/to/newFile"), any(VcsKey.class), isNull(VcsRevisionNumber.class));
+        verify(mockFileGroupUpdate).add(eq("/path/to/file1"), any(VcsKey.class), isNull(VcsRevisionNumber.class));
+        verify(mockProgressIndicator).setText2("/path/to/file1");
+        assertTrue(session.getExceptions().isEmpty());
+        assertFalse(session.isCanceled());
+    }
+
+    @Test
+    public void testUpdateDirectories_Cancelled() {
+        FilePath[] filePaths = setupUpdate(null);
+        when(mockProgressIndicator.isCanceled()).thenReturn(true);
+
+        UpdateSession session = updateEnvironment.updateDirectories(filePaths, mockUpdatedFiles, mockProgressIndicator, mockUpdatesContext);
+        verify(mockSyncCommand).cancel();
+        assertTrue(session.isCanceled());
+        verifyStatic(times(1));
+        TfsFileUtil.refreshAndInvalidate(mockProject, filePaths, false);
+    }
+
+    @Test
+    public void testUpdateDirectories_ParallelByMapping() {
+        FilePath[] filePaths = setupUpdate(null);
+        setupSync(ImmutableList.of("/path/to/file1", "/path/to/file2"), new SyncResults());
+        setupSync(ImmutableList.of("/path/to/directory"), new SyncResults());
+        when(CommandUtils.getPartialWorkspace(mockProject)).thenReturn(new Workspace("server", "ws", "computer", "owner", "comment",
+                ImmutableList.of(new Workspace.Mapping("$/proj", "/path/to", false),
+                        new Workspace.Mapping("$/other", "/path/to/directory", false))));
+
+        System.setProperty(TFSUpdateEnvironment.PROP_PARALLEL_GETS, "2");
+        try {
+            UpdateSession session = updateEnvironment.updateDirectories(filePaths, mockUpdatedFiles, mockProgressIndicator, mockUpdatesContext);
+            assertTrue(session.getExceptions().isEmpty());
+        } finally {
+            System.clearProperty(TFSUpdateEnvironment.PROP_PARALLEL_GETS);
+        }
+        verifyStatic(times(2));
+        CommandUtils.startSync(eq(mockServerContext), any(List.class), eq(true), any(SyncCommand.FileConsumer.class),
+                any(Command.Listener.class));
+    }
+
     private FilePath[] setupUpdate(final SyncResults syncResults) {
         FilePath filePath1 = mock(FilePath.class);
         when(filePath1.isDirectory()).thenReturn(false);
@@ -152,9 +223,26 @@ public class TFSUpdateEnvironmentTest extends IdeaAbstractTest {
         when(filePath3.getPath()).thenReturn("/path/to/file2");
         FilePath[] filePaths = {filePath1, filePath2, filePath3};
 
-        when(CommandUtils.syncWorkspace(mockServerContext, ImmutableList.of("/path/to/file1", "/path/to/directory",
-                "/path/to/file2"), true, false)).thenReturn(syncResults);
+        setupSync(ImmutableList.of("/path/to/file1", "/path/to/directory", "/path/to/file2"), syncResults);
 
         return filePaths;
     }
+
+    /**
+     * Makes the get of the paths stream the files of the results and complete right away, or never complete if
+     * the results are null
+     */
+    private void setupSync(final List<String> paths, final SyncResults syncResults) {
+        when(CommandUtils.startSync(eq(mockServerContext), eq(paths), eq(true), any(SyncCommand.FileConsumer.class),
+                any(Command.Listener.class))).thenAnswer(new Answer<SyncCommand>() {
+            @Override
+            public SyncCommand answer(final InvocationOnMock invocation) {
+                if (syncResults != null) {
+                    final Command.Listener<SyncResults> listener = (Command.Listener<SyncResults>) invocation.getArguments()[4];
+                    listener.completed(syncResults, null);
+                }
+                return mockSyncCommand;
+            }
+        });
+    }
 }
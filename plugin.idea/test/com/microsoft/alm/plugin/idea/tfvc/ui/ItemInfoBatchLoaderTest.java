@@ -0,0 +1,81 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.idea.tfvc.ui;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ItemInfo;
+import com.microsoft.alm.plugin.idea.IdeaAbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ItemInfoBatchLoaderTest extends IdeaAbstractTest {
+    private final List<String> paths = Arrays.asList("/ws/1", "/ws/2", "/ws/3", "/ws/4", "/ws/5");
+    private final List<List<String>> loaded = new ArrayList<List<String>>();
+    private final List<Throwable> finished = new ArrayList<Throwable>();
+
+    private final ItemInfoBatchLoader.Listener listener = new ItemInfoBatchLoader.Listener() {
+        public void itemsLoaded(final List<ItemInfo> items) {
+            final List<String> localItems = new ArrayList<String>();
+            for (final ItemInfo item : items) {
+                localItems.add(item.getLocalItem());
+            }
+            loaded.add(localItems);
+        }
+
+        public void loadingFinished(final Throwable error) {
+            finished.add(error);
+        }
+    };
+
+    @Test
+    public void testLoad_Batches() {
+        createLoader(null).load(listener);
+        Assert.assertEquals(Arrays.asList(Arrays.asList("/ws/1", "/ws/2"), Arrays.asList("/ws/3", "/ws/4"),
+                Arrays.asList("/ws/5")), loaded);
+        Assert.assertEquals(Arrays.asList((Throwable) null), finished);
+    }
+
+    @Test
+    public void testLoad_Error() {
+        final RuntimeException error = new RuntimeException("server unavailable");
+        createLoader(error).load(listener);
+        Assert.assertEquals(Arrays.asList(Arrays.asList("/ws/1", "/ws/2")), loaded);
+        Assert.assertEquals(Arrays.asList((Throwable) error), finished);
+    }
+
+    @Test
+    public void testLoad_Cancelled() {
+        final ItemInfoBatchLoader loader = createLoader(null);
+        loader.cancel();
+        loader.load(listener);
+        Assert.assertTrue(loaded.isEmpty());
+        Assert.assertTrue(finished.isEmpty());
+    }
+
+    /**
+     * Creates a loader that reads two paths at a time and fails on the second batch if there is an error
+     */
+    private ItemInfoBatchLoader createLoader(final RuntimeException error) {
+        return new ItemInfoBatchLoader(null, paths, 2) {
+            private int batches;
+
+            @Override
+            protected List<ItemInfo> readInfos(final ServerContext context, final List<String> localPaths) {
+                if (++batches == 2 && error != null) {
+                    throw error;
+                }
+                final List<ItemInfo> infos = new ArrayList<ItemInfo>();
+                for (final String localPath : localPaths) {
+                    infos.add(new ItemInfo(localPath.replace("/ws", "$/proj"), localPath, "1", "1", "none", "file",
+                            "none", "", "0", "", "", ""));
+                }
+                return infos;
+            }
+        };
+    }
+}
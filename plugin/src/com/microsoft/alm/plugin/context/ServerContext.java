@@ -3,19 +3,19 @@
 
 package com.microsoft.alm.plugin.context;
 
-import com.microsoft.alm.build.webapi.BuildHttpClient;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.common.utils.UrlHelper;
 import com.microsoft.alm.core.webapi.model.TeamProjectCollectionReference;
 import com.microsoft.alm.core.webapi.model.TeamProjectReference;
 import com.microsoft.alm.plugin.authentication.AuthHelper;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
+import com.microsoft.alm.plugin.context.rest.BuildHttpClientEx;
 import com.microsoft.alm.plugin.context.rest.GitHttpClientEx;
 import com.microsoft.alm.plugin.context.rest.TfvcHttpClientEx;
+import com.microsoft.alm.plugin.context.rest.WorkItemTrackingHttpClientEx;
 import com.microsoft.alm.plugin.context.soap.SoapServices;
 import com.microsoft.alm.plugin.context.soap.SoapServicesImpl;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitRepository;
-import com.microsoft.alm.workitemtracking.webapi.WorkItemTrackingHttpClient;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.client.CredentialsProvider;
@@ -177,10 +177,10 @@ public class ServerContext {
         return null;
     }
 
-    public synchronized WorkItemTrackingHttpClient getWitHttpClient() {
+    public synchronized WorkItemTrackingHttpClientEx getWitHttpClient() {
         final URI collectionUri = getCollectionURI();
         if (collectionUri != null) {
-            final WorkItemTrackingHttpClient witClient = new WorkItemTrackingHttpClient(getClient(), collectionUri);
+            final WorkItemTrackingHttpClientEx witClient = new WorkItemTrackingHttpClientEx(getClient(), collectionUri);
             return witClient;
         }
 
@@ -188,10 +188,10 @@ public class ServerContext {
         return null;
     }
 
-    public synchronized BuildHttpClient getBuildHttpClient() {
+    public synchronized BuildHttpClientEx getBuildHttpClient() {
         final URI collectionUri = getCollectionURI();
         if (collectionUri != null) {
-            final BuildHttpClient buildClient = new BuildHttpClient(getClient(), collectionUri);
+            final BuildHttpClientEx buildClient = new BuildHttpClientEx(getClient(), collectionUri);
             return buildClient;
         }
 
@@ -0,0 +1,86 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context.rest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.microsoft.alm.build.webapi.BuildHttpClient;
+import com.microsoft.alm.build.webapi.model.Build;
+import com.microsoft.alm.client.model.ApiResourceVersion;
+import com.microsoft.alm.client.model.NameValueCollection;
+
+import javax.ws.rs.client.Client;
+import java.net.URI;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Extending BuildHttpClient with new/altered calls
+ */
+public class BuildHttpClientEx extends BuildHttpClient {
+
+    public BuildHttpClientEx(final Client jaxrsClient, final URI baseUrl) {
+        super(jaxrsClient, baseUrl);
+    }
+
+    /**
+     * Gets the most recent completed builds of a repository and branch. The generated getBuilds method in 0.4.3
+     * can't filter by repository or branch, so callers had to download the builds of the whole team project.
+     * Servers that don't know the repository filters ignore them, so the builds that are returned still have to be
+     * checked by the caller.
+     *
+     * @param project
+     * @param repositoryId   null to get the builds of every repository of the type
+     * @param repositoryType e.g. TfsGit or TfsVersionControl
+     * @param branchName     null to get the builds of every branch
+     * @param minFinishTime  null or only get the builds that finished after this time
+     * @param top
+     * @return the builds, the one that finished last first
+     */
+    public List<Build> getBuilds(
+            final UUID project,
+            final String repositoryId,
+            final String repositoryType,
+            final String branchName,
+            final Date minFinishTime,
+            final Integer top) {
+        final UUID locationId = UUID.fromString("0cd358e1-9217-4d94-8269-1c1ee6f93dcf"); //$NON-NLS-1$
+        final ApiResourceVersion apiVersion = new ApiResourceVersion("2.0"); //$NON-NLS-1$
+
+        final Map<String, Object> routeValues = new HashMap<String, Object>();
+        routeValues.put("project", project); //$NON-NLS-1$
+
+        final NameValueCollection queryParameters = new NameValueCollection();
+        queryParameters.addIfNotEmpty("repositoryId", repositoryId); //$NON-NLS-1$
+        queryParameters.addIfNotEmpty("repositoryType", repositoryType); //$NON-NLS-1$
+        queryParameters.addIfNotEmpty("branchName", branchName); //$NON-NLS-1$
+        // The enum values of the generated client don't have the casing the server expects
+        queryParameters.addIfNotEmpty("statusFilter", "completed"); //$NON-NLS-1$ //$NON-NLS-2$
+        queryParameters.addIfNotEmpty("queryOrder", "finishTimeDescending"); //$NON-NLS-1$ //$NON-NLS-2$
+        if (minFinishTime != null) {
+            queryParameters.addIfNotEmpty("minFinishTime", formatDate(minFinishTime)); //$NON-NLS-1$
+        }
+        queryParameters.addIfNotNull("$top", top); //$NON-NLS-1$
+
+        final Object httpRequest = super.createRequest(HttpMethod.GET,
+                locationId,
+                routeValues,
+                apiVersion,
+                queryParameters,
+                APPLICATION_JSON_TYPE);
+
+        return super.sendRequest(httpRequest, new TypeReference<List<Build>>() {
+        });
+    }
+
+    private static String formatDate(final Date date) {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"); //$NON-NLS-1$
+        format.setTimeZone(TimeZone.getTimeZone("UTC")); //$NON-NLS-1$
+        return format.format(date);
+    }
+}
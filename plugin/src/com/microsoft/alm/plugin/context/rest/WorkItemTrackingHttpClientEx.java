@@ -0,0 +1,62 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.context.rest;
+
+import com.microsoft.alm.client.AlmHttpClientBase;
+import com.microsoft.alm.client.model.ApiResourceVersion;
+import com.microsoft.alm.client.model.NameValueCollection;
+import com.microsoft.alm.workitemtracking.webapi.WorkItemTrackingHttpClient;
+import com.microsoft.alm.workitemtracking.webapi.models.Wiql;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemQueryResult;
+
+import javax.ws.rs.client.Client;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Extending WorkItemTrackingHttpClient with new/altered calls
+ */
+public class WorkItemTrackingHttpClientEx extends WorkItemTrackingHttpClient {
+
+    public WorkItemTrackingHttpClientEx(final Client jaxrsClient, final URI baseUrl) {
+        super(jaxrsClient, baseUrl);
+    }
+
+    /**
+     * Runs a WIQL query. The generated queryByWiql method can't pass timePrecision, without which the server
+     * only compares the date part of date fields and rejects dates with a time.
+     *
+     * @param wiql
+     * @param project
+     * @param timePrecision true to compare date fields with their time
+     * @return WorkItemQueryResult
+     */
+    public WorkItemQueryResult queryByWiql(
+            final Wiql wiql,
+            final UUID project,
+            final Boolean timePrecision) {
+
+        final UUID locationId = UUID.fromString("1a9c53f7-f243-4447-b110-35ef023636e4"); //$NON-NLS-1$
+        final ApiResourceVersion apiVersion = new ApiResourceVersion("1.0"); //$NON-NLS-1$
+
+        final Map<String, Object> routeValues = new HashMap<String, Object>();
+        routeValues.put("project", project); //$NON-NLS-1$
+
+        final NameValueCollection queryParameters = new NameValueCollection();
+        queryParameters.addIfNotNull("timePrecision", timePrecision); //$NON-NLS-1$
+
+        final Object httpRequest = super.createRequest(AlmHttpClientBase.HttpMethod.POST,
+                locationId,
+                routeValues,
+                apiVersion,
+                wiql,
+                APPLICATION_JSON_TYPE,
+                queryParameters,
+                APPLICATION_JSON_TYPE);
+
+        return super.sendRequest(httpRequest, WorkItemQueryResult.class);
+    }
+}
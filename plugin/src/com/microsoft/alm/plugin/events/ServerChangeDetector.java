@@ -0,0 +1,116 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.events;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells the polling manager whether anything changed on the server before it fires an event, so that listeners
+ * don't reload everything after every poll.
+ * <p/>
+ * The components that show server data register a change source for what they show (the pull requests of a repo,
+ * the latest builds, the work items of a team project). A source remembers a cheap watermark of the last thing it saw
+ * and asks the server only for what is newer. When an event has no sources, nobody can tell if it changed and it is
+ * fired as before.
+ * <p/>
+ * THREAD-SAFE
+ */
+public class ServerChangeDetector {
+    private static final Logger logger = LoggerFactory.getLogger(ServerChangeDetector.class);
+
+    /**
+     * The key of the ServerChanges in the context map of the events fired after a change was detected
+     */
+    public static final String CONTEXT_CHANGES = "changes";
+
+    /**
+     * Implement this to watch something on the server. The methods are called on the polling thread.
+     */
+    public interface Source {
+        ServerEvent getEvent();
+
+        /**
+         * Asks the server for what changed since the last call (or since the source was created) and remembers the
+         * new watermark, so the same change is only returned once.
+         *
+         * @return the changes, which are empty if nothing changed, or null if the source can't tell
+         */
+        ServerChanges detectChanges();
+    }
+
+    private final Map<String, Source> sources = new LinkedHashMap<String, Source>();
+
+    private static class Holder {
+        private static final ServerChangeDetector INSTANCE = new ServerChangeDetector();
+    }
+
+    public static ServerChangeDetector getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @VisibleForTesting
+    ServerChangeDetector() {
+    }
+
+    /**
+     * Adds a source or replaces the one with the same key. Components register again after every reload so that
+     * the source starts from what they show.
+     */
+    public synchronized void watch(final String key, final Source source) {
+        ArgumentHelper.checkNotEmptyString(key, "key");
+        ArgumentHelper.checkNotNull(source, "source");
+        sources.put(key, source);
+    }
+
+    public synchronized void unwatch(final String key) {
+        sources.remove(key);
+    }
+
+    /**
+     * Asks every source of the event what changed. This is a synchronous call to the server so it should only be
+     * called on a background thread.
+     *
+     * @return the changes of all sources or null if there are no sources or one of them can't tell
+     */
+    public ServerChanges detectChanges(final ServerEvent event) {
+        final List<Source> eventSources = new ArrayList<Source>();
+        synchronized (this) {
+            for (final Source source : sources.values()) {
+                if (source.getEvent() == event) {
+                    eventSources.add(source);
+                }
+            }
+        }
+        if (eventSources.isEmpty()) {
+            return null;
+        }
+
+        // Ask every source even when one can't tell, so that all of them move their watermarks forward
+        final ServerChanges changes = new ServerChanges();
+        boolean unknown = false;
+        for (final Source source : eventSources) {
+            try {
+                final ServerChanges sourceChanges = source.detectChanges();
+                if (sourceChanges == null) {
+                    unknown = true;
+                } else {
+                    changes.addAll(sourceChanges);
+                }
+            } catch (final Throwable t) {
+                logger.warn("detectChanges: asking the server for changes failed", t);
+                unknown = true;
+            }
+        }
+        logger.info("detectChanges: " + event.name() + (unknown ? " unknown" : " " + changes));
+        return unknown ? null : changes;
+    }
+}
@@ -0,0 +1,82 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.events;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The things that changed on the server since the last poll. It is passed to the listeners of a server event in the
+ * context map (see ServerChangeDetector.CONTEXT_CHANGES) so that they can update what they show instead of reloading
+ * everything.
+ * <p/>
+ * The items are whatever the change source works with: pull requests, builds or work item ids. Listeners get the ones
+ * they know about with the typed getters.
+ */
+public class ServerChanges {
+    private final List<Object> added = new ArrayList<Object>();
+    private final List<Object> updated = new ArrayList<Object>();
+    private final List<Object> removed = new ArrayList<Object>();
+
+    public ServerChanges addAdded(final Object item) {
+        ArgumentHelper.checkNotNull(item, "item");
+        added.add(item);
+        return this;
+    }
+
+    public ServerChanges addUpdated(final Object item) {
+        ArgumentHelper.checkNotNull(item, "item");
+        updated.add(item);
+        return this;
+    }
+
+    public ServerChanges addRemoved(final Object item) {
+        ArgumentHelper.checkNotNull(item, "item");
+        removed.add(item);
+        return this;
+    }
+
+    public ServerChanges addAll(final ServerChanges changes) {
+        if (changes != null) {
+            added.addAll(changes.added);
+            updated.addAll(changes.updated);
+            removed.addAll(changes.removed);
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    public <T> List<T> getAdded(final Class<T> type) {
+        return filter(added, type);
+    }
+
+    public <T> List<T> getUpdated(final Class<T> type) {
+        return filter(updated, type);
+    }
+
+    public <T> List<T> getRemoved(final Class<T> type) {
+        return filter(removed, type);
+    }
+
+    public String toString() {
+        return "added: " + added.size() + ", updated: " + updated.size() + ", removed: " + removed.size();
+    }
+
+    private static <T> List<T> filter(final Collection<Object> items, final Class<T> type) {
+        final List<T> result = new ArrayList<T>();
+        for (final Object item : items) {
+            if (type.isInstance(item)) {
+                result.add(type.cast(item));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -3,26 +3,84 @@
 
 package com.microsoft.alm.plugin.events;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.Timer;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Fires the server events on a background thread so that listeners requery the server. Each event has its own
+ * schedule:
+ * <ul>
+ * <li>the interval doubles (up to a max) every time a poll finds nothing new and goes back to the base interval
+ * when a change is reported</li>
+ * <li>local actions that will change things on the server (check-in, pull request creation) bring the next poll
+ * forward</li>
+ * <li>every interval is randomly stretched or shrunk by up to 20% so that many IDEs started at the same time
+ * don't all poll the server at the same moment</li>
+ * <li>no events are fired while the activity monitor says that the IDE isn't being used, the events that are due
+ * are fired as soon as it is used again</li>
+ * <li>an event that is due is only fired if the change detector finds a change, or can't tell, and the changes it
+ * found are passed to the listeners</li>
+ * </ul>
+ */
 public class ServerPollingManager {
     private static final Logger logger = LoggerFactory.getLogger(ServerPollingManager.class);
-    private static final int DEFAULT_POLLING_INTERVAL = 5 * 60 * 1000; // TODO eventually get from settings
+
+    // TODO eventually get these from settings
+    private static final long BUILDS_INTERVAL = TimeUnit.MINUTES.toMillis(2);
+    private static final long PULL_REQUESTS_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    private static final long WORK_ITEMS_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    // An interval doesn't grow past this many times its base interval
+    private static final int MAX_BACKOFF = 8;
+    private static final double JITTER = 0.2;
+    // How often the schedules are checked
+    private static final long TICK_MILLIS = TimeUnit.SECONDS.toMillis(15);
+
+    /**
+     * Tells the polling manager whether the IDE is in use. Polling stops while it isn't.
+     */
+    public interface ActivityMonitor {
+        boolean isActive();
+    }
 
     private final ServerEventManager eventManager;
-    private final Timer timer;
+    private final ServerChangeDetector changeDetector;
+    private final Random random = new Random();
+    private final Map<ServerEvent, Schedule> schedules = new EnumMap<ServerEvent, Schedule>(ServerEvent.class);
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> ticker;
+    private volatile ActivityMonitor activityMonitor;
     private boolean polling = false;
 
+    private static class Schedule {
+        private final long baseInterval;
+        private long interval;
+        // When the event should be fired next
+        private long due;
+        // A change was reported since the event was last fired
+        private boolean changed;
+        private boolean fired;
+
+        private Schedule(final long baseInterval) {
+            this.baseInterval = baseInterval;
+            this.interval = baseInterval;
+        }
+    }
+
     private static class Holder {
-        private static final ServerPollingManager INSTANCE = new ServerPollingManager(ServerEventManager.getInstance());
+        private static final ServerPollingManager INSTANCE = new ServerPollingManager(ServerEventManager.getInstance(),
+                ServerChangeDetector.getInstance());
     }
 
     public static ServerPollingManager getInstance() {
@@ -30,50 +88,183 @@ public class ServerPollingManager {
     }
 
     protected ServerPollingManager(final ServerEventManager eventManager) {
+        this(eventManager, new ServerChangeDetector());
+    }
+
+    protected ServerPollingManager(final ServerEventManager eventManager, final ServerChangeDetector changeDetector) {
         logger.info("ServerPollingManager created");
         ArgumentHelper.checkNotNull(eventManager, "eventManager");
+        ArgumentHelper.checkNotNull(changeDetector, "changeDetector");
         this.eventManager = eventManager;
-        timer = new Timer(Integer.MAX_VALUE, new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                timerFired();
-            }
-        });
+        this.changeDetector = changeDetector;
     }
 
     public void startPolling() {
-        startPolling(DEFAULT_POLLING_INTERVAL);
+        final Map<ServerEvent, Long> intervals = new EnumMap<ServerEvent, Long>(ServerEvent.class);
+        intervals.put(ServerEvent.BUILDS_CHANGED, BUILDS_INTERVAL);
+        intervals.put(ServerEvent.PULL_REQUESTS_CHANGED, PULL_REQUESTS_INTERVAL);
+        intervals.put(ServerEvent.WORK_ITEMS_CHANGED, WORK_ITEMS_INTERVAL);
+        startPolling(intervals);
     }
 
+    /**
+     * Starts polling for all events with the same base interval
+     */
     public void startPolling(final int intervalInMilliSeconds) {
+        final Map<ServerEvent, Long> intervals = new EnumMap<ServerEvent, Long>(ServerEvent.class);
+        intervals.put(ServerEvent.BUILDS_CHANGED, (long) intervalInMilliSeconds);
+        intervals.put(ServerEvent.PULL_REQUESTS_CHANGED, (long) intervalInMilliSeconds);
+        intervals.put(ServerEvent.WORK_ITEMS_CHANGED, (long) intervalInMilliSeconds);
+        startPolling(intervals);
+    }
+
+    private synchronized void startPolling(final Map<ServerEvent, Long> intervals) {
         logger.info("Polling started");
+        if (polling) {
+            return;
+        }
         polling = true;
-        if (!timer.isRunning()) {
-            timer.setInitialDelay(intervalInMilliSeconds);
-            timer.start();
+
+        final long now = System.currentTimeMillis();
+        long shortestInterval = TICK_MILLIS;
+        schedules.clear();
+        for (final Map.Entry<ServerEvent, Long> entry : intervals.entrySet()) {
+            final Schedule schedule = new Schedule(entry.getValue());
+            // Spread the first polls of IDEs that start together over the whole interval
+            schedule.due = now + (long) (random.nextDouble() * schedule.baseInterval);
+            schedules.put(entry.getKey(), schedule);
+            shortestInterval = Math.min(shortestInterval, schedule.baseInterval);
         }
+
+        final long tick = Math.max(1, shortestInterval);
+        ticker = getExecutor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // Don't let exceptions kill the scheduled task
+                try {
+                    poll(System.currentTimeMillis());
+                } catch (final Throwable t) {
+                    logger.warn("poll: firing the server events failed", t);
+                }
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
     }
 
-    public void stopPolling() {
+    public synchronized void stopPolling() {
         logger.info("Polling stopped");
         polling = false;
-        if (timer.isRunning()) {
-            timer.stop();
+        if (ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+    }
+
+    public void setActivityMonitor(final ActivityMonitor activityMonitor) {
+        this.activityMonitor = activityMonitor;
+    }
+
+    /**
+     * Called by whoever requeried the server after an event when the answer was different from the last time.
+     * The event then goes back to being polled at its base interval.
+     */
+    public synchronized void reportChange(final ServerEvent event) {
+        final Schedule schedule = schedules.get(event);
+        if (schedule != null) {
+            schedule.changed = true;
         }
     }
 
-    private void timerFired() {
-        logger.info("Timer fired");
-        timer.stop();
-        if (!polling) {
+    /**
+     * Called after a local action that will change things on the server soon, like a check-in that queues a build.
+     * The event goes back to its base interval, is fired within that interval and doesn't back off after that.
+     */
+    public synchronized void expectChange(final ServerEvent event) {
+        final Schedule schedule = schedules.get(event);
+        if (schedule != null) {
+            logger.info("expectChange: " + event.name());
+            schedule.interval = schedule.baseInterval;
+            schedule.changed = true;
+            schedule.due = Math.min(schedule.due, System.currentTimeMillis() + jitter(schedule.baseInterval));
+        }
+    }
+
+    @VisibleForTesting
+    void poll(final long now) {
+        final ActivityMonitor monitor = activityMonitor;
+        if (monitor != null && !monitor.isActive()) {
+            // The events that are due are fired on the first tick after the IDE is used again
+            return;
+        }
+
+        final Map<ServerEvent, Schedule> dueEvents = new EnumMap<ServerEvent, Schedule>(ServerEvent.class);
+        synchronized (this) {
+            if (!polling) {
+                return;
+            }
+            for (final Map.Entry<ServerEvent, Schedule> entry : schedules.entrySet()) {
+                final Schedule schedule = entry.getValue();
+                if (schedule.due <= now) {
+                    if (schedule.changed || !schedule.fired) {
+                        schedule.interval = schedule.baseInterval;
+                    } else {
+                        schedule.interval = Math.min(schedule.interval * 2, schedule.baseInterval * MAX_BACKOFF);
+                    }
+                    schedule.changed = false;
+                    schedule.fired = true;
+                    schedule.due = now + jitter(schedule.interval);
+                    dueEvents.put(entry.getKey(), schedule);
+                }
+            }
+        }
+
+        // Ask the server and fire the events outside of the lock since listeners may report changes right away
+        for (final ServerEvent event : dueEvents.keySet()) {
+            // A failure for one event must not keep the other due events from being fired
+            try {
+                fire(event);
+            } catch (final Throwable t) {
+                logger.warn("poll: firing " + event.name() + " failed", t);
+            }
+        }
+    }
+
+    private void fire(final ServerEvent event) {
+        final ServerChanges changes = changeDetector.detectChanges(event);
+        if (changes != null && changes.isEmpty()) {
+            // Nothing changed, so the event backs off
             return;
         }
 
-        // TODO: Ideally we would contact the server and see what actually changed, but there isn't any call for that, yet
-        // Fire all changed events
-        final Map<String,Object> eventContext = new HashMap<String,Object>();
+        final Map<String, Object> eventContext = new HashMap<String, Object>();
         eventContext.put("sender", "pollingManager");
-        eventManager.triggerAllEvents(eventContext);
-        timer.restart();
+        if (changes != null) {
+            eventContext.put(ServerChangeDetector.CONTEXT_CHANGES, changes);
+            reportChange(event);
+        }
+        eventManager.triggerEvent(event, eventContext);
+    }
+
+    @VisibleForTesting
+    synchronized long getInterval(final ServerEvent event) {
+        return schedules.get(event).interval;
+    }
+
+    @VisibleForTesting
+    synchronized long getDue(final ServerEvent event) {
+        return schedules.get(event).due;
+    }
+
+    private long jitter(final long interval) {
+        return (long) (interval * (1 - JITTER + 2 * JITTER * random.nextDouble()));
+    }
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("ServerPollingManager-%d")
+                    .build());
+        }
+        return executor;
     }
 }
@@ -0,0 +1,666 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.common.utils.SystemHelper;
+import com.microsoft.alm.plugin.external.utils.ProcessHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the output of all running tool processes with a small fixed set of threads. Before this each process had
+ * two reader threads and a waiter thread of its own.
+ * <p/>
+ * Java can't select on the pipes of a process, so each pump thread goes round the processes it owns and reads only
+ * what {@link InputStream#available()} says is in the pipe, which never blocks. When a pass finds nothing to read the
+ * thread backs off from 1 up to 8 milliseconds. A process that hasn't written anything for a while (like a warm process
+ * waiting for its next command) is parked and only looked at every 50 milliseconds, or right away when something is
+ * written to its standard input. Once a process has exited, what is left in its pipes is read to the
+ * end on one of a few drain threads, and then the listener is told that the process completed. Java already holds
+ * the last of the output of an exited process on Mac and Linux, so that read is quick. On Windows it blocks if a
+ * child of the process still holds the pipes open, so it is kept off the pump threads.
+ * <p/>
+ * The bytes of each stream are decoded into buffers that are reused, and a string is only made for each complete line.
+ * The lines are passed to the listener of each process in order by a small pool of listener threads that all of the
+ * processes share. Only one listener thread works on a process at a time, and it moves on to another process after a
+ * batch of lines, so a process with a lot of output doesn't hold up the rest. A listener that blocks keeps one of the
+ * listener threads, so listeners should only block briefly. A process whose listener falls too far behind isn't read
+ * until it catches up, which leaves the rest of its output in the pipe.
+ * <p/>
+ * The number of pump threads and listener threads can be changed with the system properties below.
+ */
+public class ToolOutputPump {
+    private static final Logger logger = LoggerFactory.getLogger(ToolOutputPump.class);
+
+    public static final String PROP_THREADS = "com.microsoft.alm.plugin.external.pump.threads";
+    public static final String PROP_LISTENER_THREADS = "com.microsoft.alm.plugin.external.pump.listenerThreads";
+
+    private static final int DEFAULT_THREADS = 2;
+    private static final int DEFAULT_LISTENER_THREADS = 4;
+    // How many events a listener thread passes to one process before letting the other processes have a turn
+    private static final int MAX_EVENTS_PER_DISPATCH = 256;
+    private static final int DRAIN_THREADS = 4;
+    private static final long MIN_IDLE_MILLIS = 1;
+    private static final long MAX_IDLE_MILLIS = 8;
+    private static final long DRAIN_POLL_MILLIS = 5;
+    private static final long PARK_AFTER_MILLIS = 100;
+    private static final long PARKED_POLL_MILLIS = 50;
+    // How many lines can be waiting for the listener before the process isn't read anymore
+    private static final int MAX_QUEUED_EVENTS = 1024;
+    private static final int BUFFER_SIZE = 8192;
+    // How many buffers to read from one stream in a pass before moving on, so one chatty process can't starve the rest
+    private static final int MAX_READS_PER_PASS = 4;
+
+    private final PumpThread[] threads;
+    private final ThreadPoolExecutor drainExecutor;
+    private final ThreadPoolExecutor listenerExecutor;
+
+    private static class Holder {
+        private static final ToolOutputPump INSTANCE = new ToolOutputPump(
+                getIntProperty(PROP_THREADS, DEFAULT_THREADS), getIntProperty(PROP_LISTENER_THREADS, DEFAULT_LISTENER_THREADS));
+    }
+
+    public static ToolOutputPump getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @VisibleForTesting
+    ToolOutputPump(final int threadCount, final int listenerThreadCount) {
+        threads = new PumpThread[Math.max(1, threadCount)];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new PumpThread("ToolOutputPump-" + i);
+            threads[i].start();
+        }
+        drainExecutor = new ThreadPoolExecutor(DRAIN_THREADS, DRAIN_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("ToolOutputPump-drain-%d")
+                .build());
+        drainExecutor.allowCoreThreadTimeOut(true);
+        final int listenerThreads = Math.max(1, listenerThreadCount);
+        listenerExecutor = new ThreadPoolExecutor(listenerThreads, listenerThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("ToolOutputPump-listener-%d")
+                .build());
+        listenerExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts reading the output of the process. The lines are passed to the listener as they arrive and the listener
+     * is called with completed or processException exactly once, after the last line.
+     */
+    public Handle register(final Process process, final ToolRunner.Listener listener) {
+        ArgumentHelper.checkNotNull(process, "process");
+        ArgumentHelper.checkNotNull(listener, "listener");
+
+        final Handle handle = new Handle(process, listener);
+        PumpThread leastBusy = threads[0];
+        for (final PumpThread thread : threads) {
+            if (thread.size() < leastBusy.size()) {
+                leastBusy = thread;
+            }
+        }
+        handle.owner = leastBusy;
+        leastBusy.add(handle);
+        return handle;
+    }
+
+    public int getThreadCount() {
+        return threads.length;
+    }
+
+    private static int getIntProperty(final String name, final int defaultValue) {
+        final String value = System.getProperty(name);
+        return value != null ? SystemHelper.toInt(value, defaultValue) : defaultValue;
+    }
+
+    private static boolean isRunning(final Process process) {
+        try {
+            process.exitValue();
+            return false;
+        } catch (final IllegalThreadStateException e) {
+            // exitValue throws if the process is still running
+            return true;
+        }
+    }
+
+    /**
+     * The output of one process. The streams are only ever read by one thread at a time: a pump thread while the
+     * process is running and a drain thread after it has exited. The listener is called by one thread at a time, in
+     * the order the events were queued.
+     */
+    public class Handle {
+        private final Process process;
+        private final ToolRunner.Listener listener;
+        private final LineReader standardOutput;
+        private final LineReader standardError;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        // The thread that is reading the streams right now, if any
+        private volatile Thread reader;
+
+        // The events waiting for the listener, guarded by the list
+        private final LinkedList<Event> events = new LinkedList<Event>();
+        private boolean dispatchScheduled;
+        private int queuedStandardOutput;
+        // The thread that is calling the listener right now, if any
+        private volatile Thread dispatcher;
+        private final AtomicLong linesDelivered = new AtomicLong();
+
+        // Only used by the pump thread that owns the handle
+        private PumpThread owner;
+        private long lastOutputMillis = System.currentTimeMillis();
+        private long nextPollMillis;
+        private volatile boolean parked;
+
+        private Handle(final Process process, final ToolRunner.Listener listener) {
+            this.process = process;
+            this.listener = listener;
+            this.standardOutput = new LineReader(process.getInputStream(), false, this);
+            this.standardError = new LineReader(process.getErrorStream(), true, this);
+        }
+
+        /**
+         * Kills the process if it is still running. If the listener has not been called yet it gets a processException
+         * and the lines that are still waiting for it are dropped.
+         */
+        public void cancel() {
+            if (finished.get()) {
+                return;
+            }
+            try {
+                ProcessHelper.destroyProcessTree(process);
+            } catch (final Throwable t) {
+                logger.warn("Failed to destroy process.", t);
+            }
+            if (finished.compareAndSet(false, true)) {
+                synchronized (events) {
+                    events.clear();
+                    queuedStandardOutput = 0;
+                }
+                enqueue(new Event(Event.EXCEPTION, null, 0,
+                        new InterruptedException("The process was stopped before it finished")));
+            }
+        }
+
+        /**
+         * Tells the pump to look at the process right away, since it is about to write something. Call this after
+         * writing to the standard input of a parked process.
+         */
+        public void wakeUp() {
+            if (parked) {
+                parked = false;
+                final PumpThread thread = owner;
+                if (thread != null) {
+                    thread.wakeUp();
+                }
+            }
+        }
+
+        /**
+         * Blocks until all of the standard output that the process has written so far has been passed to the listener.
+         * When this is called from a listener callback, the standard output that is waiting behind the callback is
+         * passed to the listener right away on the calling thread.
+         *
+         * @return false if the output was not drained within the timeout
+         */
+        public boolean waitForStandardOutputDrained(final long timeout, final TimeUnit unit) throws InterruptedException {
+            final boolean fromListener = dispatcher == Thread.currentThread();
+            wakeUp();
+            final long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+            long lastLinesDelivered = -1;
+            while (System.currentTimeMillis() < deadline) {
+                if (fromListener) {
+                    dispatchStandardOutput();
+                }
+                // Nothing can be left in the pipe for two checks in a row while nobody is reading it
+                final long linesDelivered = this.linesDelivered.get();
+                final boolean drained = getQueuedStandardOutput() == 0
+                        && (finished.get() || (reader == null && standardOutput.isEmpty()));
+                if (drained && linesDelivered == lastLinesDelivered) {
+                    return true;
+                }
+                lastLinesDelivered = drained ? linesDelivered : -1;
+                Thread.sleep(DRAIN_POLL_MILLIS);
+            }
+            return false;
+        }
+
+        /**
+         * Reads what is in the pipes without blocking.
+         *
+         * @return true if the handle is done with and can be dropped by the pump thread
+         */
+        private boolean pump(final boolean[] readAny) {
+            if (finished.get()) {
+                close();
+                return true;
+            }
+            if (isBacklogged()) {
+                // Leave the output in the pipe until the listener catches up
+                return false;
+            }
+
+            reader = Thread.currentThread();
+            try {
+                // Check first so that nothing written before the exit is missed
+                final boolean exited = !isRunning(process);
+                readAny[0] |= standardOutput.readAvailable(MAX_READS_PER_PASS);
+                readAny[0] |= standardError.readAvailable(MAX_READS_PER_PASS);
+                if (exited) {
+                    drainExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            drain();
+                        }
+                    });
+                    return true;
+                }
+            } catch (final Throwable t) {
+                logger.warn("Failed to process output.", t);
+                fail(t);
+                close();
+                return true;
+            } finally {
+                reader = null;
+            }
+            return false;
+        }
+
+        private void drain() {
+            reader = Thread.currentThread();
+            try {
+                standardOutput.readToEnd();
+                standardError.readToEnd();
+                if (finished.compareAndSet(false, true)) {
+                    enqueue(new Event(Event.COMPLETED, null, process.exitValue(), null));
+                }
+            } catch (final Throwable t) {
+                logger.warn("Failed to process output.", t);
+                fail(t);
+            } finally {
+                reader = null;
+                close();
+            }
+        }
+
+        private void fail(final Throwable throwable) {
+            if (finished.compareAndSet(false, true)) {
+                enqueue(new Event(Event.EXCEPTION, null, 0, throwable));
+            }
+        }
+
+        private void close() {
+            standardOutput.close();
+            standardError.close();
+        }
+
+        private void enqueueLine(final String text, final boolean isStandardError) {
+            enqueue(new Event(isStandardError ? Event.STANDARD_ERROR : Event.STANDARD_OUTPUT, text, 0, null));
+        }
+
+        private void enqueue(final Event event) {
+            synchronized (events) {
+                events.addLast(event);
+                if (event.type == Event.STANDARD_OUTPUT) {
+                    queuedStandardOutput++;
+                }
+                if (dispatchScheduled) {
+                    return;
+                }
+                dispatchScheduled = true;
+            }
+            scheduleDispatch();
+        }
+
+        private void scheduleDispatch() {
+            listenerExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    dispatchBatch();
+                }
+            });
+        }
+
+        /**
+         * Passes the waiting events to the listener, up to a batch of them. If more are left the rest are passed
+         * after the other processes that are waiting for a listener thread.
+         */
+        private void dispatchBatch() {
+            dispatcher = Thread.currentThread();
+            try {
+                for (int i = 0; i < MAX_EVENTS_PER_DISPATCH; i++) {
+                    final Event event;
+                    synchronized (events) {
+                        if (events.isEmpty()) {
+                            dispatchScheduled = false;
+                            return;
+                        }
+                        event = events.removeFirst();
+                    }
+                    dispatch(event);
+                }
+            } finally {
+                dispatcher = null;
+            }
+            // Still scheduled, so nobody else queues this process in the meantime
+            scheduleDispatch();
+        }
+
+        /**
+         * Passes the standard output that is waiting to the listener ahead of the other events
+         */
+        private void dispatchStandardOutput() {
+            while (true) {
+                Event next = null;
+                synchronized (events) {
+                    final Iterator<Event> iterator = events.iterator();
+                    while (iterator.hasNext()) {
+                        final Event event = iterator.next();
+                        if (event.type == Event.STANDARD_OUTPUT) {
+                            iterator.remove();
+                            next = event;
+                            break;
+                        }
+                    }
+                }
+                if (next == null) {
+                    return;
+                }
+                dispatch(next);
+            }
+        }
+
+        private void dispatch(final Event event) {
+            try {
+                switch (event.type) {
+                    case Event.STANDARD_OUTPUT:
+                        listener.processStandardOutput(event.text);
+                        break;
+                    case Event.STANDARD_ERROR:
+                        listener.processStandardError(event.text);
+                        break;
+                    case Event.COMPLETED:
+                        listener.completed(event.returnCode);
+                        break;
+                    default:
+                        listener.processException(event.error);
+                        break;
+                }
+            } catch (final Throwable t) {
+                // Keep going so that the listener still hears how the process ended
+                logger.warn("Listener failed to process output.", t);
+            } finally {
+                if (event.type == Event.STANDARD_OUTPUT) {
+                    synchronized (events) {
+                        if (queuedStandardOutput > 0) {
+                            queuedStandardOutput--;
+                        }
+                    }
+                    linesDelivered.incrementAndGet();
+                }
+            }
+        }
+
+        private int getQueuedStandardOutput() {
+            synchronized (events) {
+                return queuedStandardOutput;
+            }
+        }
+
+        private boolean isBacklogged() {
+            synchronized (events) {
+                return events.size() >= MAX_QUEUED_EVENTS;
+            }
+        }
+    }
+
+    /**
+     * A line of output or the end of the process, waiting to be passed to the listener
+     */
+    private static class Event {
+        private static final int STANDARD_OUTPUT = 0;
+        private static final int STANDARD_ERROR = 1;
+        private static final int COMPLETED = 2;
+        private static final int EXCEPTION = 3;
+
+        private final int type;
+        private final String text;
+        private final int returnCode;
+        private final Throwable error;
+
+        private Event(final int type, final String text, final int returnCode, final Throwable error) {
+            this.type = type;
+            this.text = text;
+            this.returnCode = returnCode;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Splits the bytes of one stream into lines the same way BufferedReader.readLine does: a line ends at \n, \r or
+     * \r\n, and what is left at the end of the stream is the last line.
+     */
+    private static class LineReader {
+        private final InputStream stream;
+        private final boolean isStandardError;
+        private final Handle handle;
+        private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        // A byte never decodes to more than one char, so this can't overflow
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        private final StringBuilder line = new StringBuilder();
+        private boolean skipLineFeed;
+
+        public LineReader(final InputStream stream, final boolean isStandardError, final Handle handle) {
+            ArgumentHelper.checkNotNull(stream, "stream");
+            this.stream = stream;
+            this.isStandardError = isStandardError;
+            this.handle = handle;
+        }
+
+        /**
+         * Reads up to the given number of buffers of whatever is already in the pipe
+         *
+         * @return true if anything was read
+         */
+        public boolean readAvailable(final int maxReads) throws IOException {
+            boolean readAny = false;
+            for (int i = 0; i < maxReads; i++) {
+                final int available = stream.available();
+                if (available <= 0 || read(available) < 0) {
+                    break;
+                }
+                readAny = true;
+            }
+            return readAny;
+        }
+
+        public void readToEnd() throws IOException {
+            while (read(BUFFER_SIZE) >= 0) {
+                // Keep going until the pipe is closed
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, true);
+            decoder.flush(chars);
+            bytes.clear();
+            split();
+            if (line.length() > 0) {
+                dispatch();
+            }
+        }
+
+        public boolean isEmpty() {
+            try {
+                return stream.available() == 0;
+            } catch (final IOException e) {
+                // The stream is closed so there is nothing left to read
+                return true;
+            }
+        }
+
+        public void close() {
+            try {
+                stream.close();
+            } catch (final IOException e) {
+                logger.warn("Failed to close stream.", e);
+            }
+        }
+
+        private int read(final int max) throws IOException {
+            final int count = stream.read(bytes.array(), bytes.position(), Math.min(max, bytes.remaining()));
+            if (count < 0) {
+                return count;
+            }
+            bytes.position(bytes.position() + count);
+            bytes.flip();
+            decoder.decode(bytes, chars, false);
+            // Keep the start of a character that was split across reads
+            bytes.compact();
+            split();
+            return count;
+        }
+
+        private void split() {
+            chars.flip();
+            final char[] array = chars.array();
+            final int end = chars.limit();
+            int start = 0;
+            for (int i = 0; i < end; i++) {
+                final char c = array[i];
+                if (c == '\n' || c == '\r') {
+                    line.append(array, start, i - start);
+                    start = i + 1;
+                    if (c == '\n' && skipLineFeed) {
+                        skipLineFeed = false;
+                        continue;
+                    }
+                    skipLineFeed = c == '\r';
+                    dispatch();
+                } else {
+                    skipLineFeed = false;
+                }
+            }
+            line.append(array, start, end - start);
+            chars.clear();
+        }
+
+        private void dispatch() {
+            final String text = line.toString();
+            line.setLength(0);
+            handle.enqueueLine(text, isStandardError);
+        }
+    }
+
+    /**
+     * Goes round the handles it owns until each of them is done with. The handles that are parked are only looked at
+     * every PARKED_POLL_MILLIS.
+     */
+    private static class PumpThread extends Thread {
+        private final List<Handle> handles = new ArrayList<Handle>();
+
+        public PumpThread(final String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        public synchronized void add(final Handle handle) {
+            handles.add(handle);
+            notifyAll();
+        }
+
+        public synchronized int size() {
+            return handles.size();
+        }
+
+        public synchronized void wakeUp() {
+            notifyAll();
+        }
+
+        private synchronized void remove(final Handle handle) {
+            handles.remove(handle);
+        }
+
+        @Override
+        public void run() {
+            final List<Handle> pass = new ArrayList<Handle>();
+            final boolean[] readAny = new boolean[1];
+            final boolean[] handleReadAny = new boolean[1];
+            long idleMillis = MIN_IDLE_MILLIS;
+            while (true) {
+                try {
+                    synchronized (this) {
+                        while (handles.isEmpty()) {
+                            wait();
+                        }
+                        pass.clear();
+                        pass.addAll(handles);
+                    }
+
+                    readAny[0] = false;
+                    boolean allParked = true;
+                    final long now = System.currentTimeMillis();
+                    for (final Handle handle : pass) {
+                        if (handle.parked && now < handle.nextPollMillis) {
+                            continue;
+                        }
+                        handleReadAny[0] = false;
+                        if (handle.pump(handleReadAny)) {
+                            remove(handle);
+                            continue;
+                        }
+                        if (handleReadAny[0]) {
+                            readAny[0] = true;
+                            handle.lastOutputMillis = now;
+                            handle.parked = false;
+                        } else if (handle.parked || now - handle.lastOutputMillis >= PARK_AFTER_MILLIS) {
+                            handle.parked = true;
+                            handle.nextPollMillis = now + PARKED_POLL_MILLIS;
+                        }
+                        allParked &= handle.parked;
+                    }
+                    pass.clear();
+
+                    if (readAny[0]) {
+                        idleMillis = MIN_IDLE_MILLIS;
+                    } else {
+                        synchronized (this) {
+                            // add and wakeUp cut this short
+                            wait(allParked ? PARKED_POLL_MILLIS : idleMillis);
+                        }
+                        idleMillis = Math.min(idleMillis * 2, MAX_IDLE_MILLIS);
+                    }
+                } catch (final InterruptedException e) {
+                    logger.warn("PumpThread: interrupted, no more output will be read by " + getName());
+                    return;
+                } catch (final Throwable t) {
+                    // Don't let one bad process stop the output of every other process
+                    logger.warn("PumpThread: unexpected failure", t);
+                }
+            }
+        }
+    }
+}
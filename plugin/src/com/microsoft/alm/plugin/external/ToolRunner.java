@@ -3,7 +3,6 @@
 
 package com.microsoft.alm.plugin.external;
 
-import com.google.common.util.concurrent.SettableFuture;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
 import com.microsoft.alm.plugin.external.utils.ProcessHelper;
@@ -11,18 +10,17 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -36,10 +34,12 @@ public class ToolRunner {
     private Process toolProcess;
     private final String toolLocation;
     private final String workingDirectory;
-    private StreamProcessor standardErrorProcessor;
-    private StreamProcessor standardOutProcessor;
-    private ProcessWaiter processWaiter;
+    // The output of the process is read by the shared pump instead of threads of its own
+    private volatile ToolOutputPump.Handle output;
     private ListenerProxy listenerProxy;
+    private BufferedWriter standardInputWriter;
+    // The temporary file that holds the arguments when they are too long for the command line
+    private File responseFile;
 
     /**
      * Implement this class to get callbacks on events triggered by the ToolRunner.
@@ -137,6 +137,18 @@ public class ToolRunner {
             return Collections.unmodifiableList(commandLineParts);
         }
 
+        /**
+         * Returns the length of the arguments when they are put on a command line, without the tool location
+         */
+        public int getLength() {
+            int length = 0;
+            for (final String argument : arguments) {
+                // Each argument may be quoted and is followed by a space
+                length += argument.length() + 3;
+            }
+            return length;
+        }
+
         /**
          * Use this method to easily log all of the arguments.
          * Secret arguments will be shown as *******
@@ -174,20 +186,10 @@ public class ToolRunner {
         logger.info("arguments: " + argumentBuilder.toString());
 
         try {
-            SettableFuture<Boolean> standardOutputFlushed = SettableFuture.create();
-            SettableFuture<Boolean> standardErrorFlushed = SettableFuture.create();
-
             // Create and start the process from the tool location and working directory
             // (it is perfectly okay if working directly is null here. null == not set)
             toolProcess = ProcessHelper.startProcess(workingDirectory, argumentBuilder.build(toolLocation));
-            final InputStream stderr = toolProcess.getErrorStream();
-            final InputStream stdout = toolProcess.getInputStream();
-            standardErrorProcessor = new StreamProcessor(stderr, true, listenerProxy, standardErrorFlushed);
-            standardErrorProcessor.start();
-            standardOutProcessor = new StreamProcessor(stdout, false, listenerProxy, standardOutputFlushed);
-            standardOutProcessor.start();
-            processWaiter = new ProcessWaiter(toolProcess, listenerProxy, standardErrorFlushed, standardOutputFlushed);
-            processWaiter.start();
+            output = ToolOutputPump.getInstance().register(toolProcess, listenerProxy);
             return toolProcess;
         } catch (final IOException e) {
             logger.warn("Failed to start tool process or redirect output.", e);
@@ -197,31 +199,163 @@ public class ToolRunner {
         return null;
     }
 
+    /**
+     * Starts the process with its arguments in a temporary response file ("@file") instead of on the command line.
+     * Use this when the arguments are too long for the command line. The file is deleted when the process completes
+     * or is disposed.
+     */
+    public Process startWithResponseFile(final ArgumentBuilder argumentBuilder) {
+        ArgumentHelper.checkNotNull(argumentBuilder, "argumentBuilder");
+        logger.info("ToolRunner.startWithResponseFile: arguments: " + argumentBuilder.toString());
+
+        try {
+            setResponseFile(writeResponseFile(argumentBuilder));
+        } catch (final IOException e) {
+            logger.warn("Failed to write the response file.", e);
+            listenerProxy.processException(e);
+            return null;
+        }
+        listenerProxy.addListener(new Listener() {
+            @Override
+            public void processStandardOutput(final String line) {
+            }
+
+            @Override
+            public void processStandardError(final String line) {
+            }
+
+            @Override
+            public void processException(final Throwable throwable) {
+            }
+
+            @Override
+            public void completed(final int returnCode) {
+                deleteResponseFile();
+            }
+        });
+
+        final Process process = start(new ArgumentBuilder()
+                .setWorkingDirectory(argumentBuilder.getWorkingDirectory())
+                .add("@" + getResponseFile().getPath()));
+        if (process == null) {
+            deleteResponseFile();
+        }
+        return process;
+    }
+
     public Process sendArgsViaStandardInput(final ArgumentBuilder argumentBuilder) {
         ArgumentHelper.checkNotNull(toolProcess, "toolProcess");
         ArgumentHelper.checkNotNull(argumentBuilder, "argumentBuilder");
         logger.info("sendArgsViaStandardInput: proceedWithArgs: " + argumentBuilder.toString());
-        final OutputStream stdin = toolProcess.getOutputStream();
-        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stdin));
+        final BufferedWriter writer = getStandardInputWriter();
         try {
-            for (final String arg : argumentBuilder.build()) {
-                final String escapedArg = escapeArgument(arg);
-                writer.write(escapedArg);
-                writer.write(" ");
-            }
-            writer.write("\n");
-            writer.flush();
+            writeArgs(writer, argumentBuilder);
         } catch (final Throwable throwable) {
             logger.warn("Error sending args.", throwable);
             listenerProxy.processException(throwable);
         } finally {
+            closeStandardInput();
+        }
+        return toolProcess;
+    }
+
+    /**
+     * Writes one line of arguments to standard input and leaves it open so that more lines can be sent later.
+     * This is used by long running "@" mode processes that execute one command per line.
+     */
+    public synchronized void writeArgsToStandardInput(final ArgumentBuilder argumentBuilder) throws IOException {
+        ArgumentHelper.checkNotNull(toolProcess, "toolProcess");
+        ArgumentHelper.checkNotNull(argumentBuilder, "argumentBuilder");
+        logger.info("writeArgsToStandardInput: args: " + argumentBuilder.toString());
+        writeArgs(getStandardInputWriter(), argumentBuilder);
+    }
+
+    private synchronized BufferedWriter getStandardInputWriter() {
+        if (standardInputWriter == null) {
+            standardInputWriter = new BufferedWriter(new OutputStreamWriter(toolProcess.getOutputStream()));
+        }
+        return standardInputWriter;
+    }
+
+    private synchronized void closeStandardInput() {
+        if (standardInputWriter != null) {
             try {
-                writer.close();
+                standardInputWriter.close();
             } catch (final IOException e) {
                 logger.warn("Unable to close the writer.", e);
             }
+            standardInputWriter = null;
+        }
+    }
+
+    private void writeArgs(final BufferedWriter writer, final ArgumentBuilder argumentBuilder) throws IOException {
+        for (final String arg : argumentBuilder.build()) {
+            final String escapedArg = escapeArgument(arg);
+            writer.write(escapedArg);
+            writer.write(" ");
+        }
+        writer.write("\n");
+        writer.flush();
+        // The process is about to write its output, so make sure the pump is looking at it
+        final ToolOutputPump.Handle currentOutput = output;
+        if (currentOutput != null) {
+            currentOutput.wakeUp();
+        }
+    }
+
+    /**
+     * Writes the arguments to a new temporary file in the same form as they are sent to standard input. The file may
+     * hold the login, so only the current user can read it.
+     */
+    private File writeResponseFile(final ArgumentBuilder argumentBuilder) throws IOException {
+        final File file = File.createTempFile("tfargs", ".rsp");
+        try {
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+            final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
+            try {
+                writeArgs(writer, argumentBuilder);
+            } finally {
+                writer.close();
+            }
+            return file;
+        } catch (final IOException e) {
+            if (!file.delete()) {
+                logger.warn("Unable to delete the response file " + file.getPath());
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void setResponseFile(final File file) {
+        responseFile = file;
+    }
+
+    private synchronized File getResponseFile() {
+        return responseFile;
+    }
+
+    private synchronized void deleteResponseFile() {
+        if (responseFile != null) {
+            if (!responseFile.delete() && responseFile.exists()) {
+                logger.warn("Unable to delete the response file " + responseFile.getPath());
+            }
+            responseFile = null;
         }
-        return toolProcess;
+    }
+
+    /**
+     * Blocks until all of the standard output that the process has written so far has been passed to the listeners.
+     * Output written to standard error and standard output is read from different pipes, so a line seen on standard
+     * error can arrive before the standard output that was written ahead of it.
+     *
+     * @return false if the output was not drained within the timeout
+     */
+    public boolean waitForStandardOutputDrained(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final ToolOutputPump.Handle currentOutput = output;
+        return currentOutput == null || currentOutput.waitForStandardOutputDrained(timeout, unit);
     }
 
     /**
@@ -237,29 +371,37 @@ public class ToolRunner {
     }
 
     /**
-     * Call the dispose method to make sure all threads are cleaned up and disposed of properly.
+     * Returns true if the process has been started and has not exited yet.
      */
-    public void dispose() {
+    public boolean isRunning() {
+        if (toolProcess == null) {
+            return false;
+        }
         try {
-            if (processWaiter != null) {
-                processWaiter.cleanUp();
-                processWaiter = null;
-            }
-            if (standardErrorProcessor != null) {
-                standardErrorProcessor.cleanUp();
-                standardErrorProcessor = null;
-            }
-            if (standardOutProcessor != null) {
-                standardOutProcessor.cleanUp();
-                standardOutProcessor = null;
-            }
-        } catch (final InterruptedException e) {
-            logger.warn("Failed to dispose ToolRunner.", e);
+            toolProcess.exitValue();
+            return false;
+        } catch (final IllegalThreadStateException e) {
+            // exitValue throws if the process is still running
+            return true;
+        }
+    }
+
+    /**
+     * Call the dispose method to kill the process if it is still running and stop reading its output.
+     */
+    public void dispose() {
+        closeStandardInput();
+        deleteResponseFile();
+        final ToolOutputPump.Handle currentOutput = output;
+        if (currentOutput != null) {
+            currentOutput.cancel();
+            output = null;
         }
     }
 
     private static class ListenerProxy implements Listener {
-        private final List<Listener> listeners = new ArrayList<Listener>(2);
+        // Listeners can be added to a warm process while the pump is already reading its output
+        private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
         public ListenerProxy() {
         }
@@ -296,131 +438,4 @@ public class ToolRunner {
             }
         }
     }
-
-    /**
-     * This internal class is used to manage the thread that waits on the process to finish.
-     * It takes in the process to wait on and the listener to issue callbacks to.
-     */
-    private static class ProcessWaiter extends Thread {
-        private boolean processRunning;
-        private final Process process;
-        private final Listener listener;
-        private final SettableFuture<Boolean> errorsFlushed;
-        private final SettableFuture<Boolean> outputFlushed;
-
-        public ProcessWaiter(final Process process, final Listener listener, final SettableFuture<Boolean> errorsFlushed, final SettableFuture<Boolean> outputFlushed) {
-            ArgumentHelper.checkNotNull(process, "process");
-            ArgumentHelper.checkNotNull(listener, "listener");
-            this.process = process;
-            this.listener = listener;
-            this.errorsFlushed = errorsFlushed;
-            this.outputFlushed = outputFlushed;
-        }
-
-        @Override
-        public void run() {
-            // Don't let exceptions escape from this top level method
-            try {
-                processRunning = true;
-                // Wait for the process to finish
-                process.waitFor();
-                // Wait for the output streams to be flushed
-                errorsFlushed.get(30, TimeUnit.SECONDS);
-                outputFlushed.get(30, TimeUnit.SECONDS);
-                // Clear the member variable so we don't try to destroy the process later
-                processRunning = false;
-                // Call the completed event on the listener with the exit code
-                listener.completed(process.exitValue());
-            } catch (Throwable e) {
-                logger.warn("Failed to wait for process exit.", e);
-                listener.processException(e);
-            }
-        }
-
-        /**
-         * This method forces the thread to end by interrupting it and joining with the calling thread.
-         *
-         * @throws InterruptedException
-         */
-        public void cleanUp() throws InterruptedException {
-            if (processRunning) {
-                try {
-                    process.destroy();
-                } catch (final Throwable t) {
-                    logger.warn("Failed to destroy process.", t);
-                }
-            }
-            this.interrupt();
-            this.join();
-        }
-    }
-
-    /**
-     * This internal class is used to manage the threads that receive the output from the process.
-     * One thread is created to listen for standard output and one is created to listen to standard error.
-     * The constructor takes in the stream to listen to, what kind of stream it is, and the listener to
-     * issue callbacks to.
-     */
-    private static class StreamProcessor extends Thread {
-
-        private final InputStream stream;
-        private final boolean isStandardError;
-        private final Listener listener;
-        private final SettableFuture<Boolean> flushed;
-
-        public StreamProcessor(final InputStream stream, final boolean isStandardError, final Listener listener, final SettableFuture<Boolean> flushed) {
-            ArgumentHelper.checkNotNull(stream, "stream");
-            ArgumentHelper.checkNotNull(listener, "listener");
-            ArgumentHelper.checkNotNull(flushed, "flushed");
-            this.stream = stream;
-            this.isStandardError = isStandardError;
-            this.listener = listener;
-            this.flushed = flushed;
-        }
-
-        @Override
-        public void run() {
-            BufferedReader bufferedReader = null;
-
-            // Don't let exceptions escape from this top level method
-            try {
-                // Create a buffered reader so that we can process the output one line at a time
-                bufferedReader = new BufferedReader(new InputStreamReader(stream));
-                String line;
-                while ((line = bufferedReader.readLine()) != null) {
-                    // Call the appropriate event with the line that was read
-                    if (isStandardError) {
-                        listener.processStandardError(line);
-                    } else {
-                        listener.processStandardOutput(line);
-                    }
-                }
-            } catch (Throwable e) {
-                logger.warn("Failed to process output.", e);
-                listener.processException(e);
-            } finally {
-                // Don't let exceptions escape from this top level method
-                try {
-                    // Make sure to close the buffered reader
-                    if (bufferedReader != null) {
-                        bufferedReader.close();
-                    }
-                    flushed.set(true);
-                } catch (Throwable e) {
-                    logger.warn("Failed to close buffer.", e);
-                    listener.processException(e);
-                }
-            }
-        }
-
-        /**
-         * This method forces the thread to end by interrupting it and joining with the calling thread.
-         *
-         * @throws InterruptedException
-         */
-        public void cleanUp() throws InterruptedException {
-            this.interrupt();
-            this.join();
-        }
-    }
 }
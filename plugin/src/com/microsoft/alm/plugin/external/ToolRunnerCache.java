@@ -3,19 +3,65 @@
 
 package com.microsoft.alm.plugin.external;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.common.utils.SystemHelper;
 import com.microsoft.alm.plugin.external.models.ToolVersion;
 import com.microsoft.alm.plugin.external.tools.TfTool;
+import com.microsoft.alm.plugin.external.utils.CommandLineHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * This class keeps a pool of pre-warmed TF command line processes for each tool location and working directory.
+ * A warm process has been started with the "@" argument and is waiting for its real arguments on standard input.
+ * <p/>
+ * Each pool keeps between a minimum and a maximum number of idle processes. The target size grows on a cache miss
+ * and decays back to the minimum when the pool is idle. A background reaper removes processes that have died,
+ * processes that have been waiting for longer than the max age (they may be hung or holding stale state) and
+ * pools that have not been used for a long time. Warm processes are handed out without blocking; replacements
+ * are started in the background.
+ * <p/>
+ * The pool sizes and timeouts can be changed with the system properties below.
+ */
 public class ToolRunnerCache {
     private static final Logger logger = LoggerFactory.getLogger(ToolRunnerCache.class);
 
-    private static ConcurrentMap<String, ToolRunner> cache = new ConcurrentHashMap<String, ToolRunner>(3);
+    public static final String PROP_MIN_POOL_SIZE = "com.microsoft.alm.plugin.external.pool.minSize";
+    public static final String PROP_MAX_POOL_SIZE = "com.microsoft.alm.plugin.external.pool.maxSize";
+    public static final String PROP_IDLE_TIMEOUT_SECONDS = "com.microsoft.alm.plugin.external.pool.idleTimeoutSeconds";
+
+    private static final int DEFAULT_MIN_POOL_SIZE = 1;
+    private static final int DEFAULT_MAX_POOL_SIZE = 4;
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 5 * 60;
+    // Warm processes older than this are recycled even if they look healthy
+    private static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // Pools that are not used for this long are emptied and removed
+    private static final long POOL_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(60);
+    private static final long REAPER_INTERVAL_SECONDS = 30;
+
+    private static final ConcurrentMap<String, Pool> pools = new ConcurrentHashMap<String, Pool>(3);
+    private static final Metrics metrics = new Metrics();
+
+    private static int minPoolSize = getIntProperty(PROP_MIN_POOL_SIZE, DEFAULT_MIN_POOL_SIZE);
+    private static int maxPoolSize = Math.max(minPoolSize, getIntProperty(PROP_MAX_POOL_SIZE, DEFAULT_MAX_POOL_SIZE));
+    private static long idleTimeoutMillis = TimeUnit.SECONDS.toMillis(getIntProperty(PROP_IDLE_TIMEOUT_SECONDS, DEFAULT_IDLE_TIMEOUT_SECONDS));
+
+    private static ScheduledExecutorService scheduler;
+    private static Executor spawnExecutor;
 
     public static ToolRunner getRunningToolRunner(final String toolLocation, final ToolRunner.ArgumentBuilder argumentBuilder, final ToolRunner.Listener listener) {
         logger.info("getRunningToolRunner: toolLocation={0}", toolLocation);
@@ -23,42 +69,119 @@ public class ToolRunnerCache {
 
         // Check the version
         final ToolVersion version = TfTool.getCachedVersion();
-        if (version == null || version.compare(TfTool.TF_MIN_VERSION) < 0) {
+        if (!isPoolingSupported(version)) {
             // If it is older than the min version then just return a new ToolRunner and start it
             logger.info("getRunningToolRunner: slow version - " + version);
             toolRunner = startToolRunner(toolLocation, argumentBuilder, listener);
         } else {
-            // check the cache and try to get one that is already running
+            // check the pool and try to get one that is already running
             logger.info("getRunningToolRunner: fast version - " + version);
-            final String key = getKey(toolLocation, argumentBuilder);
-            logger.info("getRunningToolRunner: key=" + key);
+            final Pool pool = getPool(toolLocation, argumentBuilder.getWorkingDirectory());
 
-            // If there is already one cached, then remove it and use it
-            toolRunner = cache.remove(key);
+            toolRunner = pool.checkOut();
             if (toolRunner == null) {
                 // Cache miss, so create a new one
-                logger.info("getRunningToolRunner: cache miss.");
-                toolRunner = startToolRunner(toolLocation, getStartAndWaitArguments(argumentBuilder), listener);
+                logger.info("getRunningToolRunner: cache miss. key=" + pool.key);
+                metrics.misses.incrementAndGet();
+                pool.grow();
+                toolRunner = startToolRunner(toolLocation, getStartAndWaitArguments(argumentBuilder.getWorkingDirectory()), listener);
             } else {
                 // Cache hit, but we need to add the listener
+                logger.info("getRunningToolRunner: cache hit. key=" + pool.key);
+                metrics.hits.incrementAndGet();
                 toolRunner.addListener(listener);
             }
 
             // The toolRunner should already be started, we just need to send the args in
             toolRunner.sendArgsViaStandardInput(argumentBuilder);
 
-            // Add another instance to the cache for later
-            //TODO: clear all or part of the cache to make sure we aren't leaking memory by never cleaning up
-            updateCachedInstance(key, toolLocation, argumentBuilder);
+            // Replace what we just took out of the pool in the background
+            pool.fill();
         }
 
         return toolRunner;
     }
 
+    /**
+     * Returns true if the version of the tool can read its arguments from standard input ("@" mode). Older versions
+     * are started with a new process for every command, so callers should split long lists of items into several
+     * commands; arguments that are still too long for the command line are passed in a temporary response file.
+     */
+    public static boolean isArgumentInputSupported() {
+        return isPoolingSupported(TfTool.getCachedVersion());
+    }
+
+    /**
+     * Starts the minimum number of warm processes for the given tool location and working directory.
+     * This returns immediately; the processes are started in the background.
+     */
+    public static void warmUp(final String toolLocation, final String workingDirectory) {
+        if (!isPoolingSupported(TfTool.getCachedVersion())) {
+            logger.info("warmUp: the version of the tool does not support pre-warmed processes");
+            return;
+        }
+        logger.info("warmUp: toolLocation=" + toolLocation);
+        getPool(toolLocation, workingDirectory).fill();
+    }
+
+    /**
+     * Disposes of all warm processes and removes all pools.
+     */
+    public static void clear() {
+        final Iterator<Pool> iterator = pools.values().iterator();
+        while (iterator.hasNext()) {
+            final Pool pool = iterator.next();
+            iterator.remove();
+            pool.close();
+        }
+    }
+
+    public static Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Changes the pool configuration. Existing warm processes beyond the new limits are removed on the next eviction pass.
+     */
+    public static synchronized void configure(final int minSize, final int maxSize, final long idleTimeout, final TimeUnit unit) {
+        minPoolSize = Math.max(0, minSize);
+        maxPoolSize = Math.max(minPoolSize, maxSize);
+        idleTimeoutMillis = unit.toMillis(idleTimeout);
+    }
+
+    private static boolean isPoolingSupported(final ToolVersion version) {
+        return version != null && version.compare(TfTool.TF_MIN_VERSION) >= 0;
+    }
+
+    private static Pool getPool(final String toolLocation, final String workingDirectory) {
+        final String key = getKey(toolLocation, workingDirectory);
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            final Pool newPool = new Pool(key, toolLocation, workingDirectory);
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+                ensureReaperStarted();
+            }
+        }
+        pool.lastUsed = System.currentTimeMillis();
+        return pool;
+    }
+
     private static ToolRunner startToolRunner(String toolLocation, ToolRunner.ArgumentBuilder argumentBuilder, ToolRunner.Listener listener) {
         final ToolRunner toolRunner = new ToolRunner(toolLocation, argumentBuilder.getWorkingDirectory());
-        toolRunner.addListener(listener);
-        toolRunner.start(argumentBuilder);
+        if (listener != null) {
+            toolRunner.addListener(listener);
+        }
+        final long startTime = System.nanoTime();
+        if (argumentBuilder.getLength() > CommandLineHelper.MAX_ARGUMENT_LENGTH) {
+            // Callers split the items of a command when they can, what is left (e.g. a checkin) goes in a file
+            logger.info("startToolRunner: " + argumentBuilder.getLength() + " characters of arguments are too long for the command line");
+            toolRunner.startWithResponseFile(argumentBuilder);
+        } else {
+            toolRunner.start(argumentBuilder);
+        }
+        metrics.recordSpawn(System.nanoTime() - startTime);
         return toolRunner;
     }
 
@@ -66,36 +189,301 @@ public class ToolRunnerCache {
      * This method returns an ArgumentBuilder with the working directory set and arguments
      * that tell the CLC to start up and then wait for arguments to be passed via
      * standard input.
-     * @param originalArgumentBuilder
-     * @return
      */
-    private static ToolRunner.ArgumentBuilder getStartAndWaitArguments(final ToolRunner.ArgumentBuilder originalArgumentBuilder) {
+    private static ToolRunner.ArgumentBuilder getStartAndWaitArguments(final String workingDirectory) {
         return new ToolRunner.ArgumentBuilder()
-                .setWorkingDirectory(originalArgumentBuilder.getWorkingDirectory())
+                .setWorkingDirectory(workingDirectory)
                 .add("@");
     }
 
-    private static void updateCachedInstance(final String key, final String toolLocation, final ToolRunner.ArgumentBuilder argumentBuilder) {
-        // Start up a new instance and cache it for later use
-        logger.info("updateCachedInstance: caching a new runner: key=" + key);
-        final ToolRunner toolRunnerToCache = new ToolRunner(toolLocation, argumentBuilder.getWorkingDirectory());
-        // The args for the cached instance are just working dir and "@" which tells the CLC to wait
-        toolRunnerToCache.start(getStartAndWaitArguments(argumentBuilder));
-        final ToolRunner cachedToolRunner = cache.put(key, toolRunnerToCache);
+    private static String getKey(final String toolLocation, final String workingDirectory) {
+        ArgumentHelper.checkNotEmptyString(toolLocation, "toolLocation");
+        if (workingDirectory != null) {
+            return toolLocation.toLowerCase() + "|" + workingDirectory.toLowerCase();
+        } else {
+            return toolLocation.toLowerCase() + "|";
+        }
+    }
+
+    private static int getIntProperty(final String name, final int defaultValue) {
+        final String value = System.getProperty(name);
+        return value != null ? SystemHelper.toInt(value, defaultValue) : defaultValue;
+    }
 
-        // If there was already one waiting (some other thread started it up) then dispose of it
-        if (cachedToolRunner != null) {
-            logger.info("updateCachedInstance: disposing of cached tool runner.");
-            cachedToolRunner.dispose();
+    private static synchronized Executor getSpawnExecutor() {
+        if (spawnExecutor == null) {
+            spawnExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("ToolRunnerCache-spawn-%d")
+                    .build());
         }
+        return spawnExecutor;
     }
 
-    private static String getKey(final String toolLocation, final ToolRunner.ArgumentBuilder argumentBuilder) {
-        ArgumentHelper.checkNotEmptyString(toolLocation, "toolLocation");
-        if (argumentBuilder != null && argumentBuilder.getWorkingDirectory() != null) {
-            return toolLocation.toLowerCase() + "|" + argumentBuilder.getWorkingDirectory().toLowerCase();
-        } else {
-            return toolLocation.toLowerCase() + "|";
+    @VisibleForTesting
+    static synchronized void setSpawnExecutor(final Executor executor) {
+        spawnExecutor = executor;
+    }
+
+    private static synchronized void ensureReaperStarted() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("ToolRunnerCache-reaper-%d")
+                    .build());
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    // Don't let exceptions kill the scheduled task
+                    try {
+                        evict(System.currentTimeMillis());
+                    } catch (final Throwable t) {
+                        logger.warn("evict: failed to clean up the pool", t);
+                    }
+                }
+            }, REAPER_INTERVAL_SECONDS, REAPER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Removes dead, old and surplus idle processes from every pool and tops the pools back up to their target size.
+     */
+    @VisibleForTesting
+    static void evict(final long now) {
+        final Iterator<Map.Entry<String, Pool>> iterator = pools.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Pool pool = iterator.next().getValue();
+            if (now - pool.lastUsed > POOL_EXPIRY_MILLIS) {
+                logger.info("evict: removing expired pool. key=" + pool.key);
+                iterator.remove();
+                pool.close();
+            } else {
+                pool.evict(now);
+                pool.fill();
+            }
+        }
+        logger.debug("evict: " + metrics.toString());
+    }
+
+    @VisibleForTesting
+    static int getIdleCount(final String toolLocation, final String workingDirectory) {
+        final Pool pool = pools.get(getKey(toolLocation, workingDirectory));
+        return pool != null ? pool.idle.size() : 0;
+    }
+
+    /**
+     * A warm process along with the time it was put in the pool.
+     */
+    private static class PooledRunner {
+        private final ToolRunner runner;
+        private final long created;
+
+        public PooledRunner(final ToolRunner runner, final long created) {
+            this.runner = runner;
+            this.created = created;
+        }
+    }
+
+    /**
+     * The warm processes for a single key.
+     * The size counts both idle processes and processes that are being started. Once a pool is closed (removed from
+     * the cache) the processes that are still being started for it are disposed instead of being added.
+     */
+    private static class Pool {
+        private final String key;
+        private final String toolLocation;
+        private final String workingDirectory;
+        private final ConcurrentLinkedQueue<PooledRunner> idle = new ConcurrentLinkedQueue<PooledRunner>();
+        private final AtomicInteger size = new AtomicInteger(0);
+        private final AtomicInteger target = new AtomicInteger(minPoolSize);
+        private volatile long lastUsed;
+        // Guarded by this
+        private boolean closed = false;
+
+        public Pool(final String key, final String toolLocation, final String workingDirectory) {
+            this.key = key;
+            this.toolLocation = toolLocation;
+            this.workingDirectory = workingDirectory;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        /**
+         * Returns a healthy warm process or null if there isn't one. Never blocks.
+         */
+        public ToolRunner checkOut() {
+            PooledRunner pooled;
+            while ((pooled = idle.poll()) != null) {
+                size.decrementAndGet();
+                if (pooled.runner.isRunning()) {
+                    return pooled.runner;
+                }
+                logger.info("checkOut: discarding a dead process. key=" + key);
+                metrics.evictions.incrementAndGet();
+                pooled.runner.dispose();
+            }
+            return null;
+        }
+
+        /**
+         * Called on a cache miss so that more processes are kept warm for the next burst of commands.
+         */
+        public void grow() {
+            int current;
+            do {
+                current = target.get();
+                if (current >= maxPoolSize) {
+                    return;
+                }
+            } while (!target.compareAndSet(current, current + 1));
+        }
+
+        /**
+         * Starts processes in the background until the pool reaches its target size.
+         * Processes that fail to start are not retried until the next call.
+         */
+        public void fill() {
+            if (isClosed()) {
+                return;
+            }
+            final int limit = Math.min(target.get(), maxPoolSize);
+            final int needed = limit - size.get();
+            for (int i = 0; i < needed; i++) {
+                if (size.incrementAndGet() > limit) {
+                    // Another thread filled the pool in the meantime
+                    size.decrementAndGet();
+                    return;
+                }
+                getSpawnExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        spawn();
+                    }
+                });
+            }
+        }
+
+        private void spawn() {
+            try {
+                logger.info("spawn: caching a new runner: key=" + key);
+                final ToolRunner runner = startToolRunner(toolLocation, getStartAndWaitArguments(workingDirectory), null);
+                synchronized (this) {
+                    if (!closed && runner.isRunning()) {
+                        idle.offer(new PooledRunner(runner, System.currentTimeMillis()));
+                        return;
+                    }
+                }
+                if (isClosed()) {
+                    logger.info("spawn: the pool was removed while the process started. key=" + key);
+                }
+                runner.dispose();
+            } catch (final Throwable t) {
+                logger.warn("spawn: failed to start a warm process. key=" + key, t);
+            }
+            size.decrementAndGet();
+        }
+
+        public void evict(final long now) {
+            if (now - lastUsed > idleTimeoutMillis) {
+                target.set(minPoolSize);
+            }
+
+            int surplus = size.get() - Math.min(target.get(), maxPoolSize);
+            final Iterator<PooledRunner> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                final PooledRunner pooled = iterator.next();
+                final boolean dead = !pooled.runner.isRunning();
+                final boolean tooOld = now - pooled.created > MAX_AGE_MILLIS;
+                final boolean idleSurplus = surplus > 0 && now - pooled.created > idleTimeoutMillis;
+                if ((dead || tooOld || idleSurplus) && idle.remove(pooled)) {
+                    logger.info("evict: removing a warm process. key=" + key + " dead=" + dead + " tooOld=" + tooOld);
+                    size.decrementAndGet();
+                    surplus--;
+                    metrics.evictions.incrementAndGet();
+                    pooled.runner.dispose();
+                }
+            }
+        }
+
+        /**
+         * Disposes of the idle processes and closes the pool so that processes still being started are disposed too
+         */
+        public void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            target.set(0);
+            PooledRunner pooled;
+            while ((pooled = idle.poll()) != null) {
+                size.decrementAndGet();
+                pooled.runner.dispose();
+            }
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+    }
+
+    /**
+     * Counters that describe how well the pool is working.
+     */
+    public static class Metrics {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong spawns = new AtomicLong();
+        private final AtomicLong spawnNanos = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        private void recordSpawn(final long elapsedNanos) {
+            spawns.incrementAndGet();
+            spawnNanos.addAndGet(elapsedNanos);
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public double getHitRate() {
+            final long total = getHits() + getMisses();
+            return total == 0 ? 0 : (double) getHits() / total;
+        }
+
+        public long getSpawnCount() {
+            return spawns.get();
+        }
+
+        public long getAverageSpawnLatencyMillis() {
+            final long count = spawns.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(spawnNanos.get() / count);
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        /**
+         * The number of warm processes currently waiting in all pools.
+         */
+        public int getIdleCount() {
+            int count = 0;
+            for (final Pool pool : pools.values()) {
+                count += pool.idle.size();
+            }
+            return count;
+        }
+
+        public int getPoolCount() {
+            return pools.size();
+        }
+
+        public String toString() {
+            return "hits=" + getHits() + " misses=" + getMisses() + " hitRate=" + getHitRate()
+                    + " spawns=" + getSpawnCount() + " avgSpawnLatencyMs=" + getAverageSpawnLatencyMillis()
+                    + " evictions=" + getEvictions() + " idle=" + getIdleCount() + " pools=" + getPoolCount();
         }
     }
 }
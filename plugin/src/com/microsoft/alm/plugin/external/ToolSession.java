@@ -0,0 +1,427 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.external.exceptions.ToolBadExitCodeException;
+import com.microsoft.alm.plugin.external.exceptions.ToolTimeoutException;
+import com.microsoft.alm.plugin.external.models.ToolVersion;
+import com.microsoft.alm.plugin.external.tools.TfTool;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long lived TF command line process that runs many commands, one after the other.
+ * <p/>
+ * The process is started in "@" mode and each command is written to standard input as a single line. After each
+ * command the session writes a sentinel command with a unique name. The command line rejects the sentinel with an
+ * error that contains its name, which tells the session that all of the output of the previous command has been
+ * written. Commands are run one at a time in the order they were executed. A command that times out or is cancelled
+ * while it is running kills the process; the next command starts a new one.
+ * <p/>
+ * The command line does not report an exit code per command, so a command that wrote to standard error is reported
+ * as having exit code 1 and all other commands as exit code 0.
+ */
+public class ToolSession {
+    private static final Logger logger = LoggerFactory.getLogger(ToolSession.class);
+
+    public static final String PROP_SESSION_ENABLED = "com.microsoft.alm.plugin.external.session.enabled";
+    public static final ToolVersion TF_SESSION_MIN_VERSION = new ToolVersion("14.114.0");
+
+    private static final String SENTINEL_PREFIX = "tf-session-end-";
+    private static final long DRAIN_TIMEOUT_SECONDS = 5;
+
+    private static final ConcurrentMap<String, ToolSession> sessions = new ConcurrentHashMap<String, ToolSession>(3);
+    private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ToolSession-timeout-%d").build());
+    private static final Executor cleanupExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ToolSession-cleanup-%d").build());
+
+    private final String toolLocation;
+    private final String workingDirectory;
+    private final LinkedList<Request> queue = new LinkedList<Request>();
+    private ToolRunner runner;
+    private Request current;
+
+    /**
+     * Returns true if commands can be routed through a session. Sessions are used only when they have been turned on
+     * with the system property and the version of the command line is new enough.
+     */
+    public static boolean isSupported() {
+        if (!Boolean.parseBoolean(System.getProperty(PROP_SESSION_ENABLED))) {
+            return false;
+        }
+        final ToolVersion version = TfTool.getCachedVersion();
+        return version != null && version.compare(TF_SESSION_MIN_VERSION) >= 0;
+    }
+
+    /**
+     * Returns the session for the tool location and working directory, creating it if necessary.
+     * The process is not started until the first command is executed.
+     */
+    public static ToolSession getSession(final String toolLocation, final String workingDirectory) {
+        ArgumentHelper.checkNotEmptyString(toolLocation, "toolLocation");
+        final String key = toolLocation.toLowerCase() + "|" + StringUtils.defaultString(workingDirectory).toLowerCase();
+        ToolSession session = sessions.get(key);
+        if (session == null) {
+            final ToolSession newSession = new ToolSession(toolLocation, workingDirectory);
+            session = sessions.putIfAbsent(key, newSession);
+            if (session == null) {
+                session = newSession;
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Stops all session processes and fails any commands that are waiting on them.
+     */
+    public static void closeAll() {
+        for (final ToolSession session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Stops the sessions that run in the closing path (or a folder above or below it) and fails their running and
+     * queued commands, e.g. when a project is closed. A session that also runs in one of the paths that stay open is
+     * kept. Once no paths stay open all of the sessions are stopped, including the ones with no working directory.
+     */
+    public static void closeSessions(final String closingPath, final Collection<String> openPaths) {
+        final Iterator<Map.Entry<String, ToolSession>> iterator = sessions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final ToolSession session = iterator.next().getValue();
+            if (openPaths.isEmpty() || (session.isRelatedTo(closingPath) && !session.isRelatedToAny(openPaths))) {
+                logger.info("closeSessions: stopping the TF session. workingDirectory=" + session.workingDirectory);
+                iterator.remove();
+                session.close();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    ToolSession(final String toolLocation, final String workingDirectory) {
+        this.toolLocation = toolLocation;
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * Queues the command. The listener gets the output lines of this command only, followed by a call to completed
+     * or processException. A timeout of 0 lets the command run until it finishes.
+     */
+    public Request execute(final ToolRunner.ArgumentBuilder argumentBuilder, final ToolRunner.Listener listener,
+                           final long timeout, final TimeUnit unit) {
+        ArgumentHelper.checkNotNull(argumentBuilder, "argumentBuilder");
+        ArgumentHelper.checkNotNull(listener, "listener");
+        final Request request = new Request(argumentBuilder, listener, unit.toSeconds(timeout));
+        synchronized (this) {
+            queue.add(request);
+            startNext();
+        }
+        return request;
+    }
+
+    /**
+     * Stops the process and fails the running and queued commands.
+     */
+    public void close() {
+        final LinkedList<Request> failed;
+        synchronized (this) {
+            failed = new LinkedList<Request>(queue);
+            queue.clear();
+            if (current != null) {
+                failed.addFirst(current);
+                current = null;
+            }
+            stopProcess();
+        }
+        for (final Request request : failed) {
+            request.fail(new CancellationException("The TF session was closed"));
+        }
+    }
+
+    private boolean isRelatedToAny(final Collection<String> paths) {
+        for (final String path : paths) {
+            if (isRelatedTo(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isRelatedTo(final String path) {
+        if (StringUtils.isEmpty(workingDirectory) || StringUtils.isEmpty(path)) {
+            return false;
+        }
+        final String folder = normalize(workingDirectory);
+        final String other = normalize(path);
+        return folder.equals(other) || folder.startsWith(other + "/") || other.startsWith(folder + "/");
+    }
+
+    private static String normalize(final String path) {
+        return StringUtils.removeEnd(path.replace('\\', '/'), "/").toLowerCase();
+    }
+
+    /**
+     * Starts the next queued command if nothing is running. Must be called while holding the lock.
+     */
+    private void startNext() {
+        while (current == null && !queue.isEmpty()) {
+            final Request request = queue.removeFirst();
+            try {
+                if (runner == null || !runner.isRunning()) {
+                    startProcess();
+                }
+                current = request;
+                request.scheduleTimeout();
+                runner.writeArgsToStandardInput(request.argumentBuilder);
+                runner.writeArgsToStandardInput(new ToolRunner.ArgumentBuilder().add(request.sentinel));
+            } catch (final Throwable t) {
+                logger.warn("startNext: failed to send the command to the session", t);
+                current = null;
+                stopProcess();
+                request.fail(t);
+            }
+        }
+    }
+
+    private void startProcess() {
+        logger.info("startProcess: starting a TF session. workingDirectory=" + workingDirectory);
+        final ToolRunner newRunner = new ToolRunner(toolLocation, workingDirectory);
+        newRunner.addListener(new SessionListener(newRunner));
+        newRunner.start(new ToolRunner.ArgumentBuilder()
+                .setWorkingDirectory(workingDirectory)
+                .add("@"));
+        runner = newRunner;
+    }
+
+    private void stopProcess() {
+        if (runner != null) {
+            final ToolRunner oldRunner = runner;
+            runner = null;
+            // Disposing kills the process tree and fails its output, which calls back into the session listener and
+            // takes this lock, so do it on another thread
+            cleanupExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    oldRunner.dispose();
+                }
+            });
+        }
+    }
+
+    /**
+     * Called when the sentinel of the current command has been seen.
+     */
+    private void completeCurrent(final ToolRunner source) {
+        final Request request;
+        synchronized (this) {
+            if (runner != source || current == null) {
+                return;
+            }
+            request = current;
+            current = null;
+        }
+        request.complete();
+        synchronized (this) {
+            startNext();
+        }
+    }
+
+    /**
+     * Called when the process exits or fails. The current command can't finish anymore.
+     */
+    private void failCurrent(final ToolRunner source, final Throwable error) {
+        final Request request;
+        synchronized (this) {
+            if (runner != source) {
+                return;
+            }
+            request = current;
+            current = null;
+            stopProcess();
+        }
+        if (request != null) {
+            request.fail(error);
+        }
+        synchronized (this) {
+            startNext();
+        }
+    }
+
+    private void timeout(final Request request) {
+        synchronized (this) {
+            if (current != request) {
+                return;
+            }
+            logger.warn("timeout: the command did not finish in time, stopping the TF session. args=" + request.argumentBuilder);
+            current = null;
+            stopProcess();
+        }
+        request.fail(new ToolTimeoutException(request.timeoutSeconds));
+        synchronized (this) {
+            startNext();
+        }
+    }
+
+    private void cancel(final Request request) {
+        synchronized (this) {
+            if (queue.remove(request)) {
+                // Never started so nothing else to clean up
+            } else if (current == request) {
+                // The only way to stop a running command is to stop the process
+                current = null;
+                stopProcess();
+            } else {
+                return;
+            }
+        }
+        request.fail(new CancellationException("The TF command was cancelled"));
+        synchronized (this) {
+            startNext();
+        }
+    }
+
+    private synchronized Request getCurrent() {
+        return current;
+    }
+
+    /**
+     * A command that has been queued in the session.
+     */
+    public class Request {
+        private final ToolRunner.ArgumentBuilder argumentBuilder;
+        private final ToolRunner.Listener listener;
+        private final long timeoutSeconds;
+        private final String sentinel = SENTINEL_PREFIX + UUID.randomUUID().toString();
+        private volatile boolean sawErrorOutput;
+        private boolean done;
+        private ScheduledFuture<?> timeoutFuture;
+
+        private Request(final ToolRunner.ArgumentBuilder argumentBuilder, final ToolRunner.Listener listener, final long timeoutSeconds) {
+            this.argumentBuilder = argumentBuilder;
+            this.listener = listener;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        /**
+         * Cancels the command. A running command is stopped by killing the session process.
+         */
+        public void cancel() {
+            ToolSession.this.cancel(this);
+        }
+
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        private void scheduleTimeout() {
+            if (timeoutSeconds > 0) {
+                timeoutFuture = timeoutScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        timeout(Request.this);
+                    }
+                }, timeoutSeconds, TimeUnit.SECONDS);
+            }
+        }
+
+        private synchronized boolean markDone() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            return true;
+        }
+
+        private void complete() {
+            if (markDone()) {
+                listener.completed(sawErrorOutput ? 1 : 0);
+            }
+        }
+
+        private void fail(final Throwable error) {
+            if (markDone()) {
+                listener.processException(error);
+            }
+        }
+    }
+
+    /**
+     * Routes the output of the session process to the command that is currently running.
+     */
+    private class SessionListener implements ToolRunner.Listener {
+        private final ToolRunner source;
+
+        public SessionListener(final ToolRunner source) {
+            this.source = source;
+        }
+
+        @Override
+        public void processStandardOutput(final String line) {
+            final Request request = getCurrent();
+            if (request == null) {
+                logger.info("processStandardOutput: ignoring output with no command running");
+            } else if (StringUtils.contains(line, request.sentinel)) {
+                completeCurrent(source);
+            } else {
+                request.listener.processStandardOutput(line);
+            }
+        }
+
+        @Override
+        public void processStandardError(final String line) {
+            final Request request = getCurrent();
+            if (request == null) {
+                logger.info("processStandardError: ignoring output with no command running");
+            } else if (StringUtils.contains(line, request.sentinel)) {
+                // Standard output is read on another thread, so make sure it has all been delivered first
+                try {
+                    if (!source.waitForStandardOutputDrained(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        logger.warn("processStandardError: standard output was not drained in time");
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                completeCurrent(source);
+            } else {
+                request.sawErrorOutput = true;
+                request.listener.processStandardError(line);
+            }
+        }
+
+        @Override
+        public void processException(final Throwable throwable) {
+            logger.warn("processException: the TF session failed", throwable);
+            failCurrent(source, throwable);
+        }
+
+        @Override
+        public void completed(final int returnCode) {
+            logger.info("completed: the TF session process exited with code " + returnCode);
+            failCurrent(source, new ToolBadExitCodeException(returnCode));
+        }
+    }
+}
@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin.external.commands;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.ArrayList;
@@ -45,6 +46,8 @@ public class AddCommand extends Command<List<String>> {
      */
     @Override
     public List<String> parseOutput(final String stdout, final String stderr) {
+        // The added items have pending changes now
+        ItemInfoCache.getInstance().invalidateAll();
         super.throwIfError(stderr);
         final List<String> filesAdded = new ArrayList<String>();
         final String[] output = getLines(stdout);
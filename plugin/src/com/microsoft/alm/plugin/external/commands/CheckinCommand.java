@@ -7,6 +7,7 @@ import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.exceptions.TeamServicesException;
 import com.microsoft.alm.plugin.external.ToolRunner;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,13 +30,29 @@ public class CheckinCommand extends Command<String> {
     private final List<String> files;
     private final String comment;
     private final List<Integer> workItemsToAssociate;
+    private final FileConsumer consumer;
+    // The folder of the file lines while the output is streamed to the consumer
+    private String outputFolder = StringUtils.EMPTY;
+
+    /**
+     * Gets the local path of each file as tf reports that it is checking it in
+     */
+    public interface FileConsumer {
+        void consume(final String path);
+    }
 
     public CheckinCommand(final ServerContext context, final List<String> files, final String comment, final List<Integer> workItemsToAssociate) {
+        this(context, files, comment, workItemsToAssociate, null);
+    }
+
+    public CheckinCommand(final ServerContext context, final List<String> files, final String comment,
+                          final List<Integer> workItemsToAssociate, final FileConsumer consumer) {
         super("checkin", context);
         ArgumentHelper.checkNotNullOrEmpty(files, "files");
         this.files = files;
         this.comment = comment;
         this.workItemsToAssociate = workItemsToAssociate;
+        this.consumer = consumer;
     }
 
     @Override
@@ -95,6 +112,8 @@ public class CheckinCommand extends Command<String> {
      */
     @Override
     public String parseOutput(final String stdout, final String stderr) {
+        // The checked in items have new versions and no pending changes
+        ItemInfoCache.getInstance().invalidateAll();
         // check for failed checkin
         if (StringUtils.isNotEmpty(stderr)) {
             logger.error("Checkin failed with the following stdout:\n" + stdout);
@@ -117,4 +136,31 @@ public class CheckinCommand extends Command<String> {
 
         return getChangesetNumber(stdout);
     }
+
+    /**
+     * Hands the files to the consumer as they are checked in. The lines are still kept since parseOutput needs them
+     * to find the changeset number or the error.
+     */
+    @Override
+    protected boolean consumeOutputLine(final String line) {
+        if (consumer == null) {
+            return false;
+        }
+        if (isFilePath(line)) {
+            outputFolder = getFilePath(line, StringUtils.EMPTY, StringUtils.EMPTY);
+        } else if (StringUtils.startsWith(line, CHECKIN_LINE_PREFIX) && StringUtils.contains(line, ": ")) {
+            consumer.consume(getFilePath(outputFolder, StringUtils.substringAfter(line, ": "), StringUtils.EMPTY));
+        }
+        return false;
+    }
+
+    /**
+     * A checkin takes as long as the files it has to upload, so it is never killed for taking too long
+     *
+     * @return
+     */
+    @Override
+    protected long getTimeoutSeconds() {
+        return 0;
+    }
 }
@@ -4,18 +4,24 @@
 package com.microsoft.alm.plugin.external.commands;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.common.utils.SystemHelper;
 import com.microsoft.alm.helpers.Path;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.ToolRunnerCache;
+import com.microsoft.alm.plugin.external.ToolSession;
 import com.microsoft.alm.plugin.external.exceptions.ToolException;
 import com.microsoft.alm.plugin.external.exceptions.ToolMemoryException;
 import com.microsoft.alm.plugin.external.exceptions.ToolParseFailureException;
+import com.microsoft.alm.plugin.external.exceptions.ToolTimeoutException;
 import com.microsoft.alm.plugin.external.models.Workspace;
 import com.microsoft.alm.plugin.external.tools.TfTool;
 import com.microsoft.alm.plugin.external.utils.WorkspaceHelper;
-import jersey.repackaged.com.google.common.util.concurrent.SettableFuture;
+import com.microsoft.alm.plugin.services.PluginServiceProvider;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +41,13 @@ import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,6 +73,14 @@ public abstract class Command<T> {
     private static final String WARNING_PREFIX = "WARN ";
     private static final String XML_PREFIX = "<?xml ";
 
+    // Commands that run longer than this are killed unless they override getTimeoutSeconds, 0 turns the limit off
+    public static final String PROP_TIMEOUT_SECONDS = "com.microsoft.alm.plugin.external.command.timeoutSeconds";
+    public static final int DEFAULT_TIMEOUT_SECONDS = 600;
+    // How often runSynchronously checks if the user has cancelled the progress it runs under
+    private static final long CANCEL_CHECK_MILLIS = 100;
+
+    private static ScheduledExecutorService timeoutScheduler;
+
     private final String name;
     private final boolean useProxyIfAvailable;
 
@@ -68,6 +88,13 @@ public abstract class Command<T> {
     // Note that this may be null in some cases
     private final ServerContext context;
 
+    // The process (or session request) of the command while it runs, so that it can be cancelled
+    private volatile ToolRunner runner;
+    private volatile ToolSession.Request request;
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+    private volatile ScheduledFuture<?> timeout;
+
     public interface Listener<T> {
         /**
          * This method is called to notify the owner of progress made by the command process.
@@ -136,54 +163,211 @@ public abstract class Command<T> {
         final StringBuilder stdout = new StringBuilder();
         final StringBuilder stderr = new StringBuilder();
         ArgumentHelper.checkNotNull(listener, "listener");
-        final ToolRunner runner = ToolRunnerCache.getRunningToolRunner(TfTool.getValidLocation(),
-                getArgumentBuilder(), new ToolRunner.Listener() {
-                    @Override
-                    public void processStandardOutput(final String line) {
-                        logger.info("CMD: " + line);
-                        stdout.append(line + "\n");
-                        listener.progress(line, OUTPUT_TYPE_INFO, 50);
-                    }
+        final XmlOutputParser.LineFeed lineFeed = createOutputLineFeed();
+        final ToolRunner.Listener toolListener = new ToolRunner.Listener() {
+            @Override
+            public void processStandardOutput(final String line) {
+                logger.info("CMD: " + line);
+                // Lines that are parsed as they arrive don't need to be kept
+                if ((lineFeed == null || !lineFeed.addLine(line)) && !consumeOutputLine(line)) {
+                    stdout.append(line + "\n");
+                }
+                listener.progress(line, OUTPUT_TYPE_INFO, 50);
+            }
 
-                    @Override
-                    public void processStandardError(final String line) {
-                        logger.info("ERROR: " + line);
-                        stderr.append(line + "\n");
-                        listener.progress(line, OUTPUT_TYPE_ERROR, 50);
-                    }
+            @Override
+            public void processStandardError(final String line) {
+                logger.info("ERROR: " + line);
+                stderr.append(line + "\n");
+                listener.progress(line, OUTPUT_TYPE_ERROR, 50);
+            }
 
-                    @Override
-                    public void processException(final Throwable throwable) {
-                        logger.info("ERROR: " + throwable.toString());
-                        listener.progress("", OUTPUT_TYPE_INFO, 100);
-                        listener.completed(null, throwable);
-                    }
+            @Override
+            public void processException(final Throwable throwable) {
+                logger.info("ERROR: " + throwable.toString());
+                if (lineFeed != null) {
+                    lineFeed.abort();
+                }
+                listener.progress("", OUTPUT_TYPE_INFO, 100);
+                stopTimeout();
+                listener.completed(null, cancelled ? getCancelledError() : throwable);
+            }
 
-                    @Override
-                    public void completed(final int returnCode) {
-                        listener.progress("Parsing command output", OUTPUT_TYPE_INFO, 99);
-
-                        Throwable error = null;
-                        T result = null;
-                        try {
-                            //TODO there are some commands that write errors to stdout and simply return a non-zero exit code (i.e. when a workspace is not found by name)
-                            //TODO we may want to pass in the return code to the parse method or something like that to allow the command to inspect this info as well.
-                            result = parseOutput(stdout.toString(), stderr.toString());
-                            if (shouldThrowBadExitCode()) {
-                                TfTool.throwBadExitCode(interpretReturnCode(returnCode));
-                            }
-                        } catch (Throwable throwable) {
-                            logger.warn("CMD: parsing output failed", throwable);
-                            if (isMemoryException(stdout.toString())) {
-                                error = new ToolMemoryException(TfTool.getLocation());
-                            } else {
-                                error = throwable;
-                            }
-                        }
-                        listener.progress("", OUTPUT_TYPE_INFO, 100);
-                        listener.completed(result, error);
+            @Override
+            public void completed(final int returnCode) {
+                if (cancelled) {
+                    // The process was killed, whatever it wrote is incomplete
+                    processException(getCancelledError());
+                    return;
+                }
+                stopTimeout();
+                listener.progress("Parsing command output", OUTPUT_TYPE_INFO, 99);
+
+                Throwable error = null;
+                T result = null;
+                try {
+                    //TODO there are some commands that write errors to stdout and simply return a non-zero exit code (i.e. when a workspace is not found by name)
+                    //TODO we may want to pass in the return code to the parse method or something like that to allow the command to inspect this info as well.
+                    if (lineFeed != null) {
+                        lineFeed.finish();
                     }
-                });
+                    result = parseOutput(stdout.toString(), stderr.toString());
+                    if (shouldThrowBadExitCode()) {
+                        TfTool.throwBadExitCode(interpretReturnCode(returnCode));
+                    }
+                } catch (Throwable throwable) {
+                    logger.warn("CMD: parsing output failed", throwable);
+                    if (isMemoryException(stdout.toString())) {
+                        error = new ToolMemoryException(TfTool.getLocation());
+                    } else {
+                        error = throwable;
+                    }
+                }
+                listener.progress("", OUTPUT_TYPE_INFO, 100);
+                listener.completed(result, error);
+            }
+        };
+
+        final ToolRunner.ArgumentBuilder argumentBuilder = getArgumentBuilder();
+        if (supportsSession() && ToolSession.isSupported()) {
+            // The session times the command itself, starting when the command runs rather than when it is queued.
+            // A timeout of 0 means the command may run as long as it needs to.
+            request = ToolSession.getSession(TfTool.getValidLocation(), argumentBuilder.getWorkingDirectory())
+                    .execute(argumentBuilder, toolListener, Math.max(0, getTimeoutSeconds()), TimeUnit.SECONDS);
+        } else {
+            startTimeout();
+            runner = ToolRunnerCache.getRunningToolRunner(TfTool.getValidLocation(), argumentBuilder, toolListener);
+        }
+        // The command may have been cancelled while it was starting
+        if (cancelled) {
+            cancel();
+        }
+    }
+
+    /**
+     * Stops the command by killing its process. The listener is called with a CancellationException unless the
+     * command has already completed.
+     */
+    public void cancel() {
+        logger.info("cancel: cancelling " + name);
+        cancelled = true;
+        final ToolSession.Request currentRequest = request;
+        if (currentRequest != null) {
+            currentRequest.cancel();
+        }
+        final ToolRunner currentRunner = runner;
+        if (currentRunner != null) {
+            currentRunner.dispose();
+        }
+    }
+
+    /**
+     * Starts the command and returns a future for its result. Cancelling the future cancels the command. If the
+     * command fails the future fails with the same exception that runSynchronously would throw.
+     *
+     * @return
+     */
+    public ListenableFuture<T> runAsync() {
+        final CommandFuture future = new CommandFuture();
+        run(new Listener<T>() {
+            @Override
+            public void progress(final String output, final int outputType, final int percentComplete) {
+                // Do nothing
+            }
+
+            @Override
+            public void completed(final T result, final Throwable error) {
+                if (error == null) {
+                    future.set(result);
+                } else if (error instanceof CancellationException) {
+                    future.setCancelled();
+                } else if (error instanceof RuntimeException) {
+                    future.setException(error);
+                } else {
+                    // Wrap the exception
+                    future.setException(new ToolException(ToolException.KEY_TF_BAD_EXIT_CODE, error));
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns how long the command may run before it is killed, or 0 if it may run for as long as it needs to.
+     * Commands whose run time grows with the size of the workspace (get, checkin) should not have a limit.
+     *
+     * @return
+     */
+    protected long getTimeoutSeconds() {
+        final String value = System.getProperty(PROP_TIMEOUT_SECONDS);
+        return value != null ? SystemHelper.toInt(value, DEFAULT_TIMEOUT_SECONDS) : DEFAULT_TIMEOUT_SECONDS;
+    }
+
+    private void startTimeout() {
+        final long timeoutSeconds = getTimeoutSeconds();
+        if (timeoutSeconds <= 0) {
+            return;
+        }
+        timeout = getTimeoutScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                logger.warn("CMD: " + name + " did not finish within " + timeoutSeconds + " seconds");
+                timedOut = true;
+                cancel();
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private void stopTimeout() {
+        final ScheduledFuture<?> currentTimeout = timeout;
+        if (currentTimeout != null) {
+            currentTimeout.cancel(false);
+        }
+    }
+
+    private Exception getCancelledError() {
+        return timedOut ? new ToolTimeoutException(getTimeoutSeconds()) : new CancellationException("The TF command was cancelled");
+    }
+
+    private static synchronized ScheduledExecutorService getTimeoutScheduler() {
+        if (timeoutScheduler == null) {
+            timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("Command-timeout-%d")
+                    .build());
+        }
+        return timeoutScheduler;
+    }
+
+    /**
+     * A future that cancels the command when it is cancelled
+     */
+    private class CommandFuture extends AbstractFuture<T> {
+        @Override
+        protected boolean set(final T value) {
+            return super.set(value);
+        }
+
+        @Override
+        protected boolean setException(final Throwable throwable) {
+            return super.setException(throwable);
+        }
+
+        /**
+         * Called when the command has already been cancelled some other way
+         */
+        private void setCancelled() {
+            super.cancel(false);
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (super.cancel(mayInterruptIfRunning)) {
+                Command.this.cancel();
+                return true;
+            }
+            return false;
+        }
     }
 
     /**
@@ -205,43 +389,31 @@ public abstract class Command<T> {
      * This method is provided to allow callers to run the command and wait on the result.
      * You should probably not call this method on the main thread.
      * You should also limit this to fast local commands.
+     * If the calling thread runs under a progress indicator the command is cancelled when the user cancels it.
      *
      * @return
      */
     public T runSynchronously() {
         final long startTime = System.nanoTime();
-        final SettableFuture<T> syncResult = SettableFuture.create();
-        final SettableFuture<Throwable> syncError = SettableFuture.create();
-
-        run(new Listener<T>() {
-            @Override
-            public void progress(String output, int outputType, int percentComplete) {
-                // Do nothing
-            }
-
-            @Override
-            public void completed(T result, Throwable error) {
-                syncResult.set(result);
-                syncError.set(error);
-            }
-        });
+        final ListenableFuture<T> future = runAsync();
 
         try {
-            Throwable error = syncError.get();
-            if (error != null) {
-                if (error instanceof RuntimeException) {
-                    throw (RuntimeException) error;
-                } else {
-                    // Wrap the exception
-                    throw new ToolException(ToolException.KEY_TF_BAD_EXIT_CODE, error);
+            while (true) {
+                try {
+                    return future.get(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    checkCanceled(future);
                 }
-            } else {
-                return syncResult.get();
             }
         } catch (InterruptedException e) {
             logger.error("CMD: failure", e);
+            future.cancel(false);
             throw new ToolException(ToolException.KEY_TF_BAD_EXIT_CODE, e);
         } catch (ExecutionException e) {
+            // runAsync has already wrapped anything that isn't a RuntimeException
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
             logger.error("CMD: failure", e);
             throw new ToolException(ToolException.KEY_TF_BAD_EXIT_CODE, e);
         } finally {
@@ -251,6 +423,23 @@ public abstract class Command<T> {
         }
     }
 
+    /**
+     * Cancels the command if the progress that the calling thread runs under has been cancelled and rethrows the
+     * exception of the IDE.
+     */
+    private void checkCanceled(final ListenableFuture<T> future) {
+        if (!PluginServiceProvider.getInstance().isInitialized()) {
+            return;
+        }
+        try {
+            PluginServiceProvider.getInstance().getAsyncService().checkCanceled();
+        } catch (RuntimeException e) {
+            logger.info("CMD: the progress was cancelled, cancelling " + name);
+            future.cancel(false);
+            throw e;
+        }
+    }
+
     public abstract T parseOutput(final String stdout, final String stderr);
 
     /**
@@ -422,6 +611,39 @@ public abstract class Command<T> {
         return null;
     }
 
+    /**
+     * Commands that return a line feed here have their xml output parsed line by line while the command is running
+     * instead of collecting it all and parsing it in parseOutput. Only the lines that come before the xml are passed
+     * to parseOutput.
+     *
+     * @return
+     */
+    protected XmlOutputParser.LineFeed createOutputLineFeed() {
+        return null;
+    }
+
+    /**
+     * Commands that parse their plain text output while the command is running return true here for each line they
+     * have handled. Only the lines that are not handled are passed to parseOutput.
+     *
+     * @param line
+     * @return
+     */
+    protected boolean consumeOutputLine(final String line) {
+        return false;
+    }
+
+    /**
+     * Commands that return true here may be run in a long lived TF session (see ToolSession) instead of their own
+     * process. Only fast commands that don't change any state should opt in, since a command that times out or is
+     * cancelled stops the session that other commands are waiting on.
+     *
+     * @return
+     */
+    protected boolean supportsSession() {
+        return false;
+    }
+
     /**
      * If a bad exit code is detected then we should throw an exception. In some instances though we want to throw a
      * more specific message or we want the IDE to handle the error differently so subclasses can override this
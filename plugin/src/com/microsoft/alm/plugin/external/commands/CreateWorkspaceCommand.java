@@ -8,6 +8,7 @@ import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.exceptions.WorkspaceAlreadyExistsException;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.regex.Matcher;
@@ -70,6 +71,8 @@ public class CreateWorkspaceCommand extends Command<String> {
      */
     @Override
     public String parseOutput(final String stdout, final String stderr) {
+        // Projects that were not in a workspace may be now
+        WorkspaceCache.getInstance().invalidate();
         throwIfError(stderr);
         // There is no useful output on success
         return StringUtils.EMPTY;
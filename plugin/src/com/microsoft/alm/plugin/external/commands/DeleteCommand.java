@@ -7,6 +7,7 @@ import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.helpers.Path;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.ArrayList;
@@ -55,6 +56,8 @@ public class DeleteCommand extends Command<List<String>> {
      * @return
      */
     public List<String> parseOutput(String stdout, String stderr) {
+        // The deleted items have pending changes now
+        ItemInfoCache.getInstance().invalidateAll();
         super.throwIfError(stderr);
         final String[] lines = getLines(stdout);
         final List<String> deletedFiles = new ArrayList<String>();
@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin.external.commands;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -44,6 +45,8 @@ public class DeleteWorkspaceCommand extends Command<String> {
      */
     @Override
     public String parseOutput(final String stdout, final String stderr) {
+        // Projects that were in the workspace are not anymore
+        WorkspaceCache.getInstance().invalidate();
         // First check stderr for "not found" message
         if (StringUtils.containsIgnoreCase(stderr, "could not be found")) {
             // No workspace existed, so ignore the error
@@ -51,6 +51,11 @@ public class FindWorkspaceCommand extends Command<Workspace> {
         this.localPath = StringUtils.EMPTY;
     }
 
+    @Override
+    protected boolean supportsSession() {
+        return true;
+    }
+
     @Override
     public ToolRunner.ArgumentBuilder getArgumentBuilder() {
         final ToolRunner.ArgumentBuilder builder = super.getArgumentBuilder();
@@ -9,12 +9,10 @@ import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.ChangeSet;
 import com.microsoft.alm.plugin.external.models.CheckedInChange;
 import org.apache.commons.lang.StringUtils;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -29,6 +27,7 @@ public class HistoryCommand extends Command<List<ChangeSet>> {
     private final int stopAfter;
     private final boolean recursive;
     private final boolean itemMode;
+    private final XmlOutputParser.ItemConsumer<ChangeSet> consumer;
 
     public HistoryCommand(final ServerContext context, final String itemPath, final String version,
                           final int stopAfter, final boolean recursive, final String user) {
@@ -37,6 +36,16 @@ public class HistoryCommand extends Command<List<ChangeSet>> {
 
     public HistoryCommand(final ServerContext context, final String itemPath, final String version,
                           final int stopAfter, final boolean recursive, final String user, final boolean itemMode) {
+        this(context, itemPath, version, stopAfter, recursive, user, itemMode, null);
+    }
+
+    /**
+     * Creates a history command that hands each changeset to the consumer as soon as it has been read from the
+     * output instead of collecting them. The result of the command is then an empty list.
+     */
+    public HistoryCommand(final ServerContext context, final String itemPath, final String version,
+                          final int stopAfter, final boolean recursive, final String user, final boolean itemMode,
+                          final XmlOutputParser.ItemConsumer<ChangeSet> consumer) {
         super("history", context);
         ArgumentHelper.checkNotEmptyString(itemPath, "itemPath");
         this.itemPath = itemPath;
@@ -45,6 +54,12 @@ public class HistoryCommand extends Command<List<ChangeSet>> {
         this.stopAfter = stopAfter;
         this.recursive = recursive;
         this.itemMode = itemMode;
+        this.consumer = consumer;
+    }
+
+    @Override
+    protected boolean supportsSession() {
+        return true;
     }
 
     @Override
@@ -86,52 +101,75 @@ public class HistoryCommand extends Command<List<ChangeSet>> {
      * </changeset>
      * </history>
      */
+    @Override
+    protected XmlOutputParser<ChangeSet>.LineFeed createOutputLineFeed() {
+        return consumer != null ? new ChangeSetParser().createLineFeed(consumer) : null;
+    }
+
     @Override
     public List<ChangeSet> parseOutput(final String stdout, final String stderr) {
         super.throwIfError(stderr);
-        final List<ChangeSet> changeSets = new ArrayList<ChangeSet>(100);
-        final NodeList nodes = super.evaluateXPath(stdout, "/history/changeset");
+        if (consumer != null) {
+            // The changesets were already streamed to the consumer
+            return Collections.emptyList();
+        }
+        return new ChangeSetParser().parse(stdout);
+    }
 
-        // Convert all the xpath nodes to changeset models
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Element changeset = (Element) nodes.item(i);
+    /**
+     * Reads the changeset elements under the history element along with their comment and items.
+     */
+    static class ChangeSetParser extends XmlOutputParser<ChangeSet> {
+        private int depth;
+        private boolean inHistory;
+        private String id;
+        private String owner;
+        private String committer;
+        private String date;
+        private StringBuilder comment;
+        private String commentText;
+        private List<CheckedInChange> changes;
 
-                // Read comment element
-                final NodeList commentNodes = changeset.getElementsByTagName("comment");
-                final String comment;
-                if (commentNodes.getLength() == 1) {
-                    comment = commentNodes.item(0).getTextContent();
-                } else {
-                    comment = "";
-                }
+        @Override
+        protected void startElement(final XMLStreamReader reader, final ItemConsumer<ChangeSet> consumer) {
+            depth++;
+            final String name = reader.getLocalName();
+            if (depth == 1) {
+                inHistory = StringUtils.equals(name, "history");
+            } else if (depth == 2 && inHistory && StringUtils.equals(name, "changeset")) {
+                id = getAttribute(reader, "id");
+                owner = getAttribute(reader, "owner");
+                committer = getAttribute(reader, "committer");
+                date = getAttribute(reader, "date");
+                changes = new ArrayList<CheckedInChange>();
+            } else if (changes != null && StringUtils.equals(name, "comment")) {
+                comment = new StringBuilder();
+            } else if (changes != null && StringUtils.equals(name, "item")) {
+                changes.add(new CheckedInChange(
+                        getAttribute(reader, "server-item"),
+                        getAttribute(reader, "change-type"),
+                        id, date));
+            }
+        }
 
-                // Gather pending changes
-                final List<CheckedInChange> changes = new ArrayList<CheckedInChange>(100);
-                final NodeList childNodes = changeset.getElementsByTagName("item");
-                final NamedNodeMap changesetAttributes = changeset.getAttributes();
-                final String id = changesetAttributes.getNamedItem("id").getNodeValue();
-                final String date = changesetAttributes.getNamedItem("date").getNodeValue();
-                for (int j = 0; j < childNodes.getLength(); j++) {
-                    final Node child = childNodes.item(j);
-                    // Assume this is a change
-                    final NamedNodeMap attributes = child.getAttributes();
-                    final CheckedInChange newchange = new CheckedInChange(
-                            attributes.getNamedItem("server-item").getNodeValue(),
-                            attributes.getNamedItem("change-type").getNodeValue(),
-                            id, date);
-                    changes.add(newchange);
-                }
+        @Override
+        protected void characters(final String text) {
+            if (comment != null) {
+                comment.append(text);
+            }
+        }
 
-                changeSets.add(new ChangeSet(id,
-                        changesetAttributes.getNamedItem("owner").getNodeValue(),
-                        changesetAttributes.getNamedItem("committer").getNodeValue(),
-                        date,
-                        comment,
-                        changes));
+        @Override
+        protected void endElement(final String localName, final ItemConsumer<ChangeSet> consumer) {
+            depth--;
+            if (comment != null && StringUtils.equals(localName, "comment")) {
+                commentText = comment.toString();
+                comment = null;
+            } else if (depth == 1 && changes != null) {
+                consumer.consume(new ChangeSet(id, owner, committer, date, StringUtils.defaultString(commentText), changes));
+                changes = null;
+                commentText = null;
             }
         }
-        return changeSets;
     }
 }
-
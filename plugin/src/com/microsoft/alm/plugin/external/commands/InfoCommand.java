@@ -22,22 +22,37 @@ import java.util.Map;
 public class InfoCommand extends Command<List<ItemInfo>> {
     private final List<String> itemPaths;
     private final String workingFolder;
+    private final boolean recursive;
 
     public InfoCommand(final ServerContext context, final List<String> itemPaths) {
         this(context, null, itemPaths);
     }
 
     public InfoCommand(final ServerContext context, final String workingFolder, final List<String> itemPaths) {
+        this(context, workingFolder, itemPaths, false);
+    }
+
+    public InfoCommand(final ServerContext context, final String workingFolder, final List<String> itemPaths,
+                       final boolean recursive) {
         super("info", context);
         ArgumentHelper.checkNotNullOrEmpty(itemPaths, "itemPaths");
         this.itemPaths = itemPaths;
         this.workingFolder = workingFolder;
+        this.recursive = recursive;
+    }
+
+    @Override
+    protected boolean supportsSession() {
+        return true;
     }
 
     @Override
     public ToolRunner.ArgumentBuilder getArgumentBuilder() {
         ToolRunner.ArgumentBuilder builder = super.getArgumentBuilder()
                 .setWorkingDirectory(workingFolder);
+        if (recursive) {
+            builder.addSwitch("recursive");
+        }
         for (final String file : itemPaths) {
             builder.add(file);
         }
@@ -67,7 +82,7 @@ public class InfoCommand extends Command<List<ItemInfo>> {
     public List<ItemInfo> parseOutput(final String stdout, final String stderr) {
         super.throwIfError(stderr);
 
-        final List<ItemInfo> itemInfos = new ArrayList<ItemInfo>(itemPaths.size());
+        final List<ItemInfo> itemInfos = new ArrayList<ItemInfo>(recursive ? 16 : itemPaths.size());
 
         final Map<String, String> propertyMap = new HashMap<String, String>(15);
         final String[] output = getLines(stdout);
@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin.external.commands;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -107,6 +108,8 @@ public class LockCommand extends Command<String> {
      */
     @Override
     public String parseOutput(final String stdout, final String stderr) {
+        // The lock of the items has changed
+        ItemInfoCache.getInstance().invalidateAll();
         // If we only have errors, just throw them
         if (StringUtils.isEmpty(stdout)) {
             throwIfError(stderr);
@@ -10,6 +10,7 @@ import com.microsoft.alm.plugin.external.models.MergeMapping;
 import com.microsoft.alm.plugin.external.models.MergeResults;
 import com.microsoft.alm.plugin.external.models.ServerStatusType;
 import com.microsoft.alm.plugin.external.models.VersionSpec;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -82,6 +83,8 @@ public class MergeCommand extends Command<MergeResults> {
      */
     @Override
     public MergeResults parseOutput(final String stdout, final String stderr) {
+        // The merged items have pending changes now
+        ItemInfoCache.getInstance().invalidateAll();
         if (StringUtils.contains(stdout, NOTHING_TO_MERGE_MSG)) {
             return new MergeResults();
         }
@@ -163,4 +166,14 @@ public class MergeCommand extends Command<MergeResults> {
         return new MergeMapping(sourceFilename, targetFilename, range,
                 VersionSpec.create(targetVersion), serverStatusTypes, isConflict);
     }
-}
\ No newline at end of file
+
+    /**
+     * A merge of a large branch can take a long time, so it is never killed for taking too long
+     *
+     * @return
+     */
+    @Override
+    protected long getTimeoutSeconds() {
+        return 0;
+    }
+}
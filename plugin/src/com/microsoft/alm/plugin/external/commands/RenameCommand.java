@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin.external.commands;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -41,6 +42,8 @@ public class RenameCommand extends Command<String> {
      */
     @Override
     public String parseOutput(final String stdout, final String stderr) {
+        // The item has moved
+        ItemInfoCache.getInstance().invalidateAll();
         throwIfError(stderr);
 
         return StringUtils.EMPTY;
@@ -7,6 +7,7 @@ import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.Conflict;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.ArrayList;
@@ -60,6 +61,8 @@ public class ResolveConflictsCommand extends Command<List<Conflict>> {
      */
     @Override
     public List<Conflict> parseOutput(final String stdout, final String stderr) {
+        // Resolving a conflict changes the pending changes and local versions of the items
+        ItemInfoCache.getInstance().invalidateAll();
         throwIfError(stderr);
 
         final List<Conflict> resolved = new ArrayList<Conflict>();
@@ -8,11 +8,9 @@ import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.PendingChange;
 import jersey.repackaged.com.google.common.collect.ImmutableList;
 import org.apache.commons.lang.StringUtils;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-import java.util.ArrayList;
+import javax.xml.stream.XMLStreamReader;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -25,14 +23,30 @@ public class StatusCommand extends Command<List<PendingChange>> {
     private static final String CANDIDATE_TAG = "candidate-pending-changes";
 
     private final List<String> localPaths;
+    private final XmlOutputParser.ItemConsumer<PendingChange> consumer;
 
     public StatusCommand(final ServerContext context, final String localPath) {
         this(context, localPath == null ? null : ImmutableList.of(localPath));
     }
 
     public StatusCommand(final ServerContext context, final List<String> localPaths) {
+        this(context, localPaths, null);
+    }
+
+    /**
+     * Creates a status command that hands each pending change to the consumer as soon as it has been read from the
+     * output instead of collecting them. The result of the command is then an empty list.
+     */
+    public StatusCommand(final ServerContext context, final List<String> localPaths,
+                         final XmlOutputParser.ItemConsumer<PendingChange> consumer) {
         super("status", context);
         this.localPaths = localPaths;
+        this.consumer = consumer;
+    }
+
+    @Override
+    protected boolean supportsSession() {
+        return true;
     }
 
     @Override
@@ -61,32 +75,55 @@ public class StatusCommand extends Command<List<PendingChange>> {
      * </candidate-pending-changes>
      * </status>
      */
+    @Override
+    protected XmlOutputParser<PendingChange>.LineFeed createOutputLineFeed() {
+        return consumer != null ? new PendingChangeParser().createLineFeed(consumer) : null;
+    }
+
     @Override
     public List<PendingChange> parseOutput(final String stdout, final String stderr) {
         super.throwIfError(stderr);
-        final List<PendingChange> changes = new ArrayList<PendingChange>(100);
-        final NodeList nodes = super.evaluateXPath(stdout, "/status/*/pending-change");
-
-        // Convert all the xpath nodes to pending change models
-        if (nodes != null) {
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final NamedNodeMap attributes = nodes.item(i).getAttributes();
-                final boolean isCandidate = StringUtils.equalsIgnoreCase(nodes.item(i).getParentNode().getNodeName(), CANDIDATE_TAG);
-                final Node sourceItem = attributes.getNamedItem("source-item"); // not always present
-                changes.add(new PendingChange(
-                        attributes.getNamedItem("server-item").getNodeValue(),
-                        attributes.getNamedItem("local-item").getNodeValue(),
-                        attributes.getNamedItem("version").getNodeValue(),
-                        attributes.getNamedItem("owner").getNodeValue(),
-                        attributes.getNamedItem("date").getNodeValue(),
-                        attributes.getNamedItem("lock").getNodeValue(),
-                        attributes.getNamedItem("change-type").getNodeValue(),
-                        attributes.getNamedItem("workspace").getNodeValue(),
-                        attributes.getNamedItem("computer").getNodeValue(),
-                        isCandidate,
-                        sourceItem != null ? sourceItem.getNodeValue() : StringUtils.EMPTY));
+        if (consumer != null) {
+            // The changes were already streamed to the consumer
+            return Collections.emptyList();
+        }
+        return new PendingChangeParser().parse(stdout);
+    }
+
+    /**
+     * Reads the pending-change elements found under any child of the status element.
+     */
+    static class PendingChangeParser extends XmlOutputParser<PendingChange> {
+        private int depth;
+        private boolean inStatus;
+        private String container = StringUtils.EMPTY;
+
+        @Override
+        protected void startElement(final XMLStreamReader reader, final ItemConsumer<PendingChange> consumer) {
+            depth++;
+            if (depth == 1) {
+                inStatus = StringUtils.equals(reader.getLocalName(), "status");
+            } else if (depth == 2) {
+                container = reader.getLocalName();
+            } else if (depth == 3 && inStatus && StringUtils.equals(reader.getLocalName(), "pending-change")) {
+                consumer.consume(new PendingChange(
+                        getAttribute(reader, "server-item"),
+                        getAttribute(reader, "local-item"),
+                        getAttribute(reader, "version"),
+                        getAttribute(reader, "owner"),
+                        getAttribute(reader, "date"),
+                        getAttribute(reader, "lock"),
+                        getAttribute(reader, "change-type"),
+                        getAttribute(reader, "workspace"),
+                        getAttribute(reader, "computer"),
+                        StringUtils.equalsIgnoreCase(container, CANDIDATE_TAG),
+                        getAttribute(reader, "source-item"))); // source-item is not always present
             }
         }
-        return changes;
+
+        @Override
+        protected void endElement(final String localName, final ItemConsumer<PendingChange> consumer) {
+            depth--;
+        }
     }
 }
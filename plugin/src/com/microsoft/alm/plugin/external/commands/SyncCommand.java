@@ -8,6 +8,8 @@ import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.exceptions.SyncException;
 import com.microsoft.alm.plugin.external.models.SyncResults;
+import com.microsoft.alm.plugin.external.utils.IncomingChangesTracker;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +40,23 @@ public class SyncCommand extends Command<SyncResults> {
     private final boolean recursive;
     private final boolean shouldThrowBadExitCode;
     private final boolean force;
+    private final FileConsumer consumer;
+    // Keeps track of the folder of the files while the output is streamed to the consumer
+    private final OutputParser streamParser = new OutputParser();
+
+    /**
+     * What happened to a file during the get
+     */
+    public enum FileAction {
+        NEW, UPDATED, DELETED
+    }
+
+    /**
+     * Receives the files as tf gets them. It is called on the thread that reads the output of the command.
+     */
+    public interface FileConsumer {
+        void consume(final FileAction action, final String path);
+    }
 
     public SyncCommand(final ServerContext context, final List<String> updatePaths, final boolean recursive) {
         this(context, updatePaths, recursive, false);
@@ -49,12 +68,22 @@ public class SyncCommand extends Command<SyncResults> {
 
     public SyncCommand(final ServerContext context, final List<String> updatePaths, final boolean recursive,
                        final boolean shouldThrowBadExitCode, final boolean force) {
+        this(context, updatePaths, recursive, shouldThrowBadExitCode, force, null);
+    }
+
+    /**
+     * Creates a sync command that hands each file to the consumer as soon as tf reports it instead of collecting
+     * them. The results of the command then only have the conflicts and the errors.
+     */
+    public SyncCommand(final ServerContext context, final List<String> updatePaths, final boolean recursive,
+                       final boolean shouldThrowBadExitCode, final boolean force, final FileConsumer consumer) {
         super("get", context);
         ArgumentHelper.checkNotNullOrEmpty(updatePaths, "updatePaths");
         this.updatePaths = updatePaths;
         this.recursive = recursive;
         this.force = force;
         this.shouldThrowBadExitCode = shouldThrowBadExitCode;
+        this.consumer = consumer;
     }
 
     @Override
@@ -100,6 +129,9 @@ public class SyncCommand extends Command<SyncResults> {
      */
     @Override
     public SyncResults parseOutput(final String stdout, final String stderr) {
+        // The local versions have changed, even if only some of the items could be updated
+        IncomingChangesTracker.getInstance().invalidate();
+        ItemInfoCache.getInstance().invalidateAll();
         final List<String> updatedFiles = new ArrayList<String>();
         final List<String> newFiles = new ArrayList<String>();
         final List<String> deletedFiles = new ArrayList<String>();
@@ -117,18 +149,22 @@ public class SyncCommand extends Command<SyncResults> {
 
         // parse output for file changes
         final String[] lines = getLines(stdout);
-        String path = StringUtils.EMPTY;
+        final OutputParser parser = new OutputParser();
+        final FileConsumer collector = new FileConsumer() {
+            @Override
+            public void consume(final FileAction action, final String path) {
+                if (action == FileAction.NEW) {
+                    newFiles.add(path);
+                } else if (action == FileAction.UPDATED) {
+                    updatedFiles.add(path);
+                } else {
+                    deletedFiles.add(path);
+                }
+            }
+        };
         for (final String line : lines) {
             if (StringUtils.isNotEmpty(line) || StringUtils.startsWith(line, SUMMARY_PREFIX)) {
-                if (isFilePath(line)) {
-                    path = getFilePath(line, StringUtils.EMPTY, StringUtils.EMPTY);
-                } else if (StringUtils.startsWith(line, NEW_FILE_PREFIX)) {
-                    newFiles.add((new File(path, line.replaceFirst(NEW_FILE_PREFIX, StringUtils.EMPTY)).getPath()));
-                } else if (StringUtils.startsWith(line, UPDATED_FILE_PREFIX)) {
-                    updatedFiles.add((new File(path, line.replaceFirst(UPDATED_FILE_PREFIX, StringUtils.EMPTY)).getPath()));
-                } else if (StringUtils.startsWith(line, DELETED_FILE_PREFIX)) {
-                    deletedFiles.add((new File(path, line.replaceFirst(DELETED_FILE_PREFIX, StringUtils.EMPTY)).getPath()));
-                } else {
+                if (!parser.parse(line, collector)) {
                     // TODO: check for other cases to cover here but no need to hinder user if case not covered
                     logger.warn("Unknown response from 'tf get' command: " + line);
                 }
@@ -138,6 +174,14 @@ public class SyncCommand extends Command<SyncResults> {
         return new SyncResults(conflictsExist, updatedFiles, newFiles, deletedFiles, exceptions);
     }
 
+    /**
+     * The folder and file lines are handed to the consumer as they arrive, everything else goes to parseOutput
+     */
+    @Override
+    protected boolean consumeOutputLine(final String line) {
+        return consumer != null && StringUtils.isNotEmpty(line) && streamParser.parse(line, consumer);
+    }
+
     /**
      * An error will be in the following form where there are duplicates for each error. The duplicates only differ
      * by the fact that the first reference of the error refers to only the file name and the second reference refers
@@ -169,6 +213,35 @@ public class SyncCommand extends Command<SyncResults> {
         return exceptions;
     }
 
+    /**
+     * Parses the folder and file lines of the output. File lines are relative to the last folder line.
+     */
+    private class OutputParser {
+        private String path = StringUtils.EMPTY;
+
+        /**
+         * Returns false if the line is not a folder or a file
+         */
+        private boolean parse(final String line, final FileConsumer fileConsumer) {
+            if (isFilePath(line)) {
+                path = getFilePath(line, StringUtils.EMPTY, StringUtils.EMPTY);
+            } else if (StringUtils.startsWith(line, NEW_FILE_PREFIX)) {
+                fileConsumer.consume(FileAction.NEW, getPath(line, NEW_FILE_PREFIX));
+            } else if (StringUtils.startsWith(line, UPDATED_FILE_PREFIX)) {
+                fileConsumer.consume(FileAction.UPDATED, getPath(line, UPDATED_FILE_PREFIX));
+            } else if (StringUtils.startsWith(line, DELETED_FILE_PREFIX)) {
+                fileConsumer.consume(FileAction.DELETED, getPath(line, DELETED_FILE_PREFIX));
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private String getPath(final String line, final String prefix) {
+            return new File(path, line.replaceFirst(prefix, StringUtils.EMPTY)).getPath();
+        }
+    }
+
     /**
      * Override return code in the cases where partial success (1) was seen
      * This occurs in the case where conflicts exists
@@ -191,4 +264,14 @@ public class SyncCommand extends Command<SyncResults> {
     protected boolean shouldThrowBadExitCode() {
         return shouldThrowBadExitCode;
     }
-}
\ No newline at end of file
+
+    /**
+     * A get takes as long as the files it has to download, so it is never killed for taking too long
+     *
+     * @return
+     */
+    @Override
+    protected long getTimeoutSeconds() {
+        return 0;
+    }
+}
@@ -7,6 +7,7 @@ import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.exceptions.TeamServicesException;
 import com.microsoft.alm.plugin.external.ToolRunner;
+import com.microsoft.alm.plugin.external.utils.ItemInfoCache;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +52,8 @@ public class UndoCommand extends Command<List<String>> {
      */
     @Override
     public List<String> parseOutput(final String stdout, final String stderr) {
+        // The items don't have pending changes anymore
+        ItemInfoCache.getInstance().invalidateAll();
         final String[] output = getLines(stdout);
 
         // check for failure
@@ -7,6 +7,7 @@ import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -69,6 +70,8 @@ public class UpdateWorkspaceCommand extends Command<String> {
      */
     @Override
     public String parseOutput(final String stdout, final String stderr) {
+        // The cached workspace may have the old name
+        WorkspaceCache.getInstance().invalidate();
         super.throwIfError(stderr);
         // There is no useful output on success
         return StringUtils.EMPTY;
@@ -7,6 +7,7 @@ import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.ToolRunner;
 import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.external.utils.WorkspaceCache;
 import com.microsoft.alm.plugin.external.utils.WorkspaceHelper;
 import org.apache.commons.lang.StringUtils;
 
@@ -82,6 +83,8 @@ public class UpdateWorkspaceMappingCommand extends Command<String> {
      */
     @Override
     public String parseOutput(final String stdout, final String stderr) {
+        // The cached mappings are out of date now
+        WorkspaceCache.getInstance().invalidate();
         super.throwIfError(stderr);
         // There is no output on success
         return StringUtils.EMPTY;
@@ -0,0 +1,393 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.commands;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.external.exceptions.ToolParseFailureException;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Base class for parsers that turn the xml output of a command into model objects one element at a time.
+ * Unlike evaluateXPath in Command, no DOM is built, so memory use does not grow with the size of the output
+ * beyond the items the consumer decides to keep.
+ * <p/>
+ * A parser can read a whole buffer (see parse) or be fed the output line by line while the command is still
+ * running (see createLineFeed). In the second case the lines are parsed on the thread that adds them, and the consumer
+ * is called on that thread as soon as each item is complete.
+ * <p/>
+ * Parsers keep state while parsing, so a new instance must be used for each output.
+ *
+ * @param <E>
+ */
+public abstract class XmlOutputParser<E> {
+    private static final Logger logger = LoggerFactory.getLogger(XmlOutputParser.class);
+
+    private static final String XML_PREFIX = "<?xml ";
+    // How many lines a line feed collects before it parses them, unless an item ends at the top level first
+    private static final int MAX_CHUNK_LINES = 64;
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    // Where the line feed's scanner is in the output
+    private static final int TEXT = 0;
+    private static final int TAG = 1;
+    private static final int PROCESSING_INSTRUCTION = 2;
+    private static final int COMMENT = 3;
+    private static final int CDATA = 4;
+    private static final int DECLARATION = 5;
+
+    /**
+     * Receives each item as soon as it has been parsed.
+     */
+    public interface ItemConsumer<E> {
+        void consume(final E item);
+    }
+
+    /**
+     * Called for every start element. The reader is positioned on the element so attributes can be read.
+     */
+    protected abstract void startElement(final XMLStreamReader reader, final ItemConsumer<E> consumer);
+
+    /**
+     * Called for every end element.
+     */
+    protected void endElement(final String localName, final ItemConsumer<E> consumer) {
+    }
+
+    /**
+     * Called for the text content of elements.
+     */
+    protected void characters(final String text) {
+    }
+
+    /**
+     * Parses the whole output and returns all of the items. Any lines (like WARNing lines) that come before the xml
+     * declaration are skipped.
+     */
+    public List<E> parse(final String output) {
+        final List<E> items = new ArrayList<E>(100);
+        if (StringUtils.isEmpty(output)) {
+            return items;
+        }
+
+        final int xmlStart = output.indexOf(XML_PREFIX);
+        parse(new StringReader(xmlStart > 0 ? output.substring(xmlStart) : output), new ItemConsumer<E>() {
+            @Override
+            public void consume(final E item) {
+                items.add(item);
+            }
+        });
+        return items;
+    }
+
+    /**
+     * Parses the xml from the reader and passes each item to the consumer.
+     */
+    public void parse(final Reader input, final ItemConsumer<E> consumer) {
+        ArgumentHelper.checkNotNull(input, "input");
+        ArgumentHelper.checkNotNull(consumer, "consumer");
+        parse(input, consumer, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parses the xml from the reader. The first skipStarts start elements and any end elements after the first
+     * maxEnds are not passed on, since they were added around a part of the output to make it a whole document.
+     */
+    private void parse(final Reader input, final ItemConsumer<E> consumer, final int skipStarts, final int maxEnds) {
+        XMLStreamReader reader = null;
+        int starts = 0;
+        int ends = 0;
+        try {
+            reader = inputFactory.createXMLStreamReader(input);
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (++starts > skipStarts) {
+                            startElement(reader, consumer);
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (++ends <= maxEnds) {
+                            endElement(reader.getLocalName(), consumer);
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        characters(reader.getText());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (final XMLStreamException e) {
+            throw new ToolParseFailureException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final XMLStreamException e) {
+                    logger.warn("Unable to close the xml reader.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the attribute or an empty string if the element doesn't have it.
+     */
+    protected String getAttribute(final XMLStreamReader reader, final String name) {
+        return StringUtils.defaultString(reader.getAttributeValue(null, name));
+    }
+
+    /**
+     * Creates a feed that parses lines of output as they are added.
+     */
+    public LineFeed createLineFeed(final ItemConsumer<E> consumer) {
+        return new LineFeed(consumer);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        // The output comes from the command line, but there is no reason to ever resolve anything outside of it
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Parses lines of output as they are added, on the thread that adds them. Lines that come before the xml
+     * declaration are not part of the xml and are handed back to the caller.
+     * <p/>
+     * A streaming xml reader blocks while it waits for more input, so the lines are parsed in chunks instead. The lines
+     * are scanned for the start and end of each tag, and once an item ends (or enough lines have been collected) the
+     * lines since the last chunk are parsed. The start tags that are still open are put in front of the chunk and
+     * closed after it so that the chunk is a whole document. The parser is not told about those added tags, so it sees
+     * the same elements that it would if it parsed the whole output at once.
+     * <p/>
+     * A slow consumer holds up the thread that adds the lines, which slows down the reading of the output instead of
+     * letting it pile up in memory.
+     */
+    public class LineFeed {
+        private final ItemConsumer<E> consumer;
+        // The start tags that are open at the end of the scanned lines, outermost first
+        private final LinkedList<String> openTags = new LinkedList<String>();
+        // The start tags that were open when the current chunk began
+        private List<String> chunkPrefix = new ArrayList<String>();
+        private final StringBuilder chunk = new StringBuilder();
+        private int chunkLines;
+        private int chunkEnds;
+        private final StringBuilder tag = new StringBuilder();
+        private int state = TEXT;
+        private char quote;
+        private boolean started;
+        private boolean stopped;
+        private Throwable error;
+
+        private LineFeed(final ItemConsumer<E> consumer) {
+            ArgumentHelper.checkNotNull(consumer, "consumer");
+            this.consumer = consumer;
+        }
+
+        /**
+         * Adds a line of output.
+         *
+         * @return false if the line comes before the xml and was not used
+         */
+        public boolean addLine(final String line) {
+            if (!started) {
+                final int xmlStart = StringUtils.indexOf(line, XML_PREFIX);
+                if (xmlStart < 0) {
+                    return false;
+                }
+                started = true;
+                add(line.substring(xmlStart));
+            } else {
+                add(line);
+            }
+            return true;
+        }
+
+        /**
+         * Parses what is left of the output. Errors from the parser or the consumer are rethrown here.
+         */
+        public void finish() {
+            if (!started) {
+                return;
+            }
+            if (error == null && !stopped) {
+                try {
+                    if (state != TEXT || !openTags.isEmpty()) {
+                        // The output was cut off, parsing it as it is reports where
+                        parse(new StringReader(chunkPrefixText() + chunk), consumer, chunkPrefix.size(), Integer.MAX_VALUE);
+                    } else {
+                        parseChunk();
+                    }
+                } catch (final Throwable t) {
+                    logger.warn("Failed to parse the output.", t);
+                    error = t;
+                }
+            }
+            stopped = true;
+
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error != null) {
+                throw new ToolParseFailureException(error);
+            }
+        }
+
+        /**
+         * Stops parsing. Used when the command fails.
+         */
+        public void abort() {
+            stopped = true;
+        }
+
+        private void add(final String line) {
+            if (stopped || error != null) {
+                return;
+            }
+            final int endsBefore = chunkEnds;
+            scan(line + "\n");
+            chunk.append(line).append('\n');
+            chunkLines++;
+            // Only parse between tags, and as soon as an item ends at the top level
+            if (state == TEXT && chunkEnds > endsBefore && (openTags.size() <= 1 || chunkLines >= MAX_CHUNK_LINES)) {
+                try {
+                    parseChunk();
+                } catch (final Throwable t) {
+                    logger.warn("Failed to parse the output.", t);
+                    error = t;
+                }
+            }
+        }
+
+        private void parseChunk() {
+            if (chunkPrefix.isEmpty() && StringUtils.isBlank(chunk.toString())) {
+                // Whitespace after the end of the document
+                resetChunk();
+                return;
+            }
+            final StringBuilder document = new StringBuilder(chunkPrefixText()).append(chunk);
+            final Iterator<String> open = openTags.descendingIterator();
+            while (open.hasNext()) {
+                document.append("</").append(getTagName(open.next())).append('>');
+            }
+            final int skipStarts = chunkPrefix.size();
+            final int maxEnds = chunkEnds;
+            resetChunk();
+            parse(new StringReader(document.toString()), consumer, skipStarts, maxEnds);
+        }
+
+        private void resetChunk() {
+            chunkPrefix = new ArrayList<String>(openTags);
+            chunk.setLength(0);
+            chunkLines = 0;
+            chunkEnds = 0;
+        }
+
+        private String chunkPrefixText() {
+            return StringUtils.join(chunkPrefix, StringUtils.EMPTY);
+        }
+
+        /**
+         * Follows the tags in the text. Comments, processing instructions, CDATA and declarations are skipped.
+         */
+        private void scan(final String text) {
+            for (int i = 0; i < text.length(); i++) {
+                final char c = text.charAt(i);
+                switch (state) {
+                    case TEXT:
+                        if (c != '<') {
+                            break;
+                        }
+                        if (text.startsWith("<?", i)) {
+                            state = PROCESSING_INSTRUCTION;
+                        } else if (text.startsWith("<!--", i)) {
+                            state = COMMENT;
+                        } else if (text.startsWith("<![CDATA[", i)) {
+                            state = CDATA;
+                        } else if (text.startsWith("<!", i)) {
+                            state = DECLARATION;
+                        } else {
+                            state = TAG;
+                            quote = 0;
+                            tag.setLength(0);
+                            tag.append(c);
+                        }
+                        break;
+                    case TAG:
+                        tag.append(c);
+                        if (quote != 0) {
+                            if (c == quote) {
+                                quote = 0;
+                            }
+                        } else if (c == '"' || c == '\'') {
+                            quote = c;
+                        } else if (c == '>') {
+                            endTag();
+                            state = TEXT;
+                        }
+                        break;
+                    case PROCESSING_INSTRUCTION:
+                        if (c == '>' && text.startsWith("?", i - 1)) {
+                            state = TEXT;
+                        }
+                        break;
+                    case COMMENT:
+                        if (c == '>' && text.startsWith("--", i - 2)) {
+                            state = TEXT;
+                        }
+                        break;
+                    case CDATA:
+                        if (c == '>' && text.startsWith("]]", i - 2)) {
+                            state = TEXT;
+                        }
+                        break;
+                    default:
+                        if (c == '>') {
+                            state = TEXT;
+                        }
+                        break;
+                }
+            }
+        }
+
+        private void endTag() {
+            final String text = tag.toString();
+            if (text.startsWith("</")) {
+                if (!openTags.isEmpty()) {
+                    openTags.removeLast();
+                }
+                chunkEnds++;
+            } else if (text.endsWith("/>")) {
+                chunkEnds++;
+            } else {
+                openTags.addLast(text);
+            }
+        }
+
+        private String getTagName(final String startTag) {
+            int end = 1;
+            while (end < startTag.length() && !Character.isWhitespace(startTag.charAt(end))
+                    && startTag.charAt(end) != '>' && startTag.charAt(end) != '/') {
+                end++;
+            }
+            return startTag.substring(1, end);
+        }
+    }
+}
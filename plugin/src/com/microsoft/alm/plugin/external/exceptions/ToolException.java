@@ -44,4 +44,5 @@ public class ToolException extends RuntimeException implements LocalizedExceptio
     public static String KEY_TF_BRANCH_EXISTS = "KEY_TF_BRANCH_EXISTS";
     public static String KEY_TF_OOM = "KEY_TF_OOM";
     public static String KEY_TF_AUTH_FAIL = "KEY_TF_AUTH_FAIL";
+    public static String KEY_TF_TIMEOUT = "KEY_TF_TIMEOUT";
 }
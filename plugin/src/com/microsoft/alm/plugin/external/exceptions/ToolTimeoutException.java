@@ -0,0 +1,21 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.exceptions;
+
+/**
+ * Exception for when the tool does not finish a command within the allowed time
+ */
+public class ToolTimeoutException extends ToolException {
+    private final long timeoutSeconds;
+
+    public ToolTimeoutException(final long timeoutSeconds) {
+        super(ToolException.KEY_TF_TIMEOUT);
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Override
+    public String[] getMessageParameters() {
+        return new String[]{Long.toString(timeoutSeconds)};
+    }
+}
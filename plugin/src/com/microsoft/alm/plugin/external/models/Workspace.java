@@ -3,6 +3,7 @@
 
 package com.microsoft.alm.plugin.external.models;
 
+import com.microsoft.alm.plugin.external.utils.WorkspaceMappingIndex;
 import jersey.repackaged.com.google.common.base.Objects;
 import org.apache.commons.lang.StringUtils;
 
@@ -21,6 +22,8 @@ public class Workspace {
     private final String server;
     private final List<Mapping> mappings;
     private final Location location;
+    // Built the first time a path is translated
+    private WorkspaceMappingIndex mappingIndex;
 
     public Workspace(final String server, final String name, final String computer, final String owner,
                      final String comment, final List<Mapping> mappings) {
@@ -62,6 +65,16 @@ public class Workspace {
         return Collections.unmodifiableList(mappings);
     }
 
+    /**
+     * Returns the index used to translate paths with the mappings of this workspace
+     */
+    public synchronized WorkspaceMappingIndex getMappingIndex() {
+        if (mappingIndex == null) {
+            mappingIndex = new WorkspaceMappingIndex(mappings);
+        }
+        return mappingIndex;
+    }
+
     public Location getLocation() {
         return location;
     }
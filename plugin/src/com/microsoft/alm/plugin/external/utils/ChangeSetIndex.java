@@ -0,0 +1,660 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.CheckedInChange;
+import com.microsoft.alm.plugin.external.models.ServerStatusType;
+import com.microsoft.alm.plugin.external.models.VersionSpec;
+import com.microsoft.alm.plugin.versioncontrol.path.ServerPath;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local copy of the history of a collection so that history queries don't have to go to the server.
+ * <p/>
+ * The changesets (with the server items they changed) are appended to a single file as they are read from the
+ * server. Only the indexes are kept in memory: where each changeset starts in the file by id, and the ids by server
+ * path and by owner. The changesets themselves are read from the file when a query needs them, and only the most
+ * recently read ones are kept. Each server path is held once, as a key of the path index.
+ * <p/>
+ * Reading the whole history of a collection is expensive, so the index is only built if it is turned on with
+ * {@link #PROP_ENABLED}. The first time the index is used the whole history is read in the background a window of
+ * changesets at a time; the index can't answer anything until that is done. After that every update only asks the
+ * server for the changesets newer than the newest one in the file.
+ * <p/>
+ * The index only knows about server paths, it doesn't follow renames or branches. Queries for an item that was
+ * renamed or branched return null so that the caller asks the server, which knows about the earlier names.
+ */
+public class ChangeSetIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeSetIndex.class);
+
+    public static final String PROP_ENABLED = "com.microsoft.alm.plugin.external.historyIndex.enabled";
+
+    private static final String FILE_NAME = "changesets.dat";
+    private static final int FORMAT_VERSION = 1;
+    private static final byte RECORD_CHANGESET = 1;
+    // All changesets up to the id in the record have been appended
+    private static final byte RECORD_COVERED = 2;
+    // The first full read of the history finished
+    private static final byte RECORD_COMPLETE = 3;
+    // How many changeset ids are read from the server at a time while the index is first built
+    private static final int BUILD_WINDOW = 1000;
+    // How many of the changesets read from the file are kept in memory
+    private static final int RECENT_SIZE = 256;
+
+    private static ExecutorService executor;
+
+    private final File file;
+    private final Object updateLock = new Object();
+    // Loaded from disk the first time the index is used. The ids are in increasing order and the offsets are where
+    // their records start in the file.
+    private int[] ids;
+    private long[] offsets;
+    private int count;
+    private NavigableMap<String, Ids> items;
+    private Map<String, Ids> owners;
+    private final Map<Integer, ChangeSet> recent = new LinkedHashMap<Integer, ChangeSet>(RECENT_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, ChangeSet> eldest) {
+            return size() > RECENT_SIZE;
+        }
+    };
+    private int coveredTo;
+    private boolean complete;
+    private boolean building;
+
+    public ChangeSetIndex(final File folder) {
+        ArgumentHelper.checkNotNull(folder, "folder");
+        this.file = new File(folder, FILE_NAME);
+    }
+
+    /**
+     * Returns true if the index was turned on. It is off unless {@link #PROP_ENABLED} is set, since building it reads
+     * the whole history of the collection.
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(PROP_ENABLED));
+    }
+
+    /**
+     * Brings the index up to date with the server. Returns true if the index can answer queries, false if it is
+     * still being built in the background.
+     */
+    public boolean update(final ServerContext context) {
+        if (!isComplete()) {
+            startBuild(context);
+            return false;
+        }
+
+        synchronized (updateLock) {
+            // Starting at the newest known changeset makes sure the range exists even if nothing was checked in since
+            final int from = Math.max(1, getCoveredTo());
+            try {
+                final List<ChangeSet> newChangeSets = fetch(context,
+                        new VersionSpec.Range(VersionSpec.create(from), VersionSpec.LATEST).toString(), 0);
+                int newest = from;
+                for (final ChangeSet changeSet : newChangeSets) {
+                    newest = Math.max(newest, changeSet.getIdAsInt());
+                }
+                append(newChangeSets, newest, false);
+            } catch (final Throwable t) {
+                // What is in the index is still right, it just may be missing the newest changesets
+                logger.warn("update: unable to get the newest changesets, using the index as it is", t);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the changesets that changed the server path (or anything under it if recursive) between the two
+     * changesets, newest first. Only the changes under the path are included in the changesets. The user and the
+     * changeset range are optional. The user is matched against the owner of the changesets, like the server does.
+     * The server also knows other forms of a user's name (e.g. the display name), so a user that isn't the owner of
+     * any changeset in the index is left to the server.
+     *
+     * @return the changesets, or null if the index can't answer the query and the server has to be asked
+     */
+    public synchronized List<ChangeSet> getHistory(final String serverPath, final boolean recursive,
+                                                   final int fromId, final int toId, final String user,
+                                                   final int maxCount) {
+        ArgumentHelper.checkNotEmptyString(serverPath, "serverPath");
+        load();
+        if (!complete) {
+            return null;
+        }
+        if (StringUtils.isNotEmpty(user) && !owners.containsKey(user.toLowerCase())) {
+            logger.info("getHistory: " + user + " isn't the owner of any indexed changeset, the server has to be asked");
+            return null;
+        }
+
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            final String path = ServerPath.canonicalize(serverPath).toLowerCase();
+            final boolean isRoot = StringUtils.equals(path, ServerPath.ROOT);
+            if (!isRoot && !isHistoryLocal(input, path)) {
+                logger.info("getHistory: " + serverPath + " was renamed or branched, the server has to be asked");
+                return null;
+            }
+
+            // Start from the smallest set of candidates that the indexes give
+            final NavigableSet<Integer> candidates;
+            if (!isRoot) {
+                candidates = new TreeSet<Integer>();
+                addIds(candidates, items.get(path));
+                if (recursive) {
+                    // '0' is the character after '/' so this is everything under the path
+                    for (final Ids pathIds : items.subMap(path + "/", true, path + "0", false).values()) {
+                        addIds(candidates, pathIds);
+                    }
+                }
+            } else if (StringUtils.isNotEmpty(user)) {
+                candidates = new TreeSet<Integer>();
+                addIds(candidates, owners.get(user.toLowerCase()));
+            } else {
+                candidates = null;
+            }
+
+            final List<ChangeSet> history = new ArrayList<ChangeSet>();
+            final Iterator<Integer> iterator = candidates != null ? candidates.descendingIterator() : new DescendingIds();
+            while (iterator.hasNext()) {
+                final int id = iterator.next();
+                if (maxCount > 0 && history.size() >= maxCount) {
+                    break;
+                }
+                if (id > toId) {
+                    continue;
+                }
+                if (id < fromId) {
+                    break;
+                }
+                final ChangeSet changeSet = getChangeSet(input, id);
+                if (StringUtils.isNotEmpty(user) && !StringUtils.equalsIgnoreCase(user, changeSet.getOwner())) {
+                    continue;
+                }
+                history.add(isRoot ? changeSet : filterChanges(changeSet, path, recursive));
+            }
+            return history;
+        } catch (final IOException e) {
+            logger.warn("getHistory: unable to read the index, the server has to be asked", e);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Returns the id of the newest changeset the index knows about
+     */
+    public synchronized int getCoveredTo() {
+        load();
+        return coveredTo;
+    }
+
+    public synchronized boolean isComplete() {
+        load();
+        return complete;
+    }
+
+    public synchronized boolean isBuilding() {
+        return building;
+    }
+
+    /**
+     * Drops everything the index has in memory. It is loaded from the file again the next time it is used.
+     */
+    public synchronized void unload() {
+        ids = null;
+        offsets = null;
+        count = 0;
+        items = null;
+        owners = null;
+        recent.clear();
+    }
+
+    /**
+     * Gets the history from the server. Tests override this to avoid calling the command line.
+     */
+    @VisibleForTesting
+    protected List<ChangeSet> fetch(final ServerContext context, final String version, final int stopAfter) {
+        return CommandUtils.getHistoryCommand(context, ServerPath.ROOT, version, stopAfter, true, StringUtils.EMPTY);
+    }
+
+    /**
+     * Reads all of the history that isn't in the index yet, one window of changesets at a time. The window is
+     * written to the file as soon as it is read so a build that is interrupted continues where it stopped.
+     */
+    @VisibleForTesting
+    void build(final ServerContext context) throws IOException {
+        synchronized (updateLock) {
+            final List<ChangeSet> newest = fetch(context, VersionSpec.LATEST.toString(), 1);
+            final int latest = newest.isEmpty() ? 0 : newest.get(0).getIdAsInt();
+            logger.info("build: reading changesets " + (getCoveredTo() + 1) + " to " + latest);
+
+            int covered = getCoveredTo();
+            while (covered < latest) {
+                final int windowEnd = Math.min(covered + BUILD_WINDOW, latest);
+                final List<ChangeSet> window = fetch(context, new VersionSpec.Range(
+                        VersionSpec.create(covered + 1), VersionSpec.create(windowEnd)).toString(), 0);
+                append(window, windowEnd, false);
+                covered = windowEnd;
+            }
+            append(new ArrayList<ChangeSet>(), latest, true);
+            logger.info("build: the index is complete");
+        }
+    }
+
+    private void startBuild(final ServerContext context) {
+        synchronized (this) {
+            if (building) {
+                return;
+            }
+            building = true;
+        }
+
+        getExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    build(context);
+                } catch (final Throwable t) {
+                    // Whatever was read is kept, the next update tries again
+                    logger.warn("startBuild: failed to build the index", t);
+                } finally {
+                    synchronized (ChangeSetIndex.this) {
+                        building = false;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds the changesets that are newer than what the index has and moves the covered id forward. Nothing is added
+     * if they can't be written, since the index only has what is in the file.
+     */
+    private synchronized void append(final List<ChangeSet> newChangeSets, final int covered, final boolean markComplete)
+            throws IOException {
+        load();
+        // The server returns the newest first but the file is kept oldest first
+        final TreeMap<Integer, ChangeSet> toAdd = new TreeMap<Integer, ChangeSet>();
+        for (final ChangeSet changeSet : newChangeSets) {
+            if (changeSet.getIdAsInt() > coveredTo && indexOf(changeSet.getIdAsInt()) < 0) {
+                toAdd.put(changeSet.getIdAsInt(), changeSet);
+            }
+        }
+        if (toAdd.isEmpty() && covered <= coveredTo && (!markComplete || complete)) {
+            return;
+        }
+
+        final long start = file.exists() ? file.length() : 0;
+        final List<Long> newOffsets = new ArrayList<Long>(toAdd.size());
+        try {
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                throw new IOException("Unable to create the folder " + file.getParent());
+            }
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            try {
+                if (start == 0) {
+                    output.writeInt(FORMAT_VERSION);
+                }
+                for (final ChangeSet changeSet : toAdd.values()) {
+                    output.writeByte(RECORD_CHANGESET);
+                    newOffsets.add(start + output.size());
+                    writeChangeSet(output, changeSet);
+                }
+                if (covered > coveredTo) {
+                    output.writeByte(RECORD_COVERED);
+                    output.writeInt(covered);
+                }
+                if (markComplete && !complete) {
+                    output.writeByte(RECORD_COMPLETE);
+                }
+            } finally {
+                output.close();
+            }
+        } catch (final IOException e) {
+            // Drop whatever part of the records made it to the file, they are read from the server again. The file
+            // may be gone if that failed too, so the index is loaded from it again.
+            truncate(start);
+            unload();
+            throw e;
+        }
+
+        int index = 0;
+        for (final ChangeSet changeSet : toAdd.values()) {
+            addToIndexes(changeSet, newOffsets.get(index++));
+        }
+        coveredTo = Math.max(coveredTo, covered);
+        complete |= markComplete;
+    }
+
+    /**
+     * The index can only answer for items that started out with an add at the same path. Anything that was renamed
+     * or branched has history under other paths.
+     */
+    private boolean isHistoryLocal(final RandomAccessFile input, final String path) throws IOException {
+        final Ids pathIds = items.get(path);
+        if (pathIds == null) {
+            return false;
+        }
+
+        boolean added = false;
+        for (int i = 0; i < pathIds.size; i++) {
+            for (final CheckedInChange change : getChangeSet(input, pathIds.ids[i]).getChanges()) {
+                if (StringUtils.equalsIgnoreCase(change.getServerItem(), path)) {
+                    if (change.getChangeTypes().contains(ServerStatusType.RENAME)
+                            || change.getChangeTypes().contains(ServerStatusType.BRANCH)) {
+                        return false;
+                    }
+                    added |= change.getChangeTypes().contains(ServerStatusType.ADD);
+                }
+            }
+        }
+        return added;
+    }
+
+    private void load() {
+        if (ids != null) {
+            return;
+        }
+
+        clear();
+        complete = false;
+        if (!file.exists()) {
+            return;
+        }
+
+        long goodLength = 0;
+        try {
+            final CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+            final DataInputStream input = new DataInputStream(counter);
+            try {
+                if (input.readInt() != FORMAT_VERSION) {
+                    logger.info("load: the index is from another version of the plugin, starting over");
+                    input.close();
+                    delete();
+                    return;
+                }
+                goodLength = counter.getCount();
+                while (true) {
+                    final int type = input.read();
+                    if (type == -1) {
+                        break;
+                    } else if (type == RECORD_CHANGESET) {
+                        final long offset = counter.getCount();
+                        addToIndexes(readChangeSet(input), offset);
+                    } else if (type == RECORD_COVERED) {
+                        coveredTo = Math.max(coveredTo, input.readInt());
+                    } else if (type == RECORD_COMPLETE) {
+                        complete = true;
+                    } else {
+                        throw new IOException("Unknown record " + type);
+                    }
+                    goodLength = counter.getCount();
+                }
+            } finally {
+                input.close();
+            }
+        } catch (final EOFException e) {
+            // The IDE went away in the middle of an append, drop the partial record
+            logger.warn("load: the last record of the index is incomplete, removing it");
+            truncate(goodLength);
+        } catch (final IOException e) {
+            logger.warn("load: unable to read the index, starting over", e);
+            clear();
+            delete();
+        }
+        logger.info("load: found " + count + " changesets up to " + coveredTo);
+    }
+
+    private void clear() {
+        ids = new int[1024];
+        offsets = new long[1024];
+        count = 0;
+        items = new TreeMap<String, Ids>();
+        owners = new HashMap<String, Ids>();
+        recent.clear();
+        coveredTo = 0;
+        complete = false;
+    }
+
+    private void addToIndexes(final ChangeSet changeSet, final long offset) {
+        final int id = changeSet.getIdAsInt();
+        int index = indexOf(id);
+        if (index >= 0) {
+            offsets[index] = offset;
+        } else {
+            // The ids are almost always appended in order, so this is only a copy when the array is full
+            index = -index - 1;
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, count - index);
+            System.arraycopy(offsets, index, offsets, index + 1, count - index);
+            ids[index] = id;
+            offsets[index] = offset;
+            count++;
+        }
+
+        for (final CheckedInChange change : changeSet.getChanges()) {
+            if (StringUtils.isNotEmpty(change.getServerItem())) {
+                getIds(items, change.getServerItem().toLowerCase()).add(id);
+            }
+        }
+        getIds(owners, StringUtils.defaultString(changeSet.getOwner()).toLowerCase()).add(id);
+    }
+
+    private int indexOf(final int id) {
+        return Arrays.binarySearch(ids, 0, count, id);
+    }
+
+    /**
+     * Returns the changeset from the recently read ones or reads it from the file
+     */
+    private ChangeSet getChangeSet(final RandomAccessFile input, final int id) throws IOException {
+        ChangeSet changeSet = recent.get(id);
+        if (changeSet == null) {
+            final int index = indexOf(id);
+            if (index < 0) {
+                throw new IOException("Changeset " + id + " is not in the index");
+            }
+            input.seek(offsets[index]);
+            changeSet = readChangeSet(new DataInputStream(new BufferedInputStream(Channels.newInputStream(input.getChannel()))));
+            recent.put(id, changeSet);
+        }
+        return changeSet;
+    }
+
+    private static ChangeSet filterChanges(final ChangeSet changeSet, final String path, final boolean recursive) {
+        final List<CheckedInChange> changes = new ArrayList<CheckedInChange>();
+        for (final CheckedInChange change : changeSet.getChanges()) {
+            final String item = StringUtils.defaultString(change.getServerItem()).toLowerCase();
+            if (item.equals(path) || (recursive && item.startsWith(path + "/"))) {
+                changes.add(change);
+            }
+        }
+        return new ChangeSet(changeSet.getId(), changeSet.getOwner(), changeSet.getCommitter(), changeSet.getDate(),
+                changeSet.getComment(), changes);
+    }
+
+    private static void writeChangeSet(final DataOutputStream output, final ChangeSet changeSet) throws IOException {
+        writeString(output, changeSet.getId());
+        writeString(output, changeSet.getOwner());
+        writeString(output, changeSet.getCommitter());
+        writeString(output, changeSet.getDate());
+        writeString(output, changeSet.getComment());
+        output.writeInt(changeSet.getChanges().size());
+        for (final CheckedInChange change : changeSet.getChanges()) {
+            writeString(output, change.getServerItem());
+            final List<String> types = new ArrayList<String>(change.getChangeTypes().size());
+            for (final ServerStatusType type : change.getChangeTypes()) {
+                if (type != ServerStatusType.UNKNOWN) {
+                    types.add(type.name().toLowerCase());
+                }
+            }
+            writeString(output, StringUtils.join(types, ","));
+        }
+    }
+
+    private static ChangeSet readChangeSet(final DataInputStream input) throws IOException {
+        final String id = readString(input);
+        final String owner = readString(input);
+        final String committer = readString(input);
+        final String date = readString(input);
+        final String comment = readString(input);
+        final int count = input.readInt();
+        final List<CheckedInChange> changes = new ArrayList<CheckedInChange>(count);
+        for (int i = 0; i < count; i++) {
+            changes.add(new CheckedInChange(readString(input), readString(input), id, date));
+        }
+        return new ChangeSet(id, owner, committer, date, comment, changes);
+    }
+
+    // writeUTF is limited to 64K which a comment can go over
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        final byte[] bytes = StringUtils.defaultString(value).getBytes(Charsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    private void truncate(final long length) {
+        try {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(length);
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (final IOException e) {
+            logger.warn("truncate: unable to truncate " + file.getPath() + ", starting over", e);
+            delete();
+        }
+    }
+
+    private void delete() {
+        if (file.exists() && !file.delete()) {
+            logger.warn("delete: unable to delete " + file.getPath());
+        }
+    }
+
+    private static void addIds(final Set<Integer> candidates, final Ids pathIds) {
+        if (pathIds != null) {
+            for (int i = 0; i < pathIds.size; i++) {
+                candidates.add(pathIds.ids[i]);
+            }
+        }
+    }
+
+    private static void closeQuietly(final RandomAccessFile input) {
+        if (input != null) {
+            try {
+                input.close();
+            } catch (final IOException e) {
+                logger.warn("closeQuietly: unable to close " + e.getMessage());
+            }
+        }
+    }
+
+    private static Ids getIds(final Map<String, Ids> map, final String key) {
+        Ids ids = map.get(key);
+        if (ids == null) {
+            ids = new Ids();
+            map.put(key, ids);
+        }
+        return ids;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("ChangeSetIndex-%d")
+                    .build());
+        }
+        return executor;
+    }
+
+    /**
+     * Goes through all of the changesets in the index, newest first
+     */
+    private class DescendingIds implements Iterator<Integer> {
+        private int next = count - 1;
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public Integer next() {
+            return ids[next--];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A growable list of changeset ids. There are a lot of these so they are kept as ints instead of Integers.
+     */
+    private static class Ids {
+        private int[] ids = new int[2];
+        private int size;
+
+        private void add(final int id) {
+            // The same item can be in a changeset more than once (e.g. a rename and an edit)
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
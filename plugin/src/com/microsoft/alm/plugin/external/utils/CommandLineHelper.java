@@ -0,0 +1,54 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the arguments of the TF command line under the length limit of the OS.
+ */
+public class CommandLineHelper {
+    // Windows limits the command line to 8191 characters when it goes through cmd.exe, leave room for the tool location
+    public static final int MAX_ARGUMENT_LENGTH = 7000;
+
+    /**
+     * Splits the items into batches that each fit on the command line. Empty items are left out.
+     */
+    public static List<List<String>> createBatches(final List<String> items) {
+        return createBatches(items, MAX_ARGUMENT_LENGTH);
+    }
+
+    /**
+     * Splits the items into batches where the total length of the items (plus the spaces between them) does not go
+     * over the max length. An item that is longer than the max length on its own gets a batch to itself.
+     */
+    @VisibleForTesting
+    static List<List<String>> createBatches(final List<String> items, final int maxLength) {
+        final List<List<String>> batches = new ArrayList<List<String>>();
+        List<String> batch = new ArrayList<String>();
+        int length = 0;
+        for (final String item : items) {
+            if (StringUtils.isEmpty(item)) {
+                continue;
+            }
+            // Items with spaces are quoted on the command line
+            final int itemLength = item.length() + 3;
+            if (!batch.isEmpty() && length + itemLength > maxLength) {
+                batches.add(batch);
+                batch = new ArrayList<String>();
+                length = 0;
+            }
+            batch.add(item);
+            length += itemLength;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
@@ -3,12 +3,14 @@
 
 package com.microsoft.alm.plugin.external.utils;
 
+import com.google.common.collect.Lists;
 import com.intellij.openapi.project.Project;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.common.utils.SystemHelper;
 import com.microsoft.alm.helpers.Path;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.ToolRunnerCache;
 import com.microsoft.alm.plugin.external.commands.AddCommand;
 import com.microsoft.alm.plugin.external.commands.CheckinCommand;
 import com.microsoft.alm.plugin.external.commands.Command;
@@ -65,6 +67,11 @@ import java.util.List;
 public class CommandUtils {
     protected static final Logger logger = LoggerFactory.getLogger(CommandUtils.class);
 
+    // Add, undo, delete and lock run in commands of at most this many items so that each command finishes well
+    // within the command timeout. A checkin is never split since it has to create a single changeset.
+    public static final String PROP_MAX_ITEMS_PER_COMMAND = "com.microsoft.alm.plugin.external.maxItemsPerCommand";
+    private static final int DEFAULT_MAX_ITEMS_PER_COMMAND = 1000;
+
     /**
      * This method will return just the workspace name or empty string (never null)
      *
@@ -80,15 +87,15 @@ public class CommandUtils {
     }
 
     /**
-     * This method will return a partially populated Workspace object that includes just the name, server, and mappings
+     * This method will return a partially populated Workspace object that includes just the name, server, and mappings.
+     * The workspace is cached until something changes it, so this is cheap to call.
      *
      * @param project
      * @return
      */
     public static Workspace getPartialWorkspace(final Project project) {
         ArgumentHelper.checkNotNull(project, "project");
-        final FindWorkspaceCommand command = new FindWorkspaceCommand(project.getBasePath());
-        return command.runSynchronously();
+        return WorkspaceCache.getInstance().getPartialWorkspace(project);
     }
 
     /**
@@ -283,6 +290,18 @@ public class CommandUtils {
         return command.runSynchronously();
     }
 
+    /**
+     * Starts a get that hands each file to the consumer as tf gets it and returns right away. The listener is called
+     * when the get is done and the get can be stopped by cancelling the command that is returned.
+     */
+    public static SyncCommand startSync(final ServerContext context, final List<String> filesUpdatePaths,
+                                        final boolean needRecursion, final SyncCommand.FileConsumer consumer,
+                                        final Command.Listener<SyncResults> listener) {
+        final SyncCommand command = new SyncCommand(context, filesUpdatePaths, needRecursion, false, false, consumer);
+        command.run(listener);
+        return command;
+    }
+
     /**
      * This method forces the Get of a file from the server
      *
@@ -299,8 +318,12 @@ public class CommandUtils {
      * This is a synchronous call so it should only be called on a background thread.
      */
     public static List<String> undoLocalFiles(final ServerContext context, final List<String> files) {
-        final UndoCommand command = new UndoCommand(context, files);
-        return command.runSynchronously();
+        final List<String> undoneFiles = new ArrayList<String>();
+        for (final List<String> chunk : splitItems(files)) {
+            final UndoCommand command = new UndoCommand(context, chunk);
+            undoneFiles.addAll(command.runSynchronously());
+        }
+        return undoneFiles;
     }
 
     /**
@@ -408,6 +431,8 @@ public class CommandUtils {
     }
 
     private static MergeConflict findMergeConflict(final ServerContext context, final Conflict originalConflict, final MergeResults mergeResults, final String workingFolder) {
+        // Not read through the ItemInfoCache: the conflict path may be relative to the working folder, and the merge
+        // and resolve commands that come before and after this clear the cache anyway
         final ItemInfo conflictInfo = getItemInfo(context, workingFolder, originalConflict.getLocalPath());
         if (mergeResults == null || conflictInfo == null) {
             return null;
@@ -535,8 +560,12 @@ public class CommandUtils {
      * @return
      */
     public static List<String> addFiles(final ServerContext context, final List<String> filesToAddPaths) {
-        final Command<List<String>> addCommand = new AddCommand(context, filesToAddPaths);
-        return addCommand.runSynchronously();
+        final List<String> addedFiles = new ArrayList<String>();
+        for (final List<String> chunk : splitItems(filesToAddPaths)) {
+            final Command<List<String>> addCommand = new AddCommand(context, chunk);
+            addedFiles.addAll(addCommand.runSynchronously());
+        }
+        return addedFiles;
     }
 
     /**
@@ -549,7 +578,16 @@ public class CommandUtils {
      */
     public static String checkinFiles(final ServerContext context, final List<String> files,
                                       final String preparedComment, final List<Integer> workItemsToAssociate) {
-        final Command<String> checkinCommand = new CheckinCommand(context, files, preparedComment, workItemsToAssociate);
+        return checkinFiles(context, files, preparedComment, workItemsToAssociate, null);
+    }
+
+    /**
+     * Checks in the list of files in a single command and hands each file to the consumer as it is checked in
+     */
+    public static String checkinFiles(final ServerContext context, final List<String> files,
+                                      final String preparedComment, final List<Integer> workItemsToAssociate,
+                                      final CheckinCommand.FileConsumer consumer) {
+        final Command<String> checkinCommand = new CheckinCommand(context, files, preparedComment, workItemsToAssociate, consumer);
         return checkinCommand.runSynchronously();
     }
 
@@ -581,7 +619,15 @@ public class CommandUtils {
      */
     public static List<ItemInfo> getItemInfos(final ServerContext context, final String workingFolder,
                                               final List<String> itemPaths) {
-        final Command<List<ItemInfo>> infoCommand = new InfoCommand(context, workingFolder, itemPaths);
+        return getItemInfos(context, workingFolder, itemPaths, false);
+    }
+
+    /**
+     * Returns the item infos for the item paths provided and, if recursive, for everything below them.
+     */
+    public static List<ItemInfo> getItemInfos(final ServerContext context, final String workingFolder,
+                                              final List<String> itemPaths, final boolean recursive) {
+        final Command<List<ItemInfo>> infoCommand = new InfoCommand(context, workingFolder, itemPaths, recursive);
         return infoCommand.runSynchronously();
     }
 
@@ -680,8 +726,12 @@ public class CommandUtils {
      */
     public static List<String> deleteFiles(final ServerContext context, final List<String> filePaths,
                                            final String workingFolder, final boolean recursive) {
-        final DeleteCommand deleteCommand = new DeleteCommand(context, filePaths, workingFolder, recursive);
-        return deleteCommand.runSynchronously();
+        final List<String> deletedFiles = new ArrayList<String>();
+        for (final List<String> chunk : splitItems(filePaths)) {
+            final DeleteCommand deleteCommand = new DeleteCommand(context, chunk, workingFolder, recursive);
+            deletedFiles.addAll(deleteCommand.runSynchronously());
+        }
+        return deletedFiles;
     }
 
     /**
@@ -697,7 +747,37 @@ public class CommandUtils {
      */
     public static void lock(final ServerContext context, final String workingFolder, final LockCommand.LockLevel lockLevel,
                             final boolean recursive, final List<String> itemSpecs) {
-        final LockCommand lockCommand = new LockCommand(context, workingFolder, lockLevel, recursive, itemSpecs);
-        lockCommand.runSynchronously();
+        for (final List<String> chunk : splitItems(itemSpecs)) {
+            final LockCommand lockCommand = new LockCommand(context, workingFolder, lockLevel, recursive, chunk);
+            lockCommand.runSynchronously();
+        }
+    }
+
+    /**
+     * Splits the items of a command that doesn't have to change them all at once into chunks of the max size. When
+     * the tool can only take its arguments on the command line the chunks are also kept under the length limit of
+     * the command line.
+     */
+    private static List<List<String>> splitItems(final List<String> items) {
+        if (items == null || items.isEmpty()) {
+            return Collections.singletonList(items);
+        }
+        final List<List<String>> batches = ToolRunnerCache.isArgumentInputSupported() ?
+                Collections.singletonList(items) : CommandLineHelper.createBatches(items);
+
+        final String value = System.getProperty(PROP_MAX_ITEMS_PER_COMMAND);
+        final int maxItems = value != null ? SystemHelper.toInt(value, DEFAULT_MAX_ITEMS_PER_COMMAND) : DEFAULT_MAX_ITEMS_PER_COMMAND;
+        final List<List<String>> chunks = new ArrayList<List<String>>();
+        for (final List<String> batch : batches) {
+            if (batch.size() <= maxItems || maxItems <= 0) {
+                chunks.add(batch);
+            } else {
+                chunks.addAll(Lists.partition(batch, maxItems));
+            }
+        }
+        if (chunks.size() > 1) {
+            logger.info("splitItems: running " + items.size() + " items in " + chunks.size() + " commands");
+        }
+        return chunks;
     }
 }
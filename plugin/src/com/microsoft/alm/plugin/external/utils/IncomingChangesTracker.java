@@ -0,0 +1,259 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.CheckedInChange;
+import com.microsoft.alm.plugin.external.models.ItemInfo;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the items of a workspace that have newer versions on the server than in the workspace without replaying
+ * the history of the workspace.
+ * <p/>
+ * For each mapping the tracker remembers the latest changeset it has looked at (the high-water mark) and the items
+ * that were behind the server at that point. Asking again costs one history query for the latest changeset under
+ * the mapping. Only when that is newer than the high-water mark are the changesets in between read, and only the
+ * items they changed are compared with the local versions. The first time a mapping is seen its local versions are
+ * read with a single recursive info.
+ * <p/>
+ * A get changes the local versions, so {@link #invalidate()} is called after every sync. The items the tracker
+ * still thinks are incoming are then checked again the next time it is asked.
+ * <p/>
+ * No lock is held while the commands run. Each caller works on a copy of the state of a mapping and only replaces
+ * the state if nobody else did in the meantime. A sync that happens while a mapping is being read bumps the
+ * generation, so the state that is stored is still stale and its items are checked again the next time.
+ */
+public class IncomingChangesTracker {
+    private static final Logger logger = LoggerFactory.getLogger(IncomingChangesTracker.class);
+
+    // How many items to pass to a single info command
+    private static final int INFO_BATCH_SIZE = 100;
+    // Above this many new changesets one recursive info is cheaper than reading the changesets
+    private static final int MAX_CHANGESETS_TO_READ = 256;
+
+    // Workspace and mapping to what is known about the mapping
+    private final ConcurrentMap<String, MappingState> states = new ConcurrentHashMap<String, MappingState>();
+    // Bumped every time the local versions change
+    private final AtomicLong generation = new AtomicLong();
+
+    private static class Holder {
+        private static final IncomingChangesTracker INSTANCE = new IncomingChangesTracker();
+    }
+
+    public static IncomingChangesTracker getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @VisibleForTesting
+    IncomingChangesTracker() {
+    }
+
+    /**
+     * Returns the items of the workspace whose server version is newer than their local version. Items that are on
+     * the server but not in the workspace yet have a local version of 0.
+     */
+    public List<ItemInfo> getIncomingItems(final ServerContext context, final Workspace workspace) {
+        ArgumentHelper.checkNotNull(workspace, "workspace");
+
+        final String workspaceKey = workspace.getServer() + "|" + workspace.getName() + "|";
+        final Set<String> mappingKeys = new HashSet<String>();
+        // Server item (lower case) to its info, nested mappings can both report the same item
+        final Map<String, ItemInfo> incoming = new LinkedHashMap<String, ItemInfo>();
+        for (final Workspace.Mapping mapping : workspace.getMappings()) {
+            if (mapping.isCloaked() || StringUtils.isEmpty(mapping.getLocalPath())) {
+                continue;
+            }
+
+            final String key = workspaceKey + mapping.getServerPath().toLowerCase() + "|" + mapping.getLocalPath();
+            mappingKeys.add(key);
+            final MappingState state = states.get(key);
+            final MappingState updated = update(context, workspace, mapping, state);
+            if (updated != state) {
+                // If another caller stored a state first, theirs is kept. Either one is up to date.
+                if (state == null) {
+                    states.putIfAbsent(key, updated);
+                } else {
+                    states.replace(key, state, updated);
+                }
+            }
+            for (final ItemInfo info : updated.incoming.values()) {
+                incoming.put(info.getServerItem().toLowerCase(), info);
+            }
+        }
+
+        // Forget the mappings that have been removed from the workspace
+        final Iterator<String> keys = states.keySet().iterator();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            if (key.startsWith(workspaceKey) && !mappingKeys.contains(key)) {
+                keys.remove();
+            }
+        }
+
+        return new ArrayList<ItemInfo>(incoming.values());
+    }
+
+    /**
+     * Marks the local versions of every mapping as out of date. This should be called after anything that gets
+     * items into a workspace.
+     */
+    public void invalidate() {
+        logger.info("invalidate: the local versions have changed");
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Returns the latest changeset of anything under the server path, or 0 if there is none
+     */
+    @VisibleForTesting
+    protected int getLatestChangeset(final ServerContext context, final String serverPath) {
+        final List<ChangeSet> changeSets = CommandUtils.getHistoryCommand(context, serverPath, null, 1, true, StringUtils.EMPTY);
+        return changeSets.isEmpty() ? 0 : changeSets.get(0).getIdAsInt();
+    }
+
+    /**
+     * Runs the history command. Tests override this to avoid calling the command line.
+     */
+    @VisibleForTesting
+    protected List<ChangeSet> getHistory(final ServerContext context, final String serverPath, final String version,
+                                         final int stopAfter) {
+        return CommandUtils.getHistoryCommand(context, serverPath, version, stopAfter, true, StringUtils.EMPTY);
+    }
+
+    /**
+     * Runs the info command. Tests override this to avoid calling the command line.
+     */
+    @VisibleForTesting
+    protected List<ItemInfo> getItemInfos(final ServerContext context, final String workingFolder,
+                                          final List<String> itemPaths, final boolean recursive) {
+        return CommandUtils.getItemInfos(context, workingFolder, itemPaths, recursive);
+    }
+
+    /**
+     * Returns the state of the mapping brought up to date, or the same state if nothing changed. The state passed in
+     * is not changed since other callers may be reading it.
+     */
+    private MappingState update(final ServerContext context, final Workspace workspace, final Workspace.Mapping mapping,
+                                final MappingState state) {
+        // Read before the commands run, so a sync while they run leaves the new state stale
+        final long readGeneration = generation.get();
+        final int latest = getLatestChangeset(context, mapping.getServerPath());
+        final Map<String, ItemInfo> incoming = new HashMap<String, ItemInfo>();
+        if (state == null || latest < state.highWaterMark) {
+            readAll(context, mapping, incoming);
+        } else if (latest > state.highWaterMark) {
+            incoming.putAll(state.incoming);
+            final List<ChangeSet> changeSets = getHistory(context, mapping.getServerPath(),
+                    "C" + (state.highWaterMark + 1) + "~C" + latest, MAX_CHANGESETS_TO_READ + 1);
+            if (changeSets.size() > MAX_CHANGESETS_TO_READ) {
+                readAll(context, mapping, incoming);
+            } else {
+                final Set<String> serverItems = getServerItems(state.incoming.values());
+                for (final ChangeSet changeSet : changeSets) {
+                    for (final CheckedInChange change : changeSet.getChanges()) {
+                        // Skip the items that are cloaked or not mapped
+                        if (workspace.getMappingIndex().getLocalPath(change.getServerItem()) != null) {
+                            serverItems.add(change.getServerItem());
+                        }
+                    }
+                }
+                readItems(context, mapping, incoming, serverItems);
+            }
+        } else if (state.generation != readGeneration) {
+            incoming.putAll(state.incoming);
+            readItems(context, mapping, incoming, getServerItems(state.incoming.values()));
+        } else {
+            logger.debug("update: nothing changed under " + mapping.getServerPath());
+            return state;
+        }
+
+        return new MappingState(latest, readGeneration, incoming);
+    }
+
+    /**
+     * Reads the local versions of everything under the mapping. If the info fails, no state is stored and the
+     * mapping is read again next time.
+     */
+    private void readAll(final ServerContext context, final Workspace.Mapping mapping, final Map<String, ItemInfo> incoming) {
+        logger.info("readAll: reading the local versions of " + mapping.getLocalPath());
+        incoming.clear();
+        compare(getItemInfos(context, mapping.getLocalPath(), Collections.singletonList(mapping.getLocalPath()), true), incoming);
+    }
+
+    private void readItems(final ServerContext context, final Workspace.Mapping mapping, final Map<String, ItemInfo> incoming,
+                           final Set<String> serverItems) {
+        final List<String> items = new ArrayList<String>(serverItems);
+        for (int start = 0; start < items.size(); start += INFO_BATCH_SIZE) {
+            final List<String> batch = items.subList(start, Math.min(start + INFO_BATCH_SIZE, items.size()));
+            final List<ItemInfo> infos;
+            try {
+                infos = getItemInfos(context, mapping.getLocalPath(), batch, false);
+            } catch (final RuntimeException e) {
+                // Items that were destroyed on the server make info fail, the recursive info doesn't include them
+                logger.warn("readItems: info failed, reading all of " + mapping.getLocalPath(), e);
+                readAll(context, mapping, incoming);
+                return;
+            }
+            for (final String serverItem : batch) {
+                incoming.remove(serverItem.toLowerCase());
+            }
+            compare(infos, incoming);
+        }
+    }
+
+    private static void compare(final List<ItemInfo> infos, final Map<String, ItemInfo> incoming) {
+        for (final ItemInfo info : infos) {
+            if (StringUtils.isNotEmpty(info.getServerItem()) && info.getServerVersionAsInt() > info.getLocalVersionAsInt()) {
+                incoming.put(info.getServerItem().toLowerCase(), info);
+            }
+        }
+    }
+
+    private static Set<String> getServerItems(final Collection<ItemInfo> infos) {
+        final Set<String> serverItems = new HashSet<String>();
+        for (final ItemInfo info : infos) {
+            serverItems.add(info.getServerItem());
+        }
+        return serverItems;
+    }
+
+    /**
+     * What is known about a mapping. It is never changed once it is stored, a newer state replaces it.
+     */
+    private static class MappingState {
+        // Latest changeset under the mapping when it was read
+        private final int highWaterMark;
+        // The generation of the local versions when the mapping was read
+        private final long generation;
+        // Server item (lower case) to the info of the items that were behind the server
+        private final Map<String, ItemInfo> incoming;
+
+        private MappingState(final int highWaterMark, final long generation, final Map<String, ItemInfo> incoming) {
+            this.highWaterMark = highWaterMark;
+            this.generation = generation;
+            this.incoming = incoming;
+        }
+    }
+}
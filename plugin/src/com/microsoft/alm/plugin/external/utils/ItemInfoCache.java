@@ -0,0 +1,264 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.SettableFuture;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.common.utils.SystemHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.commands.Command;
+import com.microsoft.alm.plugin.external.commands.InfoCommand;
+import com.microsoft.alm.plugin.external.models.ItemInfo;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A short lived cache of the item info of local paths, so that actions that are run again and again on the same
+ * selection don't run the info command every time.
+ * <p/>
+ * The paths that are not cached are read with one info command per request (split only to keep the command line
+ * short enough). If another thread is already reading a path the request waits for that result instead of reading
+ * the path again. Infos expire after 30 seconds by default and are forgotten as soon as something changes the
+ * pending changes or the local versions of their paths: the pending change index passes its invalidations on, and
+ * the commands that change items clear the whole cache. The expiry can be changed with the system property below.
+ * <p/>
+ * Only local paths are cached. Lookups that need a working folder (server paths, or the paths the conflict commands
+ * print relative to the folder they were run in) can't be keyed by path alone and still go to CommandUtils.
+ */
+public class ItemInfoCache {
+    private static final Logger logger = LoggerFactory.getLogger(ItemInfoCache.class);
+
+    public static final String PROP_EXPIRY_SECONDS = "com.microsoft.alm.plugin.external.info.cacheSeconds";
+
+    private static final int DEFAULT_EXPIRY_SECONDS = 30;
+    // The cache is only meant for what the user is working on right now, so it is simply cleared when it gets big
+    private static final int MAX_ENTRIES = 10000;
+
+    private final long expiryMillis;
+    // Normalized local path to its info
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    // Normalized local path to the result of the command that is reading it right now
+    private final Map<String, SettableFuture<ItemInfo>> reading = new HashMap<String, SettableFuture<ItemInfo>>();
+    // Bumped on every invalidation so that an info read before it isn't cached after it
+    private int generation;
+
+    private static class Holder {
+        private static final ItemInfoCache INSTANCE = new ItemInfoCache(TimeUnit.SECONDS.toMillis(getExpirySeconds()));
+    }
+
+    public static ItemInfoCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @VisibleForTesting
+    ItemInfoCache(final long expiryMillis) {
+        this.expiryMillis = expiryMillis;
+    }
+
+    /**
+     * Returns the item info of a local path, running the info command only if it isn't cached.
+     * This is a synchronous call so it should only be called on a background thread.
+     */
+    public ItemInfo getItemInfo(final ServerContext context, final String localPath) {
+        ArgumentHelper.checkNotEmptyString(localPath, "localPath");
+        final List<ItemInfo> infos = getItemInfos(context, Collections.singletonList(localPath));
+        if (infos.size() > 0) {
+            return infos.get(0);
+        }
+
+        throw new RuntimeException("No items match " + localPath);
+    }
+
+    /**
+     * Returns the item infos of the local paths in the order of the paths. Like the info command, a path with no info
+     * is left out and a failure for any of the paths fails the whole request.
+     * This is a synchronous call so it should only be called on a background thread.
+     */
+    public List<ItemInfo> getItemInfos(final ServerContext context, final List<String> localPaths) {
+        ArgumentHelper.checkNotNull(localPaths, "localPaths");
+
+        final Map<String, String> keys = new LinkedHashMap<String, String>();
+        for (final String localPath : localPaths) {
+            if (StringUtils.isNotEmpty(localPath)) {
+                keys.put(PendingChangeIndex.normalize(localPath), localPath);
+            }
+        }
+
+        final Map<String, ItemInfo> found = new HashMap<String, ItemInfo>();
+        final Map<String, String> toRead = new LinkedHashMap<String, String>();
+        final Map<String, SettableFuture<ItemInfo>> owned = new HashMap<String, SettableFuture<ItemInfo>>();
+        final Map<String, SettableFuture<ItemInfo>> waitingFor = new HashMap<String, SettableFuture<ItemInfo>>();
+        final int readGeneration;
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            for (final Map.Entry<String, String> key : keys.entrySet()) {
+                final Entry entry = entries.get(key.getKey());
+                if (entry != null && now - entry.readTime < expiryMillis) {
+                    found.put(key.getKey(), entry.info);
+                } else if (reading.containsKey(key.getKey())) {
+                    waitingFor.put(key.getKey(), reading.get(key.getKey()));
+                } else {
+                    final SettableFuture<ItemInfo> future = SettableFuture.create();
+                    reading.put(key.getKey(), future);
+                    owned.put(key.getKey(), future);
+                    toRead.put(key.getKey(), key.getValue());
+                }
+            }
+            readGeneration = generation;
+        }
+        logger.info("getItemInfos: " + found.size() + " cached, " + toRead.size() + " to read, " + waitingFor.size() + " being read");
+
+        final List<ItemInfo> unmatched = new ArrayList<ItemInfo>();
+        if (!toRead.isEmpty()) {
+            read(context, toRead, owned, readGeneration, found, unmatched);
+        }
+
+        // The paths that another thread was reading are read again here if that failed, the failure may not be theirs
+        final Map<String, String> toReadAgain = new LinkedHashMap<String, String>();
+        for (final Map.Entry<String, SettableFuture<ItemInfo>> future : waitingFor.entrySet()) {
+            try {
+                final ItemInfo info = future.getValue().get();
+                if (info != null) {
+                    found.put(future.getKey(), info);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (final ExecutionException e) {
+                toReadAgain.put(future.getKey(), keys.get(future.getKey()));
+            }
+        }
+        if (!toReadAgain.isEmpty()) {
+            match(getItemInfos(context, new ArrayList<String>(toReadAgain.values())), toReadAgain, found, unmatched);
+        }
+
+        final List<ItemInfo> infos = new ArrayList<ItemInfo>(keys.size() + unmatched.size());
+        for (final String key : keys.keySet()) {
+            final ItemInfo info = found.get(key);
+            if (info != null) {
+                infos.add(info);
+            }
+        }
+        infos.addAll(unmatched);
+        return infos;
+    }
+
+    /**
+     * Forgets the info of the path and everything under it
+     */
+    public synchronized void invalidate(final String localPath) {
+        if (StringUtils.isEmpty(localPath)) {
+            return;
+        }
+
+        final String key = PendingChangeIndex.normalize(localPath);
+        final Iterator<String> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            final String cachedKey = keys.next();
+            if (cachedKey.equals(key) || cachedKey.startsWith(key + "/")) {
+                keys.remove();
+            }
+        }
+        generation++;
+    }
+
+    /**
+     * Forgets everything. This should be called after anything that changes items in a workspace.
+     */
+    public synchronized void invalidateAll() {
+        logger.info("invalidateAll: clearing the cached item infos");
+        entries.clear();
+        generation++;
+    }
+
+    /**
+     * Runs the info command. Tests override this to avoid calling the command line.
+     */
+    @VisibleForTesting
+    protected List<ItemInfo> readInfos(final ServerContext context, final List<String> localPaths) {
+        final List<ItemInfo> infos = new ArrayList<ItemInfo>(localPaths.size());
+        for (final List<String> batch : CommandLineHelper.createBatches(localPaths)) {
+            final Command<List<ItemInfo>> command = new InfoCommand(context, null, batch);
+            infos.addAll(command.runSynchronously());
+        }
+        return infos;
+    }
+
+    private void read(final ServerContext context, final Map<String, String> toRead,
+                      final Map<String, SettableFuture<ItemInfo>> owned, final int readGeneration,
+                      final Map<String, ItemInfo> found, final List<ItemInfo> unmatched) {
+        final Map<String, ItemInfo> read = new HashMap<String, ItemInfo>();
+        try {
+            match(readInfos(context, new ArrayList<String>(toRead.values())), toRead, read, unmatched);
+        } catch (final RuntimeException e) {
+            synchronized (this) {
+                reading.keySet().removeAll(toRead.keySet());
+            }
+            for (final SettableFuture<ItemInfo> future : owned.values()) {
+                future.setException(e);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            reading.keySet().removeAll(toRead.keySet());
+            if (readGeneration == generation) {
+                if (entries.size() + read.size() > MAX_ENTRIES) {
+                    entries.clear();
+                }
+                final long now = System.currentTimeMillis();
+                for (final Map.Entry<String, ItemInfo> info : read.entrySet()) {
+                    entries.put(info.getKey(), new Entry(info.getValue(), now));
+                }
+            }
+        }
+        for (final Map.Entry<String, SettableFuture<ItemInfo>> future : owned.entrySet()) {
+            future.getValue().set(read.get(future.getKey()));
+        }
+        found.putAll(read);
+    }
+
+    /**
+     * Puts each info under the path it was asked for. The command line may spell a path differently than it was
+     * asked for (e.g. a relative path), those infos are still returned but they are not cached.
+     */
+    private static void match(final List<ItemInfo> infos, final Map<String, String> asked,
+                              final Map<String, ItemInfo> matched, final List<ItemInfo> unmatched) {
+        for (final ItemInfo info : infos) {
+            final String key = StringUtils.isNotEmpty(info.getLocalItem()) ? PendingChangeIndex.normalize(info.getLocalItem()) : null;
+            if (key != null && asked.containsKey(key) && !matched.containsKey(key)) {
+                matched.put(key, info);
+            } else {
+                unmatched.add(info);
+            }
+        }
+    }
+
+    private static int getExpirySeconds() {
+        final String value = System.getProperty(PROP_EXPIRY_SECONDS);
+        return value != null ? SystemHelper.toInt(value, DEFAULT_EXPIRY_SECONDS) : DEFAULT_EXPIRY_SECONDS;
+    }
+
+    private static class Entry {
+        private final ItemInfo info;
+        private final long readTime;
+
+        public Entry(final ItemInfo info, final long readTime) {
+            this.info = info;
+            this.readTime = readTime;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.microsoft.alm.common.utils.SystemHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in memory index of the pending changes of a workspace keyed by local path.
+ * <p/>
+ * Asking for the changes under a root runs the status command only for the parts of the tree that the index doesn't
+ * know about yet: roots that have never been asked for and paths that were invalidated since they were last read.
+ * Everything else is answered from the index. Paths are invalidated by the file system listeners and by the
+ * operations that change pending changes, so edits in one file only cost a status of that file.
+ * <p/>
+ * Changes made outside of the IDE (e.g. with the command line) are not seen until the index is reconciled. That
+ * happens when refresh is called or when the last full status is older than the reconcile interval, which can be
+ * changed with the system property below.
+ */
+public class PendingChangeIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PendingChangeIndex.class);
+
+    public static final String PROP_RECONCILE_INTERVAL_SECONDS = "com.microsoft.alm.plugin.external.status.reconcileIntervalSeconds";
+
+    private static final int DEFAULT_RECONCILE_INTERVAL_SECONDS = 5 * 60;
+    private static final char SEPARATOR = '/';
+    // Sorts after any character that can appear in a path, used to find all of the keys under a folder
+    private static final char MAX_CHAR = '\uffff';
+
+    private final long reconcileIntervalMillis;
+    // The changes keyed by normalized local path
+    private final TreeMap<String, PendingChange> changes = new TreeMap<String, PendingChange>();
+    // The roots whose status has been read since the last reconcile
+    private final TreeSet<String> knownRoots = new TreeSet<String>();
+    // Paths that may have changed since their status was read, normalized path to the original path
+    private final TreeMap<String, String> invalidPaths = new TreeMap<String, String>();
+    private long lastReconcile;
+
+    public PendingChangeIndex() {
+        this(TimeUnit.SECONDS.toMillis(getReconcileIntervalSeconds()));
+    }
+
+    @VisibleForTesting
+    PendingChangeIndex(final long reconcileIntervalMillis) {
+        this.reconcileIntervalMillis = reconcileIntervalMillis;
+    }
+
+    /**
+     * Returns the pending changes under the roots, running the status command for any part of them that is not up to
+     * date in the index. This is a synchronous call so it should only be called on a background thread.
+     */
+    public List<PendingChange> getChanges(final ServerContext context, final Collection<String> roots) {
+        final List<String> normalizedRoots = new ArrayList<String>(roots.size());
+        for (final String root : roots) {
+            normalizedRoots.add(normalize(root));
+        }
+
+        final Map<String, String> pathsToRead = getPathsToRead(normalizedRoots, roots);
+        if (!pathsToRead.isEmpty()) {
+            logger.info("getChanges: reading the status of " + pathsToRead.size() + " paths");
+            final List<String> failedPaths = new ArrayList<String>();
+            final List<PendingChange> readChanges = readStatus(context, new ArrayList<String>(pathsToRead.values()), failedPaths);
+            update(pathsToRead, readChanges, failedPaths);
+        }
+
+        final Set<PendingChange> result = new LinkedHashSet<PendingChange>();
+        synchronized (this) {
+            for (final String root : normalizedRoots) {
+                result.addAll(getIndexedChanges(root));
+            }
+        }
+        return new ArrayList<PendingChange>(result);
+    }
+
+    /**
+     * Marks the path and everything under it to be read again the next time it is asked for. The cached item infos
+     * of the path are out of date too.
+     */
+    public synchronized void invalidate(final String path) {
+        if (StringUtils.isNotEmpty(path)) {
+            invalidPaths.put(normalize(path), path);
+            ItemInfoCache.getInstance().invalidate(path);
+        }
+    }
+
+    /**
+     * Forgets everything so that the next request reads the status of its roots again.
+     */
+    public synchronized void refresh() {
+        ItemInfoCache.getInstance().invalidateAll();
+        changes.clear();
+        knownRoots.clear();
+        invalidPaths.clear();
+        lastReconcile = 0;
+    }
+
+    /**
+     * Runs the status command and adds the paths whose status could not be read to failedPaths.
+     * Tests override this to avoid calling the command line.
+     */
+    @VisibleForTesting
+    protected List<PendingChange> readStatus(final ServerContext context, final List<String> paths,
+                                             final List<String> failedPaths) {
+        return StatusBatcher.getStatus(context, paths, failedPaths);
+    }
+
+    /**
+     * Decides which paths need to be read to answer for the roots and takes them out of the invalid paths.
+     * Returns a map of the normalized paths to the paths to pass to the command line.
+     */
+    private synchronized Map<String, String> getPathsToRead(final List<String> normalizedRoots, final Collection<String> roots) {
+        final long now = System.currentTimeMillis();
+        if (now - lastReconcile > reconcileIntervalMillis) {
+            logger.info("getPathsToRead: reconciling the pending change index");
+            refresh();
+            lastReconcile = now;
+        }
+
+        final Map<String, String> pathsToRead = new TreeMap<String, String>();
+        final Iterator<String> originalRoots = roots.iterator();
+        for (final String root : normalizedRoots) {
+            final String originalRoot = originalRoots.next();
+            if (!isKnown(root)) {
+                pathsToRead.put(root, originalRoot);
+                continue;
+            }
+
+            // If a folder above the root was invalidated the whole folder is read again, which also covers the root
+            final String invalidParent = findTopmostPathOrParent(invalidPaths.keySet(), root);
+            if (invalidParent != null) {
+                pathsToRead.put(invalidParent, invalidPaths.get(invalidParent));
+                continue;
+            }
+
+            // Otherwise only the invalid paths under the root need to be read again
+            for (final String invalidPath : getPathsUnder(invalidPaths.navigableKeySet(), root)) {
+                pathsToRead.put(invalidPath, invalidPaths.get(invalidPath));
+            }
+        }
+
+        // Reading a folder reads everything under it, so drop the paths that are already covered.
+        // Parents sort before their children so they are always seen first.
+        final Set<String> kept = new TreeSet<String>();
+        final Iterator<String> iterator = pathsToRead.keySet().iterator();
+        while (iterator.hasNext()) {
+            final String path = iterator.next();
+            if (containsPathOrParent(kept, path)) {
+                iterator.remove();
+            } else {
+                kept.add(path);
+            }
+        }
+
+        for (final String path : pathsToRead.keySet()) {
+            invalidPaths.keySet().removeAll(getPathsUnder(invalidPaths.navigableKeySet(), path));
+        }
+        return pathsToRead;
+    }
+
+    /**
+     * Replaces the changes under the paths that were read with the new changes. The paths that failed keep the
+     * changes they had and are read again the next time they are asked for.
+     */
+    private synchronized void update(final Map<String, String> readPaths, final List<PendingChange> readChanges,
+                                     final List<String> failedPaths) {
+        final Set<String> failed = new TreeSet<String>();
+        for (final String failedPath : failedPaths) {
+            failed.add(normalize(failedPath));
+        }
+        for (final Map.Entry<String, String> entry : readPaths.entrySet()) {
+            final String path = entry.getKey();
+            if (failed.contains(path)) {
+                if (isKnown(path)) {
+                    // Part of a known root, so it has to be marked invalid again to be read next time
+                    invalidPaths.put(path, entry.getValue());
+                }
+                continue;
+            }
+            changes.remove(path);
+            getChangesUnder(path).clear();
+            knownRoots.add(path);
+        }
+        for (final PendingChange change : readChanges) {
+            if (StringUtils.isNotEmpty(change.getLocalItem())) {
+                changes.put(normalize(change.getLocalItem()), change);
+            }
+        }
+    }
+
+    private List<PendingChange> getIndexedChanges(final String root) {
+        final List<PendingChange> result = new ArrayList<PendingChange>();
+        final PendingChange change = changes.get(root);
+        if (change != null) {
+            result.add(change);
+        }
+        result.addAll(getChangesUnder(root).values());
+        return result;
+    }
+
+    private SortedMap<String, PendingChange> getChangesUnder(final String path) {
+        return changes.subMap(path + SEPARATOR, path + SEPARATOR + MAX_CHAR);
+    }
+
+    private boolean isKnown(final String path) {
+        return containsPathOrParent(knownRoots, path);
+    }
+
+    private static boolean containsPathOrParent(final Set<String> paths, final String path) {
+        return findTopmostPathOrParent(paths, path) != null;
+    }
+
+    private static String findTopmostPathOrParent(final Set<String> paths, final String path) {
+        String found = paths.contains(path) ? path : null;
+        for (int index = path.lastIndexOf(SEPARATOR); index > 0; index = path.lastIndexOf(SEPARATOR, index - 1)) {
+            final String parent = path.substring(0, index);
+            if (paths.contains(parent)) {
+                found = parent;
+            }
+        }
+        return found;
+    }
+
+    private static List<String> getPathsUnder(final NavigableSet<String> paths, final String root) {
+        final List<String> result = new ArrayList<String>();
+        if (paths.contains(root)) {
+            result.add(root);
+        }
+        final SortedSet<String> under = paths.subSet(root + SEPARATOR, root + SEPARATOR + MAX_CHAR);
+        result.addAll(under);
+        return result;
+    }
+
+    /**
+     * Makes paths from the command line and the IDE comparable: forward slashes, no trailing slash and lower case
+     * on file systems that are not case sensitive.
+     */
+    @VisibleForTesting
+    static String normalize(final String path) {
+        String normalized = StringUtils.removeEnd(path.replace('\\', SEPARATOR), String.valueOf(SEPARATOR));
+        if (!IOCase.SYSTEM.isCaseSensitive()) {
+            normalized = normalized.toLowerCase();
+        }
+        return normalized;
+    }
+
+    private static int getReconcileIntervalSeconds() {
+        final String value = System.getProperty(PROP_RECONCILE_INTERVAL_SECONDS);
+        return value != null ? SystemHelper.toInt(value, DEFAULT_RECONCILE_INTERVAL_SECONDS) : DEFAULT_RECONCILE_INTERVAL_SECONDS;
+    }
+}
@@ -3,13 +3,21 @@
 
 package com.microsoft.alm.plugin.external.utils;
 
+import com.sun.jna.Platform;
 import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class ProcessHelper {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessHelper.class);
+
     public static Process startProcess(final String workingDirectory, final List<String> arguments) throws IOException {
         final ProcessBuilder pb = new ProcessBuilder(arguments);
 
@@ -22,4 +30,60 @@ public class ProcessHelper {
         }
         return pb.start();
     }
+
+    /**
+     * Kills the process and the processes it started. The tf script runs java in a child process, so destroying only
+     * the script would leave java running and holding the output pipes open.
+     * <p/>
+     * The child processes are found with ProcessHandle on Java 9 and later and with pkill on older versions of Java
+     * on Mac and Linux. Only the process itself can be killed on Windows with older versions of Java.
+     */
+    public static void destroyProcessTree(final Process process) {
+        try {
+            final Method descendants = Process.class.getMethod("descendants");
+            final Object stream = descendants.invoke(process);
+            final Object[] handles = (Object[]) Class.forName("java.util.stream.Stream").getMethod("toArray").invoke(stream);
+            final Method destroyForcibly = Class.forName("java.lang.ProcessHandle").getMethod("destroyForcibly");
+            for (final Object handle : handles) {
+                destroyForcibly.invoke(handle);
+            }
+        } catch (final NoSuchMethodException e) {
+            destroyChildren(process);
+        } catch (final Exception e) {
+            logger.warn("destroyProcessTree: failed to kill the child processes", e);
+        }
+        process.destroy();
+    }
+
+    private static void destroyChildren(final Process process) {
+        if (Platform.isWindows()) {
+            return;
+        }
+        try {
+            final Field pidField = process.getClass().getDeclaredField("pid");
+            pidField.setAccessible(true);
+            final int pid = pidField.getInt(process);
+            final Process pkill = new ProcessBuilder("pkill", "-KILL", "-P", Integer.toString(pid)).start();
+            // pkill is quick, but don't let it hold up the caller if it isn't
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (isAlive(pkill) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            pkill.destroy();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            logger.warn("destroyChildren: failed to kill the child processes", e);
+        }
+    }
+
+    private static boolean isAlive(final Process process) {
+        try {
+            process.exitValue();
+            return false;
+        } catch (final IllegalThreadStateException e) {
+            // exitValue throws if the process is still running
+            return true;
+        }
+    }
 }
@@ -0,0 +1,331 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.common.utils.SystemHelper;
+import com.microsoft.alm.plugin.versioncontrol.path.ServerPath;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent on disk cache of file contents at a given changeset.
+ * <p/>
+ * The content is stored once per content hash in the blobs folder, so revisions of a file that did not change (or
+ * copies of the same file in different branches) share a blob. The keys folder has one small file per cached
+ * revision with the hash of its content. The last modified time of the key file is used as the last access time and
+ * the least recently used revisions are evicted when the blobs go over the size budget.
+ * <p/>
+ * Since nothing is kept outside of the folder the cache survives restarts of the IDE. Files are written to a temp
+ * file first and then renamed so that a crash never leaves a partial entry behind. The folder may be shared by more
+ * than one running IDE, so files are only cleaned up by age.
+ */
+public class RevisionCache {
+    private static final Logger logger = LoggerFactory.getLogger(RevisionCache.class);
+
+    public static final String PROP_MAX_SIZE_MB = "com.microsoft.alm.plugin.external.revisionCache.maxSizeMB";
+
+    private static final int DEFAULT_MAX_SIZE_MB = 256;
+    private static final String KEYS_FOLDER = "keys";
+    private static final String BLOBS_FOLDER = "blobs";
+    private static final String TEMP_FOLDER = "tmp";
+    // Other instances of the IDE share the folder, so only files this old are treated as left behind by a crash
+    private static final long STALE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final File keysFolder;
+    private final File blobsFolder;
+    private final File tempFolder;
+    private final long maxSize;
+    // Loaded from disk the first time the cache is used
+    private Map<String, Entry> entries;
+    private Map<String, Long> blobSizes;
+    private long size;
+
+    public RevisionCache(final File root) {
+        this(root, getMaxSizeMB() * 1024L * 1024L);
+    }
+
+    @VisibleForTesting
+    RevisionCache(final File root, final long maxSize) {
+        ArgumentHelper.checkNotNull(root, "root");
+        this.keysFolder = new File(root, KEYS_FOLDER);
+        this.blobsFolder = new File(root, BLOBS_FOLDER);
+        this.tempFolder = new File(root, TEMP_FOLDER);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates the key for an item at a changeset. The key always uses the server path, since a local path can be
+     * mapped to different server paths over time (and by different workspaces) and would then find the wrong content.
+     */
+    public static String createKey(final String serverUrl, final String serverPath, final int changeset) {
+        ArgumentHelper.checkNotEmptyString(serverUrl, "serverUrl");
+        ArgumentHelper.checkNotEmptyString(serverPath, "serverPath");
+        if (!serverPath.startsWith(ServerPath.ROOT_NAME_ONLY)) {
+            throw new IllegalArgumentException("serverPath is not a server path: " + serverPath);
+        }
+        // Server paths are not case sensitive so neither are the keys
+        return StringUtils.lowerCase(serverUrl) + "|" + StringUtils.lowerCase(ServerPath.canonicalize(serverPath)) +
+                "|" + changeset;
+    }
+
+    /**
+     * Returns the file with the cached content of the key, or null if it is not in the cache. The file is shared
+     * with other keys that have the same content so it must not be changed.
+     */
+    public synchronized File get(final String key) {
+        load();
+        final Entry entry = entries.get(hash(key));
+        if (entry == null) {
+            return null;
+        }
+
+        final File blob = getBlobFile(entry.contentHash);
+        if (!blob.isFile()) {
+            // Someone cleaned out the folder under us
+            logger.warn("get: the cached content is missing, removing the entry");
+            remove(hash(key));
+            return null;
+        }
+
+        entry.lastAccess = System.currentTimeMillis();
+        getKeyFile(hash(key)).setLastModified(entry.lastAccess);
+        return blob;
+    }
+
+    /**
+     * Creates an empty temp file in the cache folder for content that will be passed to put. Writing the content
+     * there means that put can move it instead of copying it.
+     */
+    public synchronized File createTempFile() throws IOException {
+        // Loading cleans out the temp folder so it has to happen before the file is created
+        load();
+        if (!tempFolder.isDirectory() && !tempFolder.mkdirs()) {
+            throw new IOException("Unable to create the folder " + tempFolder.getPath());
+        }
+        return File.createTempFile("revision", ".tmp", tempFolder);
+    }
+
+    /**
+     * Adds the content of the file to the cache under the key and returns the cached file. The file passed in is
+     * moved into the cache (or deleted if the content was already there) so the caller should not use it after.
+     */
+    public synchronized File put(final String key, final File content) throws IOException {
+        ArgumentHelper.checkNotNull(content, "content");
+        load();
+
+        final String contentHash = Files.hash(content, Hashing.sha1()).toString();
+        final File blob = getBlobFile(contentHash);
+        if (blobSizes.containsKey(contentHash) && blob.isFile()) {
+            delete(content);
+        } else {
+            moveFile(content, blob);
+            blobSizes.put(contentHash, blob.length());
+            size += blob.length();
+        }
+
+        final String keyHash = hash(key);
+        final Entry oldEntry = entries.get(keyHash);
+        final Entry entry = new Entry(contentHash, System.currentTimeMillis());
+        entries.put(keyHash, entry);
+        writeKeyFile(keyHash, contentHash);
+        if (oldEntry != null && !oldEntry.contentHash.equals(contentHash)) {
+            deleteBlobIfUnused(oldEntry.contentHash);
+        }
+
+        evict(keyHash);
+        return blob;
+    }
+
+    /**
+     * Returns the total size of the cached content in bytes
+     */
+    public synchronized long getSize() {
+        load();
+        return size;
+    }
+
+    /**
+     * Removes least recently used entries until the size of the blobs is within the budget. The entry that was just
+     * added is always kept, even if it is bigger than the budget on its own.
+     */
+    private void evict(final String keptKeyHash) {
+        if (size <= maxSize) {
+            return;
+        }
+
+        final List<Map.Entry<String, Entry>> byAccess = new ArrayList<Map.Entry<String, Entry>>(entries.entrySet());
+        Collections.sort(byAccess, new Comparator<Map.Entry<String, Entry>>() {
+            @Override
+            public int compare(final Map.Entry<String, Entry> entry1, final Map.Entry<String, Entry> entry2) {
+                return Long.valueOf(entry1.getValue().lastAccess).compareTo(entry2.getValue().lastAccess);
+            }
+        });
+
+        int evicted = 0;
+        for (final Map.Entry<String, Entry> entry : byAccess) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (!entry.getKey().equals(keptKeyHash)) {
+                remove(entry.getKey());
+                evicted++;
+            }
+        }
+        logger.info("evict: removed " + evicted + " revisions, the cache is now " + size + " bytes");
+    }
+
+    private void remove(final String keyHash) {
+        final Entry entry = entries.remove(keyHash);
+        delete(getKeyFile(keyHash));
+        if (entry != null) {
+            deleteBlobIfUnused(entry.contentHash);
+        }
+    }
+
+    private void deleteBlobIfUnused(final String contentHash) {
+        for (final Entry entry : entries.values()) {
+            if (entry.contentHash.equals(contentHash)) {
+                return;
+            }
+        }
+
+        final Long blobSize = blobSizes.remove(contentHash);
+        if (blobSize != null) {
+            size -= blobSize;
+        }
+        delete(getBlobFile(contentHash));
+    }
+
+    /**
+     * Reads the keys from disk. Temp files and blobs that no key points to are deleted if they are old enough to
+     * have been left behind by a crash. Newer ones may belong to a download that another IDE is still running.
+     */
+    private void load() {
+        if (entries != null) {
+            return;
+        }
+
+        entries = new HashMap<String, Entry>();
+        blobSizes = new HashMap<String, Long>();
+        size = 0;
+
+        final File[] keyFiles = keysFolder.listFiles();
+        if (keyFiles != null) {
+            for (final File keyFile : keyFiles) {
+                try {
+                    final String contentHash = Files.toString(keyFile, Charsets.UTF_8).trim();
+                    final File blob = getBlobFile(contentHash);
+                    if (StringUtils.isEmpty(contentHash) || !blob.isFile()) {
+                        delete(keyFile);
+                        continue;
+                    }
+                    entries.put(keyFile.getName(), new Entry(contentHash, keyFile.lastModified()));
+                    if (!blobSizes.containsKey(contentHash)) {
+                        blobSizes.put(contentHash, blob.length());
+                        size += blob.length();
+                    }
+                } catch (final IOException e) {
+                    logger.warn("load: unable to read the cache entry " + keyFile.getName(), e);
+                    delete(keyFile);
+                }
+            }
+        }
+
+        final long now = System.currentTimeMillis();
+        final File[] blobFiles = blobsFolder.listFiles();
+        if (blobFiles != null) {
+            for (final File blobFile : blobFiles) {
+                if (!blobSizes.containsKey(blobFile.getName()) && isStale(blobFile, now)) {
+                    delete(blobFile);
+                }
+            }
+        }
+
+        // Old files in the temp folder are from downloads that never finished
+        final File[] tempFiles = tempFolder.listFiles();
+        if (tempFiles != null) {
+            for (final File tempFile : tempFiles) {
+                if (isStale(tempFile, now)) {
+                    delete(tempFile);
+                }
+            }
+        }
+        logger.info("load: found " + entries.size() + " cached revisions using " + size + " bytes");
+    }
+
+    private void writeKeyFile(final String keyHash, final String contentHash) throws IOException {
+        final File temp = createTempFile();
+        Files.write(contentHash, temp, Charsets.UTF_8);
+        moveFile(temp, getKeyFile(keyHash));
+    }
+
+    private void moveFile(final File source, final File destination) throws IOException {
+        final File folder = destination.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create the folder " + folder.getPath());
+        }
+        if (destination.exists()) {
+            delete(destination);
+        }
+        if (!source.renameTo(destination)) {
+            // The rename fails across file systems (e.g. if the caller didn't use createTempFile)
+            Files.copy(source, destination);
+            delete(source);
+        }
+    }
+
+    private File getKeyFile(final String keyHash) {
+        return new File(keysFolder, keyHash);
+    }
+
+    private File getBlobFile(final String contentHash) {
+        return new File(blobsFolder, contentHash);
+    }
+
+    private static String hash(final String key) {
+        return Hashing.sha1().hashString(key, Charsets.UTF_8).toString();
+    }
+
+    private static void delete(final File file) {
+        if (file.exists() && !file.delete()) {
+            // On Windows a file can't be deleted while it is open, it will be cleaned up the next time
+            logger.warn("delete: unable to delete " + file.getPath());
+        }
+    }
+
+    private static boolean isStale(final File file, final long now) {
+        return now - file.lastModified() > STALE_MILLIS;
+    }
+
+    private static int getMaxSizeMB() {
+        final String value = System.getProperty(PROP_MAX_SIZE_MB);
+        return value != null ? SystemHelper.toInt(value, DEFAULT_MAX_SIZE_MB) : DEFAULT_MAX_SIZE_MB;
+    }
+
+    private static class Entry {
+        private final String contentHash;
+        private long lastAccess;
+
+        private Entry(final String contentHash, final long lastAccess) {
+            this.contentHash = contentHash;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.alm.common.utils.SystemHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.commands.Command;
+import com.microsoft.alm.plugin.external.commands.StatusCommand;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Gets the status of many local paths with as few status commands as possible. The paths are split into batches
+ * that keep each command line under the argument length limit of the OS and the batches are run in parallel.
+ * The results are merged and a pending change that is reported by more than one batch is only returned once.
+ * <p/>
+ * If a batch fails (e.g. one of its paths is not mapped in a workspace) each path in it is retried on its own, so a
+ * single bad path only loses its own changes like it did when every path had its own command.
+ */
+public class StatusBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(StatusBatcher.class);
+
+    public static final String PROP_MAX_CONCURRENCY = "com.microsoft.alm.plugin.external.status.maxConcurrency";
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private static ExecutorService executor;
+
+    /**
+     * Returns the pending changes under all of the paths. The status is recursive so callers should pass only the
+     * roots. This is a synchronous call so it should only be called on a background thread.
+     * <p/>
+     * The paths whose status could not be read are added to failedPaths. Their changes are unknown, so callers must
+     * not treat them as having no pending changes.
+     */
+    public static List<PendingChange> getStatus(final ServerContext context, final List<String> localPaths,
+                                                final Collection<String> failedPaths) {
+        if (localPaths == null || localPaths.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<List<String>> batches = CommandLineHelper.createBatches(localPaths);
+        logger.info("getStatus: " + localPaths.size() + " paths in " + batches.size() + " batches");
+        if (batches.size() == 1) {
+            return merge(Collections.singletonList(runBatch(context, batches.get(0), failedPaths)));
+        }
+
+        // Each batch reports its failures in its own list, they are only read after the batch is done
+        final List<List<String>> batchFailures = new ArrayList<List<String>>(batches.size());
+        final List<Future<List<PendingChange>>> futures = new ArrayList<Future<List<PendingChange>>>(batches.size());
+        for (final List<String> batch : batches) {
+            final List<String> failures = new ArrayList<String>();
+            batchFailures.add(failures);
+            futures.add(getExecutor().submit(new Callable<List<PendingChange>>() {
+                @Override
+                public List<PendingChange> call() {
+                    return runBatch(context, batch, failures);
+                }
+            }));
+        }
+
+        final List<List<PendingChange>> results = new ArrayList<List<PendingChange>>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+                failedPaths.addAll(batchFailures.get(i));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("getStatus: interrupted while waiting for status", e);
+                cancel(futures.subList(i, futures.size()));
+                addAll(failedPaths, batches.subList(i, batches.size()));
+                break;
+            } catch (final ExecutionException e) {
+                // runBatch catches everything, so this should never happen
+                logger.warn("getStatus: failed to get status", e);
+                failedPaths.addAll(batches.get(i));
+            }
+        }
+        return merge(results);
+    }
+
+    /**
+     * Merges the results of the batches keeping the first occurrence of each pending change.
+     */
+    @VisibleForTesting
+    static List<PendingChange> merge(final List<List<PendingChange>> results) {
+        final Map<String, PendingChange> changes = new LinkedHashMap<String, PendingChange>();
+        for (final List<PendingChange> result : results) {
+            for (final PendingChange change : result) {
+                // Server paths are not case sensitive
+                final String key = StringUtils.lowerCase(change.getServerItem()) + "|" +
+                        StringUtils.lowerCase(change.getLocalItem()) + "|" + change.isCandidate();
+                if (!changes.containsKey(key)) {
+                    changes.put(key, change);
+                }
+            }
+        }
+        return new ArrayList<PendingChange>(changes.values());
+    }
+
+    private static List<PendingChange> runBatch(final ServerContext context, final List<String> batch,
+                                                final Collection<String> failedPaths) {
+        try {
+            return runStatus(context, batch);
+        } catch (final Throwable t) {
+            if (batch.size() == 1) {
+                logger.warn("runBatch: failed to get changes from command line. root=" + batch.get(0), t);
+                failedPaths.add(batch.get(0));
+                return Collections.emptyList();
+            }
+
+            logger.warn("runBatch: failed to get changes for a batch of " + batch.size() + " paths, trying them one at a time", t);
+            final List<PendingChange> changes = new ArrayList<PendingChange>();
+            for (final String path : batch) {
+                try {
+                    changes.addAll(runStatus(context, Collections.singletonList(path)));
+                } catch (final Throwable inner) {
+                    logger.warn("runBatch: failed to get changes from command line. root=" + path, inner);
+                    failedPaths.add(path);
+                }
+            }
+            return changes;
+        }
+    }
+
+    private static List<PendingChange> runStatus(final ServerContext context, final List<String> paths) {
+        final Command<List<PendingChange>> command = new StatusCommand(context, paths);
+        return command.runSynchronously();
+    }
+
+    private static void cancel(final List<Future<List<PendingChange>>> futures) {
+        for (final Future<List<PendingChange>> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    private static void addAll(final Collection<String> paths, final List<List<String>> batches) {
+        for (final List<String> batch : batches) {
+            paths.addAll(batch);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final String value = System.getProperty(PROP_MAX_CONCURRENCY);
+            final int maxConcurrency = Math.max(1, value != null ? SystemHelper.toInt(value, DEFAULT_MAX_CONCURRENCY) : DEFAULT_MAX_CONCURRENCY);
+            executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("StatusBatcher-%d")
+                    .build());
+        }
+        return executor;
+    }
+}
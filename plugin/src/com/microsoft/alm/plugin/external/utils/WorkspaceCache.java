@@ -0,0 +1,154 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.project.Project;
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.external.commands.FindWorkspaceCommand;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the partial workspace (name, server and mappings) of each project so that the workfold command doesn't
+ * have to run every time something needs the mappings or the workspace name.
+ * <p/>
+ * The cache is cleared when one of the commands that change workspaces runs and when the workspace cache files of
+ * the command line change, which covers changes made with the command line outside of the IDE.
+ */
+public class WorkspaceCache {
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceCache.class);
+
+    // How often to look at the cache files of the command line for changes
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    private final List<File> clcCacheFolders;
+    private final long checkIntervalMillis;
+    // Project base path to its workspace (null if the project isn't in a workspace)
+    private final Map<String, Workspace> workspaces = new HashMap<String, Workspace>();
+    private long clcCacheStamp;
+    private long lastCheck;
+    // Bumped every time the cache is cleared so that a workspace read before that isn't cached after it
+    private int generation;
+
+    private static class Holder {
+        private static final WorkspaceCache INSTANCE = new WorkspaceCache(getClcCacheFolders(), CHECK_INTERVAL_MILLIS);
+    }
+
+    public static WorkspaceCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @VisibleForTesting
+    WorkspaceCache(final List<File> clcCacheFolders, final long checkIntervalMillis) {
+        this.clcCacheFolders = clcCacheFolders;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.clcCacheStamp = getClcCacheStamp();
+    }
+
+    /**
+     * Returns the partial workspace that the project is in, running the workfold command only if it isn't cached
+     */
+    public Workspace getPartialWorkspace(final Project project) {
+        ArgumentHelper.checkNotNull(project, "project");
+        final String basePath = project.getBasePath();
+        final int readGeneration;
+        synchronized (this) {
+            checkClcCache();
+            if (workspaces.containsKey(basePath)) {
+                return workspaces.get(basePath);
+            }
+            readGeneration = generation;
+        }
+
+        final Workspace workspace = findWorkspace(basePath);
+        synchronized (this) {
+            if (readGeneration == generation) {
+                workspaces.put(basePath, workspace);
+                // workfold may update the cache files of the command line itself, that is not a change to react to
+                clcCacheStamp = getClcCacheStamp();
+            }
+        }
+        return workspace;
+    }
+
+    /**
+     * Forgets all of the workspaces. This should be called after anything that changes a workspace or its mappings.
+     */
+    public synchronized void invalidate() {
+        logger.info("invalidate: clearing the cached workspaces");
+        clear();
+    }
+
+    /**
+     * Runs the workfold command. Tests override this to avoid calling the command line.
+     */
+    @VisibleForTesting
+    protected Workspace findWorkspace(final String basePath) {
+        final FindWorkspaceCommand command = new FindWorkspaceCommand(basePath);
+        return command.runSynchronously();
+    }
+
+    private void checkClcCache() {
+        final long now = System.currentTimeMillis();
+        if (now - lastCheck < checkIntervalMillis) {
+            return;
+        }
+        lastCheck = now;
+
+        final long stamp = getClcCacheStamp();
+        if (stamp != clcCacheStamp) {
+            logger.info("checkClcCache: the workspace cache of the command line changed");
+            clcCacheStamp = stamp;
+            clear();
+        }
+    }
+
+    private void clear() {
+        workspaces.clear();
+        generation++;
+    }
+
+    /**
+     * Returns the last time anything in the cache folders of the command line changed
+     */
+    private long getClcCacheStamp() {
+        long stamp = 0;
+        for (final File folder : clcCacheFolders) {
+            stamp = Math.max(stamp, folder.lastModified());
+            final File[] files = folder.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    stamp = Math.max(stamp, file.lastModified());
+                }
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * The folders where the command line keeps its local copy of the workspaces
+     */
+    private static List<File> getClcCacheFolders() {
+        final List<File> folders = new ArrayList<File>();
+        final String localAppData = System.getenv("LOCALAPPDATA");
+        if (StringUtils.isNotEmpty(localAppData)) {
+            folders.add(new File(localAppData, "Microsoft/Team Foundation/4.0/Cache"));
+        }
+        final String userHome = System.getProperty("user.home");
+        if (StringUtils.isNotEmpty(userHome)) {
+            folders.add(new File(userHome, ".microsoft/Team Foundation/4.0/Cache"));
+            folders.add(new File(userHome, "Library/Application Support/Microsoft/Team Foundation/4.0/Cache"));
+        }
+        return folders;
+    }
+}
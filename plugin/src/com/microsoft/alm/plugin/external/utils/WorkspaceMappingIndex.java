@@ -0,0 +1,165 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.common.utils.FileHelper;
+import com.microsoft.alm.plugin.exceptions.ServerPathFormatException;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import com.microsoft.alm.plugin.versioncontrol.path.LocalPath;
+import com.microsoft.alm.plugin.versioncontrol.path.ServerPath;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates between server and local paths using the mappings of a workspace.
+ * <p/>
+ * The mappings are put in two trees of path segments, one by server path and one by local path, so a translation
+ * walks down the segments of the path once instead of comparing the path to every mapping. The deepest mapping on
+ * the way down is the closest one. Server segments ignore case, local segments ignore case only if the file system
+ * does.
+ * <p/>
+ * The index doesn't change after it is built so it can be shared by any number of threads.
+ */
+public class WorkspaceMappingIndex {
+    private static final Logger logger = LoggerFactory.getLogger(WorkspaceMappingIndex.class);
+
+    private static final String LOCAL_SEPARATORS = "/" + File.separatorChar;
+
+    private final Node serverRoot = new Node();
+    private final Node localRoot = new Node();
+
+    public WorkspaceMappingIndex(final List<Workspace.Mapping> mappings) {
+        ArgumentHelper.checkNotNull(mappings, "mappings");
+        for (final Workspace.Mapping mapping : mappings) {
+            if (mapping == null) {
+                continue;
+            }
+
+            final String[] serverSegments;
+            try {
+                serverSegments = getServerSegments(mapping.getServerPath());
+            } catch (final ServerPathFormatException e) {
+                logger.warn("WorkspaceMappingIndex: skipping the mapping of an invalid server path " + mapping.getServerPath());
+                continue;
+            }
+            final Node serverNode = serverRoot.getOrAddChild(serverSegments);
+            // If two mappings have the same path the first one wins, like it did when the mappings were searched in order
+            if (serverNode.mapping == null) {
+                serverNode.mapping = mapping;
+            }
+            serverNode.cloaked |= mapping.isCloaked();
+
+            // Cloaked mappings have no local path
+            if (!mapping.isCloaked() && StringUtils.isNotEmpty(mapping.getLocalPath())) {
+                final Node localNode = localRoot.getOrAddChild(getLocalSegments(mapping.getLocalPath()));
+                if (localNode.mapping == null) {
+                    localNode.mapping = mapping;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the local path of the server path, or null if the server path isn't mapped or is cloaked
+     */
+    public String getLocalPath(final String serverPath) {
+        ArgumentHelper.checkNotEmptyString(serverPath, "serverPath");
+
+        final Workspace.Mapping mapping = serverRoot.findClosest(getServerSegments(serverPath));
+        if (mapping == null || mapping.isCloaked()) {
+            return null;
+        }
+        return ServerPath.makeLocal(serverPath, mapping.getServerPath(), mapping.getLocalPath());
+    }
+
+    /**
+     * Returns the server path of the local path, or null if the local path isn't mapped or its server path is cloaked
+     */
+    public String getServerPath(final String localPath) {
+        ArgumentHelper.checkNotEmptyString(localPath, "localPath");
+
+        final Workspace.Mapping mapping = localRoot.findClosest(getLocalSegments(localPath));
+        if (mapping == null) {
+            return null;
+        }
+
+        final String serverPath = LocalPath.makeServer(localPath, mapping.getLocalPath(), mapping.getServerPath());
+        // The server path is cloaked if there is a cloak below the mapping that the local path was found in
+        final String[] segments = getServerSegments(serverPath);
+        final String[] mappingSegments = getServerSegments(mapping.getServerPath());
+        Node node = serverRoot.getChild(mappingSegments);
+        for (int i = mappingSegments.length; node != null && i < segments.length; i++) {
+            node = node.children.get(segments[i]);
+            if (node != null && node.cloaked) {
+                return null;
+            }
+        }
+        return serverPath;
+    }
+
+    private static String[] getServerSegments(final String serverPath) {
+        final String canonicalPath = ServerPath.canonicalize(serverPath);
+        // Everything after the $
+        return StringUtils.split(canonicalPath.substring(ServerPath.ROOT_NAME_ONLY.length()).toLowerCase(),
+                ServerPath.PREFERRED_SEPARATOR_CHARACTER);
+    }
+
+    private static String[] getLocalSegments(final String localPath) {
+        return StringUtils.split(FileHelper.doesFileSystemIgnoreCase() ? localPath.toLowerCase() : localPath,
+                LOCAL_SEPARATORS);
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private Workspace.Mapping mapping;
+        // True if any of the mappings of this path is a cloak
+        private boolean cloaked;
+
+        private Node getOrAddChild(final String[] segments) {
+            Node node = this;
+            for (final String segment : segments) {
+                Node child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(segment, child);
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        private Node getChild(final String[] segments) {
+            Node node = this;
+            for (int i = 0; node != null && i < segments.length; i++) {
+                node = node.children.get(segments[i]);
+            }
+            return node;
+        }
+
+        /**
+         * Returns the mapping of the deepest node on the path
+         */
+        private Workspace.Mapping findClosest(final String[] segments) {
+            Node node = this;
+            Workspace.Mapping closest = mapping;
+            for (int i = 0; i < segments.length; i++) {
+                node = node.children.get(segments[i]);
+                if (node == null) {
+                    break;
+                }
+                if (node.mapping != null) {
+                    closest = node.mapping;
+                }
+            }
+            return closest;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.microsoft.alm.build.webapi.model.Build;
+import com.microsoft.alm.build.webapi.model.BuildRepository;
+import com.microsoft.alm.build.webapi.model.BuildResult;
+import com.microsoft.alm.common.utils.SystemHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.events.ServerChangeDetector;
+import com.microsoft.alm.plugin.events.ServerChanges;
+import com.microsoft.alm.plugin.events.ServerEvent;
+import com.microsoft.alm.plugin.events.ServerPollingManager;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the latest completed build of each (team project, repository, branch) that the build status is shown for,
+ * so that all of the open projects on the same repository share one request to the server.
+ * <p/>
+ * The server is asked for a few builds of just that repository and branch. If none of them is ours (the server may
+ * not know the filters) it is asked again for as many builds as the lookup always asked for. Once a build is known,
+ * the next request only asks for the builds that finished after the newest one seen so far, which is usually an
+ * empty list. A result
+ * is reused without asking the server at all for a few seconds, which can be changed with the system property below.
+ * <p/>
+ * The cache is also the change source of the build event: a poll asks for the newer builds of every entry and only
+ * fires the event with the new builds (Build) if there are any. An entry that hasn't been read for a while (its
+ * project was closed or its branch isn't checked out anymore) is dropped by the next poll, and the cache stops being
+ * a change source once it has no entries left.
+ */
+public class BuildStatusCache implements ServerChangeDetector.Source {
+    private static final Logger logger = LoggerFactory.getLogger(BuildStatusCache.class);
+
+    public static final String PROP_FRESH_SECONDS = "com.microsoft.alm.plugin.build.cacheSeconds";
+    public static final String CHANGE_SOURCE_KEY = "builds";
+
+    private static final int DEFAULT_FRESH_SECONDS = 30;
+    private static final long DEFAULT_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // Canceled builds are skipped, so ask for a few more than the one that is needed
+    @VisibleForTesting
+    static final int TOP = 10;
+    // What the lookup asked for before the server filtered the builds, used when a full page has none of ours
+    @VisibleForTesting
+    static final int FALLBACK_TOP = 100;
+
+    private final long freshMillis;
+    private final long expiryMillis;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private static class Entry {
+        // The context last used to ask for the build, so polls use the latest credentials
+        private ServerContext context;
+        private final String repositoryId;
+        private final String repositoryType;
+        private final String branch;
+        // The latest build that wasn't canceled
+        private Build build;
+        // The finish time of the newest build seen, canceled ones included
+        private Date newestFinishTime;
+        // When the server was last asked, 0 if it never was
+        private long checked;
+        // When getLatestBuild last asked for the build
+        private volatile long lastRead = System.currentTimeMillis();
+
+        private Entry(final ServerContext context, final String repositoryId, final String repositoryType,
+                      final String branch) {
+            this.context = context;
+            this.repositoryId = repositoryId;
+            this.repositoryType = repositoryType;
+            this.branch = branch;
+        }
+    }
+
+    private static class Holder {
+        private static final BuildStatusCache INSTANCE = new BuildStatusCache(TimeUnit.SECONDS.toMillis(getFreshSeconds()));
+    }
+
+    public static BuildStatusCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @VisibleForTesting
+    BuildStatusCache(final long freshMillis) {
+        this(freshMillis, DEFAULT_EXPIRY_MILLIS);
+    }
+
+    @VisibleForTesting
+    BuildStatusCache(final long freshMillis, final long expiryMillis) {
+        this.freshMillis = freshMillis;
+        this.expiryMillis = expiryMillis;
+    }
+
+    /**
+     * Returns the latest completed build that wasn't canceled or null if there is none.
+     * This is a synchronous call so it should only be called on a background thread.
+     *
+     * @param context
+     * @param repositoryId   null to take the builds of any repository of the type
+     * @param repositoryType
+     * @param branch         null to take the builds of any branch
+     * @param forceCheck     true to ask the server even if the cached build is fresh (the user asked for a refresh)
+     */
+    public Build getLatestBuild(final ServerContext context, final String repositoryId, final String repositoryType,
+                                final String branch, final boolean forceCheck) {
+        final Entry entry = getEntry(context, repositoryId, repositoryType, branch);
+        entry.lastRead = System.currentTimeMillis();
+
+        // Requests for the same build wait for each other so that only the first one asks the server
+        synchronized (entry) {
+            entry.context = context;
+            if (entry.checked != 0 && !forceCheck && System.currentTimeMillis() - entry.checked < freshMillis) {
+                return entry.build;
+            }
+
+            final Build previousBuild = entry.build;
+            if (check(entry) != null && previousBuild != null) {
+                ServerPollingManager.getInstance().reportChange(ServerEvent.BUILDS_CHANGED);
+            }
+            return entry.build;
+        }
+    }
+
+    @Override
+    public ServerEvent getEvent() {
+        return ServerEvent.BUILDS_CHANGED;
+    }
+
+    @Override
+    public ServerChanges detectChanges() {
+        final List<Entry> currentEntries;
+        final boolean expired = removeExpiredEntries(System.currentTimeMillis());
+        synchronized (this) {
+            currentEntries = new ArrayList<Entry>(entries.values());
+        }
+
+        final ServerChanges changes = new ServerChanges();
+        // Let the listeners ask again, which brings back the entries that are still shown
+        boolean unknown = expired;
+        for (final Entry entry : currentEntries) {
+            synchronized (entry) {
+                if (entry.checked == 0) {
+                    // The first request failed, so let the listeners ask again
+                    unknown = true;
+                } else {
+                    final Build newBuild = check(entry);
+                    if (newBuild != null) {
+                        changes.addAdded(newBuild);
+                    }
+                }
+            }
+        }
+        return unknown ? null : changes;
+    }
+
+    /**
+     * Drops the entries that getLatestBuild hasn't asked for within the expiry time and stops watching for changes
+     * once there are none left
+     *
+     * @return true if any entry was dropped
+     */
+    @VisibleForTesting
+    synchronized boolean removeExpiredEntries(final long now) {
+        boolean removed = false;
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (now - entry.lastRead > expiryMillis) {
+                logger.info("removeExpiredEntries: dropping the build of " + entry.repositoryId + " " + entry.branch);
+                iterator.remove();
+                removed = true;
+            }
+        }
+        if (removed && entries.isEmpty()) {
+            ServerChangeDetector.getInstance().unwatch(CHANGE_SOURCE_KEY);
+        }
+        return removed;
+    }
+
+    @VisibleForTesting
+    synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        ServerChangeDetector.getInstance().unwatch(CHANGE_SOURCE_KEY);
+    }
+
+    /**
+     * Asks the server for the builds that finished since the entry was last checked. Must be called while holding
+     * the entry's lock.
+     *
+     * @return the new latest build or null if there is none
+     */
+    private Build check(final Entry entry) {
+        final Date minFinishTime = entry.checked != 0 && entry.newestFinishTime != null ?
+                new Date(entry.newestFinishTime.getTime() + 1) : null;
+        List<Build> builds = queryBuilds(entry.context, entry.context.getTeamProjectReference().getId(),
+                entry.repositoryId, entry.repositoryType, entry.branch, minFinishTime, TOP);
+        Build latestBuild = findLatestBuild(entry, builds);
+        if (latestBuild == null && builds.size() >= TOP) {
+            // Either the server ignored the filters and sent the latest builds of the whole team project, or all of
+            // our latest builds were canceled. Look as far back as the lookup did before it filtered on the server.
+            builds = queryBuilds(entry.context, entry.context.getTeamProjectReference().getId(),
+                    entry.repositoryId, entry.repositoryType, entry.branch, minFinishTime, FALLBACK_TOP);
+            latestBuild = findLatestBuild(entry, builds);
+        }
+        logger.info("check: " + builds.size() + " builds since " + minFinishTime + ", new build found: " + (latestBuild != null));
+
+        entry.checked = System.currentTimeMillis();
+        if (latestBuild == null || (entry.build != null && latestBuild.getId().equals(entry.build.getId()))) {
+            return null;
+        }
+        entry.build = latestBuild;
+        return latestBuild;
+    }
+
+    /**
+     * Returns the latest build of the entry's repository and branch that wasn't canceled and remembers the newest
+     * finish time. Must be called while holding the entry's lock.
+     */
+    private static Build findLatestBuild(final Entry entry, final List<Build> builds) {
+        Build latestBuild = null;
+        for (final Build build : builds) {
+            if (build.getFinishTime() != null &&
+                    (entry.newestFinishTime == null || build.getFinishTime().after(entry.newestFinishTime))) {
+                entry.newestFinishTime = build.getFinishTime();
+            }
+            // Servers that ignore the filters return the builds of the whole team project
+            if (latestBuild == null && build.getResult() != BuildResult.CANCELED &&
+                    matches(build, entry.repositoryId, entry.repositoryType, entry.branch)) {
+                latestBuild = build;
+            }
+        }
+        return latestBuild;
+    }
+
+    /**
+     * Asks the server for the top completed builds, the one that finished last first. Tests override this to avoid
+     * calling the server.
+     */
+    protected List<Build> queryBuilds(final ServerContext context, final UUID projectId, final String repositoryId,
+                                      final String repositoryType, final String branch, final Date minFinishTime,
+                                      final int top) {
+        return context.getBuildHttpClient().getBuilds(projectId, repositoryId, repositoryType, branch, minFinishTime, top);
+    }
+
+    private synchronized Entry getEntry(final ServerContext context, final String repositoryId,
+                                        final String repositoryType, final String branch) {
+        final String key = context.getCollectionURI() + "|" + context.getTeamProjectReference().getId() + "|" +
+                StringUtils.lowerCase(StringUtils.defaultString(repositoryId, repositoryType)) + "|" + branch;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.isEmpty()) {
+                ServerChangeDetector.getInstance().watch(CHANGE_SOURCE_KEY, this);
+            }
+            entry = new Entry(context, repositoryId, repositoryType, branch);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static boolean matches(final Build build, final String repositoryId, final String repositoryType,
+                                   final String branch) {
+        final BuildRepository repository = build.getRepository();
+        if (repository == null) {
+            return false;
+        }
+        if (repositoryId != null ? !StringUtils.equalsIgnoreCase(repositoryId, repository.getId()) :
+                !StringUtils.equalsIgnoreCase(repositoryType, repository.getType())) {
+            return false;
+        }
+        // Branch names are case sensitive
+        return branch == null || StringUtils.equals(branch, build.getSourceBranch());
+    }
+
+    private static int getFreshSeconds() {
+        final String value = System.getProperty(PROP_FRESH_SECONDS);
+        return value != null ? SystemHelper.toInt(value, DEFAULT_FRESH_SECONDS) : DEFAULT_FRESH_SECONDS;
+    }
+}
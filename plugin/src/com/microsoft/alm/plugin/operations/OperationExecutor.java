@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -68,6 +69,10 @@ public class OperationExecutor {
         return threadPoolExecutor.submit(task);
     }
 
+    public <T> Future<T> submitOperationTask(final Callable<T> task) {
+        return threadPoolExecutor.submit(task);
+    }
+
     public void wait(List<Future> futures) {
         //TODO: can we call get on the futures in parallel. If there are multiple ones that timeout, overall timeout might be long
         Throwable t = null;
@@ -0,0 +1,146 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.events.ServerChangeDetector;
+import com.microsoft.alm.plugin.events.ServerChanges;
+import com.microsoft.alm.plugin.events.ServerEvent;
+import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequest;
+import com.microsoft.alm.sourcecontrol.webapi.model.IdentityRefWithVote;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches the active pull requests of a repository that the user created or reviews.
+ * <p/>
+ * The pull request REST API has no last updated time to ask for, so the watermark of each pull request is what the
+ * tab shows of it: the last source commit, the status, the merge status, the title and the votes. A poll asks for the
+ * same two lists the tab loads and compares them with the last ones seen. The changes are ScopedPullRequest items.
+ */
+public class PullRequestChangeSource implements ServerChangeDetector.Source {
+    private final ServerContext context;
+    private final String gitRemoteUrl;
+    // The pull requests seen last, by scope and id
+    private final Map<String, ScopedPullRequest> snapshot = new HashMap<String, ScopedPullRequest>();
+
+    /**
+     * A pull request, the list it was found in and the repository it was looked up for
+     */
+    public static class ScopedPullRequest {
+        private final GitPullRequest pullRequest;
+        private final PullRequestLookupOperation.PullRequestScope scope;
+        private final String gitRemoteUrl;
+        private final String watermark;
+
+        public ScopedPullRequest(final GitPullRequest pullRequest, final PullRequestLookupOperation.PullRequestScope scope,
+                                 final String gitRemoteUrl) {
+            ArgumentHelper.checkNotNull(pullRequest, "pullRequest");
+            this.pullRequest = pullRequest;
+            this.scope = scope;
+            this.gitRemoteUrl = gitRemoteUrl;
+            this.watermark = getWatermark(pullRequest);
+        }
+
+        public String getGitRemoteUrl() {
+            return gitRemoteUrl;
+        }
+
+        public GitPullRequest getPullRequest() {
+            return pullRequest;
+        }
+
+        public PullRequestLookupOperation.PullRequestScope getScope() {
+            return scope;
+        }
+    }
+
+    public PullRequestChangeSource(final ServerContext context, final String gitRemoteUrl,
+                                   final List<GitPullRequest> requestedByMe, final List<GitPullRequest> assignedToMe) {
+        ArgumentHelper.checkNotNull(context, "context");
+        this.context = context;
+        this.gitRemoteUrl = gitRemoteUrl;
+        addAll(snapshot, requestedByMe, PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME);
+        addAll(snapshot, assignedToMe, PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME);
+    }
+
+    public static String getKey(final String gitRemoteUrl) {
+        return "pullRequests|" + StringUtils.lowerCase(gitRemoteUrl);
+    }
+
+    /**
+     * Returns true if anything that is shown of the pull request is different
+     */
+    public static boolean isChanged(final GitPullRequest previous, final GitPullRequest current) {
+        return !StringUtils.equals(getWatermark(previous), getWatermark(current));
+    }
+
+    @Override
+    public ServerEvent getEvent() {
+        return ServerEvent.PULL_REQUESTS_CHANGED;
+    }
+
+    @Override
+    public synchronized ServerChanges detectChanges() {
+        final Map<String, ScopedPullRequest> current = new HashMap<String, ScopedPullRequest>();
+        addAll(current, queryPullRequests(PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME),
+                PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME);
+        addAll(current, queryPullRequests(PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME),
+                PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME);
+
+        final ServerChanges changes = new ServerChanges();
+        for (final Map.Entry<String, ScopedPullRequest> entry : current.entrySet()) {
+            final ScopedPullRequest previous = snapshot.get(entry.getKey());
+            if (previous == null) {
+                changes.addAdded(entry.getValue());
+            } else if (!StringUtils.equals(previous.watermark, entry.getValue().watermark)) {
+                changes.addUpdated(entry.getValue());
+            }
+        }
+        for (final Map.Entry<String, ScopedPullRequest> entry : snapshot.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                // Completed, abandoned or the user isn't a reviewer anymore
+                changes.addRemoved(entry.getValue());
+            }
+        }
+
+        snapshot.clear();
+        snapshot.putAll(current);
+        return changes;
+    }
+
+    /**
+     * Tests override this to avoid calling the server
+     */
+    protected List<GitPullRequest> queryPullRequests(final PullRequestLookupOperation.PullRequestScope scope) {
+        return PullRequestLookupOperation.queryPullRequests(context, scope);
+    }
+
+    private void addAll(final Map<String, ScopedPullRequest> map, final List<GitPullRequest> pullRequests,
+                        final PullRequestLookupOperation.PullRequestScope scope) {
+        if (pullRequests != null) {
+            for (final GitPullRequest pullRequest : pullRequests) {
+                map.put(scope + "|" + pullRequest.getPullRequestId(), new ScopedPullRequest(pullRequest, scope, gitRemoteUrl));
+            }
+        }
+    }
+
+    private static String getWatermark(final GitPullRequest pullRequest) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(pullRequest.getLastMergeSourceCommit() != null ? pullRequest.getLastMergeSourceCommit().getCommitId() : null);
+        builder.append('|').append(pullRequest.getStatus());
+        builder.append('|').append(pullRequest.getMergeStatus());
+        builder.append('|').append(pullRequest.getTitle());
+        if (pullRequest.getReviewers() != null) {
+            for (final IdentityRefWithVote reviewer : pullRequest.getReviewers()) {
+                builder.append('|').append(reviewer.getId()).append(':').append(reviewer.getVote());
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -3,8 +3,10 @@
 
 package com.microsoft.alm.plugin.operations;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.events.ServerChangeDetector;
 import com.microsoft.alm.sourcecontrol.webapi.GitHttpClient;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequest;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequestSearchCriteria;
@@ -21,6 +23,10 @@ import java.util.concurrent.Future;
 public class PullRequestLookupOperation extends Operation {
     private static final Logger logger = LoggerFactory.getLogger(PullRequestLookupOperation.class);
 
+    // The most pull requests the server returns in one response
+    @VisibleForTesting
+    static final int PAGE_SIZE = 100;
+
     public enum PullRequestScope {
         REQUESTED_BY_ME,
         ASSIGNED_TO_ME,
@@ -30,6 +36,7 @@ public class PullRequestLookupOperation extends Operation {
     private final String gitRemoteUrl;
     private final PullRequestLookupResults requestedByMeResults = new PullRequestLookupResults(PullRequestScope.REQUESTED_BY_ME);
     private final PullRequestLookupResults assignedToMeResults = new PullRequestLookupResults(PullRequestScope.ASSIGNED_TO_ME);
+    private volatile boolean failed = false;
 
     public class PullRequestLookupResults extends ResultsImpl {
         private final List<GitPullRequest> pullRequests = new ArrayList<GitPullRequest>();
@@ -112,6 +119,12 @@ public class PullRequestLookupOperation extends Operation {
                 }
             }));
             OperationExecutor.getInstance().wait(lookupTasks);
+            if (!failed) {
+                // Polls only fire the pull request event from now on if something changed on the server
+                ServerChangeDetector.getInstance().watch(PullRequestChangeSource.getKey(gitRemoteUrl),
+                        new PullRequestChangeSource(context, gitRemoteUrl, requestedByMeResults.getPullRequests(),
+                                assignedToMeResults.getPullRequests()));
+            }
             onLookupCompleted();
         } catch (Throwable t) {
             logger.warn("doWork: failed with an exception", t);
@@ -122,22 +135,10 @@ public class PullRequestLookupOperation extends Operation {
 
     protected void doLookup(final ServerContext context, final PullRequestScope scope) {
         try {
-            final GitHttpClient gitHttpClient = context.getGitHttpClient();
             final PullRequestLookupResults results = scope == PullRequestScope.REQUESTED_BY_ME ? requestedByMeResults : assignedToMeResults;
 
-            //setup criteria for the query
-            final GitPullRequestSearchCriteria criteria = new GitPullRequestSearchCriteria();
-            criteria.setRepositoryId(context.getGitRepository().getId());
-            criteria.setStatus(PullRequestStatus.ACTIVE);
-            criteria.setIncludeLinks(false);
-            if (scope == PullRequestScope.REQUESTED_BY_ME) {
-                criteria.setCreatorId(context.getUserId());
-            } else {
-                criteria.setReviewerId(context.getUserId());
-            }
-
             //query server and add results
-            final List<GitPullRequest> pullRequests = gitHttpClient.getPullRequests(context.getGitRepository().getId(), criteria, 256, 0, 101);
+            final List<GitPullRequest> pullRequests = queryPullRequests(context, scope);
             logger.debug("doLookup: Found {} pull requests {} on repo {}", pullRequests.size(), scope.toString(), context.getGitRepository().getRemoteUrl());
             results.pullRequests.addAll(pullRequests);
             super.onLookupResults(results);
@@ -148,9 +149,36 @@ public class PullRequestLookupOperation extends Operation {
         }
     }
 
+    /**
+     * Asks the server for all of the active pull requests of the context's repository in the scope, a page at a time
+     */
+    static List<GitPullRequest> queryPullRequests(final ServerContext context, final PullRequestScope scope) {
+        final GitHttpClient gitHttpClient = context.getGitHttpClient();
+
+        //setup criteria for the query
+        final GitPullRequestSearchCriteria criteria = new GitPullRequestSearchCriteria();
+        criteria.setRepositoryId(context.getGitRepository().getId());
+        criteria.setStatus(PullRequestStatus.ACTIVE);
+        criteria.setIncludeLinks(false);
+        if (scope == PullRequestScope.REQUESTED_BY_ME) {
+            criteria.setCreatorId(context.getUserId());
+        } else {
+            criteria.setReviewerId(context.getUserId());
+        }
+
+        final List<GitPullRequest> pullRequests = new ArrayList<GitPullRequest>();
+        List<GitPullRequest> page;
+        do {
+            page = gitHttpClient.getPullRequests(context.getGitRepository().getId(), criteria, 256, pullRequests.size(), PAGE_SIZE);
+            pullRequests.addAll(page);
+        } while (page.size() >= PAGE_SIZE);
+        return pullRequests;
+    }
+
     @Override
     protected void terminate(final Throwable t) {
         super.terminate(t);
+        failed = true;
 
         final PullRequestLookupResults results = new PullRequestLookupResults(PullRequestScope.ALL);
         results.error = t;
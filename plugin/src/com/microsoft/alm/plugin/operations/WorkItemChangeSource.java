@@ -0,0 +1,85 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.events.ServerChangeDetector;
+import com.microsoft.alm.plugin.events.ServerChanges;
+import com.microsoft.alm.plugin.events.ServerEvent;
+import com.microsoft.alm.workitemtracking.webapi.models.Wiql;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemQueryResult;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemReference;
+import org.apache.commons.lang.StringUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Watches the work items of a team project.
+ * <p/>
+ * The watermark is the server time of the last query, so a poll only asks for the ids of the work items whose
+ * System.ChangedDate is later. That catches the items that were changed into or out of any saved query too. The server
+ * can't tell new items from changed ones, so the changes are the ids (Integer) of the updated items.
+ */
+public class WorkItemChangeSource implements ServerChangeDetector.Source {
+    private static final String CHANGED_SINCE_QUERY = "SELECT [System.Id] FROM WorkItems " +
+            "WHERE [System.TeamProject] = @project AND [System.ChangedDate] > '%s' " +
+            "ORDER BY [System.ChangedDate] DESC";
+
+    private final ServerContext context;
+    private Date asOf;
+
+    /**
+     * @param context
+     * @param asOf    the server time of the query that loaded what is shown
+     */
+    public WorkItemChangeSource(final ServerContext context, final Date asOf) {
+        ArgumentHelper.checkNotNull(context, "context");
+        ArgumentHelper.checkNotNull(asOf, "asOf");
+        this.context = context;
+        this.asOf = asOf;
+    }
+
+    public static String getKey(final String repositoryUrl) {
+        return "workItems|" + StringUtils.lowerCase(repositoryUrl);
+    }
+
+    @Override
+    public ServerEvent getEvent() {
+        return ServerEvent.WORK_ITEMS_CHANGED;
+    }
+
+    @Override
+    public synchronized ServerChanges detectChanges() {
+        final Wiql wiql = new Wiql();
+        wiql.setQuery(String.format(CHANGED_SINCE_QUERY, formatDate(asOf)));
+        final WorkItemQueryResult result = queryByWiql(wiql);
+
+        final ServerChanges changes = new ServerChanges();
+        if (result.getWorkItems() != null) {
+            for (final WorkItemReference reference : result.getWorkItems()) {
+                changes.addUpdated(reference.getId());
+            }
+        }
+        if (result.getAsOf() != null) {
+            asOf = result.getAsOf();
+        }
+        return changes;
+    }
+
+    /**
+     * Tests override this to avoid calling the server
+     */
+    protected WorkItemQueryResult queryByWiql(final Wiql wiql) {
+        return context.getWitHttpClient().queryByWiql(wiql, context.getTeamProjectReference().getId(), true);
+    }
+
+    private static String formatDate(final Date date) {
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"); //$NON-NLS-1$
+        format.setTimeZone(TimeZone.getTimeZone("UTC")); //$NON-NLS-1$
+        return format.format(date);
+    }
+}
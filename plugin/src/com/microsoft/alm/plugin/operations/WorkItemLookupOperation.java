@@ -6,6 +6,7 @@ package com.microsoft.alm.plugin.operations;
 import com.microsoft.alm.common.utils.ArgumentHelper;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.exceptions.TeamServicesException;
 import com.microsoft.alm.workitemtracking.webapi.WorkItemTrackingHttpClient;
 import com.microsoft.alm.workitemtracking.webapi.models.Wiql;
 import com.microsoft.alm.workitemtracking.webapi.models.WorkItem;
@@ -17,16 +18,18 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class WorkItemLookupOperation extends Operation {
     private static final Logger logger = LoggerFactory.getLogger(WorkItemLookupOperation.class);
 
-    // The WIT REST API restricts us to getting 200 work items at a time.
+    // The WIT REST API restricts us to getting 200 work items at a time, so they are read in pages of this size
     public static final int MAX_WORK_ITEM_COUNT = 200;
+    // The number of pages read while loading, the others are read when the table scrolls to them
+    private static final int INITIAL_PAGE_COUNT = 3;
 
     private final RepositoryContext repositoryContext;
 
@@ -70,16 +73,50 @@ public class WorkItemLookupOperation extends Operation {
     public class WitResults extends ResultsImpl {
         private final List<WorkItem> workItems;
         private final ServerContext context;
+        private final WorkItemPageLoader pageLoader;
+        private final int page;
+        private final Date asOf;
 
         public WitResults(final ServerContext context, final List<WorkItem> workItems) {
+            this(context, workItems, null, 0, null);
+        }
+
+        /**
+         * Results that hold one page of the work items the query found
+         *
+         * @param context
+         * @param workItems
+         * @param pageLoader reads the other pages of the query
+         * @param page       the page of the work items
+         * @param asOf       the server time of the query or null if it isn't known
+         */
+        public WitResults(final ServerContext context, final List<WorkItem> workItems,
+                          final WorkItemPageLoader pageLoader, final int page, final Date asOf) {
             assert workItems != null;
             this.workItems = workItems;
             // The context could be null if an error occurred
             this.context = context;
+            this.pageLoader = pageLoader;
+            this.page = page;
+            this.asOf = asOf;
+        }
+
+        /**
+         * Returns the loader of the query pages, or null if the results are not a page of a query
+         */
+        public WorkItemPageLoader getPageLoader() {
+            return pageLoader;
         }
 
-        public boolean maxItemsReached() {
-            return workItems.size() >= MAX_WORK_ITEM_COUNT;
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * Returns the server time of the query, which the results that were read from it share
+         */
+        public Date getAsOf() {
+            return asOf;
         }
 
         public List<WorkItem> getWorkItems() {
@@ -128,49 +165,55 @@ public class WorkItemLookupOperation extends Operation {
         logger.debug("WorkItemLookupOperation.doLookup() wiql " + wiql.getQuery());
         WorkItemQueryResult result = witHttpClient.queryByWiql(wiql, context.getTeamProjectReference().getId());
 
-        int count = 0;
         final List<WorkItemReference> itemRefs = result.getWorkItems();
-        final int maxCount = Math.min(itemRefs.size(), MAX_WORK_ITEM_COUNT);
-        logger.info("WorkItemLookupOperation.doLookup() found " + maxCount);
-        if (maxCount == 0) {
-            return; //no workitem ids matched the wiql
+        logger.info("WorkItemLookupOperation.doLookup() found " + itemRefs.size());
+        if (itemRefs.isEmpty()) {
+            // No workitem ids matched the wiql, the listeners still get the time of the query
+            super.onLookupResults(new WitResults(context, new ArrayList<WorkItem>(), null, 0, result.getAsOf()));
+            return;
         }
 
-        final List<Integer> ids = new IDList(maxCount);
-        final Map<Integer, Integer> workItemOrderMap = new HashMap<Integer, Integer>(maxCount);
-        for (WorkItemReference itemRef : itemRefs) {
+        // Keep every id in the order of the query, the fields are read a page at a time
+        final List<Integer> ids = new ArrayList<Integer>(itemRefs.size());
+        for (final WorkItemReference itemRef : itemRefs) {
             ids.add(itemRef.getId());
-            workItemOrderMap.put(itemRef.getId(), count);
-            count++;
-            if (count >= MAX_WORK_ITEM_COUNT) {
-                break;
+        }
+        final WorkItemPageLoader pageLoader = new WorkItemPageLoader(context, ids, witInputs.fields, result.getAsOf(),
+                witInputs.expand);
+
+        // Read the first pages in parallel and send them in query order as soon as each one and the ones before it
+        // are read. The other pages are read when they are shown.
+        final int initialPageCount = Math.min(pageLoader.getPageCount(), INITIAL_PAGE_COUNT);
+        final List<Future<List<WorkItem>>> futures = new ArrayList<Future<List<WorkItem>>>(initialPageCount);
+        for (int page = 1; page < initialPageCount; page++) {
+            futures.add(pageLoader.submitPage(page));
+        }
+        try {
+            super.onLookupResults(new WitResults(context, pageLoader.loadPage(0), pageLoader, 0, result.getAsOf()));
+            for (int page = 1; page < initialPageCount; page++) {
+                super.onLookupResults(new WitResults(context, getPage(futures.get(page - 1)), pageLoader, page,
+                        result.getAsOf()));
+            }
+        } finally {
+            for (final Future<List<WorkItem>> future : futures) {
+                future.cancel(true);
             }
         }
+        logger.debug("doLookup: Found {} work items on repo {}", ids.size(), repositoryContext.getUrl());
+    }
 
-        final List<WorkItem> items = witHttpClient.getWorkItems(ids, witInputs.fields, null, witInputs.expand);
-        logger.debug("doLookup: Found {} work items on repo {}", items.size(), repositoryContext.getUrl());
-
-        // Correct the order of the work items. The second call here to get the work items,
-        // always returns them in id order. We need to use the map we created above to put
-        // them back into the correct order based on the query.
-        Collections.sort(items, new Comparator<WorkItem>() {
-            @Override
-            public int compare(final WorkItem wi1, final WorkItem wi2) {
-                Integer index1 = workItemOrderMap.get(wi1.getId());
-                Integer index2 = workItemOrderMap.get(wi2.getId());
-                if (index1 != null && index2 != null) {
-                    return index1 - index2;
-                } else if (index1 != null) {
-                    return -1;
-                } else if (index2 != null) {
-                    return 1;
-                }
-
-                return 0;
+    private static List<WorkItem> getPage(final Future<List<WorkItem>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TeamServicesException(TeamServicesException.KEY_OPERATION_ERRORS, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-        });
-
-        super.onLookupResults(new WitResults(context, items));
+            throw new TeamServicesException(TeamServicesException.KEY_OPERATION_ERRORS, e.getCause());
+        }
     }
 
     @Override
@@ -0,0 +1,215 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.common.utils.ArgumentHelper;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItem;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemExpand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the work items a query found a page at a time. The query only returns the ids in the order of the query, and
+ * the server returns at most MAX_WORK_ITEM_COUNT work items per call in id order, so each page is put back in the
+ * order of the query.
+ * <p/>
+ * The pages are read as of the time of the query, so later pages match the order and the count of the first ones
+ * even if the work items change in between.
+ */
+public class WorkItemPageLoader {
+    private static final Logger logger = LoggerFactory.getLogger(WorkItemPageLoader.class);
+
+    // Only this many pages are read at the same time so that scrolling through a long list doesn't fill the thread pool
+    private static final int MAX_PARALLEL_PAGES = 3;
+
+    private final ServerContext context;
+    private final List<Integer> ids;
+    private final List<String> fields;
+    private final Date asOf;
+    private final WorkItemExpand expand;
+
+    private final Set<Integer> requestedPages = new HashSet<Integer>();
+    private final LinkedList<QueuedPage> queuedPages = new LinkedList<QueuedPage>();
+    private int runningCount = 0;
+
+    public interface Listener {
+        /**
+         * Called on a background thread with the work items of the page in query order, or null if the page
+         * couldn't be read. A page that couldn't be read can be requested again. See loadPage for the work items the
+         * server didn't return.
+         */
+        void pageLoaded(int page, List<WorkItem> workItems);
+    }
+
+    private static class QueuedPage {
+        private final int page;
+        private final Listener listener;
+
+        private QueuedPage(final int page, final Listener listener) {
+            this.page = page;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * @param context
+     * @param ids     the ids of the work items in the order of the query
+     * @param fields  the fields to read or null to read all of the work item
+     * @param asOf    the server time of the query or null to read the latest revisions
+     * @param expand
+     */
+    public WorkItemPageLoader(final ServerContext context, final List<Integer> ids, final List<String> fields,
+                              final Date asOf, final WorkItemExpand expand) {
+        ArgumentHelper.checkNotNull(context, "context");
+        ArgumentHelper.checkNotNull(ids, "ids");
+        this.context = context;
+        this.ids = new ArrayList<Integer>(ids);
+        this.fields = fields;
+        this.asOf = asOf;
+        this.expand = expand;
+    }
+
+    public static int getPage(final int index) {
+        return index / WorkItemLookupOperation.MAX_WORK_ITEM_COUNT;
+    }
+
+    public static int getPageStart(final int page) {
+        return page * WorkItemLookupOperation.MAX_WORK_ITEM_COUNT;
+    }
+
+    /**
+     * Returns the number of work items the query found
+     */
+    public int getCount() {
+        return ids.size();
+    }
+
+    public int getPageCount() {
+        return getPage(ids.size() + WorkItemLookupOperation.MAX_WORK_ITEM_COUNT - 1);
+    }
+
+    public synchronized boolean isRequested(final int page) {
+        return requestedPages.contains(page);
+    }
+
+    /**
+     * Reads the page on the calling thread. The list has an entry for every id of the page, which is null for a work
+     * item the server didn't return. If the page can't be read it is no longer marked as requested so that it is read
+     * again the next time it is asked for.
+     */
+    public List<WorkItem> loadPage(final int page) {
+        markRequested(page);
+        final int start = getPageStart(page);
+        final int end = Math.min(start + WorkItemLookupOperation.MAX_WORK_ITEM_COUNT, ids.size());
+        final WorkItemLookupOperation.IDList pageIds = new WorkItemLookupOperation.IDList(end - start);
+        pageIds.addAll(ids.subList(start, end));
+
+        final List<WorkItem> workItems;
+        try {
+            workItems = getWorkItems(pageIds);
+        } catch (final RuntimeException e) {
+            unmarkRequested(page);
+            throw e;
+        }
+        logger.debug("loadPage: read {} work items of page {}", workItems.size(), page);
+
+        final Map<Integer, WorkItem> workItemsById = new HashMap<Integer, WorkItem>(workItems.size());
+        for (final WorkItem workItem : workItems) {
+            workItemsById.put(workItem.getId(), workItem);
+        }
+        // A work item the server didn't return (e.g. it was destroyed) keeps its place so that the rest don't shift
+        final List<WorkItem> orderedWorkItems = new ArrayList<WorkItem>(pageIds.size());
+        for (final Integer id : pageIds) {
+            orderedWorkItems.add(workItemsById.get(id));
+        }
+        return orderedWorkItems;
+    }
+
+    /**
+     * Starts reading the page on a background thread right away
+     */
+    public Future<List<WorkItem>> submitPage(final int page) {
+        markRequested(page);
+        return OperationExecutor.getInstance().submitOperationTask(new Callable<List<WorkItem>>() {
+            @Override
+            public List<WorkItem> call() {
+                return loadPage(page);
+            }
+        });
+    }
+
+    /**
+     * Reads the page on a background thread unless it was already requested. The pages asked for last are read
+     * first, since they are the ones that were scrolled to last.
+     */
+    public synchronized void loadPageAsync(final int page, final Listener listener) {
+        if (page < 0 || page >= getPageCount() || !requestedPages.add(page)) {
+            return;
+        }
+        queuedPages.addFirst(new QueuedPage(page, listener));
+        startQueuedPages();
+    }
+
+    /**
+     * Drops the pages that were requested but not started yet
+     */
+    public synchronized void cancel() {
+        queuedPages.clear();
+    }
+
+    /**
+     * Tests override this to avoid calling the server
+     */
+    protected List<WorkItem> getWorkItems(final List<Integer> pageIds) {
+        return context.getWitHttpClient().getWorkItems(pageIds, fields, asOf, expand);
+    }
+
+    private synchronized void markRequested(final int page) {
+        requestedPages.add(page);
+    }
+
+    private synchronized void unmarkRequested(final int page) {
+        requestedPages.remove(page);
+    }
+
+    private synchronized void startQueuedPages() {
+        while (runningCount < MAX_PARALLEL_PAGES && !queuedPages.isEmpty()) {
+            final QueuedPage queuedPage = queuedPages.removeFirst();
+            runningCount++;
+            OperationExecutor.getInstance().submitOperationTask(new Runnable() {
+                @Override
+                public void run() {
+                    List<WorkItem> workItems = null;
+                    try {
+                        workItems = loadPage(queuedPage.page);
+                    } catch (Throwable t) {
+                        logger.warn("loadPageAsync: failed to read page " + queuedPage.page, t);
+                    } finally {
+                        finishPage();
+                    }
+                    queuedPage.listener.pageLoaded(queuedPage.page, workItems != null ?
+                            Collections.unmodifiableList(workItems) : null);
+                }
+            });
+        }
+    }
+
+    private synchronized void finishPage() {
+        runningCount--;
+        startQueuedPages();
+    }
+}
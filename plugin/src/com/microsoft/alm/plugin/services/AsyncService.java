@@ -9,4 +9,9 @@ package com.microsoft.alm.plugin.services;
 public interface AsyncService {
 
     void executeOnPooledThread(final Runnable runnable);
+
+    /**
+     * Throws the IDE's cancellation exception if the progress that the current thread runs under has been cancelled
+     */
+    void checkCanceled();
 }
@@ -12,7 +12,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Taken from team-explorer-everywhere: source/com.microsoft.tfs.core/src/com/microsoft/tfs/core/clients/versioncontrol/path/ServerPath.java
@@ -107,6 +109,44 @@ public abstract class ServerPath {
         return false;
     }
 
+    /**
+     * <p>
+     * Removes the paths that are children of other paths in the list (see
+     * {@link #isChild(String, String)}), keeping the order of the rest. An
+     * operation that recurses on the remaining paths covers the same items as
+     * one that is given all of them. Case is ignored.
+     * </p>
+     *
+     * @param serverPaths the server paths to reduce (must not be <code>null</code>)
+     * @return the paths that have no parent in the list (never <code>null</code>)
+     */
+    public static List<String> removeChildren(final List<String> serverPaths) throws ServerPathFormatException {
+        ArgumentHelper.checkNotNull(serverPaths, "serverPaths");
+
+        final List<String> canonicalPaths = new ArrayList<String>(serverPaths.size());
+        for (final String serverPath : serverPaths) {
+            canonicalPaths.add(ServerPath.canonicalize(serverPath).toLowerCase());
+        }
+        final Set<String> paths = new HashSet<String>(canonicalPaths);
+
+        // Walk up from each path instead of comparing every pair, there may be thousands of them
+        final List<String> roots = new ArrayList<String>();
+        final Set<String> added = new HashSet<String>();
+        for (int index = 0; index < serverPaths.size(); index++) {
+            final String path = canonicalPaths.get(index);
+            boolean hasParent = false;
+            for (int i = path.lastIndexOf(PREFERRED_SEPARATOR_CHARACTER); i > 0 && !path.equals(ROOT) && !hasParent;
+                 i = path.lastIndexOf(PREFERRED_SEPARATOR_CHARACTER, i - 1)) {
+                // The root keeps its separator when canonicalized, every other parent loses it
+                hasParent = paths.contains(i == ROOT.length() - 1 ? ROOT : path.substring(0, i));
+            }
+            if (!hasParent && added.add(path)) {
+                roots.add(serverPaths.get(index));
+            }
+        }
+        return roots;
+    }
+
     /**
      * Returns a new version of the given repository path that is fully rooted
      * and canonicalized. Use this function to sanitize user input or to expand
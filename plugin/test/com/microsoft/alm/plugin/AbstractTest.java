@@ -46,6 +46,10 @@ public class AbstractTest {
             public void executeOnPooledThread(Runnable runnable) {
                 runnable.run();
             }
+
+            @Override
+            public void checkCanceled() {
+            }
         }, false);
     }
 
@@ -0,0 +1,78 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.events;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ServerChangeDetectorTest {
+    private static class TestSource implements ServerChangeDetector.Source {
+        private final ServerEvent event;
+        private ServerChanges changes;
+        private int calls = 0;
+
+        private TestSource(final ServerEvent event, final ServerChanges changes) {
+            this.event = event;
+            this.changes = changes;
+        }
+
+        @Override
+        public ServerEvent getEvent() {
+            return event;
+        }
+
+        @Override
+        public ServerChanges detectChanges() {
+            calls++;
+            if (changes == null) {
+                throw new IllegalStateException("server error");
+            }
+            return changes;
+        }
+    }
+
+    @Test
+    public void testDetectChanges_NoSources() {
+        final ServerChangeDetector detector = new ServerChangeDetector();
+        detector.watch("builds", new TestSource(ServerEvent.BUILDS_CHANGED, new ServerChanges()));
+        Assert.assertNull(detector.detectChanges(ServerEvent.PULL_REQUESTS_CHANGED));
+        Assert.assertTrue(detector.detectChanges(ServerEvent.BUILDS_CHANGED).isEmpty());
+
+        detector.unwatch("builds");
+        Assert.assertNull(detector.detectChanges(ServerEvent.BUILDS_CHANGED));
+    }
+
+    @Test
+    public void testDetectChanges_Merged() {
+        final ServerChangeDetector detector = new ServerChangeDetector();
+        detector.watch("repo1", new TestSource(ServerEvent.PULL_REQUESTS_CHANGED, new ServerChanges().addAdded(1)));
+        detector.watch("repo2", new TestSource(ServerEvent.PULL_REQUESTS_CHANGED, new ServerChanges().addRemoved(2).addAdded("3")));
+
+        final ServerChanges changes = detector.detectChanges(ServerEvent.PULL_REQUESTS_CHANGED);
+        Assert.assertEquals(Arrays.asList(1), changes.getAdded(Integer.class));
+        Assert.assertEquals(Arrays.asList("3"), changes.getAdded(String.class));
+        Assert.assertEquals(Arrays.asList(2), changes.getRemoved(Integer.class));
+        Assert.assertTrue(changes.getUpdated(Object.class).isEmpty());
+
+        // Registering the same key again replaces the source
+        detector.watch("repo2", new TestSource(ServerEvent.PULL_REQUESTS_CHANGED, new ServerChanges()));
+        Assert.assertEquals(1, detector.detectChanges(ServerEvent.PULL_REQUESTS_CHANGED).getAdded(Object.class).size());
+    }
+
+    @Test
+    public void testDetectChanges_SourceFails() {
+        final ServerChangeDetector detector = new ServerChangeDetector();
+        final TestSource failing = new TestSource(ServerEvent.WORK_ITEMS_CHANGED, null);
+        final TestSource working = new TestSource(ServerEvent.WORK_ITEMS_CHANGED, new ServerChanges());
+        detector.watch("failing", failing);
+        detector.watch("working", working);
+
+        // The event is fired as before when a source can't tell, but every source is still asked
+        Assert.assertNull(detector.detectChanges(ServerEvent.WORK_ITEMS_CHANGED));
+        Assert.assertEquals(1, failing.calls);
+        Assert.assertEquals(1, working.calls);
+    }
+}
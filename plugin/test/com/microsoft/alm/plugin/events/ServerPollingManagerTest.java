@@ -7,10 +7,14 @@ import jersey.repackaged.com.google.common.util.concurrent.SettableFuture;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ServerPollingManagerTest {
     @Test
@@ -64,4 +68,180 @@ public class ServerPollingManagerTest {
         Assert.assertEquals(true, witChangedCalled.get(1, TimeUnit.SECONDS));
         manager.stopPolling();
     }
+
+    @Test
+    public void testBackoff() {
+        final ServerEventManager eventManager = new ServerEventManager();
+        final ServerPollingManager manager = new ServerPollingManager(eventManager);
+        final List<ServerEvent> events = addEventCollector(eventManager);
+        manager.startPolling(60000);
+        try {
+            // The first poll comes within the interval
+            long now = System.currentTimeMillis() + 60000;
+            manager.poll(now);
+            Assert.assertEquals(3, events.size());
+            Assert.assertEquals(60000, manager.getInterval(ServerEvent.BUILDS_CHANGED));
+
+            // Nothing changed, so the interval doubles until it reaches the max
+            final long[] expected = {120000, 240000, 480000, 480000};
+            for (final long interval : expected) {
+                now = manager.getDue(ServerEvent.BUILDS_CHANGED);
+                manager.poll(now);
+                Assert.assertEquals(interval, manager.getInterval(ServerEvent.BUILDS_CHANGED));
+                assertDueWithJitter(manager, ServerEvent.BUILDS_CHANGED, now, interval);
+            }
+
+            // A change brings the interval back down
+            manager.reportChange(ServerEvent.BUILDS_CHANGED);
+            now = manager.getDue(ServerEvent.BUILDS_CHANGED);
+            manager.poll(now);
+            Assert.assertEquals(60000, manager.getInterval(ServerEvent.BUILDS_CHANGED));
+        } finally {
+            manager.stopPolling();
+        }
+    }
+
+    @Test
+    public void testExpectChange() {
+        final ServerEventManager eventManager = new ServerEventManager();
+        final ServerPollingManager manager = new ServerPollingManager(eventManager);
+        manager.startPolling(60000);
+        try {
+            long now = System.currentTimeMillis() + 60000;
+            manager.poll(now);
+            now = manager.getDue(ServerEvent.PULL_REQUESTS_CHANGED);
+            manager.poll(now);
+            Assert.assertEquals(120000, manager.getInterval(ServerEvent.PULL_REQUESTS_CHANGED));
+
+            final long before = System.currentTimeMillis();
+            manager.expectChange(ServerEvent.PULL_REQUESTS_CHANGED);
+            Assert.assertEquals(60000, manager.getInterval(ServerEvent.PULL_REQUESTS_CHANGED));
+            Assert.assertTrue(manager.getDue(ServerEvent.PULL_REQUESTS_CHANGED) <= System.currentTimeMillis() + 72000);
+            Assert.assertTrue(manager.getDue(ServerEvent.PULL_REQUESTS_CHANGED) >= before + 48000);
+        } finally {
+            manager.stopPolling();
+        }
+    }
+
+    @Test
+    public void testInactive() {
+        final ServerEventManager eventManager = new ServerEventManager();
+        final ServerPollingManager manager = new ServerPollingManager(eventManager);
+        final List<ServerEvent> events = addEventCollector(eventManager);
+        final AtomicBoolean active = new AtomicBoolean(false);
+        manager.setActivityMonitor(new ServerPollingManager.ActivityMonitor() {
+            @Override
+            public boolean isActive() {
+                return active.get();
+            }
+        });
+        manager.startPolling(60000);
+        try {
+            final long now = System.currentTimeMillis() + 60000;
+            manager.poll(now);
+            Assert.assertTrue(events.isEmpty());
+
+            // The events that came due while the IDE wasn't used are fired right away
+            active.set(true);
+            manager.poll(now + 1000);
+            Assert.assertEquals(3, events.size());
+        } finally {
+            manager.stopPolling();
+        }
+    }
+
+    @Test
+    public void testChangeDetection() {
+        final ServerEventManager eventManager = new ServerEventManager();
+        final ServerChangeDetector detector = new ServerChangeDetector();
+        final ServerPollingManager manager = new ServerPollingManager(eventManager, detector);
+        final List<Map<String, Object>> contexts = Collections.synchronizedList(new ArrayList<Map<String, Object>>());
+        eventManager.addListener(new ServerEventListener() {
+            @Override
+            public void serverChanged(final ServerEvent event, final Map<String, Object> contextMap) {
+                if (event == ServerEvent.BUILDS_CHANGED) {
+                    contexts.add(contextMap);
+                }
+            }
+        });
+        final ServerChanges[] next = {new ServerChanges()};
+        detector.watch("builds", new ServerChangeDetector.Source() {
+            @Override
+            public ServerEvent getEvent() {
+                return ServerEvent.BUILDS_CHANGED;
+            }
+
+            @Override
+            public ServerChanges detectChanges() {
+                return next[0];
+            }
+        });
+        manager.startPolling(60000);
+        try {
+            // Nothing changed, so the event isn't fired and backs off
+            long now = System.currentTimeMillis() + 60000;
+            manager.poll(now);
+            now = manager.getDue(ServerEvent.BUILDS_CHANGED);
+            manager.poll(now);
+            Assert.assertTrue(contexts.isEmpty());
+            Assert.assertEquals(120000, manager.getInterval(ServerEvent.BUILDS_CHANGED));
+
+            // A change is passed to the listeners and brings the interval back down
+            next[0] = new ServerChanges().addAdded(42);
+            now = manager.getDue(ServerEvent.BUILDS_CHANGED);
+            manager.poll(now);
+            Assert.assertEquals(1, contexts.size());
+            final ServerChanges changes = (ServerChanges) contexts.get(0).get(ServerChangeDetector.CONTEXT_CHANGES);
+            Assert.assertEquals(Collections.singletonList(42), changes.getAdded(Integer.class));
+            now = manager.getDue(ServerEvent.BUILDS_CHANGED);
+            manager.poll(now);
+            Assert.assertEquals(60000, manager.getInterval(ServerEvent.BUILDS_CHANGED));
+        } finally {
+            manager.stopPolling();
+        }
+    }
+
+    @Test
+    public void testFailedEventDoesNotStopOthers() {
+        final ServerEventManager eventManager = new ServerEventManager();
+        final ServerChangeDetector detector = new ServerChangeDetector() {
+            @Override
+            public ServerChanges detectChanges(final ServerEvent event) {
+                if (event == ServerEvent.PULL_REQUESTS_CHANGED) {
+                    throw new RuntimeException("server error");
+                }
+                return super.detectChanges(event);
+            }
+        };
+        final ServerPollingManager manager = new ServerPollingManager(eventManager, detector);
+        final List<ServerEvent> events = addEventCollector(eventManager);
+        manager.startPolling(60000);
+        try {
+            // All of the events are due, the pull requests are checked first and fail
+            manager.poll(System.currentTimeMillis() + 60000);
+            Assert.assertFalse(events.contains(ServerEvent.PULL_REQUESTS_CHANGED));
+            Assert.assertTrue(events.contains(ServerEvent.WORK_ITEMS_CHANGED));
+            Assert.assertTrue(events.contains(ServerEvent.BUILDS_CHANGED));
+        } finally {
+            manager.stopPolling();
+        }
+    }
+
+    private List<ServerEvent> addEventCollector(final ServerEventManager eventManager) {
+        final List<ServerEvent> events = Collections.synchronizedList(new ArrayList<ServerEvent>());
+        eventManager.addListener(new ServerEventListener() {
+            @Override
+            public void serverChanged(final ServerEvent event, final Map<String, Object> contextMap) {
+                events.add(event);
+            }
+        });
+        return events;
+    }
+
+    private void assertDueWithJitter(final ServerPollingManager manager, final ServerEvent event, final long now,
+                                     final long interval) {
+        final long due = manager.getDue(event);
+        Assert.assertTrue(due >= now + interval * 0.8 - 1);
+        Assert.assertTrue(due <= now + interval * 1.2 + 1);
+    }
 }
@@ -0,0 +1,231 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class ToolOutputPumpTest {
+    private final ToolOutputPump pump = new ToolOutputPump(2, 2);
+
+    @Test
+    public void testLinesAreSplitLikeReadLine() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        pump.register(createExitedProcess("a\r\nb\rc\n\nlast", "error\n", 3), listener);
+
+        assertTrue(listener.await());
+        assertEquals(Arrays.asList("a", "b", "c", "", "last"), listener.stdout);
+        assertEquals(Collections.singletonList("error"), listener.stderr);
+        assertEquals(3, listener.returnCode);
+        assertNull(listener.error);
+    }
+
+    @Test
+    public void testOutputIsReadWhileTheProcessRuns() throws Exception {
+        final PipedOutputStream stdoutWriter = new PipedOutputStream();
+        final Process process = Mockito.mock(Process.class);
+        when(process.getInputStream()).thenReturn(new PipedInputStream(stdoutWriter));
+        when(process.getErrorStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(process.exitValue()).thenThrow(new IllegalThreadStateException());
+        final RecordingListener listener = new RecordingListener();
+        final ToolOutputPump.Handle handle = pump.register(process, listener);
+
+        stdoutWriter.write("first\npartial".getBytes());
+        stdoutWriter.flush();
+        assertTrue(handle.waitForStandardOutputDrained(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("first"), listener.stdout);
+
+        // The process is killed and the listener hears about it once
+        handle.cancel();
+        assertTrue(listener.await());
+        assertTrue(listener.error instanceof InterruptedException);
+        handle.cancel();
+        assertEquals(1, listener.calls);
+    }
+
+    @Test
+    public void testManyProcessesShareTheThreads() throws Exception {
+        final List<RecordingListener> listeners = new ArrayList<RecordingListener>();
+        for (int i = 0; i < 50; i++) {
+            final RecordingListener listener = new RecordingListener();
+            pump.register(createExitedProcess("out " + i + "\n", "", 0), listener);
+            listeners.add(listener);
+        }
+
+        assertEquals(2, pump.getThreadCount());
+        for (int i = 0; i < listeners.size(); i++) {
+            assertTrue(listeners.get(i).await());
+            assertEquals(Collections.singletonList("out " + i), listeners.get(i).stdout);
+        }
+    }
+
+    @Test
+    public void testBlockedListenerOnlyHoldsUpItsOwnProcess() throws Exception {
+        final ToolOutputPump singleThreadPump = new ToolOutputPump(1, 2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingListener blocked = new RecordingListener() {
+            @Override
+            public void processStandardOutput(final String line) {
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.processStandardOutput(line);
+            }
+        };
+        singleThreadPump.register(createExitedProcess("blocked\n", "", 0), blocked);
+
+        final RecordingListener other = new RecordingListener();
+        singleThreadPump.register(createExitedProcess("other\n", "", 0), other);
+        assertTrue(other.await());
+        assertEquals(Collections.singletonList("other"), other.stdout);
+        assertEquals(0, blocked.calls);
+
+        release.countDown();
+        assertTrue(blocked.await());
+        assertEquals(Collections.singletonList("blocked"), blocked.stdout);
+    }
+
+    @Test
+    public void testBusyProcessTakesTurnsForTheListenerThread() throws Exception {
+        final ToolOutputPump singleListenerPump = new ToolOutputPump(1, 1);
+        final StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            output.append("line ").append(i).append('\n');
+        }
+        final AtomicInteger busyLines = new AtomicInteger();
+        final RecordingListener busy = new RecordingListener() {
+            @Override
+            public void processStandardOutput(final String line) {
+                if (busyLines.getAndIncrement() == 0) {
+                    // give the other process time to queue its output
+                    try {
+                        Thread.sleep(200);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.processStandardOutput(line);
+            }
+        };
+        singleListenerPump.register(createExitedProcess(output.toString(), "", 0), busy);
+
+        final List<Integer> busyLinesWhenOtherFinished = new ArrayList<Integer>();
+        final RecordingListener other = new RecordingListener() {
+            @Override
+            public void completed(final int returnCode) {
+                busyLinesWhenOtherFinished.add(busyLines.get());
+                super.completed(returnCode);
+            }
+        };
+        singleListenerPump.register(createExitedProcess("other\n", "", 0), other);
+
+        assertTrue(other.await());
+        assertTrue(busy.await());
+        assertEquals(2000, busyLines.get());
+        assertTrue(busyLinesWhenOtherFinished.get(0) < 2000);
+    }
+
+    @Test
+    public void testWaitForStandardOutputDrainedFromListener() throws Exception {
+        final PipedOutputStream stdoutWriter = new PipedOutputStream();
+        final PipedOutputStream stderrWriter = new PipedOutputStream();
+        final Process process = Mockito.mock(Process.class);
+        when(process.getInputStream()).thenReturn(new PipedInputStream(stdoutWriter));
+        when(process.getErrorStream()).thenReturn(new PipedInputStream(stderrWriter));
+        when(process.exitValue()).thenThrow(new IllegalThreadStateException());
+        final ToolOutputPump.Handle[] handle = new ToolOutputPump.Handle[1];
+        final List<String> output = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> seenBeforeError = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch sawError = new CountDownLatch(1);
+        final RecordingListener listener = new RecordingListener() {
+            @Override
+            public void processStandardOutput(final String line) {
+                output.add(line);
+            }
+
+            @Override
+            public void processStandardError(final String line) {
+                try {
+                    assertTrue(handle[0].waitForStandardOutputDrained(5, TimeUnit.SECONDS));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                seenBeforeError.addAll(output);
+                sawError.countDown();
+            }
+        };
+        handle[0] = pump.register(process, listener);
+
+        stdoutWriter.write("output\n".getBytes());
+        stdoutWriter.flush();
+        stderrWriter.write("done\n".getBytes());
+        stderrWriter.flush();
+        assertTrue(sawError.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("output"), seenBeforeError);
+        handle[0].cancel();
+    }
+
+    private Process createExitedProcess(final String stdout, final String stderr, final int exitCode) {
+        final Process process = Mockito.mock(Process.class);
+        when(process.getInputStream()).thenReturn(new ByteArrayInputStream(stdout.getBytes()));
+        when(process.getErrorStream()).thenReturn(new ByteArrayInputStream(stderr.getBytes()));
+        when(process.exitValue()).thenReturn(exitCode);
+        return process;
+    }
+
+    private static class RecordingListener implements ToolRunner.Listener {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final List<String> stdout = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> stderr = Collections.synchronizedList(new ArrayList<String>());
+        private volatile int returnCode = -1;
+        private volatile Throwable error;
+        private volatile int calls;
+
+        @Override
+        public void processStandardOutput(final String line) {
+            stdout.add(line);
+        }
+
+        @Override
+        public void processStandardError(final String line) {
+            stderr.add(line);
+        }
+
+        @Override
+        public void processException(final Throwable throwable) {
+            error = throwable;
+            calls++;
+            done.countDown();
+        }
+
+        @Override
+        public void completed(final int returnCode) {
+            this.returnCode = returnCode;
+            calls++;
+            done.countDown();
+        }
+
+        public boolean await() throws InterruptedException {
+            return done.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external;
+
+import com.sun.jna.Platform;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts a number of short commands at the same time with ToolRunner and prints how many threads were alive at the
+ * peak and how long the commands took from start to completion. The JVM keeps a "process reaper" thread of its own
+ * for each process it waits on, so the peak is also given without those. This is not a unit test, run it by hand:
+ * <p/>
+ * java -cp ... com.microsoft.alm.plugin.external.ToolRunnerBenchmark [commands] [rounds]
+ */
+public class ToolRunnerBenchmark {
+    private static final int DEFAULT_COMMANDS = 100;
+    private static final int DEFAULT_ROUNDS = 5;
+
+    public static void main(final String[] args) throws Exception {
+        final int commands = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COMMANDS;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final ThreadSampler sampler = new ThreadSampler();
+        sampler.start();
+
+        // The first round warms up the JIT and the shared threads and isn't reported
+        for (int round = 0; round <= rounds; round++) {
+            final int threadsBefore = threads.getThreadCount();
+            threads.resetPeakThreadCount();
+            sampler.reset();
+            final long[] latencies = runCommands(commands);
+            final int peakThreads = threads.getPeakThreadCount();
+            if (round > 0) {
+                Arrays.sort(latencies);
+                System.out.println(String.format("round %d: %d commands, threads %d -> peak %d (%d without reapers), latency ms p50=%d p90=%d p99=%d max=%d",
+                        round, commands, threadsBefore, peakThreads, sampler.peak, toMillis(latencies, 50), toMillis(latencies, 90),
+                        toMillis(latencies, 99), TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length - 1])));
+            }
+        }
+    }
+
+    private static long[] runCommands(final int commands) throws InterruptedException {
+        final long[] latencies = new long[commands];
+        final CountDownLatch done = new CountDownLatch(commands);
+        final AtomicInteger failures = new AtomicInteger();
+        final ToolRunner[] runners = new ToolRunner[commands];
+        for (int i = 0; i < commands; i++) {
+            final int index = i;
+            final long start = System.nanoTime();
+            runners[i] = new ToolRunner(getShell(), null);
+            runners[i].addListener(new ToolRunner.Listener() {
+                @Override
+                public void processStandardOutput(final String line) {
+                }
+
+                @Override
+                public void processStandardError(final String line) {
+                }
+
+                @Override
+                public void processException(final Throwable throwable) {
+                    failures.incrementAndGet();
+                    latencies[index] = System.nanoTime() - start;
+                    done.countDown();
+                }
+
+                @Override
+                public void completed(final int returnCode) {
+                    latencies[index] = System.nanoTime() - start;
+                    done.countDown();
+                }
+            });
+            runners[i].start(getArguments(i));
+        }
+        if (!done.await(2, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("The commands did not finish");
+        }
+        for (final ToolRunner runner : runners) {
+            runner.dispose();
+        }
+        if (failures.get() > 0) {
+            System.out.println(failures.get() + " commands failed");
+        }
+        return latencies;
+    }
+
+    private static String getShell() {
+        return Platform.isWindows() ? "cmd.exe" : "/bin/sh";
+    }
+
+    /**
+     * Writes a line, waits a moment so that the commands overlap and writes another line
+     */
+    private static ToolRunner.ArgumentBuilder getArguments(final int index) {
+        final String pause = Platform.isWindows() ? "ping -n 1 127.0.0.1 > nul" : "sleep 0.2";
+        final String script = "echo line 1 of " + index + " && " + pause + " && echo line 2 of " + index;
+        return new ToolRunner.ArgumentBuilder().add(Platform.isWindows() ? "/c" : "-c").add(script);
+    }
+
+    /**
+     * Keeps track of the most threads that were alive at once, not counting the reapers of the JVM
+     */
+    private static class ThreadSampler extends Thread {
+        private volatile int peak;
+
+        public ThreadSampler() {
+            super("ThreadSampler");
+            setDaemon(true);
+        }
+
+        public void reset() {
+            peak = 0;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int count = 0;
+                for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (!thread.getName().startsWith("process reaper")) {
+                        count++;
+                    }
+                }
+                peak = Math.max(peak, count);
+                try {
+                    Thread.sleep(2);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static long toMillis(final long[] sorted, final int percentile) {
+        final int index = Math.min(sorted.length - 1, (sorted.length * percentile) / 100);
+        return TimeUnit.NANOSECONDS.toMillis(sorted[index]);
+    }
+}
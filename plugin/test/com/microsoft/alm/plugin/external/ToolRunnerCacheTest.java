@@ -0,0 +1,213 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.microsoft.alm.plugin.external.models.ToolVersion;
+import com.microsoft.alm.plugin.external.tools.TfTool;
+import com.microsoft.alm.plugin.external.utils.ProcessHelper;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ProcessHelper.class, TfTool.class})
+public class ToolRunnerCacheTest {
+    private static final String TOOL_LOCATION = "/path/tf_home/tf";
+
+    private boolean processesAlive;
+
+    @Before
+    public void setUp() throws Exception {
+        processesAlive = true;
+        PowerMockito.mockStatic(TfTool.class);
+        when(TfTool.getCachedVersion()).thenReturn(new ToolVersion("14.0.3"));
+        PowerMockito.mockStatic(ProcessHelper.class);
+        when(ProcessHelper.startProcess(anyString(), anyList())).thenAnswer(new Answer<Process>() {
+            @Override
+            public Process answer(InvocationOnMock invocation) throws Throwable {
+                return createProcess();
+            }
+        });
+
+        ToolRunnerCache.clear();
+        ToolRunnerCache.setSpawnExecutor(MoreExecutors.directExecutor());
+        ToolRunnerCache.configure(1, 3, 5, TimeUnit.MINUTES);
+    }
+
+    @After
+    public void tearDown() {
+        ToolRunnerCache.clear();
+        ToolRunnerCache.setSpawnExecutor(null);
+    }
+
+    @Test
+    public void testWarmUp() {
+        ToolRunnerCache.warmUp(TOOL_LOCATION, null);
+        assertEquals(1, ToolRunnerCache.getIdleCount(TOOL_LOCATION, null));
+    }
+
+    @Test
+    public void testHitRefillsPool() {
+        ToolRunnerCache.warmUp(TOOL_LOCATION, null);
+        final long hits = ToolRunnerCache.getMetrics().getHits();
+
+        final ToolRunner runner = ToolRunnerCache.getRunningToolRunner(TOOL_LOCATION, new ToolRunner.ArgumentBuilder().add("status"), Mockito.mock(ToolRunner.Listener.class));
+        assertNotNull(runner);
+        assertEquals(hits + 1, ToolRunnerCache.getMetrics().getHits());
+        assertEquals(1, ToolRunnerCache.getIdleCount(TOOL_LOCATION, null));
+        runner.dispose();
+    }
+
+    @Test
+    public void testMissGrowsPool() {
+        final long misses = ToolRunnerCache.getMetrics().getMisses();
+
+        final ToolRunner runner = ToolRunnerCache.getRunningToolRunner(TOOL_LOCATION, new ToolRunner.ArgumentBuilder().add("status"), Mockito.mock(ToolRunner.Listener.class));
+        assertNotNull(runner);
+        assertEquals(misses + 1, ToolRunnerCache.getMetrics().getMisses());
+        // The miss raises the target above the minimum
+        assertEquals(2, ToolRunnerCache.getIdleCount(TOOL_LOCATION, null));
+        runner.dispose();
+    }
+
+    @Test
+    public void testPoolsAreKeyedByWorkingDirectory() {
+        ToolRunnerCache.warmUp(TOOL_LOCATION, "/path/one");
+        ToolRunnerCache.warmUp(TOOL_LOCATION, "/PATH/ONE");
+        ToolRunnerCache.warmUp(TOOL_LOCATION, "/path/two");
+        assertEquals(1, ToolRunnerCache.getIdleCount(TOOL_LOCATION, "/path/one"));
+        assertEquals(1, ToolRunnerCache.getIdleCount(TOOL_LOCATION, "/path/two"));
+        assertEquals(0, ToolRunnerCache.getIdleCount(TOOL_LOCATION, null));
+    }
+
+    @Test
+    public void testDeadProcessesAreEvicted() {
+        ToolRunnerCache.warmUp(TOOL_LOCATION, null);
+        final long evictions = ToolRunnerCache.getMetrics().getEvictions();
+
+        processesAlive = false;
+        ToolRunnerCache.evict(System.currentTimeMillis());
+        assertEquals(evictions + 1, ToolRunnerCache.getMetrics().getEvictions());
+        // Replacements die immediately as well, so they are never added
+        assertEquals(0, ToolRunnerCache.getIdleCount(TOOL_LOCATION, null));
+    }
+
+    @Test
+    public void testProcessStartedForRemovedPoolIsDisposed() throws Exception {
+        final List<Runnable> spawns = new ArrayList<Runnable>();
+        ToolRunnerCache.setSpawnExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                spawns.add(command);
+            }
+        });
+        ToolRunnerCache.warmUp(TOOL_LOCATION, null);
+        assertEquals(1, spawns.size());
+
+        // The pool is removed while its process is still being started
+        ToolRunnerCache.clear();
+        spawns.get(0).run();
+        assertEquals(0, ToolRunnerCache.getIdleCount(TOOL_LOCATION, null));
+        assertEquals(0, ToolRunnerCache.getMetrics().getIdleCount());
+        PowerMockito.verifyStatic();
+        ProcessHelper.destroyProcessTree(any(Process.class));
+    }
+
+    @Test
+    public void testOldVersionIsNotPooled() {
+        when(TfTool.getCachedVersion()).thenReturn(new ToolVersion("14.0.1"));
+        ToolRunnerCache.warmUp(TOOL_LOCATION, null);
+        assertEquals(0, ToolRunnerCache.getIdleCount(TOOL_LOCATION, null));
+    }
+
+    @Test
+    public void testOldVersionShortArgumentsStayOnTheCommandLine() throws Exception {
+        when(TfTool.getCachedVersion()).thenReturn(new ToolVersion("14.0.1"));
+        ToolRunnerCache.getRunningToolRunner(TOOL_LOCATION, new ToolRunner.ArgumentBuilder().add("checkin").add("/path/to/a/file"), Mockito.mock(ToolRunner.Listener.class)).dispose();
+        PowerMockito.verifyStatic();
+        ProcessHelper.startProcess(anyString(), eq(Arrays.asList(TOOL_LOCATION, "checkin", "/path/to/a/file")));
+    }
+
+    @Test
+    public void testOldVersionLongArgumentsGoInAResponseFile() throws Exception {
+        when(TfTool.getCachedVersion()).thenReturn(new ToolVersion("14.0.1"));
+        assertFalse(ToolRunnerCache.isArgumentInputSupported());
+
+        // Old versions can't read the arguments from standard input, so they are put in a file that is read with "@"
+        final StringBuilder expected = new StringBuilder("checkin ");
+        final ToolRunner.ArgumentBuilder longArguments = new ToolRunner.ArgumentBuilder().add("checkin");
+        for (int i = 0; i < 1000; i++) {
+            longArguments.add("/path/to/a/file" + i);
+            expected.append("/path/to/a/file").append(i).append(" ");
+        }
+        final ToolRunner runner = ToolRunnerCache.getRunningToolRunner(TOOL_LOCATION, longArguments, Mockito.mock(ToolRunner.Listener.class));
+        final ArgumentCaptor<List> arguments = ArgumentCaptor.forClass(List.class);
+        PowerMockito.verifyStatic();
+        ProcessHelper.startProcess(anyString(), arguments.capture());
+        assertEquals(2, arguments.getValue().size());
+        assertEquals(TOOL_LOCATION, arguments.getValue().get(0));
+        final String responseArgument = (String) arguments.getValue().get(1);
+        assertTrue(responseArgument.startsWith("@"));
+
+        final File responseFile = new File(responseArgument.substring(1));
+        assertEquals(expected.toString(), FileUtils.readFileToString(responseFile).trim() + " ");
+        runner.dispose();
+        assertFalse(responseFile.exists());
+        assertEquals(0, ToolRunnerCache.getIdleCount(TOOL_LOCATION, null));
+    }
+
+    private Process createProcess() throws Exception {
+        final Process process = Mockito.mock(Process.class);
+        when(process.getErrorStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(process.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(process.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        when(process.waitFor()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                // Block like a warm process until the runner is disposed
+                Thread.sleep(TimeUnit.MINUTES.toMillis(5));
+                return 0;
+            }
+        });
+        when(process.exitValue()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                if (processesAlive) {
+                    throw new IllegalThreadStateException();
+                }
+                return 0;
+            }
+        });
+        return process;
+    }
+}
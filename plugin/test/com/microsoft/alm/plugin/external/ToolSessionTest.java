@@ -0,0 +1,260 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external;
+
+import com.microsoft.alm.plugin.external.exceptions.ToolTimeoutException;
+import com.microsoft.alm.plugin.external.utils.ProcessHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ProcessHelper.class})
+public class ToolSessionTest {
+    private AtomicInteger processesStarted;
+
+    @Before
+    public void setUp() throws Exception {
+        processesStarted = new AtomicInteger(0);
+        PowerMockito.mockStatic(ProcessHelper.class);
+        when(ProcessHelper.startProcess(anyString(), anyList())).thenAnswer(new Answer<Process>() {
+            @Override
+            public Process answer(InvocationOnMock invocation) throws Throwable {
+                processesStarted.incrementAndGet();
+                return new FakeClc().process;
+            }
+        });
+    }
+
+    @Test
+    public void testCommandsShareOneProcess() throws Exception {
+        final ToolSession session = new ToolSession("/path/tf", null);
+        final RecordingListener first = new RecordingListener();
+        final RecordingListener second = new RecordingListener();
+
+        session.execute(new ToolRunner.ArgumentBuilder().add("status"), first, 10, TimeUnit.SECONDS);
+        session.execute(new ToolRunner.ArgumentBuilder().add("info").add("file.txt"), second, 10, TimeUnit.SECONDS);
+
+        assertTrue(first.await());
+        assertTrue(second.await());
+        assertEquals(1, processesStarted.get());
+        assertEquals(0, first.returnCode);
+        assertEquals("[out: status]", first.stdout.toString());
+        assertEquals("[out: info file.txt]", second.stdout.toString());
+        session.close();
+    }
+
+    @Test
+    public void testErrorOutputSetsReturnCode() throws Exception {
+        final ToolSession session = new ToolSession("/path/tf", null);
+        final RecordingListener listener = new RecordingListener();
+
+        session.execute(new ToolRunner.ArgumentBuilder().add("error"), listener, 10, TimeUnit.SECONDS);
+
+        assertTrue(listener.await());
+        assertEquals(1, listener.returnCode);
+        assertEquals("[err: error]", listener.stderr.toString());
+        session.close();
+    }
+
+    @Test
+    public void testTimeoutRestartsProcess() throws Exception {
+        final ToolSession session = new ToolSession("/path/tf", null);
+        final RecordingListener hung = new RecordingListener();
+        final RecordingListener next = new RecordingListener();
+
+        session.execute(new ToolRunner.ArgumentBuilder().add("hang"), hung, 1, TimeUnit.SECONDS);
+        session.execute(new ToolRunner.ArgumentBuilder().add("status"), next, 10, TimeUnit.SECONDS);
+
+        assertTrue(hung.await());
+        assertTrue(hung.error instanceof ToolTimeoutException);
+        assertTrue(next.await());
+        assertEquals("[out: status]", next.stdout.toString());
+        assertEquals(2, processesStarted.get());
+        session.close();
+    }
+
+    @Test
+    public void testCancelQueuedCommand() throws Exception {
+        final ToolSession session = new ToolSession("/path/tf", null);
+        final RecordingListener hung = new RecordingListener();
+        final RecordingListener queued = new RecordingListener();
+
+        session.execute(new ToolRunner.ArgumentBuilder().add("hang"), hung, 30, TimeUnit.SECONDS);
+        final ToolSession.Request request = session.execute(new ToolRunner.ArgumentBuilder().add("status"), queued, 30, TimeUnit.SECONDS);
+        request.cancel();
+
+        assertTrue(queued.await());
+        assertTrue(request.isDone());
+        assertTrue(queued.error != null);
+        session.close();
+        assertTrue(hung.await());
+    }
+
+    @Test
+    public void testCloseSessionsOfClosingPath() throws Exception {
+        final RecordingListener closing = new RecordingListener();
+        final RecordingListener shared = new RecordingListener();
+        final RecordingListener other = new RecordingListener();
+
+        ToolSession.getSession("/path/tf", "/ws/proj/module").execute(new ToolRunner.ArgumentBuilder().add("hang"), closing, 30, TimeUnit.SECONDS);
+        ToolSession.getSession("/path/tf", "/ws").execute(new ToolRunner.ArgumentBuilder().add("hang"), shared, 30, TimeUnit.SECONDS);
+        ToolSession.getSession("/path/tf", "/other").execute(new ToolRunner.ArgumentBuilder().add("hang"), other, 30, TimeUnit.SECONDS);
+        ToolSession.closeSessions("/ws/proj", Arrays.asList("/ws/proj2", "/other"));
+
+        // only the session that no open path uses is stopped
+        assertTrue(closing.await());
+        assertTrue(closing.error instanceof CancellationException);
+        assertFalse(shared.done.await(100, TimeUnit.MILLISECONDS));
+        assertFalse(other.done.await(100, TimeUnit.MILLISECONDS));
+
+        // nothing stays open so everything is stopped
+        ToolSession.closeSessions("/ws/proj2", Collections.<String>emptyList());
+        assertTrue(shared.await());
+        assertTrue(other.await());
+    }
+
+    private static class RecordingListener implements ToolRunner.Listener {
+        private final List<String> stdout = new ArrayList<String>();
+        private final List<String> stderr = new ArrayList<String>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int returnCode = -1;
+        private Throwable error;
+
+        @Override
+        public void processStandardOutput(final String line) {
+            stdout.add(line);
+        }
+
+        @Override
+        public void processStandardError(final String line) {
+            stderr.add(line);
+        }
+
+        @Override
+        public void processException(final Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void completed(final int returnCode) {
+            this.returnCode = returnCode;
+            done.countDown();
+        }
+
+        public boolean await() throws InterruptedException {
+            return done.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Pretends to be the command line running in "@" mode. Every line on standard input is echoed back to standard
+     * output, except "error" which is echoed to standard error, "hang" which is never answered and unknown commands
+     * (the session sentinels) which are rejected on standard error.
+     */
+    private static class FakeClc {
+        private final Process process = Mockito.mock(Process.class);
+        private final CountDownLatch destroyed = new CountDownLatch(1);
+
+        public FakeClc() throws IOException {
+            final PipedInputStream stdin = new PipedInputStream();
+            final PipedOutputStream stdinWriter = new PipedOutputStream(stdin);
+            final PipedOutputStream stdoutWriter = new PipedOutputStream();
+            final PipedInputStream stdout = new PipedInputStream(stdoutWriter);
+            final PipedOutputStream stderrWriter = new PipedOutputStream();
+            final PipedInputStream stderr = new PipedInputStream(stderrWriter);
+
+            when(process.getOutputStream()).thenReturn(stdinWriter);
+            when(process.getInputStream()).thenReturn(stdout);
+            when(process.getErrorStream()).thenReturn(stderr);
+            try {
+                when(process.waitFor()).thenAnswer(new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) throws Throwable {
+                        destroyed.await();
+                        return 1;
+                    }
+                });
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            when(process.exitValue()).thenAnswer(new Answer<Integer>() {
+                @Override
+                public Integer answer(InvocationOnMock invocation) throws Throwable {
+                    if (destroyed.getCount() > 0) {
+                        throw new IllegalThreadStateException();
+                    }
+                    return 1;
+                }
+            });
+            Mockito.doAnswer(new Answer<Void>() {
+                @Override
+                public Void answer(InvocationOnMock invocation) throws Throwable {
+                    destroyed.countDown();
+                    stdoutWriter.close();
+                    stderrWriter.close();
+                    return null;
+                }
+            }).when(process).destroy();
+
+            final Thread clc = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final PrintStream out = new PrintStream(stdoutWriter, true);
+                    final PrintStream err = new PrintStream(stderrWriter, true);
+                    try {
+                        final BufferedReader reader = new BufferedReader(new InputStreamReader(stdin));
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            line = line.trim();
+                            if (line.equals("hang")) {
+                                destroyed.await();
+                                return;
+                            } else if (line.equals("error")) {
+                                err.println("err: " + line);
+                            } else if (line.startsWith("tf-session-end-")) {
+                                err.println("Unrecognized command: " + line);
+                            } else {
+                                out.println("out: " + line);
+                            }
+                        }
+                    } catch (final Exception e) {
+                        // The session killed the process
+                    }
+                }
+            });
+            clc.setDaemon(true);
+            clc.start();
+        }
+    }
+}
@@ -8,7 +8,9 @@ import com.microsoft.alm.plugin.external.ToolRunner;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class CheckinCommandTest extends AbstractCommandTest {
@@ -71,6 +73,25 @@ public class CheckinCommandTest extends AbstractCommandTest {
         Assert.assertEquals("checkin -noprompt -collection:http://server:8080/tfs/defaultcollection ******** file1 file2 file3 -comment:comment -associate:123", builder.toString());
     }
 
+    @Test
+    public void testConsumeOutputLine_streamed() {
+        final List<String> consumed = new ArrayList<String>();
+        final CheckinCommand cmd = new CheckinCommand(null, files, "comment", null, new CheckinCommand.FileConsumer() {
+            @Override
+            public void consume(final String path) {
+                consumed.add(path);
+            }
+        });
+        Assert.assertFalse(cmd.consumeOutputLine("/tmp/test/addFold:"));
+        Assert.assertFalse(cmd.consumeOutputLine("Checking in edit: testHere.txt"));
+        Assert.assertFalse(cmd.consumeOutputLine(""));
+        Assert.assertFalse(cmd.consumeOutputLine("/tmp/test:"));
+        Assert.assertFalse(cmd.consumeOutputLine("Checking in add: test3.txt"));
+        Assert.assertFalse(cmd.consumeOutputLine("Changeset #20 checked in."));
+        Assert.assertEquals(Arrays.asList(new File("/tmp/test/addFold", "testHere.txt").getPath(),
+                new File("/tmp/test", "test3.txt").getPath()), consumed);
+    }
+
     @Test
     public void testParseOutput_noOutput() {
         final CheckinCommand cmd = new CheckinCommand(null, files, "comment", null);
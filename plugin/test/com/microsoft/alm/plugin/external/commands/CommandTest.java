@@ -5,6 +5,7 @@ package com.microsoft.alm.plugin.external.commands;
 
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.external.exceptions.ToolMemoryException;
+import com.microsoft.alm.plugin.external.exceptions.ToolTimeoutException;
 import com.microsoft.alm.plugin.external.tools.TfTool;
 import com.microsoft.alm.plugin.external.utils.ProcessHelper;
 import org.apache.commons.lang.StringUtils;
@@ -20,6 +21,9 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -83,6 +87,80 @@ public class CommandTest extends AbstractCommandTest {
         Assert.assertEquals("12345", StringUtils.strip(output));
     }
 
+    @Test
+    public void testRunAsync_Cancel() throws Exception {
+        final CountDownLatch destroyed = mockHangingProcess();
+        final Future<String> future = new MyCommand(null).runAsync();
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertEquals(0, destroyed.getCount());
+        try {
+            future.get();
+            Assert.fail("the future should have been cancelled");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRunSynchronously_Timeout() throws Exception {
+        final CountDownLatch destroyed = mockHangingProcess();
+        final MyCommand cmd = new MyCommand(null) {
+            @Override
+            protected long getTimeoutSeconds() {
+                return 1;
+            }
+        };
+        try {
+            cmd.runSynchronously();
+            Assert.fail("the command should have timed out");
+        } catch (ToolTimeoutException e) {
+            Assert.assertEquals(0, destroyed.getCount());
+        }
+    }
+
+    /**
+     * Fakes a process that doesn't end or write anything until its process tree is destroyed
+     */
+    private CountDownLatch mockHangingProcess() throws Exception {
+        PowerMockito.mockStatic(TfTool.class);
+        when(TfTool.getValidLocation()).thenReturn("/path/tf_home");
+
+        final CountDownLatch destroyed = new CountDownLatch(1);
+        final InputStream hangingStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    destroyed.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return -1;
+            }
+        };
+        final Process proc = Mockito.mock(Process.class);
+        PowerMockito.mockStatic(ProcessHelper.class);
+        when(ProcessHelper.startProcess(anyString(), anyList())).thenReturn(proc);
+        PowerMockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                destroyed.countDown();
+                return null;
+            }
+        }).when(ProcessHelper.class);
+        ProcessHelper.destroyProcessTree(proc);
+        when(proc.getErrorStream()).thenReturn(hangingStream);
+        when(proc.getInputStream()).thenReturn(hangingStream);
+        when(proc.waitFor()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                destroyed.await();
+                return 1;
+            }
+        });
+        when(proc.exitValue()).thenReturn(1);
+        return destroyed;
+    }
+
 
     private class MyCommand extends Command<String> {
 
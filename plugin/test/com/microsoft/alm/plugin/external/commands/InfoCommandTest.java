@@ -51,6 +51,14 @@ public class InfoCommandTest extends AbstractCommandTest {
         Assert.assertEquals("info -noprompt file1 file2 file3", builder.toString());
     }
 
+    @Test
+    public void testGetArgumentBuilder_recursive() {
+        final InfoCommand cmd = new InfoCommand(null, "/working/folder", files, true);
+        final ToolRunner.ArgumentBuilder builder = cmd.getArgumentBuilder();
+        Assert.assertEquals("info -noprompt -recursive file1 file2 file3", builder.toString());
+        Assert.assertEquals("/working/folder", builder.getWorkingDirectory());
+    }
+
     @Test
     public void testParseOutput_noOutput() {
         final InfoCommand cmd = new InfoCommand(null, files);
@@ -8,7 +8,9 @@ import com.microsoft.alm.plugin.external.models.SyncResults;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class SyncCommandTest extends AbstractCommandTest {
@@ -134,6 +136,42 @@ public class SyncCommandTest extends AbstractCommandTest {
         Assert.assertEquals(1, results.getUpdatedFiles().size());
     }
 
+    @Test
+    public void testConsumeOutputLine_streamed() {
+        final List<String> consumed = new ArrayList<String>();
+        final SyncCommand cmd = new SyncCommand(null, files, true, false, false, new SyncCommand.FileConsumer() {
+            @Override
+            public void consume(final SyncCommand.FileAction action, final String path) {
+                consumed.add(action + " " + path);
+            }
+        });
+        Assert.assertTrue(cmd.consumeOutputLine("/tmp/test:"));
+        Assert.assertTrue(cmd.consumeOutputLine("Getting a.txt"));
+        Assert.assertTrue(cmd.consumeOutputLine("Replacing b.txt"));
+        Assert.assertFalse(cmd.consumeOutputLine(""));
+        Assert.assertTrue(cmd.consumeOutputLine("/tmp/test/sub:"));
+        Assert.assertTrue(cmd.consumeOutputLine("Deleting c.txt"));
+        Assert.assertFalse(cmd.consumeOutputLine("---- Summary: 1 conflicts, 0 warnings, 0 errors ----"));
+        Assert.assertEquals(Arrays.asList(
+                "NEW " + new File("/tmp/test", "a.txt").getPath(),
+                "UPDATED " + new File("/tmp/test", "b.txt").getPath(),
+                "DELETED " + new File("/tmp/test/sub", "c.txt").getPath()), consumed);
+
+        // the files that were streamed are not in the results
+        final SyncResults results = cmd.parseOutput("---- Summary: 1 conflicts, 0 warnings, 0 errors ----\n",
+                "Conflict b.txt - Unable to perform the get operation because you have a conflicting edit\n");
+        Assert.assertEquals(true, results.doConflictsExists());
+        Assert.assertEquals(0, results.getNewFiles().size());
+        Assert.assertEquals(0, results.getUpdatedFiles().size());
+    }
+
+    @Test
+    public void testConsumeOutputLine_noConsumer() {
+        final SyncCommand cmd = new SyncCommand(null, files, true);
+        Assert.assertFalse(cmd.consumeOutputLine("/tmp/test:"));
+        Assert.assertFalse(cmd.consumeOutputLine("Getting a.txt"));
+    }
+
     @Test
     public void testParseOutput_errors() {
         final SyncCommand cmd = new SyncCommand(null, files, true);
@@ -0,0 +1,189 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.commands;
+
+import com.microsoft.alm.plugin.external.exceptions.ToolParseFailureException;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class XmlOutputParserTest {
+    private static final String STATUS_OUTPUT = "WARN -- Unable to construct Telemetry Client\n" +
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<status>\n" +
+            "<pending-changes>\n" +
+            "<pending-change server-item=\"$/proj/a.txt\" version=\"5\" owner=\"jason\" date=\"2016-07-13T12:36:51.060-0400\" lock=\"none\" change-type=\"edit\" workspace=\"ws\" computer=\"machine\" local-item=\"/path/a.txt\"/>\n" +
+            "</pending-changes>\n" +
+            "<candidate-pending-changes>\n" +
+            "<pending-change server-item=\"$/proj/b.txt\" version=\"0\" owner=\"jason\" date=\"2016-07-13T12:36:51.060-0400\" lock=\"none\" change-type=\"add\" workspace=\"ws\" computer=\"machine\" local-item=\"/path/b.txt\" source-item=\"$/proj/c.txt\"/>\n" +
+            "</candidate-pending-changes>\n" +
+            "</status>";
+
+    private static final String HISTORY_OUTPUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<history>\n" +
+            "<changeset id=\"4\" owner=\"john\" committer=\"jeff\" date=\"2016-06-07T11:18:18.790-0400\">\n" +
+            "<comment>add &amp; update readme</comment>\n" +
+            "<item change-type=\"add\" server-item=\"$/tfs01/readme.txt\"/>\n" +
+            "<item change-type=\"edit\" server-item=\"$/tfs01/other.txt\"/>\n" +
+            "</changeset>\n" +
+            "<changeset id=\"3\" owner=\"jeff\" committer=\"jeff\" date=\"2016-06-07T11:13:51.747-0400\">\n" +
+            "<item change-type=\"add\" server-item=\"$/tfs01/com.microsoft.core\"/>\n" +
+            "</changeset>\n" +
+            "</history>";
+
+    @Test
+    public void testParse_emptyOutput() {
+        Assert.assertEquals(0, new StatusCommand.PendingChangeParser().parse("").size());
+        Assert.assertEquals(0, new HistoryCommand.ChangeSetParser().parse(null).size());
+    }
+
+    @Test
+    public void testParse_pendingChanges() {
+        final List<PendingChange> changes = new StatusCommand.PendingChangeParser().parse(STATUS_OUTPUT);
+        Assert.assertEquals(2, changes.size());
+        Assert.assertEquals("$/proj/a.txt", changes.get(0).getServerItem());
+        Assert.assertEquals("5", changes.get(0).getVersion());
+        Assert.assertFalse(changes.get(0).isCandidate());
+        Assert.assertEquals("", changes.get(0).getSourceItem());
+        Assert.assertEquals("/path/b.txt", changes.get(1).getLocalItem());
+        Assert.assertTrue(changes.get(1).isCandidate());
+        Assert.assertEquals("$/proj/c.txt", changes.get(1).getSourceItem());
+    }
+
+    @Test
+    public void testParse_changeSets() {
+        final List<ChangeSet> changeSets = new HistoryCommand.ChangeSetParser().parse(HISTORY_OUTPUT);
+        Assert.assertEquals(2, changeSets.size());
+        Assert.assertEquals("4", changeSets.get(0).getId());
+        Assert.assertEquals("john", changeSets.get(0).getOwner());
+        Assert.assertEquals("jeff", changeSets.get(0).getCommitter());
+        Assert.assertEquals("add & update readme", changeSets.get(0).getComment());
+        Assert.assertEquals(2, changeSets.get(0).getChanges().size());
+        Assert.assertEquals("$/tfs01/other.txt", changeSets.get(0).getChanges().get(1).getServerItem());
+        Assert.assertEquals("4", changeSets.get(0).getChanges().get(1).getChangeSetId());
+        Assert.assertEquals("", changeSets.get(1).getComment());
+        Assert.assertEquals(1, changeSets.get(1).getChanges().size());
+    }
+
+    @Test(expected = ToolParseFailureException.class)
+    public void testParse_badXml() {
+        new StatusCommand.PendingChangeParser().parse("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<status><pending-changes>");
+    }
+
+    @Test
+    public void testLineFeed() {
+        final List<PendingChange> changes = new ArrayList<PendingChange>();
+        final XmlOutputParser<PendingChange>.LineFeed feed = new StatusCommand.PendingChangeParser().createLineFeed(
+                new XmlOutputParser.ItemConsumer<PendingChange>() {
+                    @Override
+                    public void consume(final PendingChange item) {
+                        changes.add(item);
+                    }
+                });
+
+        final List<String> skipped = new ArrayList<String>();
+        for (final String line : STATUS_OUTPUT.split("\n")) {
+            if (!feed.addLine(line)) {
+                skipped.add(line);
+            }
+        }
+        feed.finish();
+
+        Assert.assertEquals(1, skipped.size());
+        Assert.assertEquals(2, changes.size());
+        Assert.assertEquals("$/proj/b.txt", changes.get(1).getServerItem());
+    }
+
+    @Test
+    public void testLineFeed_manyItems() {
+        final int count = 5000;
+        final List<ChangeSet> changeSets = new ArrayList<ChangeSet>();
+        final XmlOutputParser<ChangeSet>.LineFeed feed = new HistoryCommand.ChangeSetParser().createLineFeed(
+                new XmlOutputParser.ItemConsumer<ChangeSet>() {
+                    @Override
+                    public void consume(final ChangeSet item) {
+                        changeSets.add(item);
+                    }
+                });
+
+        feed.addLine("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+        feed.addLine("<history>");
+        for (int i = count; i > 0; i--) {
+            feed.addLine("<changeset id=\"" + i + "\" owner=\"john\" committer=\"john\" date=\"2016-06-07T11:18:18.790-0400\">");
+            feed.addLine("<comment>change " + i + "</comment>");
+            feed.addLine("<item change-type=\"edit\" server-item=\"$/tfs01/readme.txt\"/>");
+            feed.addLine("</changeset>");
+        }
+        feed.addLine("</history>");
+        feed.finish();
+
+        Assert.assertEquals(count, changeSets.size());
+        Assert.assertEquals("change 1", changeSets.get(count - 1).getComment());
+    }
+
+    @Test
+    public void testLineFeed_itemsArriveAsTheyEnd() {
+        final List<ChangeSet> changeSets = new ArrayList<ChangeSet>();
+        final XmlOutputParser<ChangeSet>.LineFeed feed = new HistoryCommand.ChangeSetParser().createLineFeed(
+                new XmlOutputParser.ItemConsumer<ChangeSet>() {
+                    @Override
+                    public void consume(final ChangeSet item) {
+                        changeSets.add(item);
+                    }
+                });
+
+        feed.addLine("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+        feed.addLine("<history>");
+        feed.addLine("<changeset id=\"2\" owner=\"john\" committer=\"john\" date=\"2016-06-07T11:18:18.790-0400\">");
+        feed.addLine("<comment>first line");
+        feed.addLine("<!-- not a tag --> second &lt;line&gt;</comment>");
+        feed.addLine("<item change-type=\"edit\" server-item=\"$/tfs01/a>b.txt\"/>");
+        Assert.assertEquals(0, changeSets.size());
+        feed.addLine("</changeset>");
+        Assert.assertEquals(1, changeSets.size());
+        feed.addLine("<changeset id=\"1\" owner=\"john\" committer=\"john\" date=\"2016-06-07T11:13:51.747-0400\">");
+        feed.addLine("<comment>initial</comment>");
+        feed.addLine("</changeset>");
+        Assert.assertEquals(2, changeSets.size());
+        feed.addLine("</history>");
+        feed.finish();
+
+        Assert.assertEquals(2, changeSets.size());
+        Assert.assertEquals("first line\n second <line>", changeSets.get(0).getComment());
+        Assert.assertEquals("$/tfs01/a>b.txt", changeSets.get(0).getChanges().get(0).getServerItem());
+        Assert.assertEquals("initial", changeSets.get(1).getComment());
+    }
+
+    @Test(expected = ToolParseFailureException.class)
+    public void testLineFeed_cutOff() {
+        final XmlOutputParser<PendingChange>.LineFeed feed = new StatusCommand.PendingChangeParser().createLineFeed(
+                new XmlOutputParser.ItemConsumer<PendingChange>() {
+                    @Override
+                    public void consume(final PendingChange item) {
+                    }
+                });
+        feed.addLine("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+        feed.addLine("<status><pending-changes/>");
+        feed.addLine("<candidate-pending-changes>");
+        feed.finish();
+    }
+
+    @Test(expected = ToolParseFailureException.class)
+    public void testLineFeed_badXml() {
+        final XmlOutputParser<PendingChange>.LineFeed feed = new StatusCommand.PendingChangeParser().createLineFeed(
+                new XmlOutputParser.ItemConsumer<PendingChange>() {
+                    @Override
+                    public void consume(final PendingChange item) {
+                    }
+                });
+        feed.addLine("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+        feed.addLine("<status><pending-changes>");
+        feed.addLine("</status>");
+        feed.finish();
+    }
+}
@@ -0,0 +1,219 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.io.Files;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.CheckedInChange;
+import com.microsoft.alm.plugin.external.models.VersionSpec;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ChangeSetIndexTest {
+    private File folder;
+    // newest first, like the server returns them
+    private final List<ChangeSet> server = new ArrayList<ChangeSet>();
+    private int fetchCount;
+
+    @Before
+    public void setUp() {
+        folder = Files.createTempDir();
+        addToServer(1, "alice", "add", "$/proj");
+        addToServer(2, "alice", "add", "$/proj/src/a.txt", "add", "$/proj/src/b.txt", "add", "$/proj/src");
+        addToServer(3, "bob", "edit", "$/proj/src/a.txt", "edit", "$/proj/src/b.txt");
+        addToServer(4, "alice", "rename", "$/proj/src/c.txt");
+        addToServer(5, "bob", "edit", "$/proj/src/a.txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testGetHistory_NotBuilt() {
+        Assert.assertNull(createIndex().getHistory("$/proj/src/a.txt", false, 1, Integer.MAX_VALUE, null, 0));
+    }
+
+    @Test
+    public void testGetHistory_File() throws IOException {
+        final ChangeSetIndex index = createBuiltIndex();
+        assertIds(index.getHistory("$/proj/src/a.txt", false, 1, Integer.MAX_VALUE, null, 0), 5, 3, 2);
+        assertIds(index.getHistory("$/Proj/Src/A.txt", false, 1, Integer.MAX_VALUE, null, 0), 5, 3, 2);
+        assertIds(index.getHistory("$/proj/src/a.txt", false, 1, Integer.MAX_VALUE, null, 2), 5, 3);
+        assertIds(index.getHistory("$/proj/src/a.txt", false, 1, 4, null, 0), 3, 2);
+        assertIds(index.getHistory("$/proj/src/a.txt", false, 1, Integer.MAX_VALUE, "BOB", 0), 5, 3);
+    }
+
+    @Test
+    public void testGetHistory_Folder() throws IOException {
+        final ChangeSetIndex index = createBuiltIndex();
+        final List<ChangeSet> history = index.getHistory("$/proj/src", true, 1, Integer.MAX_VALUE, null, 0);
+        assertIds(history, 5, 4, 3, 2);
+        // only the changes under the folder are included
+        Assert.assertEquals(3, history.get(3).getChanges().size());
+        assertIds(index.getHistory("$/proj/src", false, 1, Integer.MAX_VALUE, null, 0), 2);
+    }
+
+    @Test
+    public void testGetHistory_Root() throws IOException {
+        final ChangeSetIndex index = createBuiltIndex();
+        assertIds(index.getHistory("$/", true, 1, Integer.MAX_VALUE, null, 0), 5, 4, 3, 2, 1);
+        assertIds(index.getHistory("$/", true, 2, 4, null, 0), 4, 3, 2);
+        assertIds(index.getHistory("$/", true, 1, Integer.MAX_VALUE, "alice", 0), 4, 2, 1);
+    }
+
+    @Test
+    public void testGetHistory_UserIsOwner() throws IOException {
+        // checked in by bob for carol
+        server.add(0, new ChangeSet("6", "carol", "bob", "2016-06-07T11:18:18.790-0400", "comment 6",
+                Collections.singletonList(new CheckedInChange("$/proj/src/a.txt", "edit", "6", "2016-06-07T11:18:18.790-0400"))));
+        final ChangeSetIndex index = createBuiltIndex();
+        assertIds(index.getHistory("$/proj/src/a.txt", false, 1, Integer.MAX_VALUE, "carol", 0), 6);
+        assertIds(index.getHistory("$/proj/src/a.txt", false, 1, Integer.MAX_VALUE, "bob", 0), 5, 3);
+        assertIds(index.getHistory("$/", true, 1, Integer.MAX_VALUE, "carol", 0), 6);
+    }
+
+    @Test
+    public void testGetHistory_UnknownUser() throws IOException {
+        final ChangeSetIndex index = createBuiltIndex();
+        // the server may know the user by another name, e.g. a display name
+        Assert.assertNull(index.getHistory("$/proj/src/a.txt", false, 1, Integer.MAX_VALUE, "Bob Smith", 0));
+        Assert.assertNull(index.getHistory("$/", true, 1, Integer.MAX_VALUE, "Bob Smith", 0));
+    }
+
+    @Test
+    public void testUnload() throws IOException {
+        final ChangeSetIndex index = createBuiltIndex();
+        index.unload();
+        Assert.assertTrue(index.isComplete());
+        assertIds(index.getHistory("$/proj/src", true, 1, Integer.MAX_VALUE, null, 0), 5, 4, 3, 2);
+        Assert.assertEquals("comment 4", index.getHistory("$/proj/src", true, 4, 4, null, 0).get(0).getComment());
+    }
+
+    @Test
+    public void testGetHistory_Renamed() throws IOException {
+        final ChangeSetIndex index = createBuiltIndex();
+        Assert.assertNull(index.getHistory("$/proj/src/c.txt", false, 1, Integer.MAX_VALUE, null, 0));
+        Assert.assertNull(index.getHistory("$/proj/unknown.txt", false, 1, Integer.MAX_VALUE, null, 0));
+    }
+
+    @Test
+    public void testUpdate() throws IOException {
+        final ChangeSetIndex index = createBuiltIndex();
+        addToServer(6, "bob", "edit", "$/proj/src/b.txt");
+        Assert.assertTrue(index.update(null));
+        assertIds(index.getHistory("$/proj/src/b.txt", false, 1, Integer.MAX_VALUE, null, 0), 6, 3, 2);
+        Assert.assertEquals(6, index.getCoveredTo());
+
+        // nothing new
+        Assert.assertTrue(index.update(null));
+        Assert.assertEquals(6, index.getCoveredTo());
+    }
+
+    @Test
+    public void testBuild_Windows() throws IOException {
+        for (int id = 6; id <= 2500; id++) {
+            addToServer(id, "bob", "edit", "$/proj/src/a.txt");
+        }
+        final ChangeSetIndex index = createIndex();
+        index.build(null);
+        // the newest changeset and then windows of 1000
+        Assert.assertEquals(4, fetchCount);
+        Assert.assertEquals(2500, index.getHistory("$/", true, 1, Integer.MAX_VALUE, null, 0).size());
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        createBuiltIndex();
+        final ChangeSetIndex index = createIndex();
+        Assert.assertTrue(index.isComplete());
+        Assert.assertEquals(5, index.getCoveredTo());
+        final List<ChangeSet> history = index.getHistory("$/proj/src/a.txt", false, 1, Integer.MAX_VALUE, null, 0);
+        assertIds(history, 5, 3, 2);
+        Assert.assertEquals("bob", history.get(0).getCommitter());
+        Assert.assertEquals("comment 5", history.get(0).getComment());
+        Assert.assertEquals(1, history.get(0).getChanges().size());
+        Assert.assertEquals("$/proj/src/a.txt", history.get(0).getChanges().get(0).getServerItem());
+    }
+
+    @Test
+    public void testLoad_PartialRecord() throws IOException {
+        final ChangeSetIndex built = createBuiltIndex();
+        addToServer(6, "bob", "edit", "$/proj/src/b.txt");
+        built.update(null);
+
+        // cut the file in the middle of the last append
+        final File file = new File(folder, "changesets.dat");
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(file.length() - 10);
+        randomAccessFile.close();
+
+        final ChangeSetIndex index = createIndex();
+        Assert.assertEquals(5, index.getCoveredTo());
+        assertIds(index.getHistory("$/proj/src/b.txt", false, 1, Integer.MAX_VALUE, null, 0), 3, 2);
+        // the changeset is read again
+        index.update(null);
+        assertIds(index.getHistory("$/proj/src/b.txt", false, 1, Integer.MAX_VALUE, null, 0), 6, 3, 2);
+    }
+
+    private ChangeSetIndex createBuiltIndex() throws IOException {
+        final ChangeSetIndex index = createIndex();
+        index.build(null);
+        Assert.assertTrue(index.isComplete());
+        return index;
+    }
+
+    private ChangeSetIndex createIndex() {
+        return new ChangeSetIndex(folder) {
+            @Override
+            protected List<ChangeSet> fetch(final ServerContext context, final String version, final int stopAfter) {
+                fetchCount++;
+                final VersionSpec.Range range = VersionSpec.Range.create(version);
+                final int from = range.getStart().getType() == VersionSpec.Type.Changeset ? Integer.parseInt(range.getStart().getValue()) : 1;
+                final int to = range.getEnd().getType() == VersionSpec.Type.Changeset ? Integer.parseInt(range.getEnd().getValue()) : Integer.MAX_VALUE;
+                final List<ChangeSet> result = new ArrayList<ChangeSet>();
+                for (final ChangeSet changeSet : server) {
+                    if (changeSet.getIdAsInt() >= from && changeSet.getIdAsInt() <= to && (stopAfter == 0 || result.size() < stopAfter)) {
+                        result.add(changeSet);
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Adds a changeset that is newer than the ones already on the server
+     */
+    private void addToServer(final int id, final String committer, final String... changes) {
+        final List<CheckedInChange> checkedInChanges = new ArrayList<CheckedInChange>();
+        for (int i = 0; i < changes.length; i += 2) {
+            checkedInChanges.add(new CheckedInChange(changes[i + 1], changes[i], Integer.toString(id), "2016-06-07T11:18:18.790-0400"));
+        }
+        server.add(0, new ChangeSet(Integer.toString(id), committer, committer, "2016-06-07T11:18:18.790-0400",
+                "comment " + id, checkedInChanges));
+    }
+
+    private void assertIds(final List<ChangeSet> changeSets, final Integer... ids) {
+        Assert.assertNotNull(changeSets);
+        final List<Integer> actual = new ArrayList<Integer>();
+        for (final ChangeSet changeSet : changeSets) {
+            actual.add(changeSet.getIdAsInt());
+        }
+        Assert.assertEquals(Arrays.asList(ids), actual);
+    }
+}
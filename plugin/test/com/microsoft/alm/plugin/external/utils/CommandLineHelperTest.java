@@ -0,0 +1,50 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CommandLineHelperTest {
+    @Test
+    public void testCreateBatches_empty() {
+        Assert.assertEquals(0, CommandLineHelper.createBatches(Collections.<String>emptyList(), 100).size());
+        Assert.assertEquals(0, CommandLineHelper.createBatches(Arrays.asList("", null), 100).size());
+    }
+
+    @Test
+    public void testCreateBatches_singleBatch() {
+        final List<List<String>> batches = CommandLineHelper.createBatches(Arrays.asList("/path/one", "/path/two"));
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(Arrays.asList("/path/one", "/path/two"), batches.get(0));
+    }
+
+    @Test
+    public void testCreateBatches_splitByLength() {
+        final List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            // 10 characters each, 13 with quotes and the separator
+            paths.add(String.format("/path/%04d", i));
+        }
+
+        final List<List<String>> batches = CommandLineHelper.createBatches(paths, 130);
+        Assert.assertEquals(4, batches.size());
+        for (final List<String> batch : batches) {
+            Assert.assertEquals(10, batch.size());
+        }
+        Assert.assertEquals("/path/0010", batches.get(1).get(0));
+    }
+
+    @Test
+    public void testCreateBatches_longPath() {
+        final List<List<String>> batches = CommandLineHelper.createBatches(Arrays.asList("/a", "/a/very/long/path", "/b"), 10);
+        Assert.assertEquals(3, batches.size());
+        Assert.assertEquals(Collections.singletonList("/a/very/long/path"), batches.get(1));
+    }
+}
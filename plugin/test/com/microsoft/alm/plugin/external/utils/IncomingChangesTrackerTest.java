@@ -0,0 +1,205 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ChangeSet;
+import com.microsoft.alm.plugin.external.models.CheckedInChange;
+import com.microsoft.alm.plugin.external.models.ItemInfo;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class IncomingChangesTrackerTest {
+    private final Workspace workspace = new Workspace("server", "ws", "computer", "owner", "comment",
+            Arrays.asList(new Workspace.Mapping("$/proj", "/ws/proj", false),
+                    new Workspace.Mapping("$/proj/cloaked", "", true)));
+
+    private int latest;
+    // server item to its version on the server and in the workspace
+    private final Map<String, Integer> serverVersions = new HashMap<String, Integer>();
+    private final Map<String, Integer> localVersions = new HashMap<String, Integer>();
+    private final List<ChangeSet> history = new ArrayList<ChangeSet>();
+    private final List<String> calls = new ArrayList<String>();
+    // Runs after the next info command read the versions
+    private Runnable afterInfo;
+    private IncomingChangesTracker tracker;
+
+    @Before
+    public void setUp() {
+        checkin(1, "$/proj/a.txt", "$/proj/b.txt");
+        localVersions.put("$/proj/a.txt", 1);
+        localVersions.put("$/proj/b.txt", 1);
+
+        tracker = new IncomingChangesTracker() {
+            @Override
+            protected int getLatestChangeset(final ServerContext context, final String serverPath) {
+                calls.add("latest");
+                return latest;
+            }
+
+            @Override
+            protected List<ChangeSet> getHistory(final ServerContext context, final String serverPath,
+                                                 final String version, final int stopAfter) {
+                calls.add("history " + version);
+                final List<ChangeSet> result = new ArrayList<ChangeSet>();
+                for (final ChangeSet changeSet : history) {
+                    final String[] range = version.substring(1).split("~C");
+                    if (changeSet.getIdAsInt() >= Integer.parseInt(range[0]) && changeSet.getIdAsInt() <= Integer.parseInt(range[1])) {
+                        result.add(0, changeSet);
+                    }
+                }
+                return result;
+            }
+
+            @Override
+            protected List<ItemInfo> getItemInfos(final ServerContext context, final String workingFolder,
+                                                  final List<String> itemPaths, final boolean recursive) {
+                calls.add("info " + (recursive ? "/recursive " : "") + new TreeSet<String>(itemPaths));
+                final List<ItemInfo> infos = new ArrayList<ItemInfo>();
+                for (final String serverItem : recursive ? serverVersions.keySet() : itemPaths) {
+                    infos.add(createInfo(serverItem));
+                }
+                if (afterInfo != null) {
+                    final Runnable runnable = afterInfo;
+                    afterInfo = null;
+                    runnable.run();
+                }
+                return infos;
+            }
+        };
+    }
+
+    @Test
+    public void testGetIncomingItems_FirstTime() {
+        localVersions.put("$/proj/a.txt", 0);
+        assertIncoming("$/proj/a.txt");
+        Assert.assertEquals(Arrays.asList("latest", "info /recursive [/ws/proj]"), calls);
+    }
+
+    @Test
+    public void testGetIncomingItems_NothingNew() {
+        assertIncoming();
+        calls.clear();
+        assertIncoming();
+        Assert.assertEquals(Collections.singletonList("latest"), calls);
+    }
+
+    @Test
+    public void testGetIncomingItems_OnlyNewChangesAreRead() {
+        assertIncoming();
+        calls.clear();
+
+        checkin(2, "$/proj/b.txt", "$/proj/new.txt", "$/proj/cloaked/c.txt");
+        assertIncoming("$/proj/b.txt", "$/proj/new.txt");
+        Assert.assertEquals(Arrays.asList("latest", "history C2~C2", "info [$/proj/b.txt, $/proj/new.txt]"), calls);
+
+        // the items found before are checked again with the next changes
+        calls.clear();
+        checkin(3, "$/proj/a.txt");
+        assertIncoming("$/proj/a.txt", "$/proj/b.txt", "$/proj/new.txt");
+        Assert.assertEquals(Arrays.asList("latest", "history C3~C3",
+                "info [$/proj/a.txt, $/proj/b.txt, $/proj/new.txt]"), calls);
+    }
+
+    @Test
+    public void testInvalidate() {
+        assertIncoming();
+        checkin(2, "$/proj/a.txt", "$/proj/b.txt");
+        assertIncoming("$/proj/a.txt", "$/proj/b.txt");
+
+        // get a.txt
+        localVersions.put("$/proj/a.txt", 2);
+        tracker.invalidate();
+        calls.clear();
+        assertIncoming("$/proj/b.txt");
+        Assert.assertEquals(Arrays.asList("latest", "info [$/proj/a.txt, $/proj/b.txt]"), calls);
+    }
+
+    @Test
+    public void testInvalidate_WhileReading() {
+        checkin(2, "$/proj/a.txt");
+        // a.txt is synced while the versions are being read
+        afterInfo = new Runnable() {
+            @Override
+            public void run() {
+                localVersions.put("$/proj/a.txt", 2);
+                tracker.invalidate();
+            }
+        };
+        assertIncoming("$/proj/a.txt");
+
+        calls.clear();
+        assertIncoming();
+        Assert.assertEquals(Arrays.asList("latest", "info [$/proj/a.txt]"), calls);
+    }
+
+    @Test
+    public void testGetIncomingItems_InfoFails() {
+        assertIncoming();
+        checkin(2, "$/proj/a.txt");
+        serverVersions.remove("$/proj/a.txt");
+        final IncomingChangesTracker failing = new IncomingChangesTracker() {
+            @Override
+            protected int getLatestChangeset(final ServerContext context, final String serverPath) {
+                return latest;
+            }
+
+            @Override
+            protected List<ChangeSet> getHistory(final ServerContext context, final String serverPath,
+                                                 final String version, final int stopAfter) {
+                return history;
+            }
+
+            @Override
+            protected List<ItemInfo> getItemInfos(final ServerContext context, final String workingFolder,
+                                                  final List<String> itemPaths, final boolean recursive) {
+                if (!recursive) {
+                    throw new RuntimeException("No items match");
+                }
+                return Collections.singletonList(createInfo("$/proj/b.txt"));
+            }
+        };
+        // the first call reads everything, the second one falls back to it when the item can't be found
+        Assert.assertTrue(failing.getIncomingItems(null, workspace).isEmpty());
+        localVersions.put("$/proj/b.txt", 0);
+        latest = 3;
+        Assert.assertEquals(1, failing.getIncomingItems(null, workspace).size());
+    }
+
+    private void checkin(final int id, final String... serverItems) {
+        final List<CheckedInChange> changes = new ArrayList<CheckedInChange>();
+        for (final String serverItem : serverItems) {
+            changes.add(new CheckedInChange(serverItem, "edit", Integer.toString(id), "2017-01-01T00:00:00.000-0000"));
+            serverVersions.put(serverItem, id);
+        }
+        history.add(new ChangeSet(Integer.toString(id), "owner", "owner", "2017-01-01T00:00:00.000-0000", "", changes));
+        latest = id;
+    }
+
+    private ItemInfo createInfo(final String serverItem) {
+        final Integer serverVersion = serverVersions.get(serverItem);
+        final Integer localVersion = localVersions.get(serverItem);
+        return new ItemInfo(serverItem, localVersion == null ? "" : serverItem.replace("$", "/ws"),
+                serverVersion == null ? "" : serverVersion.toString(), localVersion == null ? "" : localVersion.toString(),
+                "none", "file", "none", "", "0", "", "", "");
+    }
+
+    private void assertIncoming(final String... serverItems) {
+        final TreeSet<String> actual = new TreeSet<String>();
+        for (final ItemInfo info : tracker.getIncomingItems(null, workspace)) {
+            actual.add(info.getServerItem());
+        }
+        Assert.assertEquals(new TreeSet<String>(Arrays.asList(serverItems)), actual);
+    }
+}
@@ -0,0 +1,199 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.ItemInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ItemInfoCacheTest {
+    private final List<List<String>> calls = Collections.synchronizedList(new ArrayList<List<String>>());
+    private volatile CountDownLatch readStarted;
+    private volatile CountDownLatch releaseRead;
+    private volatile RuntimeException failure;
+
+    private ItemInfoCache createCache(final long expiryMillis) {
+        return new ItemInfoCache(expiryMillis) {
+            @Override
+            protected List<ItemInfo> readInfos(final ServerContext context, final List<String> localPaths) {
+                calls.add(new ArrayList<String>(localPaths));
+                // Only the next read fails
+                final RuntimeException readFailure = failure;
+                failure = null;
+                if (readStarted != null) {
+                    readStarted.countDown();
+                    try {
+                        releaseRead.await(10, TimeUnit.SECONDS);
+                    } catch (final InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                if (readFailure != null) {
+                    throw readFailure;
+                }
+                final List<ItemInfo> infos = new ArrayList<ItemInfo>();
+                for (final String localPath : localPaths) {
+                    if (!localPath.contains("missing")) {
+                        infos.add(createInfo(localPath));
+                    }
+                }
+                return infos;
+            }
+        };
+    }
+
+    @Test
+    public void testGetItemInfos_CachedPathsAreNotReadAgain() {
+        final ItemInfoCache cache = createCache(60000);
+        assertInfos(cache.getItemInfos(null, Arrays.asList("/ws/a.txt", "/ws/b.txt")), "/ws/a.txt", "/ws/b.txt");
+        assertInfos(cache.getItemInfos(null, Arrays.asList("/ws/c.txt", "/ws/b.txt", "/ws/a.txt")),
+                "/ws/c.txt", "/ws/b.txt", "/ws/a.txt");
+        Assert.assertEquals(Arrays.asList(Arrays.asList("/ws/a.txt", "/ws/b.txt"), Collections.singletonList("/ws/c.txt")), calls);
+    }
+
+    @Test
+    public void testGetItemInfos_Expired() {
+        final ItemInfoCache cache = createCache(0);
+        cache.getItemInfo(null, "/ws/a.txt");
+        cache.getItemInfo(null, "/ws/a.txt");
+        Assert.assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void testGetItemInfo_NoItems() {
+        final ItemInfoCache cache = createCache(60000);
+        try {
+            cache.getItemInfo(null, "/ws/missing.txt");
+            Assert.fail("expected an exception");
+        } catch (final RuntimeException e) {
+            Assert.assertEquals("No items match /ws/missing.txt", e.getMessage());
+        }
+        Assert.assertTrue(cache.getItemInfos(null, Collections.singletonList("/ws/missing.txt")).isEmpty());
+        Assert.assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void testInvalidate_PathAndChildren() {
+        final ItemInfoCache cache = createCache(60000);
+        cache.getItemInfos(null, Arrays.asList("/ws/dir", "/ws/dir/a.txt", "/ws/dir2/b.txt"));
+        calls.clear();
+
+        cache.invalidate("/ws/dir");
+        cache.getItemInfos(null, Arrays.asList("/ws/dir", "/ws/dir/a.txt", "/ws/dir2/b.txt"));
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("/ws/dir", "/ws/dir/a.txt")), calls);
+
+        calls.clear();
+        cache.invalidateAll();
+        cache.getItemInfo(null, "/ws/dir2/b.txt");
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList("/ws/dir2/b.txt")), calls);
+    }
+
+    @Test
+    public void testInvalidate_WhileReading() throws Exception {
+        final ItemInfoCache cache = createCache(60000);
+        readStarted = new CountDownLatch(1);
+        releaseRead = new CountDownLatch(1);
+        final Thread reader = startReader(cache, "/ws/a.txt", new AtomicReference<Object>());
+        Assert.assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+
+        // The info that is being read may already be out of date, so it isn't kept
+        cache.invalidate("/ws/a.txt");
+        readStarted = null;
+        releaseRead.countDown();
+        reader.join(10000);
+        cache.getItemInfo(null, "/ws/a.txt");
+        Assert.assertEquals(2, calls.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetItemInfos_ConcurrentRequestsAreCoalesced() throws Exception {
+        final ItemInfoCache cache = createCache(60000);
+        readStarted = new CountDownLatch(1);
+        releaseRead = new CountDownLatch(1);
+        final AtomicReference<Object> first = new AtomicReference<Object>();
+        final Thread firstReader = startReader(cache, "/ws/a.txt", first);
+        Assert.assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+
+        // The second request only reads the path that isn't being read already
+        readStarted = null;
+        final AtomicReference<Object> second = new AtomicReference<Object>();
+        final Thread secondReader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                second.set(cache.getItemInfos(null, Arrays.asList("/ws/a.txt", "/ws/b.txt")));
+            }
+        });
+        secondReader.start();
+        Thread.sleep(100);
+        releaseRead.countDown();
+        firstReader.join(10000);
+        secondReader.join(10000);
+
+        Assert.assertEquals(Arrays.asList(Collections.singletonList("/ws/a.txt"), Collections.singletonList("/ws/b.txt")), calls);
+        Assert.assertEquals("/ws/a.txt", ((ItemInfo) first.get()).getLocalItem());
+        assertInfos((List<ItemInfo>) second.get(), "/ws/a.txt", "/ws/b.txt");
+    }
+
+    @Test
+    public void testGetItemInfos_FailureIsNotCached() throws Exception {
+        final ItemInfoCache cache = createCache(60000);
+        readStarted = new CountDownLatch(1);
+        releaseRead = new CountDownLatch(1);
+        failure = new RuntimeException("server unavailable");
+        final AtomicReference<Object> first = new AtomicReference<Object>();
+        final Thread firstReader = startReader(cache, "/ws/a.txt", first);
+        Assert.assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+
+        // A request waiting on the failed read tries the path again itself
+        readStarted = null;
+        final AtomicReference<Object> second = new AtomicReference<Object>();
+        final Thread secondReader = startReader(cache, "/ws/a.txt", second);
+        Thread.sleep(100);
+        releaseRead.countDown();
+        firstReader.join(10000);
+        secondReader.join(10000);
+
+        Assert.assertTrue(first.get() instanceof RuntimeException);
+        Assert.assertEquals("/ws/a.txt", ((ItemInfo) second.get()).getLocalItem());
+        cache.getItemInfo(null, "/ws/a.txt");
+        Assert.assertEquals(2, calls.size());
+    }
+
+    private Thread startReader(final ItemInfoCache cache, final String localPath, final AtomicReference<Object> result) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.set(cache.getItemInfo(null, localPath));
+                } catch (final RuntimeException e) {
+                    result.set(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private ItemInfo createInfo(final String localPath) {
+        return new ItemInfo(localPath.replace("/ws", "$/proj"), localPath, "1", "1", "none", "file", "none", "", "0", "", "", "");
+    }
+
+    private void assertInfos(final List<ItemInfo> infos, final String... localPaths) {
+        final List<String> actual = new ArrayList<String>();
+        for (final ItemInfo info : infos) {
+            actual.add(info.getLocalItem());
+        }
+        Assert.assertEquals(Arrays.asList(localPaths), actual);
+    }
+}
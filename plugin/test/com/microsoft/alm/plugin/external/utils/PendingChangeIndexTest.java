@@ -0,0 +1,180 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class PendingChangeIndexTest {
+    private List<PendingChange> workspaceChanges;
+    private List<List<String>> reads;
+    private List<String> failingPaths;
+    private PendingChangeIndex index;
+
+    @Before
+    public void setUp() {
+        workspaceChanges = new ArrayList<PendingChange>();
+        workspaceChanges.add(createChange("/ws/src/a.txt"));
+        workspaceChanges.add(createChange("/ws/src/sub/b.txt"));
+        workspaceChanges.add(createChange("/ws/test/c.txt"));
+        reads = new ArrayList<List<String>>();
+        failingPaths = new ArrayList<String>();
+        index = new FakeIndex(TimeUnit.MINUTES.toMillis(5));
+    }
+
+    @Test
+    public void testFirstRequestReadsRoots() {
+        final List<PendingChange> changes = index.getChanges(null, Arrays.asList("/ws/src", "/ws/test"));
+        Assert.assertEquals(3, changes.size());
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("/ws/src", "/ws/test")), reads);
+    }
+
+    @Test
+    public void testKnownRootsAreAnsweredFromIndex() {
+        index.getChanges(null, Collections.singletonList("/ws"));
+        reads.clear();
+
+        final List<PendingChange> changes = index.getChanges(null, Arrays.asList("/ws/src", "/ws/test/c.txt"));
+        Assert.assertEquals(3, changes.size());
+        Assert.assertEquals(0, reads.size());
+    }
+
+    @Test
+    public void testInvalidPathIsReadAgain() {
+        index.getChanges(null, Collections.singletonList("/ws"));
+        reads.clear();
+
+        workspaceChanges.add(createChange("/ws/src/sub/new.txt"));
+        index.invalidate("/ws/src/sub");
+        final List<PendingChange> changes = index.getChanges(null, Collections.singletonList("/ws/src"));
+        Assert.assertEquals(3, changes.size());
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList("/ws/src/sub")), reads);
+
+        // Once read the path is valid again
+        reads.clear();
+        index.getChanges(null, Collections.singletonList("/ws/src"));
+        Assert.assertEquals(0, reads.size());
+    }
+
+    @Test
+    public void testInvalidParentIsReadInsteadOfRoot() {
+        index.getChanges(null, Collections.singletonList("/ws"));
+        reads.clear();
+
+        workspaceChanges.remove(0);
+        index.invalidate("/ws/src");
+        final List<PendingChange> changes = index.getChanges(null, Collections.singletonList("/ws/src/a.txt"));
+        Assert.assertEquals(0, changes.size());
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList("/ws/src")), reads);
+        Assert.assertEquals(2, index.getChanges(null, Collections.singletonList("/ws")).size());
+    }
+
+    @Test
+    public void testFailedRootIsReadAgain() {
+        failingPaths.add("/ws/src");
+        Assert.assertEquals(1, index.getChanges(null, Arrays.asList("/ws/src", "/ws/test")).size());
+
+        // The failed root is not cached as having no changes
+        reads.clear();
+        failingPaths.clear();
+        Assert.assertEquals(2, index.getChanges(null, Collections.singletonList("/ws/src")).size());
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList("/ws/src")), reads);
+    }
+
+    @Test
+    public void testFailedInvalidPathKeepsChangesAndIsReadAgain() {
+        index.getChanges(null, Collections.singletonList("/ws"));
+        reads.clear();
+
+        failingPaths.add("/ws/src/sub");
+        index.invalidate("/ws/src/sub");
+        Assert.assertEquals(2, index.getChanges(null, Collections.singletonList("/ws/src")).size());
+
+        failingPaths.clear();
+        reads.clear();
+        Assert.assertEquals(2, index.getChanges(null, Collections.singletonList("/ws/src")).size());
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList("/ws/src/sub")), reads);
+    }
+
+    @Test
+    public void testSimilarNamesAreNotChildren() {
+        workspaceChanges.add(createChange("/ws/src2/d.txt"));
+        index.getChanges(null, Collections.singletonList("/ws"));
+        reads.clear();
+
+        index.invalidate("/ws/src");
+        final List<PendingChange> changes = index.getChanges(null, Collections.singletonList("/ws/src2"));
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(0, reads.size());
+    }
+
+    @Test
+    public void testRefreshReadsEverythingAgain() {
+        index.getChanges(null, Collections.singletonList("/ws"));
+        reads.clear();
+
+        index.refresh();
+        index.getChanges(null, Collections.singletonList("/ws/src"));
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList("/ws/src")), reads);
+    }
+
+    @Test
+    public void testReconcileInterval() {
+        index = new FakeIndex(-1);
+        index.getChanges(null, Collections.singletonList("/ws"));
+        index.getChanges(null, Collections.singletonList("/ws"));
+        Assert.assertEquals(2, reads.size());
+    }
+
+    @Test
+    public void testNormalize() {
+        Assert.assertEquals(PendingChangeIndex.normalize("/ws/src"), PendingChangeIndex.normalize("/ws/src/"));
+        Assert.assertEquals(PendingChangeIndex.normalize("/ws/src"), PendingChangeIndex.normalize("\\ws\\src"));
+    }
+
+    private PendingChange createChange(final String localItem) {
+        return new PendingChange("$/proj" + localItem, localItem, "1", "owner", "date", "none", "edit", "ws", "computer", false, "");
+    }
+
+    /**
+     * Answers status from the list of workspace changes and records the paths that were read
+     */
+    private class FakeIndex extends PendingChangeIndex {
+        public FakeIndex(final long reconcileIntervalMillis) {
+            super(reconcileIntervalMillis);
+        }
+
+        @Override
+        protected List<PendingChange> readStatus(final ServerContext context, final List<String> paths,
+                                                 final List<String> failedPaths) {
+            reads.add(paths);
+            final List<PendingChange> result = new ArrayList<PendingChange>();
+            for (final PendingChange change : workspaceChanges) {
+                for (final String path : paths) {
+                    if (failingPaths.contains(path)) {
+                        continue;
+                    }
+                    if (change.getLocalItem().equals(path) || change.getLocalItem().startsWith(path + "/")) {
+                        result.add(change);
+                    }
+                }
+            }
+            for (final String path : paths) {
+                if (failingPaths.contains(path)) {
+                    failedPaths.add(path);
+                }
+            }
+            return result;
+        }
+    }
+}
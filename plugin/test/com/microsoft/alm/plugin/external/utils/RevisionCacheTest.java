@@ -0,0 +1,131 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class RevisionCacheTest {
+    private File root;
+
+    @Before
+    public void setUp() {
+        root = Files.createTempDir();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testCreateKey() {
+        Assert.assertEquals(RevisionCache.createKey("http://server/tfs/coll", "$/proj/a.txt", 5),
+                RevisionCache.createKey("http://SERVER/tfs/coll", "$/Proj/A.txt", 5));
+        Assert.assertFalse(RevisionCache.createKey("http://server/tfs/coll", "$/proj/a.txt", 5)
+                .equals(RevisionCache.createKey("http://server/tfs/coll", "$/proj/a.txt", 6)));
+        Assert.assertFalse(RevisionCache.createKey("http://server/tfs/coll", "$/proj/a.txt", 5)
+                .equals(RevisionCache.createKey("http://other/tfs/coll", "$/proj/a.txt", 5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateKey_LocalPath() {
+        RevisionCache.createKey("http://server/tfs/coll", "/home/user/proj/a.txt", 5);
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        final RevisionCache cache = new RevisionCache(root, 1000);
+        Assert.assertNull(cache.get("key"));
+
+        final File cached = cache.put("key", createContent(cache, "content"));
+        Assert.assertEquals("content", Files.toString(cached, Charsets.UTF_8));
+        Assert.assertEquals(cached, cache.get("key"));
+        Assert.assertEquals(7, cache.getSize());
+    }
+
+    @Test
+    public void testSameContentIsStoredOnce() throws IOException {
+        final RevisionCache cache = new RevisionCache(root, 1000);
+        final File cached1 = cache.put("key1", createContent(cache, "content"));
+        final File cached2 = cache.put("key2", createContent(cache, "content"));
+        Assert.assertEquals(cached1, cached2);
+        Assert.assertEquals(7, cache.getSize());
+    }
+
+    @Test
+    public void testEntriesSurviveRestart() throws IOException {
+        final RevisionCache cache = new RevisionCache(root, 1000);
+        cache.put("key", createContent(cache, "content"));
+        final File unfinished = cache.createTempFile();
+        Assert.assertTrue(unfinished.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+        // May be a download another IDE is running
+        final File running = cache.createTempFile();
+
+        final RevisionCache reopened = new RevisionCache(root, 1000);
+        Assert.assertEquals("content", Files.toString(reopened.get("key"), Charsets.UTF_8));
+        Assert.assertEquals(7, reopened.getSize());
+        Assert.assertFalse(unfinished.exists());
+        Assert.assertTrue(running.exists());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws IOException {
+        final RevisionCache cache = new RevisionCache(root, 10);
+        cache.put("key1", createContent(cache, "12345"));
+        cache.put("key2", createContent(cache, "abcde"));
+        setLastAccess("key1", 2000L);
+        setLastAccess("key2", 1000L);
+
+        final RevisionCache reopened = new RevisionCache(root, 10);
+        reopened.put("key3", createContent(reopened, "vwxyz"));
+        Assert.assertNotNull(reopened.get("key1"));
+        Assert.assertNull(reopened.get("key2"));
+        Assert.assertNotNull(reopened.get("key3"));
+        Assert.assertEquals(10, reopened.getSize());
+    }
+
+    @Test
+    public void testNewEntryBiggerThanBudgetIsKept() throws IOException {
+        final RevisionCache cache = new RevisionCache(root, 3);
+        cache.put("key1", createContent(cache, "ab"));
+        final File cached = cache.put("key2", createContent(cache, "too big"));
+        Assert.assertNull(cache.get("key1"));
+        Assert.assertEquals(cached, cache.get("key2"));
+    }
+
+    @Test
+    public void testMissingBlobIsNotReturned() throws IOException {
+        final RevisionCache cache = new RevisionCache(root, 1000);
+        final File cached = cache.put("key", createContent(cache, "content"));
+        Assert.assertTrue(cached.delete());
+        Assert.assertNull(cache.get("key"));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    private File createContent(final RevisionCache cache, final String content) throws IOException {
+        final File file = cache.createTempFile();
+        Files.write(content, file, Charsets.UTF_8);
+        return file;
+    }
+
+    /**
+     * Sets the last access time of the key on disk, so that the eviction order doesn't depend on the resolution of
+     * the file system timestamps. The cache has to be reopened to see it.
+     */
+    private void setLastAccess(final String key, final long time) {
+        final File keyFile = new File(new File(root, "keys"), Hashing.sha1().hashString(key, Charsets.UTF_8).toString());
+        Assert.assertTrue(keyFile.setLastModified(time));
+    }
+}
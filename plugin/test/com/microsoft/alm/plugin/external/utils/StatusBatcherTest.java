@@ -0,0 +1,30 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.microsoft.alm.plugin.external.models.PendingChange;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class StatusBatcherTest {
+    @Test
+    public void testMerge_removesDuplicates() {
+        final PendingChange change1 = createChange("$/proj/a.txt", "/path/a.txt", false);
+        final PendingChange change1Upper = createChange("$/PROJ/A.txt", "/path/a.txt", false);
+        final PendingChange change2 = createChange("$/proj/b.txt", "/path/b.txt", false);
+        final PendingChange candidate = createChange("$/proj/b.txt", "/path/b.txt", true);
+
+        final List<PendingChange> merged = StatusBatcher.merge(Arrays.asList(
+                Arrays.asList(change1, change2),
+                Arrays.asList(change1Upper, candidate)));
+        Assert.assertEquals(Arrays.asList(change1, change2, candidate), merged);
+    }
+
+    private PendingChange createChange(final String serverItem, final String localItem, final boolean isCandidate) {
+        return new PendingChange(serverItem, localItem, "1", "owner", "date", "none", "edit", "ws", "computer", isCandidate, "");
+    }
+}
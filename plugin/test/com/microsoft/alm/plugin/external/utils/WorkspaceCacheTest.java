@@ -0,0 +1,96 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.google.common.io.Files;
+import com.intellij.openapi.project.Project;
+import com.microsoft.alm.plugin.external.models.Workspace;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.mockito.Mockito.when;
+
+public class WorkspaceCacheTest {
+    private File clcCacheFolder;
+    private int findCount;
+
+    @Mock
+    private Project mockProject;
+    @Mock
+    private Workspace mockWorkspace;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mockProject.getBasePath()).thenReturn("/path/project");
+        clcCacheFolder = Files.createTempDir();
+        findCount = 0;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(clcCacheFolder);
+    }
+
+    @Test
+    public void testGetPartialWorkspace_Cached() {
+        final WorkspaceCache cache = createCache(mockWorkspace, 60 * 1000);
+        Assert.assertEquals(mockWorkspace, cache.getPartialWorkspace(mockProject));
+        Assert.assertEquals(mockWorkspace, cache.getPartialWorkspace(mockProject));
+        Assert.assertEquals(1, findCount);
+    }
+
+    @Test
+    public void testGetPartialWorkspace_NotInWorkspace() {
+        final WorkspaceCache cache = createCache(null, 60 * 1000);
+        Assert.assertNull(cache.getPartialWorkspace(mockProject));
+        Assert.assertNull(cache.getPartialWorkspace(mockProject));
+        Assert.assertEquals(1, findCount);
+    }
+
+    @Test
+    public void testInvalidate() {
+        final WorkspaceCache cache = createCache(mockWorkspace, 60 * 1000);
+        cache.getPartialWorkspace(mockProject);
+        cache.invalidate();
+        cache.getPartialWorkspace(mockProject);
+        Assert.assertEquals(2, findCount);
+    }
+
+    @Test
+    public void testClcCacheChanged() throws IOException {
+        final File workspacesFile = new File(clcCacheFolder, "VersionControl.config");
+        Files.write("<VersionControlServer/>".getBytes(), workspacesFile);
+        Assert.assertTrue(workspacesFile.setLastModified(1000000));
+        final WorkspaceCache cache = createCache(mockWorkspace, 0);
+        cache.getPartialWorkspace(mockProject);
+        cache.getPartialWorkspace(mockProject);
+        Assert.assertEquals(1, findCount);
+
+        // e.g. tf workfold was run outside of the IDE
+        Assert.assertTrue(workspacesFile.setLastModified(System.currentTimeMillis() + 60 * 1000));
+        cache.getPartialWorkspace(mockProject);
+        Assert.assertEquals(2, findCount);
+    }
+
+    private WorkspaceCache createCache(final Workspace workspace, final long checkIntervalMillis) {
+        return new WorkspaceCache(Collections.singletonList(clcCacheFolder), checkIntervalMillis) {
+            @Override
+            protected Workspace findWorkspace(final String basePath) {
+                Assert.assertEquals("/path/project", basePath);
+                findCount++;
+                return workspace;
+            }
+        };
+    }
+}
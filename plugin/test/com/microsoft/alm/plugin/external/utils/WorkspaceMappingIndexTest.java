@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.external.utils;
+
+import com.microsoft.alm.plugin.external.models.Workspace;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class WorkspaceMappingIndexTest {
+    private static final String ROOT = new File("/work").getAbsolutePath();
+    private static final String PROJECT = path(ROOT, "project");
+    private static final String TOOLS = path(ROOT, "tools");
+
+    private final WorkspaceMappingIndex index = new WorkspaceMappingIndex(Arrays.asList(
+            new Workspace.Mapping("$/Project", PROJECT, false),
+            new Workspace.Mapping("$/Project/Lib/Tools", TOOLS, false),
+            new Workspace.Mapping("$/Project/Lib/Big", "", true),
+            null));
+
+    @Test
+    public void testGetLocalPath() {
+        Assert.assertEquals(PROJECT, index.getLocalPath("$/Project"));
+        Assert.assertEquals(path(PROJECT, "src", "a.txt"), index.getLocalPath("$/Project/src/a.txt"));
+        Assert.assertEquals(path(PROJECT, "src", "a.txt"), index.getLocalPath("$/PROJECT/src/a.txt"));
+        // the deepest mapping wins
+        Assert.assertEquals(path(TOOLS, "build.cmd"), index.getLocalPath("$/Project/Lib/Tools/build.cmd"));
+        Assert.assertEquals(path(PROJECT, "Lib", "ToolsOld"), index.getLocalPath("$/Project/Lib/ToolsOld"));
+    }
+
+    @Test
+    public void testGetLocalPath_NotMapped() {
+        Assert.assertNull(index.getLocalPath("$/Other/a.txt"));
+        Assert.assertNull(index.getLocalPath("$/Proj"));
+    }
+
+    @Test
+    public void testGetLocalPath_Cloaked() {
+        Assert.assertNull(index.getLocalPath("$/Project/Lib/Big"));
+        Assert.assertNull(index.getLocalPath("$/Project/Lib/Big/data.bin"));
+    }
+
+    @Test
+    public void testGetServerPath() {
+        Assert.assertEquals("$/Project", index.getServerPath(PROJECT));
+        Assert.assertEquals("$/Project/src/a.txt", index.getServerPath(path(PROJECT, "src", "a.txt")));
+        Assert.assertEquals("$/Project/Lib/Tools/build.cmd", index.getServerPath(path(TOOLS, "build.cmd")));
+    }
+
+    @Test
+    public void testGetServerPath_NotMapped() {
+        Assert.assertNull(index.getServerPath(path(ROOT, "other", "a.txt")));
+        Assert.assertNull(index.getServerPath(path(ROOT, "proj")));
+    }
+
+    @Test
+    public void testGetServerPath_Cloaked() {
+        Assert.assertNull(index.getServerPath(path(PROJECT, "Lib", "Big", "data.bin")));
+    }
+
+    @Test
+    public void testRootMapping() {
+        final WorkspaceMappingIndex rootIndex = new WorkspaceMappingIndex(Collections.singletonList(
+                new Workspace.Mapping("$/", ROOT, false)));
+        Assert.assertEquals(path(ROOT, "Project", "a.txt"), rootIndex.getLocalPath("$/Project/a.txt"));
+        Assert.assertEquals("$/Project/a.txt", rootIndex.getServerPath(path(ROOT, "Project", "a.txt")));
+    }
+
+    @Test
+    public void testEmpty() {
+        final WorkspaceMappingIndex emptyIndex = new WorkspaceMappingIndex(Collections.<Workspace.Mapping>emptyList());
+        Assert.assertNull(emptyIndex.getLocalPath("$/Project/a.txt"));
+        Assert.assertNull(emptyIndex.getServerPath(path(PROJECT, "a.txt")));
+    }
+
+    private static String path(final String parent, final String... children) {
+        File file = new File(parent);
+        for (final String child : children) {
+            file = new File(file, child);
+        }
+        return file.getPath();
+    }
+}
@@ -0,0 +1,170 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.build.webapi.model.Build;
+import com.microsoft.alm.build.webapi.model.BuildRepository;
+import com.microsoft.alm.build.webapi.model.BuildResult;
+import com.microsoft.alm.core.webapi.model.TeamProjectReference;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.events.ServerChanges;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Mockito.when;
+
+public class BuildStatusCacheTest {
+    private static final String REPO_ID = "6a6b5e8c-d3ba-4b4d-9b5a-1d8b6f1c0a11";
+    private static final String BRANCH = "refs/heads/branch1";
+
+    private final List<Date> queries = new ArrayList<Date>();
+    private final List<Integer> tops = new ArrayList<Integer>();
+    private List<Build> serverBuilds;
+    private ServerContext context;
+
+    @Before
+    public void setUp() {
+        final TeamProjectReference project = new TeamProjectReference();
+        project.setId(UUID.randomUUID());
+        context = Mockito.mock(ServerContext.class);
+        when(context.getTeamProjectReference()).thenReturn(project);
+        when(context.getCollectionURI()).thenReturn(URI.create("http://server:8080/tfs/defaultcollection"));
+    }
+
+    private BuildStatusCache createCache(final long freshMillis) {
+        return createCache(freshMillis, 60000);
+    }
+
+    private BuildStatusCache createCache(final long freshMillis, final long expiryMillis) {
+        return new BuildStatusCache(freshMillis, expiryMillis) {
+            @Override
+            protected List<Build> queryBuilds(final ServerContext context, final UUID projectId, final String repositoryId,
+                                              final String repositoryType, final String branch, final Date minFinishTime,
+                                              final int top) {
+                queries.add(minFinishTime);
+                tops.add(top);
+                return serverBuilds.size() > top ? serverBuilds.subList(0, top) : serverBuilds;
+            }
+        };
+    }
+
+    @Test
+    public void testGetLatestBuild_FreshBuildIsShared() {
+        final BuildStatusCache cache = createCache(60000);
+        serverBuilds = Arrays.asList(createBuild(2, BuildResult.SUCCEEDED, 2000));
+        Assert.assertEquals(2, (int) cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false).getId());
+        Assert.assertEquals(2, (int) cache.getLatestBuild(context, REPO_ID.toUpperCase(), "TfsGit", BRANCH, false).getId());
+        Assert.assertEquals(1, queries.size());
+
+        // A refresh the user asked for goes to the server
+        cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, true);
+        Assert.assertEquals(2, queries.size());
+    }
+
+    @Test
+    public void testGetLatestBuild_OnlyNewerBuildsAreRequested() {
+        final BuildStatusCache cache = createCache(0);
+        serverBuilds = Arrays.asList(createBuild(3, BuildResult.CANCELED, 3000), createBuild(2, BuildResult.FAILED, 2000));
+        Assert.assertEquals(2, (int) cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false).getId());
+
+        // Nothing finished since the newest build, canceled ones included
+        serverBuilds = Collections.emptyList();
+        Assert.assertEquals(2, (int) cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false).getId());
+
+        serverBuilds = Arrays.asList(createBuild(4, BuildResult.SUCCEEDED, 4000));
+        Assert.assertEquals(4, (int) cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false).getId());
+        Assert.assertEquals(Arrays.asList(null, new Date(3001), new Date(3001)), queries);
+    }
+
+    @Test
+    public void testGetLatestBuild_OtherBranchesAreIgnored() {
+        final BuildStatusCache cache = createCache(60000);
+        final Build otherBranch = createBuild(5, BuildResult.SUCCEEDED, 5000);
+        otherBranch.setSourceBranch("refs/heads/other");
+        serverBuilds = Arrays.asList(otherBranch, createBuild(4, BuildResult.SUCCEEDED, 4000));
+        Assert.assertEquals(4, (int) cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false).getId());
+
+        serverBuilds = Collections.singletonList(otherBranch);
+        Assert.assertNull(cache.getLatestBuild(context, REPO_ID, "TfsGit", "refs/heads/master", false));
+    }
+
+    @Test
+    public void testGetLatestBuild_FullPageWithoutMatchLooksFurther() {
+        final BuildStatusCache cache = createCache(0);
+        // A server that ignores the filters sends the latest builds of the whole team project
+        serverBuilds = new ArrayList<Build>();
+        for (int i = 0; i < 50; i++) {
+            final Build otherBranch = createBuild(100 - i, BuildResult.SUCCEEDED, 10000 - i);
+            otherBranch.setSourceBranch("refs/heads/other");
+            serverBuilds.add(otherBranch);
+        }
+        serverBuilds.add(createBuild(4, BuildResult.SUCCEEDED, 4000));
+        Assert.assertEquals(4, (int) cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false).getId());
+        Assert.assertEquals(Arrays.asList(BuildStatusCache.TOP, BuildStatusCache.FALLBACK_TOP), tops);
+
+        // A page that isn't full has everything there is
+        serverBuilds = serverBuilds.subList(0, 5);
+        Assert.assertEquals(4, (int) cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false).getId());
+        Assert.assertEquals(3, tops.size());
+    }
+
+    @Test
+    public void testDetectChanges() {
+        final BuildStatusCache cache = createCache(60000);
+        serverBuilds = Arrays.asList(createBuild(2, BuildResult.SUCCEEDED, 2000));
+        cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false);
+
+        serverBuilds = Collections.emptyList();
+        Assert.assertTrue(cache.detectChanges().isEmpty());
+
+        // A poll always asks the server and the new build is also what the status bar gets without asking again
+        serverBuilds = Arrays.asList(createBuild(3, BuildResult.FAILED, 3000));
+        final ServerChanges changes = cache.detectChanges();
+        Assert.assertEquals(3, (int) changes.getAdded(Build.class).get(0).getId());
+        Assert.assertEquals(3, (int) cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false).getId());
+        Assert.assertEquals(3, queries.size());
+    }
+
+    @Test
+    public void testRemoveExpiredEntries() {
+        final BuildStatusCache cache = createCache(60000, 1000);
+        serverBuilds = Arrays.asList(createBuild(2, BuildResult.SUCCEEDED, 2000));
+        cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false);
+        Assert.assertFalse(cache.removeExpiredEntries(System.currentTimeMillis()));
+        Assert.assertEquals(1, cache.getEntryCount());
+
+        // Nobody asked for the build for longer than the expiry time
+        Assert.assertTrue(cache.removeExpiredEntries(System.currentTimeMillis() + 2000));
+        Assert.assertEquals(0, cache.getEntryCount());
+
+        // Asking again starts from scratch
+        cache.getLatestBuild(context, REPO_ID, "TfsGit", BRANCH, false);
+        Assert.assertEquals(1, cache.getEntryCount());
+        Assert.assertEquals(Arrays.asList(null, null), queries);
+    }
+
+    private Build createBuild(final int id, final BuildResult result, final long finishTime) {
+        final BuildRepository repo = new BuildRepository();
+        repo.setId(REPO_ID);
+        repo.setType("TfsGit");
+
+        final Build build = new Build();
+        build.setId(id);
+        build.setResult(result);
+        build.setRepository(repo);
+        build.setSourceBranch(BRANCH);
+        build.setFinishTime(new Date(finishTime));
+        return build;
+    }
+}
@@ -4,22 +4,17 @@
 package com.microsoft.alm.plugin.operations;
 
 import com.google.common.util.concurrent.SettableFuture;
-import com.microsoft.alm.build.webapi.BuildHttpClient;
 import com.microsoft.alm.build.webapi.model.Build;
-import com.microsoft.alm.build.webapi.model.BuildQueryOrder;
-import com.microsoft.alm.build.webapi.model.BuildReason;
 import com.microsoft.alm.build.webapi.model.BuildRepository;
 import com.microsoft.alm.build.webapi.model.BuildResult;
-import com.microsoft.alm.build.webapi.model.BuildStatus;
 import com.microsoft.alm.build.webapi.model.DefinitionReference;
-import com.microsoft.alm.build.webapi.model.DefinitionType;
-import com.microsoft.alm.build.webapi.model.QueryDeletedOption;
 import com.microsoft.alm.core.webapi.model.TeamProjectReference;
 import com.microsoft.alm.plugin.AbstractTest;
 import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.context.rest.BuildHttpClientEx;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitRepository;
 import org.junit.Assert;
 import org.junit.Test;
@@ -41,7 +36,6 @@ import java.util.concurrent.TimeoutException;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
-import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.when;
@@ -54,12 +48,10 @@ public class BuildStatusLookupOperationTest extends AbstractTest {
     private void setupLocalTests(GitRepository gitRepository, List<Build> builds) {
         MockitoAnnotations.initMocks(this);
 
-        BuildHttpClient buildHttpClient = Mockito.mock(BuildHttpClient.class);
-        when(buildHttpClient.getBuilds(any(UUID.class), any(List.class), any(List.class),
-                anyString(), any(Date.class), any(Date.class), anyString(), any(BuildReason.class),
-                eq(BuildStatus.COMPLETED), any(BuildResult.class), any(List.class), any(List.class),
-                any(DefinitionType.class), eq(100), anyString(), anyInt(), any(QueryDeletedOption.class),
-                eq(BuildQueryOrder.FINISH_TIME_DESCENDING))).thenReturn(builds);
+        BuildStatusCache.getInstance().clear();
+        BuildHttpClientEx buildHttpClient = Mockito.mock(BuildHttpClientEx.class);
+        when(buildHttpClient.getBuilds(any(UUID.class), anyString(), anyString(), anyString(), any(Date.class),
+                eq(BuildStatusCache.TOP))).thenReturn(builds);
 
         AuthenticationInfo authInfo = new AuthenticationInfo("user", "pass", "serverURI", "user");
         ServerContext authenticatedContext = Mockito.mock(ServerContext.class);
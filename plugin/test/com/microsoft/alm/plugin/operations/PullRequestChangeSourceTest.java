@@ -0,0 +1,76 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.events.ServerChanges;
+import com.microsoft.alm.sourcecontrol.webapi.model.GitCommitRef;
+import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequest;
+import com.microsoft.alm.sourcecontrol.webapi.model.PullRequestStatus;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PullRequestChangeSourceTest {
+    private List<GitPullRequest> requestedByMe;
+    private List<GitPullRequest> assignedToMe;
+
+    private PullRequestChangeSource createSource(final List<GitPullRequest> initialRequestedByMe,
+                                                 final List<GitPullRequest> initialAssignedToMe) {
+        return new PullRequestChangeSource(Mockito.mock(ServerContext.class), "gitRemoteUrl", initialRequestedByMe, initialAssignedToMe) {
+            @Override
+            protected List<GitPullRequest> queryPullRequests(final PullRequestLookupOperation.PullRequestScope scope) {
+                return scope == PullRequestLookupOperation.PullRequestScope.REQUESTED_BY_ME ? requestedByMe : assignedToMe;
+            }
+        };
+    }
+
+    @Test
+    public void testDetectChanges_NoChanges() {
+        final PullRequestChangeSource source = createSource(Arrays.asList(createPullRequest(1, "a")),
+                Arrays.asList(createPullRequest(2, "b")));
+        requestedByMe = Arrays.asList(createPullRequest(1, "a"));
+        assignedToMe = Arrays.asList(createPullRequest(2, "b"));
+        Assert.assertTrue(source.detectChanges().isEmpty());
+    }
+
+    @Test
+    public void testDetectChanges() {
+        final PullRequestChangeSource source = createSource(Arrays.asList(createPullRequest(1, "a"), createPullRequest(2, "b")),
+                Collections.<GitPullRequest>emptyList());
+        requestedByMe = Arrays.asList(createPullRequest(1, "a2"));
+        assignedToMe = Arrays.asList(createPullRequest(3, "c"));
+
+        final ServerChanges changes = source.detectChanges();
+        final List<PullRequestChangeSource.ScopedPullRequest> added = changes.getAdded(PullRequestChangeSource.ScopedPullRequest.class);
+        Assert.assertEquals(1, added.size());
+        Assert.assertEquals(3, added.get(0).getPullRequest().getPullRequestId());
+        Assert.assertEquals(PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME, added.get(0).getScope());
+        final List<PullRequestChangeSource.ScopedPullRequest> updated = changes.getUpdated(PullRequestChangeSource.ScopedPullRequest.class);
+        Assert.assertEquals(1, updated.size());
+        Assert.assertEquals("a2", updated.get(0).getPullRequest().getLastMergeSourceCommit().getCommitId());
+        final List<PullRequestChangeSource.ScopedPullRequest> removed = changes.getRemoved(PullRequestChangeSource.ScopedPullRequest.class);
+        Assert.assertEquals(1, removed.size());
+        Assert.assertEquals(2, removed.get(0).getPullRequest().getPullRequestId());
+
+        // The same changes are only returned once
+        Assert.assertTrue(source.detectChanges().isEmpty());
+    }
+
+    private GitPullRequest createPullRequest(final int id, final String commitId) {
+        final GitCommitRef commit = new GitCommitRef();
+        commit.setCommitId(commitId);
+
+        final GitPullRequest pullRequest = new GitPullRequest();
+        pullRequest.setPullRequestId(id);
+        pullRequest.setStatus(PullRequestStatus.ACTIVE);
+        pullRequest.setTitle("title" + id);
+        pullRequest.setLastMergeSourceCommit(commit);
+        return pullRequest;
+    }
+}
@@ -4,8 +4,23 @@
 package com.microsoft.alm.plugin.operations;
 
 import com.microsoft.alm.plugin.AbstractTest;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.context.rest.GitHttpClientEx;
+import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequest;
+import com.microsoft.alm.sourcecontrol.webapi.model.GitPullRequestSearchCriteria;
+import com.microsoft.alm.sourcecontrol.webapi.model.GitRepository;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
 
 public class PullRequestLookupOperationTest extends AbstractTest {
 
@@ -23,4 +38,30 @@ public class PullRequestLookupOperationTest extends AbstractTest {
         //construct correctly
         underTest = new PullRequestLookupOperation("gitRemoteUrl");
     }
+
+    @Test
+    public void testQueryPullRequests_Paged() {
+        final GitRepository repository = new GitRepository();
+        repository.setId(UUID.randomUUID());
+        final GitHttpClientEx gitHttpClient = Mockito.mock(GitHttpClientEx.class);
+        final ServerContext context = Mockito.mock(ServerContext.class);
+        when(context.getGitHttpClient()).thenReturn(gitHttpClient);
+        when(context.getGitRepository()).thenReturn(repository);
+        when(gitHttpClient.getPullRequests(any(UUID.class), any(GitPullRequestSearchCriteria.class), anyInt(), eq(0),
+                eq(PullRequestLookupOperation.PAGE_SIZE))).thenReturn(createPullRequests(PullRequestLookupOperation.PAGE_SIZE));
+        when(gitHttpClient.getPullRequests(any(UUID.class), any(GitPullRequestSearchCriteria.class), anyInt(),
+                eq(PullRequestLookupOperation.PAGE_SIZE), eq(PullRequestLookupOperation.PAGE_SIZE))).thenReturn(createPullRequests(5));
+
+        final List<GitPullRequest> pullRequests = PullRequestLookupOperation.queryPullRequests(context,
+                PullRequestLookupOperation.PullRequestScope.ASSIGNED_TO_ME);
+        Assert.assertEquals(PullRequestLookupOperation.PAGE_SIZE + 5, pullRequests.size());
+    }
+
+    private List<GitPullRequest> createPullRequests(final int count) {
+        final List<GitPullRequest> pullRequests = new ArrayList<GitPullRequest>();
+        for (int i = 0; i < count; i++) {
+            pullRequests.add(new GitPullRequest());
+        }
+        return pullRequests;
+    }
 }
@@ -0,0 +1,57 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.plugin.events.ServerChanges;
+import com.microsoft.alm.workitemtracking.webapi.models.Wiql;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemQueryResult;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemReference;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class WorkItemChangeSourceTest {
+    private final List<String> queries = new ArrayList<String>();
+    private WorkItemQueryResult result;
+
+    @Test
+    public void testDetectChanges() {
+        final WorkItemChangeSource source = new WorkItemChangeSource(Mockito.mock(ServerContext.class), new Date(0)) {
+            @Override
+            protected WorkItemQueryResult queryByWiql(final Wiql wiql) {
+                queries.add(wiql.getQuery());
+                return result;
+            }
+        };
+
+        result = createResult(60000, 5, 4);
+        final ServerChanges changes = source.detectChanges();
+        Assert.assertEquals(Arrays.asList(5, 4), changes.getUpdated(Integer.class));
+        Assert.assertTrue(queries.get(0).contains("[System.ChangedDate] > '1970-01-01T00:00:00.000Z'"));
+
+        // The next poll only asks for what changed after the last query
+        result = createResult(120000);
+        Assert.assertTrue(source.detectChanges().isEmpty());
+        Assert.assertTrue(queries.get(1).contains("[System.ChangedDate] > '1970-01-01T00:01:00.000Z'"));
+    }
+
+    private WorkItemQueryResult createResult(final long asOf, final int... ids) {
+        final List<WorkItemReference> references = new ArrayList<WorkItemReference>();
+        for (final int id : ids) {
+            final WorkItemReference reference = new WorkItemReference();
+            reference.setId(id);
+            references.add(reference);
+        }
+        final WorkItemQueryResult result = new WorkItemQueryResult();
+        result.setAsOf(new Date(asOf));
+        result.setWorkItems(references);
+        return result;
+    }
+}
@@ -10,8 +10,8 @@ import com.microsoft.alm.plugin.authentication.AuthenticationInfo;
 import com.microsoft.alm.plugin.context.RepositoryContext;
 import com.microsoft.alm.plugin.context.ServerContext;
 import com.microsoft.alm.plugin.context.ServerContextManager;
+import com.microsoft.alm.plugin.context.rest.WorkItemTrackingHttpClientEx;
 import com.microsoft.alm.sourcecontrol.webapi.model.GitRepository;
-import com.microsoft.alm.workitemtracking.webapi.WorkItemTrackingHttpClient;
 import com.microsoft.alm.workitemtracking.webapi.models.Wiql;
 import com.microsoft.alm.workitemtracking.webapi.models.WorkItem;
 import com.microsoft.alm.workitemtracking.webapi.models.WorkItemExpand;
@@ -55,7 +55,7 @@ public class WorkItemLookupOperationTest extends AbstractTest {
         WorkItemQueryResult result = new WorkItemQueryResult();
         result.setWorkItems(workItemRefs);
 
-        WorkItemTrackingHttpClient witHttpClient = Mockito.mock(WorkItemTrackingHttpClient.class);
+        WorkItemTrackingHttpClientEx witHttpClient = Mockito.mock(WorkItemTrackingHttpClientEx.class);
         when(witHttpClient.queryByWiql(any(Wiql.class), any(UUID.class)))
                 .thenReturn(result);
         when(witHttpClient.getWorkItems(anyList(), anyList(), any(Date.class), any(WorkItemExpand.class)))
@@ -0,0 +1,159 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.operations;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.microsoft.alm.plugin.context.ServerContext;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItem;
+import com.microsoft.alm.workitemtracking.webapi.models.WorkItemExpand;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkItemPageLoaderTest {
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private WorkItemPageLoader createLoader(final List<Integer> ids) {
+        return new WorkItemPageLoader(Mockito.mock(ServerContext.class), ids, null, null, WorkItemExpand.ALL) {
+            @Override
+            protected List<WorkItem> getWorkItems(final List<Integer> pageIds) {
+                calls.incrementAndGet();
+                // The server returns the work items in id order
+                final List<Integer> sortedIds = new ArrayList<Integer>(pageIds);
+                Collections.sort(sortedIds);
+                final List<WorkItem> workItems = new ArrayList<WorkItem>();
+                for (final Integer id : sortedIds) {
+                    final WorkItem workItem = new WorkItem();
+                    workItem.setId(id);
+                    workItems.add(workItem);
+                }
+                return workItems;
+            }
+        };
+    }
+
+    private List<Integer> createIds(final int count) {
+        final List<Integer> ids = new ArrayList<Integer>(count);
+        for (int i = count; i > 0; i--) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testPages() {
+        Assert.assertEquals(0, createLoader(createIds(0)).getPageCount());
+        Assert.assertEquals(1, createLoader(createIds(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT)).getPageCount());
+        final WorkItemPageLoader loader = createLoader(createIds(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT * 2 + 1));
+        Assert.assertEquals(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT * 2 + 1, loader.getCount());
+        Assert.assertEquals(3, loader.getPageCount());
+        Assert.assertEquals(1, WorkItemPageLoader.getPage(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT));
+        Assert.assertEquals(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT * 2, WorkItemPageLoader.getPageStart(2));
+    }
+
+    @Test
+    public void testLoadPage_QueryOrder() {
+        final WorkItemPageLoader loader = createLoader(Arrays.asList(3, 1, 2));
+        final List<WorkItem> workItems = loader.loadPage(0);
+        Assert.assertEquals(3, workItems.size());
+        Assert.assertEquals(3, workItems.get(0).getId());
+        Assert.assertEquals(1, workItems.get(1).getId());
+        Assert.assertEquals(2, workItems.get(2).getId());
+        Assert.assertTrue(loader.isRequested(0));
+    }
+
+    @Test
+    public void testLoadPage_MissingWorkItemKeepsItsRow() {
+        final WorkItemPageLoader loader = new WorkItemPageLoader(Mockito.mock(ServerContext.class), Arrays.asList(3, 1, 2),
+                null, null, WorkItemExpand.ALL) {
+            @Override
+            protected List<WorkItem> getWorkItems(final List<Integer> pageIds) {
+                // Work item 1 was destroyed after the query
+                final List<WorkItem> workItems = new ArrayList<WorkItem>();
+                for (final int id : new int[]{2, 3}) {
+                    final WorkItem workItem = new WorkItem();
+                    workItem.setId(id);
+                    workItems.add(workItem);
+                }
+                return workItems;
+            }
+        };
+        final List<WorkItem> workItems = loader.loadPage(0);
+        Assert.assertEquals(3, workItems.size());
+        Assert.assertEquals(3, workItems.get(0).getId());
+        Assert.assertNull(workItems.get(1));
+        Assert.assertEquals(2, workItems.get(2).getId());
+    }
+
+    @Test
+    public void testLoadPage_LastPage() {
+        final WorkItemPageLoader loader = createLoader(createIds(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT + 5));
+        final List<WorkItem> workItems = loader.loadPage(1);
+        Assert.assertEquals(5, workItems.size());
+        Assert.assertEquals(5, workItems.get(0).getId());
+        Assert.assertFalse(loader.isRequested(0));
+    }
+
+    @Test
+    public void testLoadPageAsync_FailedPageCanBeRequestedAgain() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(1);
+        final WorkItemPageLoader loader = new WorkItemPageLoader(Mockito.mock(ServerContext.class), Arrays.asList(1, 2),
+                null, null, WorkItemExpand.ALL) {
+            @Override
+            protected List<WorkItem> getWorkItems(final List<Integer> pageIds) {
+                calls.incrementAndGet();
+                if (failures.getAndDecrement() > 0) {
+                    throw new RuntimeException("server error");
+                }
+                return Collections.emptyList();
+            }
+        };
+        final SettableFuture<List<WorkItem>> failed = SettableFuture.create();
+        loader.loadPageAsync(0, new WorkItemPageLoader.Listener() {
+            @Override
+            public void pageLoaded(final int page, final List<WorkItem> workItems) {
+                failed.set(workItems);
+            }
+        });
+        Assert.assertNull(failed.get(1, TimeUnit.SECONDS));
+        Assert.assertFalse(loader.isRequested(0));
+
+        final SettableFuture<List<WorkItem>> loaded = SettableFuture.create();
+        loader.loadPageAsync(0, new WorkItemPageLoader.Listener() {
+            @Override
+            public void pageLoaded(final int page, final List<WorkItem> workItems) {
+                loaded.set(workItems);
+            }
+        });
+        Assert.assertNotNull(loaded.get(1, TimeUnit.SECONDS));
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testLoadPageAsync_OnlyOnce() throws Exception {
+        final WorkItemPageLoader loader = createLoader(createIds(WorkItemLookupOperation.MAX_WORK_ITEM_COUNT + 5));
+        final SettableFuture<List<WorkItem>> loaded = SettableFuture.create();
+        final WorkItemPageLoader.Listener listener = new WorkItemPageLoader.Listener() {
+            @Override
+            public void pageLoaded(final int page, final List<WorkItem> workItems) {
+                Assert.assertEquals(1, page);
+                loaded.set(workItems);
+            }
+        };
+        loader.loadPageAsync(1, listener);
+        loader.loadPageAsync(1, listener);
+        // Pages past the end are ignored
+        loader.loadPageAsync(2, listener);
+
+        Assert.assertEquals(5, loaded.get(1, TimeUnit.SECONDS).size());
+        Assert.assertEquals(1, calls.get());
+    }
+}
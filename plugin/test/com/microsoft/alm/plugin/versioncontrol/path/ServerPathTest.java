@@ -0,0 +1,27 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See License.txt in the project root.
+
+package com.microsoft.alm.plugin.versioncontrol.path;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ServerPathTest {
+    @Test
+    public void testRemoveChildren() {
+        Assert.assertEquals(Arrays.asList("$/proj/dir", "$/proj/dir-2/b.txt", "$/other"),
+                ServerPath.removeChildren(Arrays.asList("$/proj/dir/a.txt", "$/proj/dir", "$/proj/dir-2/b.txt",
+                        "$/PROJ/Dir/sub/c.txt", "$/other", "$/other/")));
+    }
+
+    @Test
+    public void testRemoveChildren_Root() {
+        Assert.assertEquals(Collections.singletonList("$/"),
+                ServerPath.removeChildren(Arrays.asList("$/proj/a.txt", "$/", "$/proj")));
+        Assert.assertEquals(Collections.singletonList("$/proj/a.txt"),
+                ServerPath.removeChildren(Collections.singletonList("$/proj/a.txt")));
+    }
+}